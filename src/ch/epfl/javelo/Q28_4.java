@@ -8,6 +8,9 @@ package ch.epfl.javelo;
  */
 public final class Q28_4 {
     private final static int SHIFT = 4;
+    // multiplying by a power of two is exact, hence equal to Math.scalb (which is much slower) for every int
+    private final static double DOUBLE_SCALE = 1.0 / (1 << SHIFT);
+    private final static float FLOAT_SCALE = 1f / (1 << SHIFT);
 
     /**
      * Default (not instantiable) Q28_4 constructor.
@@ -34,7 +37,7 @@ public final class Q28_4 {
      * @return a (double) type value equal to the given Q28.4 value.
      */
     public static double asDouble(int q28_4) {
-        return Math.scalb((double) q28_4, -SHIFT);
+        return q28_4 * DOUBLE_SCALE;
     }
 
     /**
@@ -44,6 +47,6 @@ public final class Q28_4 {
      * @return a (float) type value equal to the given Q28.4 value.
      */
     public static float asFloat(int q28_4) {
-        return Math.scalb((float) q28_4, -SHIFT);
+        return q28_4 * FLOAT_SCALE;
     }
 }
\ No newline at end of file
@@ -0,0 +1,497 @@
+package ch.epfl.javelo;
+
+import ch.epfl.javelo.data.CompactGraphFormat;
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.data.GraphRenumbering;
+import ch.epfl.javelo.data.StorageMode;
+import ch.epfl.javelo.routing.*;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * Benchmark comparing the searches of RouteComputer (in every search mode) with the former
+ * PriorityQueue-based search, in terms of throughput (queries per second) and allocation rate (bytes per query).
+ * The current search is also measured on the graph stored in heap arrays rather than in mapped files
+ * (see StorageMode), alternately with the mapped one so that both run equally warmed up.
+ * The search is also measured on the graph in the compact format (see CompactGraphFormat), if converted
+ * into the directory of the same name followed by "-v2", along with the size of its files.
+ * Likewise, the search is measured on the graph renumbered along a Hilbert curve (see GraphRenumbering), if written
+ * into the directory of the same name followed by "-hilbert": on the first pass over the queries just after loading
+ * each graph, then once warmed up. Loading a graph reads its nodes and edges (to build the edges entering every
+ * node), so with a cold page cache (dropped before running the benchmark, e.g. by writing 3 into
+ * /proc/sys/vm/drop_caches on Linux) their reading from disk shows in the loading time, and the first pass
+ * then mostly measures the faults on the pages of the profiles and the misses of the processor caches.
+ * Searches guided by landmarks, and queries on the contraction hierarchy, are measured too
+ * if their files are found in the graph directory.
+ * Finally, the reconstruction of the longest routes is measured alone, from predecessor nodes
+ * (scanning the edges leaving each of them, as formerly) and from predecessor edges (as currently),
+ * as well as the computation of a cost matrix and of the legs of a tour.
+ * <p>
+ * Usage: RoutingBenchmark [graph directory] [number of queries]
+ *
+ * @author Tim Kreslo (310686)
+ * @author Wei-En Hsieh (341271)
+ */
+public final class RoutingBenchmark {
+    private final static int WARMUP_ROUNDS = 2;
+    private final static int LONG_ROUTE_COUNT = 10;
+    private final static int RECONSTRUCTION_ROUNDS = 200;
+    private final static int MATRIX_SIZE = 20;
+    private final static int TOUR_WAYPOINTS = 10;
+    private final static long SEED = 2022;
+    private final static Duration EDGE_COST_TABLE_BUDGET = Duration.ofMillis(500); // as when launching JaVelo
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /**
+     * Default (not instantiable) RoutingBenchmark constructor
+     */
+    private RoutingBenchmark() {}
+
+    public static void main(String[] args) throws IOException {
+        Path basePath = Path.of(args.length > 0 ? args[0] : "lausanne");
+        Graph graph = Graph.loadFrom(basePath);
+        int queryCount = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        CostFunction costFunction = new CityBikeCF(graph);
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+        RouteComputer bidirectionalComputer = new RouteComputer(graph, costFunction, SearchMode.BIDIRECTIONAL);
+
+        long t0 = System.nanoTime();
+        CostFunction costTable = EdgeCostTable.of(graph, costFunction, EDGE_COST_TABLE_BUDGET);
+        long t1 = System.nanoTime();
+        EdgeCostTable.of(graph, costFunction);
+        System.out.printf("EdgeCostTable built in %.1f ms (cold), %.1f ms (warm)%n",
+                (t1 - t0) / 1e6, (System.nanoTime() - t1) / 1e6);
+        if (!(costTable instanceof EdgeCostTable)) {
+            System.out.printf("EdgeCostTable not built within %d ms, cost function evaluated by searches%n",
+                    EDGE_COST_TABLE_BUDGET.toMillis());
+        }
+        RouteComputer tableComputer = new RouteComputer(graph, costTable);
+
+        int[][] queries = randomQueries(graph, queryCount);
+
+        IntBinaryOperator legacy = (s, t) -> edgeCount(legacyBestRouteBetween(graph, costFunction, s, t));
+        IntBinaryOperator current = (s, t) -> edgeCount(routeComputer.bestRouteBetween(s, t));
+        IntBinaryOperator bidirectional = (s, t) -> edgeCount(bidirectionalComputer.bestRouteBetween(s, t));
+        IntBinaryOperator table = (s, t) -> edgeCount(tableComputer.bestRouteBetween(s, t));
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            run(legacy, queries);
+            run(current, queries);
+            run(bidirectional, queries);
+            run(table, queries);
+        }
+        report("PriorityQueue (legacy)", legacy, queries);
+        report("NodeHeap (current)", current, queries);
+        report("Bidirectional", bidirectional, queries);
+        report("EdgeCostTable", table, queries);
+
+        t0 = System.nanoTime();
+        Graph heapGraph = Graph.loadFrom(basePath, StorageMode.IN_HEAP);
+        System.out.printf("In-heap graph loaded in %.1f ms%n", (System.nanoTime() - t0) / 1e6);
+        RouteComputer heapComputer = new RouteComputer(heapGraph, new CityBikeCF(heapGraph));
+        IntBinaryOperator inHeap = (s, t) -> edgeCount(heapComputer.bestRouteBetween(s, t));
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            run(current, queries);
+            run(inHeap, queries);
+        }
+        report("NodeHeap (mapped graph)", current, queries);
+        report("NodeHeap (in-heap graph)", inHeap, queries);
+
+        Path compactPath = Path.of(basePath + "-v2");
+        if (CompactGraphFormat.existIn(compactPath)) { // written by CompactGraphFormat.main
+            reportCompact(basePath, compactPath, current, queries);
+        }
+
+        Path renumberedPath = Path.of(basePath + "-hilbert");
+        if (Files.exists(renumberedPath.resolve("nodes.bin"))) { // written by GraphRenumbering.main
+            reportRenumbered(basePath, renumberedPath, queries);
+        }
+
+        if (Landmarks.existIn(basePath)) { // written by Landmarks.main
+            Landmarks landmarks = Landmarks.loadFrom(basePath);
+            RouteComputer altComputer =
+                    new RouteComputer(graph, costFunction, SearchMode.UNIDIRECTIONAL, landmarks);
+            RouteComputer bidirectionalAltComputer =
+                    new RouteComputer(graph, costFunction, SearchMode.BIDIRECTIONAL, landmarks);
+            IntBinaryOperator alt = (s, t) -> edgeCount(altComputer.bestRouteBetween(s, t));
+            IntBinaryOperator bidirectionalAlt = (s, t) -> edgeCount(bidirectionalAltComputer.bestRouteBetween(s, t));
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                run(alt, queries);
+                run(bidirectionalAlt, queries);
+            }
+            report("ALT", alt, queries);
+            report("Bidirectional ALT", bidirectionalAlt, queries);
+        }
+
+        if (Files.exists(basePath.resolve("ch_ranks.bin"))) { // written by ContractionHierarchyBuilder
+            ContractionHierarchy hierarchy = ContractionHierarchy.loadFrom(basePath, graph, costFunction);
+            IntBinaryOperator contracted = (s, t) -> edgeCount(hierarchy.bestRouteBetween(s, t));
+            for (int i = 0; i < WARMUP_ROUNDS; i++) run(contracted, queries);
+            report("Contraction hierarchy", contracted, queries);
+        }
+
+        reportReconstructions(graph, costFunction, queries);
+        reportMatrix(graph, routeComputer, queries);
+        reportTour(routeComputer, queries);
+    }
+
+    /**
+     * Auxiliary (private) method printing the size of the nodes and edges in the original and compact formats,
+     * and measuring the search on the compact graph alternately with the original one
+     *
+     * @param basePath    path to the directory of the graph in the original format
+     * @param compactPath path to the directory of the graph in the compact format
+     * @param current     search on the original graph
+     * @param queries     pairs of (start, end) node identities
+     * @throws IOException if the files could not be read
+     */
+    private static void reportCompact(Path basePath, Path compactPath, IntBinaryOperator current, int[][] queries)
+            throws IOException {
+        long originalSize = 0;
+        for (String file : List.of("nodes.bin", "edges.bin", "profile_ids.bin")) {
+            originalSize += Files.size(basePath.resolve(file));
+        }
+        long compactSize = Files.size(compactPath.resolve(CompactGraphFormat.NODES_FILE))
+                + Files.size(compactPath.resolve(CompactGraphFormat.EDGES_FILE));
+        System.out.printf("Nodes and edges: %.1f MB (original) %.1f MB (compact)%n",
+                originalSize / 1e6, compactSize / 1e6);
+
+        long t0 = System.nanoTime();
+        Graph compactGraph = Graph.loadFrom(compactPath, StorageMode.COMPACT);
+        long t1 = System.nanoTime();
+        System.out.printf("Compact graph loaded in %.1f ms%n", (t1 - t0) / 1e6);
+
+        RouteComputer compactComputer = new RouteComputer(compactGraph, new CityBikeCF(compactGraph));
+        IntBinaryOperator compact = (s, t) -> edgeCount(compactComputer.bestRouteBetween(s, t));
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            run(current, queries);
+            run(compact, queries);
+        }
+        report("NodeHeap (original)", current, queries);
+        report("NodeHeap (compact)", compact, queries);
+    }
+
+    /**
+     * Auxiliary (private) method printing the locality of the original and renumbered graphs, and measuring
+     * the search on both, freshly loaded: on a first pass over the queries (the renumbered graph first, whose files
+     * have not been read yet), then alternately once warmed up
+     *
+     * @param basePath       path to the directory of the original graph
+     * @param renumberedPath path to the directory of the renumbered graph
+     * @param queries        pairs of (start, end) node identities in the original graph
+     * @throws IOException if the files could not be read
+     */
+    private static void reportRenumbered(Path basePath, Path renumberedPath, int[][] queries) throws IOException {
+        int[] newNodeIds = GraphRenumbering.newNodeIds(basePath);
+        int[][] renumberedQueries = new int[queries.length][];
+        for (int i = 0; i < queries.length; i++) {
+            renumberedQueries[i] = new int[]{newNodeIds[queries[i][0]], newNodeIds[queries[i][1]]};
+        }
+
+        long t0 = System.nanoTime();
+        Graph renumberedGraph = Graph.loadFrom(renumberedPath);
+        long t1 = System.nanoTime();
+        Graph originalGraph = Graph.loadFrom(basePath);
+        long t2 = System.nanoTime();
+        System.out.printf("Renumbered graph loaded in %.1f ms (original: %.1f ms)%n", (t1 - t0) / 1e6, (t2 - t1) / 1e6);
+        for (Graph graph : List.of(originalGraph, renumberedGraph)) {
+            GraphRenumbering.Locality locality = GraphRenumbering.locality(graph);
+            System.out.printf("%-24s %8.0f mean id gap %7.1f %% edges within a page %6.0f m between successive ids%n",
+                    graph == originalGraph ? "Locality (original)" : "Locality (Hilbert)",
+                    locality.meanIdGap(), 100 * locality.samePageRatio(), locality.meanSuccessorDistance());
+        }
+
+        RouteComputer originalComputer = new RouteComputer(originalGraph, new CityBikeCF(originalGraph));
+        RouteComputer renumberedComputer = new RouteComputer(renumberedGraph, new CityBikeCF(renumberedGraph));
+        IntBinaryOperator original = (s, t) -> edgeCount(originalComputer.bestRouteBetween(s, t));
+        IntBinaryOperator renumbered = (s, t) -> edgeCount(renumberedComputer.bestRouteBetween(s, t));
+        report("Hilbert (first pass)", renumbered, renumberedQueries);
+        report("Original (first pass)", original, queries);
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            run(original, queries);
+            run(renumbered, renumberedQueries);
+        }
+        report("Original (warm)", original, queries);
+        report("Hilbert (warm)", renumbered, renumberedQueries);
+    }
+
+    /**
+     * Auxiliary (private) method measuring and printing the time needed to compute the legs of a tour,
+     * one after the other and concurrently (as RouteBean does with the legs missing from its cache)
+     *
+     * @param routeComputer route computer to measure
+     * @param queries       pairs of (start, end) node identities, whose start nodes are the waypoints of the tour
+     */
+    private static void reportTour(RouteComputer routeComputer, int[][] queries) {
+        int waypointCount = Math.min(TOUR_WAYPOINTS, queries.length);
+        List<Callable<Route>> legs = new ArrayList<>();
+        for (int i = 1; i < waypointCount; i++) {
+            int from = queries[i - 1][0], to = queries[i][0];
+            if (from != to) legs.add(() -> routeComputer.bestRouteBetween(from, to));
+        }
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+                long t0 = System.nanoTime();
+                for (Callable<Route> leg : legs) leg.call();
+                long t1 = System.nanoTime();
+                for (Future<Route> leg : executor.invokeAll(legs)) leg.get();
+                long t2 = System.nanoTime();
+                if (round == WARMUP_ROUNDS) {
+                    System.out.printf("%d-leg tour: %8.1f ms (sequential) %8.1f ms (concurrent, %d threads)%n",
+                            legs.size(), (t1 - t0) / 1e6, (t2 - t1) / 1e6, threads);
+                }
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Auxiliary (private) method measuring and printing the time needed to compute a square cost matrix,
+     * with one search per pair of nodes and with RouteComputer.matrixBetween
+     *
+     * @param graph         the graph
+     * @param routeComputer route computer to measure
+     * @param queries       pairs of (start, end) node identities, giving the sources and targets of the matrix
+     */
+    private static void reportMatrix(Graph graph, RouteComputer routeComputer, int[][] queries) {
+        int size = Math.min(MATRIX_SIZE, queries.length);
+        int[] sources = new int[size], targets = new int[size];
+        for (int i = 0; i < size; i++) {
+            sources[i] = queries[i][0];
+            targets[i] = queries[i][1];
+        }
+
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            long t0 = System.nanoTime();
+            for (int source : sources) {
+                for (int target : targets) {
+                    if (source != target) routeComputer.bestRouteBetween(source, target);
+                }
+            }
+            long t1 = System.nanoTime();
+            routeComputer.matrixBetween(sources, targets);
+            long t2 = System.nanoTime();
+            if (round == WARMUP_ROUNDS) {
+                System.out.printf("%dx%d matrix: %8.1f ms (pairwise) %8.1f ms (matrixBetween, %d cores)%n",
+                        size, size, (t1 - t0) / 1e6, (t2 - t1) / 1e6, Runtime.getRuntime().availableProcessors());
+            }
+        }
+    }
+
+    /**
+     * Auxiliary (private) method measuring and printing the time needed to reconstruct the longest routes
+     * of the given queries, from predecessor nodes and from predecessor edges
+     *
+     * @param graph        the graph
+     * @param costFunction cost function of the searches
+     * @param queries      pairs of (start, end) node identities
+     */
+    private static void reportReconstructions(Graph graph, CostFunction costFunction, int[][] queries) {
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+        Map<int[], Integer> edgeCounts = new HashMap<>();
+        for (int[] query : queries) edgeCounts.put(query, edgeCount(routeComputer.bestRouteBetween(query[0], query[1])));
+        int[][] longest = Arrays.stream(queries)
+                .sorted(Comparator.comparingInt((int[] query) -> -edgeCounts.get(query)))
+                .limit(LONG_ROUTE_COUNT)
+                .toArray(int[][]::new);
+
+        int[][] predecessorNodes = new int[longest.length][];
+        int[][] predecessorEdges = new int[longest.length][];
+        for (int i = 0; i < longest.length; i++) {
+            predecessorNodes[i] = new int[graph.nodeCount()];
+            predecessorEdges[i] = new int[graph.nodeCount()];
+            legacySearch(graph, costFunction, longest[i][0], longest[i][1], predecessorNodes[i], predecessorEdges[i]);
+        }
+
+        IntBinaryOperator fromNodes = (i, unused) -> edgeCount(
+                legacyRoute(graph, longest[i][0], longest[i][1], predecessorNodes[i]));
+        IntBinaryOperator fromEdges = (i, unused) -> edgeCount(
+                routeFromEdges(graph, longest[i][0], longest[i][1], predecessorEdges[i]));
+        int[][] indices = new int[longest.length * RECONSTRUCTION_ROUNDS][];
+        for (int i = 0; i < indices.length; i++) indices[i] = new int[]{i % longest.length, 0};
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            run(fromNodes, indices);
+            run(fromEdges, indices);
+        }
+        reportReconstruction("Predecessor nodes (scan)", fromNodes, indices);
+        reportReconstruction("Predecessor edges", fromEdges, indices);
+    }
+
+    /**
+     * Auxiliary (private) method measuring and printing the time needed per edge by a route reconstruction
+     *
+     * @param name           name of the reconstruction
+     * @param reconstruction reconstruction to measure, returning the number of edges of the route
+     * @param indices        indices of the routes to reconstruct
+     */
+    private static void reportReconstruction(String name, IntBinaryOperator reconstruction, int[][] indices) {
+        long t0 = System.nanoTime();
+        long edges = run(reconstruction, indices);
+        long t1 = System.nanoTime();
+        System.out.printf("%-24s %8.1f ns/edge (%d edges)%n", name, (double) (t1 - t0) / edges, edges);
+    }
+
+    /**
+     * Auxiliary (private) method measuring and printing the throughput and allocation rate of a search
+     *
+     * @param name    name of the search
+     * @param search  search to measure, returning the number of edges of the route found
+     * @param queries pairs of (start, end) node identities
+     */
+    private static void report(String name, IntBinaryOperator search, int[][] queries) {
+        long bytes0 = THREADS.getCurrentThreadAllocatedBytes();
+        long t0 = System.nanoTime();
+        long edges = run(search, queries);
+        long t1 = System.nanoTime();
+        long bytes1 = THREADS.getCurrentThreadAllocatedBytes();
+
+        double seconds = (t1 - t0) / 1e9;
+        System.out.printf("%-24s %8.1f queries/s %12d bytes/query %8.1f MB/s (%d edges)%n",
+                name,
+                queries.length / seconds,
+                (bytes1 - bytes0) / queries.length,
+                (bytes1 - bytes0) / seconds / 1e6,
+                edges);
+    }
+
+    /**
+     * Auxiliary (private) method running a search on every query
+     *
+     * @param search  search to run
+     * @param queries pairs of (start, end) node identities
+     * @return total number of edges of the routes found (prevents dead code elimination)
+     */
+    private static long run(IntBinaryOperator search, int[][] queries) {
+        long edges = 0;
+        for (int[] query : queries) edges += search.applyAsInt(query[0], query[1]);
+        return edges;
+    }
+
+    /**
+     * Auxiliary (private) method drawing random pairs of distinct nodes, with a fixed seed
+     *
+     * @param graph      the graph
+     * @param queryCount number of pairs to draw
+     * @return pairs of (start, end) node identities
+     */
+    private static int[][] randomQueries(Graph graph, int queryCount) {
+        Random random = new Random(SEED);
+        int[][] queries = new int[queryCount][];
+        for (int i = 0; i < queryCount; i++) {
+            int startNodeId = random.nextInt(graph.nodeCount());
+            int endNodeId;
+            do endNodeId = random.nextInt(graph.nodeCount()); while (endNodeId == startNodeId);
+            queries[i] = new int[]{startNodeId, endNodeId};
+        }
+        return queries;
+    }
+
+    private static int edgeCount(Route route) {
+        return route == null ? 0 : route.edges().size();
+    }
+
+    /**
+     * Former search of RouteComputer, pushing a new record into a PriorityQueue on every relaxation,
+     * kept as the reference of this benchmark.
+     */
+    private static Route legacyBestRouteBetween(Graph graph, CostFunction costFunction,
+                                                int startNodeId, int endNodeId) {
+        int[] predecessor = new int[graph.nodeCount()];
+        return legacySearch(graph, costFunction, startNodeId, endNodeId, predecessor, null)
+                ? legacyRoute(graph, startNodeId, endNodeId, predecessor)
+                : null;
+    }
+
+    /**
+     * Former search of RouteComputer, recording the predecessor node of each node,
+     * and its predecessor edge if predecessorEdge is not null
+     *
+     * @return true iff a route was found
+     */
+    private static boolean legacySearch(Graph graph, CostFunction costFunction, int startNodeId, int endNodeId,
+                                        int[] predecessor, int[] predecessorEdge) {
+        record WeightedNode(int nodeId, float distance) implements Comparable<WeightedNode> {
+            @Override
+            public int compareTo(WeightedNode that) {
+                return Float.compare(this.distance, that.distance);
+            }
+        }
+
+        PriorityQueue<WeightedNode> visiting = new PriorityQueue<>();
+        float[] distance = new float[graph.nodeCount()];
+        Arrays.fill(distance, Float.POSITIVE_INFINITY);
+
+        distance[startNodeId] = 0f;
+        visiting.add(new WeightedNode(startNodeId, 0f));
+
+        while (!visiting.isEmpty()) {
+            int currentNode = visiting.remove().nodeId;
+            if (currentNode == endNodeId) return true;
+
+            if (distance[currentNode] != Float.NEGATIVE_INFINITY) {
+                for (int i = 0; i < graph.nodeOutDegree(currentNode); i++) {
+                    int edge = graph.nodeOutEdgeId(currentNode, i);
+                    int nTemp = graph.edgeTargetNodeId(edge);
+                    double totalDistance = distance[currentNode]
+                            + costFunction.costFactor(currentNode, edge) * graph.edgeLength(edge);
+                    if (totalDistance < distance[nTemp]) {
+                        distance[nTemp] = (float) totalDistance;
+                        predecessor[nTemp] = currentNode;
+                        if (predecessorEdge != null) predecessorEdge[nTemp] = edge;
+                        visiting.add(new WeightedNode(nTemp, distance[nTemp]
+                                + (float) graph.nodePoint(nTemp).distanceTo(graph.nodePoint(endNodeId))));
+                    }
+                }
+                distance[currentNode] = Float.NEGATIVE_INFINITY;
+            }
+        }
+        return false;
+    }
+
+    private static Route legacyRoute(Graph graph, int startNodeId, int endNodeId, int[] predecessor) {
+        List<Edge> edges = new ArrayList<>();
+        for (int nodeId = endNodeId; nodeId != startNodeId; nodeId = predecessor[nodeId]) {
+            for (int i = 0; i < graph.nodeOutDegree(predecessor[nodeId]); i++) {
+                int edgeId = graph.nodeOutEdgeId(predecessor[nodeId], i);
+                if (graph.edgeTargetNodeId(edgeId) == nodeId) {
+                    edges.add(Edge.of(graph, edgeId, predecessor[nodeId], nodeId));
+                    break;
+                }
+            }
+        }
+        Collections.reverse(edges);
+        return new SingleRoute(edges);
+    }
+
+    private static Route routeFromEdges(Graph graph, int startNodeId, int endNodeId, int[] predecessorEdge) {
+        List<Edge> edges = new ArrayList<>();
+        for (int nodeId = endNodeId; nodeId != startNodeId; ) {
+            int edgeId = predecessorEdge[nodeId];
+            int fromNodeId = graph.edgeSourceNodeId(edgeId);
+            edges.add(Edge.of(graph, edgeId, fromNodeId, nodeId));
+            nodeId = fromNodeId;
+        }
+        Collections.reverse(edges);
+        return new SingleRoute(edges);
+    }
+}
@@ -0,0 +1,88 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Bits;
+import ch.epfl.javelo.Q28_4;
+
+/**
+ * Recorded class representing the array of all edges of the JaVelo graph, like GraphEdges,
+ * but read from mapped files of any size, at long offsets (see StorageMode.CHUNKED)
+ *
+ * @param edgesFile      the mapped file edges.bin
+ * @param profileIdsFile the mapped file profile_ids.bin
+ * @param elevationsFile the mapped file elevations.bin
+ *
+ * @author Timofey Kreslo (310686)
+ * @author Wei-En Hsieh (341271)
+ */
+public record ChunkedGraphEdges(MappedFile edgesFile, MappedFile profileIdsFile, MappedFile elevationsFile)
+        implements EdgeStore {
+
+    /* Edge's attributes are distributed over 80 bits in total = 4 Bytes + 3 * 2 Bytes (see GraphEdges) */
+    private static final int EDGE_PITCH = Integer.BYTES + 3 * Short.BYTES;
+    private static final int OFFSET_LENGTH = Integer.BYTES;
+    private static final int OFFSET_ELEVATION_GAIN = OFFSET_LENGTH + Short.BYTES;
+    private static final int OFFSET_OSM_ATTRIBUTES = OFFSET_ELEVATION_GAIN + Short.BYTES;
+
+    @Override
+    public int count() {
+        return Math.toIntExact(edgesFile.size() / EDGE_PITCH);
+    }
+
+    @Override
+    public boolean isInverted(int edgeId) {
+        return edgesFile.getInt((long) edgeId * EDGE_PITCH) < 0;
+    }
+
+    @Override
+    public int targetNodeId(int edgeId) {
+        int target = edgesFile.getInt((long) edgeId * EDGE_PITCH);
+        return target < 0 ? ~target : target;
+    }
+
+    @Override
+    public double length(int edgeId) {
+        return Q28_4.asDouble(Short.toUnsignedInt(edgesFile.getShort((long) edgeId * EDGE_PITCH + OFFSET_LENGTH)));
+    }
+
+    @Override
+    public double elevationGain(int edgeId) {
+        return Q28_4.asDouble(
+                Short.toUnsignedInt(edgesFile.getShort((long) edgeId * EDGE_PITCH + OFFSET_ELEVATION_GAIN)));
+    }
+
+    @Override
+    public boolean hasProfile(int edgeId) {
+        return Bits.extractUnsigned(profileId(edgeId), 30, 2) > 0;
+    }
+
+    @Override
+    public float[] profileSamples(int edgeId) {
+        return GraphEdges.profileSamples(profileId(edgeId),
+                Short.toUnsignedInt(edgesFile.getShort((long) edgeId * EDGE_PITCH + OFFSET_LENGTH)),
+                isInverted(edgeId), i -> elevationsFile.getShort((long) i * Short.BYTES));
+    }
+
+    @Override
+    public float[] storedProfileSamples(int edgeId) {
+        return GraphEdges.profileSamples(profileId(edgeId),
+                Short.toUnsignedInt(edgesFile.getShort((long) edgeId * EDGE_PITCH + OFFSET_LENGTH)),
+                false, i -> elevationsFile.getShort((long) i * Short.BYTES));
+    }
+
+    @Override
+    public double elevationAt(int edgeId, double position) {
+        return GraphEdges.elevationAt(profileId(edgeId),
+                Short.toUnsignedInt(edgesFile.getShort((long) edgeId * EDGE_PITCH + OFFSET_LENGTH)),
+                isInverted(edgeId), i -> elevationsFile.getShort((long) i * Short.BYTES), position);
+    }
+
+    @Override
+    public int attributesIndex(int edgeId) {
+        return Short.toUnsignedInt(edgesFile.getShort((long) edgeId * EDGE_PITCH + OFFSET_OSM_ATTRIBUTES));
+    }
+
+    @Override
+    public int profileId(int edgeId) {
+        return profileIdsFile.getInt((long) edgeId * Integer.BYTES);
+    }
+}
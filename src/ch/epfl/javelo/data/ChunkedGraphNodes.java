@@ -0,0 +1,64 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Bits;
+import ch.epfl.javelo.Q28_4;
+
+/**
+ * Recorded class representing the array of all nodes of the JaVelo graph, like GraphNodes,
+ * but read from a mapped file of any size, at long offsets (see StorageMode.CHUNKED)
+ *
+ * @param file the mapped file nodes.bin
+ *
+ * @author Timofey Kreslo (310686)
+ * @author Wei-En Hsieh (341271)
+ */
+public record ChunkedGraphNodes(MappedFile file) implements NodeStore {
+
+    /* Node's attributes are distributed over 96 bits in total = 12 Bytes = 3 Integers (see GraphNodes) */
+    private static final int NODE_BYTES = 3 * Integer.BYTES;
+    private static final int OFFSET_E = 0;
+    private static final int OFFSET_N = OFFSET_E + Integer.BYTES;
+    private static final int OFFSET_OUT_EDGES = OFFSET_N + Integer.BYTES;
+
+    private static final int OFFSET_EDGE_ID = 0;
+    private static final int EDGE_ID_BITS = 28;
+    private static final int OUT_EDGES_BITS = Integer.SIZE - EDGE_ID_BITS;
+
+    @Override
+    public int count() {
+        return Math.toIntExact(file.size() / NODE_BYTES);
+    }
+
+    @Override
+    public double nodeE(int nodeId) {
+        return Q28_4.asDouble(nodeEQ28_4(nodeId));
+    }
+
+    @Override
+    public double nodeN(int nodeId) {
+        return Q28_4.asDouble(nodeNQ28_4(nodeId));
+    }
+
+    @Override
+    public int nodeEQ28_4(int nodeId) {
+        return file.getInt((long) nodeId * NODE_BYTES + OFFSET_E);
+    }
+
+    @Override
+    public int nodeNQ28_4(int nodeId) {
+        return file.getInt((long) nodeId * NODE_BYTES + OFFSET_N);
+    }
+
+    @Override
+    public int outDegree(int nodeId) {
+        int slice = file.getInt((long) nodeId * NODE_BYTES + OFFSET_OUT_EDGES);
+        return Bits.extractUnsigned(slice, EDGE_ID_BITS, OUT_EDGES_BITS);
+    }
+
+    @Override
+    public int edgeId(int nodeId, int edgeIndex) {
+        assert 0 <= edgeIndex && edgeIndex < outDegree(nodeId);
+        int slice = file.getInt((long) nodeId * NODE_BYTES + OFFSET_OUT_EDGES);
+        return Bits.extractUnsigned(slice, OFFSET_EDGE_ID, EDGE_ID_BITS) + edgeIndex;
+    }
+}
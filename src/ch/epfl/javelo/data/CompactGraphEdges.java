@@ -0,0 +1,191 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Q28_4;
+
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+
+import static ch.epfl.javelo.data.CompactGraphFormat.*;
+
+/**
+ * Class representing the array of all edges of the JaVelo graph, like GraphEdges,
+ * but read from the file edges_v2.bin of the compact format (see CompactGraphFormat).
+ * <p>
+ * As for CompactGraphNodes, an edge is read by decoding its whole block at once, which every thread keeps in a small
+ * cache of decoded blocks (the edges leaving a node being consecutive, they mostly share their block).
+ *
+ * @author Timofey Kreslo (310686)
+ * @author Wei-En Hsieh (341271)
+ */
+public final class CompactGraphEdges implements EdgeStore {
+    private static final int PROFILE_TYPE_MASK = INVERTED_FLAG - 1;
+    private static final int CACHED_BLOCKS = 1024; // per thread, a power of two
+
+    private final ByteBuffer buffer;
+    private final ShortBuffer elevations;
+    private final int count;
+    private final int blockSize;
+    // blocks decoded by each thread
+    private final ThreadLocal<Blocks> decodedBlocks;
+
+    /**
+     * Default CompactGraphEdges constructor
+     *
+     * @param buffer     content of the file edges_v2.bin
+     * @param elevations content of the file elevations.bin
+     */
+    public CompactGraphEdges(ByteBuffer buffer, ShortBuffer elevations) {
+        this.buffer = buffer;
+        this.elevations = elevations;
+        this.count = buffer.getInt(OFFSET_COUNT);
+        this.blockSize = buffer.getInt(OFFSET_BLOCK_SIZE);
+        this.decodedBlocks = ThreadLocal.withInitial(Blocks::new);
+    }
+
+    @Override
+    public int count() {
+        return count;
+    }
+
+    @Override
+    public boolean isInverted(int edgeId) {
+        Blocks blocks = decodedBlocks.get();
+        return (blocks.targetsAndFlags[blocks.index(edgeId)] & INVERTED_FLAG) != 0;
+    }
+
+    @Override
+    public int targetNodeId(int edgeId) {
+        Blocks blocks = decodedBlocks.get();
+        return blocks.targetsAndFlags[blocks.index(edgeId)] >>> TARGET_SHIFT;
+    }
+
+    @Override
+    public double length(int edgeId) {
+        return Q28_4.asDouble(lengthQ28_4(edgeId));
+    }
+
+    @Override
+    public double elevationGain(int edgeId) {
+        Blocks blocks = decodedBlocks.get();
+        return Q28_4.asDouble(blocks.elevationGains[blocks.index(edgeId)]);
+    }
+
+    @Override
+    public boolean hasProfile(int edgeId) {
+        Blocks blocks = decodedBlocks.get();
+        return (blocks.targetsAndFlags[blocks.index(edgeId)] & PROFILE_TYPE_MASK) != 0;
+    }
+
+    @Override
+    public float[] profileSamples(int edgeId) {
+        return GraphEdges.profileSamples(profileId(edgeId), lengthQ28_4(edgeId), isInverted(edgeId),
+                elevations::get);
+    }
+
+    @Override
+    public float[] storedProfileSamples(int edgeId) {
+        return GraphEdges.profileSamples(profileId(edgeId), lengthQ28_4(edgeId), false, elevations::get);
+    }
+
+    @Override
+    public int profileId(int edgeId) {
+        Blocks blocks = decodedBlocks.get();
+        return blocks.profileIds[blocks.index(edgeId)];
+    }
+
+    @Override
+    public double elevationAt(int edgeId, double position) {
+        return GraphEdges.elevationAt(profileId(edgeId), lengthQ28_4(edgeId), isInverted(edgeId),
+                elevations::get, position);
+    }
+
+    @Override
+    public int attributesIndex(int edgeId) {
+        Blocks blocks = decodedBlocks.get();
+        return blocks.attributesIndices[blocks.index(edgeId)];
+    }
+
+    /**
+     * Auxiliary (private) method returning the length of the given edge, as stored
+     *
+     * @param edgeId Edge's Identity
+     * @return the length of the edge, in Q28.4
+     */
+    private int lengthQ28_4(int edgeId) {
+        Blocks blocks = decodedBlocks.get();
+        return blocks.lengths[blocks.index(edgeId)];
+    }
+
+    /**
+     * Decoded blocks of edges, one array per field, used by a single thread
+     */
+    private final class Blocks {
+        private final int[] blockIds = new int[CACHED_BLOCKS]; // block decoded at each place, -1 if none
+        private final int[] targetsAndFlags;
+        private final int[] profileIds;
+        private final int[] lengths;
+        private final int[] elevationGains;
+        private final int[] attributesIndices;
+
+        /**
+         * Default Blocks constructor
+         */
+        private Blocks() {
+            Arrays.fill(blockIds, -1);
+            targetsAndFlags = new int[CACHED_BLOCKS * blockSize];
+            profileIds = new int[CACHED_BLOCKS * blockSize];
+            lengths = new int[CACHED_BLOCKS * blockSize];
+            elevationGains = new int[CACHED_BLOCKS * blockSize];
+            attributesIndices = new int[CACHED_BLOCKS * blockSize];
+        }
+
+        /**
+         * Returns the index of the given edge in the arrays, decoding its block if it is not in them
+         *
+         * @param edgeId Edge's Identity
+         * @return index of the edge in the arrays
+         */
+        private int index(int edgeId) {
+            int blockId = edgeId / blockSize;
+            int place = blockId & (CACHED_BLOCKS - 1);
+            if (blockIds[place] != blockId) decode(blockId, place);
+            return place * blockSize + edgeId % blockSize;
+        }
+
+        /**
+         * Auxiliary (private) method decoding the given block into the arrays, at the given place: the target node
+         * identities with the direction and the type of the profile in their least significant bits,
+         * and the profile identities as in profile_ids.bin (0 for the edges without profile)
+         *
+         * @param blockId index of the block
+         * @param place   place of the block in the arrays
+         */
+        private void decode(int blockId, int place) {
+            int offset = blockOffset(buffer, blockId);
+            int target = 0, firstIndex = 0;
+            int first = place * blockSize;
+            int size = Math.min(blockSize, count - blockId * blockSize);
+            for (int i = first; i < first + size; i++) {
+                long read = readVarInt(buffer, offset);
+                target += unzigzag(value(read) >>> TARGET_SHIFT);
+                int flags = value(read) & ((1 << TARGET_SHIFT) - 1);
+                int profileType = flags & PROFILE_TYPE_MASK;
+                if (profileType != 0) {
+                    read = readVarInt(buffer, position(read));
+                    firstIndex += unzigzag(value(read));
+                }
+                targetsAndFlags[i] = target << TARGET_SHIFT | flags;
+                profileIds[i] = profileType == 0 ? 0 : profileType << Integer.SIZE - PROFILE_TYPE_BITS | firstIndex;
+                read = readVarInt(buffer, position(read));
+                lengths[i] = value(read);
+                read = readVarInt(buffer, position(read));
+                elevationGains[i] = value(read);
+                read = readVarInt(buffer, position(read));
+                attributesIndices[i] = value(read);
+                offset = position(read);
+            }
+            blockIds[place] = blockId;
+        }
+    }
+}
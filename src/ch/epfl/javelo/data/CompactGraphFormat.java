@@ -0,0 +1,402 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.Preconditions;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Compact format (version 2) of the nodes and edges of the JaVelo graph, with its converter from the files
+ * of the original format (nodes.bin, edges.bin and profile_ids.bin).
+ * <p>
+ * Nodes and edges keep their identities, hence their order: nodes sorted by sector, and edges by source node.
+ * They are grouped into blocks of a fixed number of consecutive nodes or edges, each block encoding every
+ * value as the difference with the one before it in the block, in a variable number of bytes (LEB128 varints,
+ * signed differences being zigzag encoded). A node or an edge is read by decoding its block from the start,
+ * which the offsets of the blocks, stored after the header of each file, make possible in constant time.
+ * <p>
+ * Both files nodes_v2.bin and edges_v2.bin start with a header of four ints: the magic number "JVG2",
+ * the version of the format, the number of nodes or edges and the number of them per block.
+ * <ul>
+ *     <li>a block of nodes starts with the identity following the last edge of the previous block, then every node
+ *     is encoded as the differences of its coordinates (in Q28.4) with the previous node, then its degree
+ *     (4 bits) and a flag telling whether the identity of its first edge follows, if its edges do not directly
+ *     follow those of the previous node;</li>
+ *     <li>every edge of a block is encoded as the difference of its target node with the previous edge,
+ *     with its direction and the type of its profile (3 bits), then, if it has a profile, the difference of
+ *     the index of its first elevation with the previous profile, and finally its length, elevation gain
+ *     and index of attribute set, as stored in edges.bin.</li>
+ * </ul>
+ * The other files (sectors.bin, attributes.bin, elevations.bin) are the same in both formats.
+ *
+ * @author Timofey Kreslo (310686)
+ * @author Wei-En Hsieh (341271)
+ */
+public final class CompactGraphFormat {
+    /**
+     * Names of the files of the nodes and of the edges in the compact format
+     */
+    public final static String NODES_FILE = "nodes_v2.bin";
+    public final static String EDGES_FILE = "edges_v2.bin";
+
+    final static int MAGIC = 0x4A56_4732; // "JVG2"
+    final static int VERSION = 2;
+    final static int OFFSET_COUNT = 2 * Integer.BYTES;
+    final static int OFFSET_BLOCK_SIZE = OFFSET_COUNT + Integer.BYTES;
+    final static int OFFSET_BLOCKS = OFFSET_BLOCK_SIZE + Integer.BYTES;
+
+    final static int DEGREE_BITS = 4;
+    final static int EDGE_ID_FLAG = 1 << DEGREE_BITS; // the identity of the first edge of the node follows
+    final static int PROFILE_TYPE_BITS = 2;
+    final static int INVERTED_FLAG = 1 << PROFILE_TYPE_BITS;
+    final static int TARGET_SHIFT = PROFILE_TYPE_BITS + 1;
+
+    private final static int DEFAULT_BLOCK_SIZE = 16;
+    private final static int MAX_NODE_COUNT = 1 << 28; // differences of targets fit in 32 bits with their flags
+    private final static List<String> SHARED_FILES = List.of("sectors.bin", "attributes.bin", "elevations.bin");
+
+    /**
+     * Default (not instantiable) CompactGraphFormat constructor
+     */
+    private CompactGraphFormat() {}
+
+    /**
+     * Checks whether the nodes and edges of the graph of the given directory are stored in the compact format
+     *
+     * @param basePath path to the directory of the graph
+     * @return true iff the files nodes_v2.bin and edges_v2.bin exist in the directory
+     */
+    public static boolean existIn(Path basePath) {
+        return Files.exists(basePath.resolve(NODES_FILE)) && Files.exists(basePath.resolve(EDGES_FILE));
+    }
+
+    /**
+     * Converts the graph of the given directory, in the original format, to the compact format,
+     * into the other given directory (created if needed), with the files shared by both formats
+     *
+     * @param fromPath path to the directory of the graph in the original format
+     * @param toPath   path to the directory of the graph in the compact format
+     * @throws IOException if the files could not be read or written
+     */
+    public static void convert(Path fromPath, Path toPath) throws IOException {
+        convert(fromPath, toPath, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Converts the graph of the given directory to the compact format, with blocks of the given size
+     * (package-private, so that tests can use blocks of any size). The blocks are written to the files as they are
+     * encoded, so that converting a graph of any size takes little memory, but each file of the compact format,
+     * read at int offsets, must not be larger than 2 GB.
+     *
+     * @param fromPath  path to the directory of the graph in the original format
+     * @param toPath    path to the directory of the graph in the compact format
+     * @param blockSize number of nodes or edges per block
+     * @throws IOException if the files could not be read or written, or if a file of the compact format
+     *                     would be larger than 2 GB
+     */
+    static void convert(Path fromPath, Path toPath, int blockSize) throws IOException {
+        Files.createDirectories(toPath);
+        // original files read in chunks, whatever their size
+        try (MappedFile nodesFile = MappedFile.map(fromPath.resolve("nodes.bin"));
+             MappedFile edgesFile = MappedFile.map(fromPath.resolve("edges.bin"));
+             MappedFile profileIdsFile = MappedFile.map(fromPath.resolve("profile_ids.bin"));
+             MappedFile elevationsFile = MappedFile.map(fromPath.resolve("elevations.bin"))) {
+            NodeStore nodes = new ChunkedGraphNodes(nodesFile);
+            EdgeStore edges = new ChunkedGraphEdges(edgesFile, profileIdsFile, elevationsFile);
+            encodeNodes(nodes, blockSize, toPath.resolve(NODES_FILE));
+            encodeEdges(edges, nodes.count(), blockSize, toPath.resolve(EDGES_FILE));
+        }
+        for (String file : SHARED_FILES) {
+            Files.copy(fromPath.resolve(file), toPath.resolve(file), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Encodes the given nodes in the compact format, into the given file
+     *
+     * @param nodes     the graph nodes
+     * @param blockSize number of nodes per block
+     * @param path      path to the file nodes_v2.bin
+     * @throws IOException if the file could not be written, or would be larger than 2 GB
+     */
+    static void encodeNodes(NodeStore nodes, int blockSize, Path path) throws IOException {
+        Preconditions.checkArgument(blockSize > 0);
+        int count = nodes.count();
+        try (BlockWriter blocks = new BlockWriter(path, count, blockSize)) {
+            int previousE = 0, previousN = 0, nextEdgeId = 0;
+            for (int nodeId = 0; nodeId < count; nodeId++) {
+                if (nodeId % blockSize == 0) {
+                    blocks.startBlock(nodeId / blockSize);
+                    previousE = previousN = 0;
+                    blocks.writeVarInt(nextEdgeId);
+                }
+                int e = nodes.nodeEQ28_4(nodeId), n = nodes.nodeNQ28_4(nodeId);
+                int degree = nodes.outDegree(nodeId);
+                // the first edge of a node without edges is never read, hence taken to follow the previous ones
+                int firstEdgeId = degree == 0 ? nextEdgeId : nodes.edgeId(nodeId, 0);
+                blocks.writeVarInt(zigzag(e - previousE));
+                blocks.writeVarInt(zigzag(n - previousN));
+                blocks.writeVarInt(degree | (firstEdgeId == nextEdgeId ? 0 : EDGE_ID_FLAG));
+                if (firstEdgeId != nextEdgeId) blocks.writeVarInt(firstEdgeId);
+                previousE = e;
+                previousN = n;
+                nextEdgeId = firstEdgeId + degree;
+            }
+            blocks.finish();
+        }
+    }
+
+    /**
+     * Encodes the given edges in the compact format, into the given file
+     *
+     * @param edges     the graph edges
+     * @param nodeCount number of nodes of the graph
+     * @param blockSize number of edges per block
+     * @param path      path to the file edges_v2.bin
+     * @throws IOException if the file could not be written, or would be larger than 2 GB
+     * @throws IllegalArgumentException if the graph has more than 2^28 nodes
+     */
+    static void encodeEdges(EdgeStore edges, int nodeCount, int blockSize, Path path) throws IOException {
+        Preconditions.checkArgument(blockSize > 0 && nodeCount <= MAX_NODE_COUNT);
+        int count = edges.count();
+        try (BlockWriter blocks = new BlockWriter(path, count, blockSize)) {
+            int previousTarget = 0, previousFirstIndex = 0;
+            for (int edgeId = 0; edgeId < count; edgeId++) {
+                if (edgeId % blockSize == 0) {
+                    blocks.startBlock(edgeId / blockSize);
+                    previousTarget = previousFirstIndex = 0;
+                }
+                int target = edges.targetNodeId(edgeId);
+                int profileId = edges.profileId(edgeId);
+                int profileType = profileId >>> Integer.SIZE - PROFILE_TYPE_BITS;
+                blocks.writeVarInt(zigzag(target - previousTarget) << TARGET_SHIFT
+                        | (edges.isInverted(edgeId) ? INVERTED_FLAG : 0) | profileType);
+                if (profileType != 0) {
+                    int firstIndex = profileId & (-1 >>> PROFILE_TYPE_BITS);
+                    blocks.writeVarInt(zigzag(firstIndex - previousFirstIndex));
+                    previousFirstIndex = firstIndex;
+                }
+                blocks.writeVarInt((int) Math.scalb(edges.length(edgeId), 4));
+                blocks.writeVarInt((int) Math.scalb(edges.elevationGain(edgeId), 4));
+                blocks.writeVarInt(edges.attributesIndex(edgeId));
+                previousTarget = target;
+            }
+            blocks.finish();
+        }
+    }
+
+    /**
+     * Checks the header of the given file in the compact format
+     *
+     * @param buffer   content of the file
+     * @param fileName name of the file, for the message of the exception
+     * @return the buffer
+     * @throws IOException if the file is not in the compact format, or in another version of it
+     */
+    static ByteBuffer checkHeader(ByteBuffer buffer, String fileName) throws IOException {
+        if (buffer.capacity() < OFFSET_BLOCKS || buffer.getInt(0) != MAGIC) {
+            throw new IOException(fileName + " is not a compact graph file");
+        }
+        if (buffer.getInt(Integer.BYTES) != VERSION) {
+            throw new IOException(fileName + " has unsupported version " + buffer.getInt(Integer.BYTES));
+        }
+        return buffer;
+    }
+
+    /**
+     * Returns the offset of the given block of a file in the compact format
+     *
+     * @param buffer  content of the file
+     * @param blockId index of the block
+     * @return offset of the first byte of the block, in the file
+     */
+    static int blockOffset(ByteBuffer buffer, int blockId) {
+        int blockCount = Math2.ceilDiv(buffer.getInt(OFFSET_COUNT), buffer.getInt(OFFSET_BLOCK_SIZE));
+        return OFFSET_BLOCKS + Integer.BYTES * blockCount + buffer.getInt(OFFSET_BLOCKS + Integer.BYTES * blockId);
+    }
+
+    /**
+     * Reads the varint starting at the given offset of the buffer, without allocating anything
+     *
+     * @param buffer   content of a file in the compact format
+     * @param position offset of the first byte of the varint
+     * @return the value read (as an unsigned int) in the 32 most significant bits,
+     * and the offset following the varint in the 32 least significant bits
+     */
+    static long readVarInt(ByteBuffer buffer, int position) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get(position++);
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return (long) value << Integer.SIZE | position;
+        }
+    }
+
+    /**
+     * Returns the value of the given result of readVarInt
+     *
+     * @param read result of readVarInt
+     * @return the value read
+     */
+    static int value(long read) {
+        return (int) (read >>> Integer.SIZE);
+    }
+
+    /**
+     * Returns the offset following the varint of the given result of readVarInt
+     *
+     * @param read result of readVarInt
+     * @return the offset following the varint
+     */
+    static int position(long read) {
+        return (int) read;
+    }
+
+    /**
+     * Returns the signed value encoded by the given zigzag value
+     *
+     * @param value zigzag encoded value (0, -1, 1, -2, ... being 0, 1, 2, 3, ...)
+     * @return the signed value
+     */
+    static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Auxiliary (private) method returning the zigzag encoding of the given value, small whatever its sign
+     *
+     * @param value signed value
+     * @return the zigzag encoded value (as an unsigned int)
+     */
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> (Integer.SIZE - 1));
+    }
+
+    /**
+     * Writer of a file in the compact format, streaming its blocks to the file through a small buffer as they are
+     * encoded, after room left for the header and the offsets of the blocks, written once all blocks are
+     */
+    private static final class BlockWriter implements Closeable {
+        private static final int BUFFER_SIZE = 1 << 16;
+        private static final int MAX_VARINT_BYTES = 5;
+
+        private final Path path;
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private final int count;
+        private final int blockSize;
+        private final int[] blockOffsets;
+        private final long blocksStart;
+        private long size; // bytes of the blocks written so far, including those still in the buffer
+
+        /**
+         * Default BlockWriter constructor, creating (or truncating) the file
+         *
+         * @param path      path to the file
+         * @param count     number of nodes or edges of the file
+         * @param blockSize number of them per block
+         * @throws IOException if the file could not be opened
+         */
+        private BlockWriter(Path path, int count, int blockSize) throws IOException {
+            this.path = path;
+            this.count = count;
+            this.blockSize = blockSize;
+            this.blockOffsets = new int[Math2.ceilDiv(count, blockSize)];
+            this.blocksStart = OFFSET_BLOCKS + (long) Integer.BYTES * blockOffsets.length;
+            this.channel = FileChannel.open(path, CREATE, WRITE, TRUNCATE_EXISTING);
+            channel.position(blocksStart);
+        }
+
+        /**
+         * Starts the given block at the current position
+         *
+         * @param blockId index of the block
+         */
+        private void startBlock(int blockId) {
+            blockOffsets[blockId] = (int) size; // checked not to overflow when the buffer is flushed
+        }
+
+        /**
+         * Writes the given value as a varint: seven bits per byte, from the least significant ones,
+         * the most significant bit of each byte telling whether another one follows
+         *
+         * @param value value to write (as an unsigned int)
+         * @throws IOException if the file could not be written, or would be larger than 2 GB
+         */
+        private void writeVarInt(int value) throws IOException {
+            if (buffer.remaining() < MAX_VARINT_BYTES) flush();
+            while ((value & ~0x7F) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+                size++;
+            }
+            buffer.put((byte) value);
+            size++;
+        }
+
+        /**
+         * Writes the last blocks, then the header and the offsets of the blocks, at the start of the file
+         *
+         * @throws IOException if the file could not be written, or would be larger than 2 GB
+         */
+        private void finish() throws IOException {
+            flush();
+            ByteBuffer header = ByteBuffer.allocate((int) blocksStart);
+            header.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(blockSize);
+            for (int offset : blockOffsets) header.putInt(offset);
+            header.flip();
+            while (header.hasRemaining()) channel.write(header, header.position());
+        }
+
+        /**
+         * Auxiliary (private) method writing the content of the buffer to the file, and emptying it
+         *
+         * @throws IOException if the file could not be written, or would be larger than 2 GB
+         */
+        private void flush() throws IOException {
+            if (blocksStart + size > Integer.MAX_VALUE) {
+                throw new IOException(path + " would be larger than 2 GB, which the compact format cannot address");
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) channel.write(buffer);
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Converts the graph of the given directory to the compact format, into the other given directory,
+     * and prints the sizes of the files of the nodes and edges in both formats
+     *
+     * @param args directory of the graph in the original format, then of the graph in the compact format
+     * @throws IOException if the files could not be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        Path fromPath = Path.of(args.length > 0 ? args[0] : "lausanne");
+        Path toPath = Path.of(args.length > 1 ? args[1] : fromPath + "-v2");
+
+        long t0 = System.nanoTime();
+        convert(fromPath, toPath);
+        long originalSize = 0;
+        for (String file : List.of("nodes.bin", "edges.bin", "profile_ids.bin")) {
+            originalSize += Files.size(fromPath.resolve(file));
+        }
+        long compactSize = Files.size(toPath.resolve(NODES_FILE)) + Files.size(toPath.resolve(EDGES_FILE));
+        System.out.printf("graphe converti en %d ms : noeuds et arêtes de %.1f Mo à %.1f Mo (%.0f %%)%n",
+                (System.nanoTime() - t0) / 1_000_000, originalSize / 1e6, compactSize / 1e6,
+                100.0 * compactSize / originalSize);
+    }
+}
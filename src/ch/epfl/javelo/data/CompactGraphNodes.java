@@ -0,0 +1,150 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Q28_4;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static ch.epfl.javelo.data.CompactGraphFormat.*;
+
+/**
+ * Class representing the array of all nodes of the JaVelo graph, like GraphNodes,
+ * but read from the file nodes_v2.bin of the compact format (see CompactGraphFormat).
+ * <p>
+ * A node is read by decoding its whole block at once, which every thread keeps in a small cache of decoded
+ * blocks (each block having a single place in it, that of the block decoded last among those sharing it):
+ * the fields of a node being mostly read together, and searches reading nodes close to each other,
+ * most reads do not decode anything.
+ *
+ * @author Timofey Kreslo (310686)
+ * @author Wei-En Hsieh (341271)
+ */
+public final class CompactGraphNodes implements NodeStore {
+    private static final int CACHED_BLOCKS = 1024; // per thread, a power of two
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int blockSize;
+    // blocks decoded by each thread
+    private final ThreadLocal<Blocks> decodedBlocks;
+
+    /**
+     * Default CompactGraphNodes constructor
+     *
+     * @param buffer content of the file nodes_v2.bin
+     */
+    public CompactGraphNodes(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.count = buffer.getInt(OFFSET_COUNT);
+        this.blockSize = buffer.getInt(OFFSET_BLOCK_SIZE);
+        this.decodedBlocks = ThreadLocal.withInitial(Blocks::new);
+    }
+
+    @Override
+    public int count() {
+        return count;
+    }
+
+    @Override
+    public double nodeE(int nodeId) {
+        return Q28_4.asDouble(nodeEQ28_4(nodeId));
+    }
+
+    @Override
+    public double nodeN(int nodeId) {
+        return Q28_4.asDouble(nodeNQ28_4(nodeId));
+    }
+
+    @Override
+    public int nodeEQ28_4(int nodeId) {
+        Blocks blocks = decodedBlocks.get();
+        return blocks.e[blocks.index(nodeId)];
+    }
+
+    @Override
+    public int nodeNQ28_4(int nodeId) {
+        Blocks blocks = decodedBlocks.get();
+        return blocks.n[blocks.index(nodeId)];
+    }
+
+    @Override
+    public int outDegree(int nodeId) {
+        Blocks blocks = decodedBlocks.get();
+        return blocks.outDegrees[blocks.index(nodeId)];
+    }
+
+    @Override
+    public int edgeId(int nodeId, int edgeIndex) {
+        assert 0 <= edgeIndex && edgeIndex < outDegree(nodeId);
+        Blocks blocks = decodedBlocks.get();
+        return blocks.firstEdgeIds[blocks.index(nodeId)] + edgeIndex;
+    }
+
+    /**
+     * Decoded blocks of nodes, one array per field, used by a single thread
+     */
+    private final class Blocks {
+        private final int[] blockIds = new int[CACHED_BLOCKS]; // block decoded at each place, -1 if none
+        private final int[] e;
+        private final int[] n;
+        private final int[] outDegrees;
+        private final int[] firstEdgeIds;
+
+        /**
+         * Default Blocks constructor
+         */
+        private Blocks() {
+            Arrays.fill(blockIds, -1);
+            e = new int[CACHED_BLOCKS * blockSize];
+            n = new int[CACHED_BLOCKS * blockSize];
+            outDegrees = new int[CACHED_BLOCKS * blockSize];
+            firstEdgeIds = new int[CACHED_BLOCKS * blockSize];
+        }
+
+        /**
+         * Returns the index of the given node in the arrays, decoding its block if it is not in them
+         *
+         * @param nodeId node's identity
+         * @return index of the node in the arrays
+         */
+        private int index(int nodeId) {
+            int blockId = nodeId / blockSize;
+            int place = blockId & (CACHED_BLOCKS - 1);
+            if (blockIds[place] != blockId) decode(blockId, place);
+            return place * blockSize + nodeId % blockSize;
+        }
+
+        /**
+         * Auxiliary (private) method decoding the given block into the arrays, at the given place
+         *
+         * @param blockId index of the block
+         * @param place   place of the block in the arrays
+         */
+        private void decode(int blockId, int place) {
+            long read = readVarInt(buffer, blockOffset(buffer, blockId));
+            int nextEdgeId = value(read);
+            int e = 0, n = 0;
+            int first = place * blockSize;
+            int size = Math.min(blockSize, count - blockId * blockSize);
+            for (int i = first; i < first + size; i++) {
+                read = readVarInt(buffer, position(read));
+                e += unzigzag(value(read));
+                read = readVarInt(buffer, position(read));
+                n += unzigzag(value(read));
+                read = readVarInt(buffer, position(read));
+                int outDegree = value(read) & (EDGE_ID_FLAG - 1);
+                int edgeId = nextEdgeId;
+                if ((value(read) & EDGE_ID_FLAG) != 0) {
+                    read = readVarInt(buffer, position(read));
+                    edgeId = value(read);
+                }
+                this.e[i] = e;
+                this.n[i] = n;
+                outDegrees[i] = outDegree;
+                firstEdgeIds[i] = edgeId;
+                nextEdgeId = edgeId + outDegree;
+            }
+            blockIds[place] = blockId;
+        }
+    }
+}
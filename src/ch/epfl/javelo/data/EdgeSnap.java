@@ -0,0 +1,27 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.projection.PointCh;
+
+/**
+ * Recorded class representing a point snapped to an edge of the JaVelo graph:
+ * the orthogonal projection of a point on the edge (a straight segment between its nodes).
+ *
+ * @param edgeId   identity of the edge
+ * @param point    projected point, on the edge
+ * @param fraction position of the projected point along the edge, from 0 (at its source node) to 1 (at its target)
+ *
+ * @author Timofey Kreslo (310686)
+ * @author Wei-En Hsieh (341271)
+ */
+public record EdgeSnap(int edgeId, PointCh point, double fraction) {
+
+    /**
+     * Compact EdgeSnap constructor
+     *
+     * @throws IllegalArgumentException if the fraction is not between 0 and 1
+     */
+    public EdgeSnap {
+        Preconditions.checkArgument(0 <= fraction && fraction <= 1);
+    }
+}
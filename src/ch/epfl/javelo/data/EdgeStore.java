@@ -0,0 +1,101 @@
+package ch.epfl.javelo.data;
+
+/**
+ * Interface representing the storage of the edges of the JaVelo graph, in the format of the files edges.bin,
+ * profile_ids.bin and elevations.bin, whether they are read from single buffers (GraphEdges)
+ * or from files of any size (ChunkedGraphEdges)
+ *
+ * @author Timofey Kreslo (310686)
+ * @author Wei-En Hsieh (341271)
+ */
+public interface EdgeStore {
+
+    /**
+     * Counts the total number of edges
+     *
+     * @return the total number of edges
+     */
+    int count();
+
+    /**
+     * Determines whether the given edge goes in the opposite direction of the OSM way, from where it comes
+     *
+     * @param edgeId Edge's Identity
+     * @return true iff edgeId goes in the opposite direction of the OSM edge
+     */
+    boolean isInverted(int edgeId);
+
+    /**
+     * Returns the identity of the target node of the given edge
+     *
+     * @param edgeId Edge's Identity
+     * @return the identity of the target node of the given identity edge
+     */
+    int targetNodeId(int edgeId);
+
+    /**
+     * Returns the length, in meters, of the given edge
+     *
+     * @param edgeId Edge's Identity
+     * @return the length (in meters) of the given identity edge
+     */
+    double length(int edgeId);
+
+    /**
+     * Returns the positive elevation gain, in meters, of the given edge
+     *
+     * @param edgeId Edge's Identity
+     * @return the elevation gain, in meters, of the edge with the given identity
+     */
+    double elevationGain(int edgeId);
+
+    /**
+     * Determines whether the given edge has a profile
+     *
+     * @param edgeId Edge's Identity
+     * @return true if and only if the given identity edge has a profile
+     */
+    boolean hasProfile(int edgeId);
+
+    /**
+     * Returns the samples of the profile of the given edge
+     *
+     * @param edgeId Edge's Identity
+     * @return the edge profile samples array with the given identity
+     */
+    float[] profileSamples(int edgeId);
+
+    /**
+     * Returns the samples of the profile of the given edge as stored, in the order of the OSM way
+     * (hence the same for an edge and its reverse, which share the same profile)
+     *
+     * @param edgeId Edge's Identity
+     * @return the edge profile samples, not reversed even if the edge is inverted
+     */
+    float[] storedProfileSamples(int edgeId);
+
+    /**
+     * Returns the type and the index of the first elevation of the profile of the given edge
+     *
+     * @param edgeId Edge's Identity
+     * @return the profile identity of the edge, as in profile_ids.bin
+     */
+    int profileId(int edgeId);
+
+    /**
+     * Returns the elevation at the given position along the given edge, without decoding its whole profile
+     *
+     * @param edgeId   Edge's Identity
+     * @param position position along the edge, in meters
+     * @return the elevation at the position (as the function of the profile samples), or NaN if there is no profile
+     */
+    double elevationAt(int edgeId, double position);
+
+    /**
+     * Returns the index of the attribute set attached to the given edge
+     *
+     * @param edgeId Edge's Identity
+     * @return the identity of the attribute set attached to the given identity edge
+     */
+    int attributesIndex(int edgeId);
+}
@@ -0,0 +1,121 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.projection.Ch1903;
+
+import java.io.IOException;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Class representing a digital elevation model made of tiles in the SRTM format (files .hgt): each tile covers
+ * one degree of latitude and longitude, whose south-west corner is given by the name of its file (N46E006.hgt
+ * covering latitudes 46 to 47 and longitudes 6 to 7), by a square grid of elevations in meters (signed shorts,
+ * row by row from north to south, each row from west to east, -32768 meaning unknown), whose size (typically
+ * 1201 or 3601 samples per line) follows from the size of the file.
+ * Elevations between the samples of the grid are interpolated bilinearly.
+ *
+ * @author Timofey Kreslo (310686)
+ * @author Wei-En Hsieh (341271)
+ */
+public final class ElevationGrid {
+    private final static Pattern TILE_NAME = Pattern.compile("([NS])(\\d{2})([EW])(\\d{3})\\.hgt");
+    private final static short UNKNOWN_ELEVATION = Short.MIN_VALUE;
+    private final static int LONGITUDES = 360;
+
+    private final Map<Integer, Tile> tiles;
+
+    /**
+     * Recorded class (private) representing a tile of the model
+     *
+     * @param elevations elevations of the samples, row by row from north to south
+     * @param size       number of samples per row (and per column)
+     */
+    private record Tile(ShortBuffer elevations, int size) {}
+
+    /**
+     * ElevationGrid constructor (private, models are obtained from loadFrom)
+     *
+     * @param tiles tiles of the model, by key (see tileKey)
+     */
+    private ElevationGrid(Map<Integer, Tile> tiles) {
+        this.tiles = Map.copyOf(tiles);
+    }
+
+    /**
+     * Returns the elevation model made of the tiles (files .hgt) of the given directory, mapped into memory
+     *
+     * @param directory path to the directory of the tiles
+     * @return the elevation model
+     * @throws IOException if the directory could not be read, or if the size of a tile is not that of a square grid
+     */
+    public static ElevationGrid loadFrom(Path directory) throws IOException {
+        Map<Integer, Tile> tiles = new HashMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.hgt")) {
+            for (Path file : files) {
+                Matcher matcher = TILE_NAME.matcher(file.getFileName().toString());
+                if (!matcher.matches()) continue;
+                int lat = Integer.parseInt(matcher.group(2)) * (matcher.group(1).equals("N") ? 1 : -1);
+                int lon = Integer.parseInt(matcher.group(4)) * (matcher.group(3).equals("E") ? 1 : -1);
+
+                try (FileChannel channel = FileChannel.open(file)) {
+                    int size = (int) Math.round(Math.sqrt(channel.size() / (double) Short.BYTES));
+                    if (size < 2 || (long) size * size * Short.BYTES != channel.size()) {
+                        throw new IOException(file + " is not a square grid of elevations");
+                    }
+                    ShortBuffer elevations = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                            .asShortBuffer();
+                    tiles.put(tileKey(lon, lat), new Tile(elevations, size));
+                }
+            }
+        }
+        return new ElevationGrid(tiles);
+    }
+
+    /**
+     * Returns the elevation at the given point, of the Swiss coordinate system
+     *
+     * @param e East coordinate of the point
+     * @param n North coordinate of the point
+     * @return elevation at the point in meters, or NaN if unknown (no tile covering the point,
+     * or unknown elevation of one of the samples around it)
+     */
+    public double elevationAt(double e, double n) {
+        double lon = Math.toDegrees(Ch1903.lon(e, n));
+        double lat = Math.toDegrees(Ch1903.lat(e, n));
+        int tileLon = (int) Math.floor(lon), tileLat = (int) Math.floor(lat);
+        Tile tile = tiles.get(tileKey(tileLon, tileLat));
+        if (tile == null) return Double.NaN;
+
+        int last = tile.size() - 1;
+        double x = (lon - tileLon) * last, y = (tileLat + 1 - lat) * last;
+        int column = Math2.clamp(0, (int) x, last - 1), row = Math2.clamp(0, (int) y, last - 1);
+        short nw = tile.elevations().get(row * tile.size() + column);
+        short ne = tile.elevations().get(row * tile.size() + column + 1);
+        short sw = tile.elevations().get((row + 1) * tile.size() + column);
+        short se = tile.elevations().get((row + 1) * tile.size() + column + 1);
+        if (nw == UNKNOWN_ELEVATION || ne == UNKNOWN_ELEVATION || sw == UNKNOWN_ELEVATION || se == UNKNOWN_ELEVATION) {
+            return Double.NaN;
+        }
+        double dx = x - column, dy = y - row;
+        return Math2.interpolate(Math2.interpolate(nw, ne, dx), Math2.interpolate(sw, se, dx), dy);
+    }
+
+    /**
+     * Auxiliary (private) method returning the key of the tile of the given south-west corner
+     *
+     * @param lon longitude of the corner, in degrees
+     * @param lat latitude of the corner, in degrees
+     * @return key of the tile
+     */
+    private static int tileKey(int lon, int lat) {
+        return lat * LONGITUDES + lon;
+    }
+}
@@ -1,31 +1,50 @@
 package ch.epfl.javelo.data;
 
 import ch.epfl.javelo.Functions;
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.Preconditions;
 import ch.epfl.javelo.projection.PointCh;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
 import java.nio.LongBuffer;
 import java.nio.ShortBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.function.DoubleUnaryOperator;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
 
 /**
- * Immutable class representing the JaVelo Graph
+ * Immutable class representing the JaVelo Graph.
+ * A graph whose files are mapped in chunks (see StorageMode.CHUNKED) should be closed once no longer used,
+ * which unmaps them at once; closing any other graph has no effect.
  *
  * @author Timofey Kreslo (310686)
  * @author Wei-En Hsieh (341271)
  */
-public final class Graph {
+public final class Graph implements AutoCloseable {
+    private final static double Q28_4_SCALE = 1 << 4; // sixteenths of meter per meter
 
-    private final GraphNodes nodes;
+    private final static long MAX_BUFFER_SIZE = Integer.MAX_VALUE; // largest file mapped into a single buffer
+
+    private final NodeStore nodes;
     private final GraphSectors sectors;
-    private final GraphEdges edges;
+    private final EdgeStore edges;
     private final List<AttributeSet> attributeSets;
+    private final GraphArrays arrays; // null unless stored in heap (see StorageMode)
+    private final ProfileCache profileCache; // null unless given (see withProfileCache)
+    private final LongBuffer osmIds; // null unless the file nodes_osmid.bin exists
+    private final Path osmIdsDirectory; // directory of the file nodes_osmid.bin, null unless it exists
+    private volatile OsmIdIndex osmIdIndex; // loaded on first lookup of a node by its OpenStreetMap identity
+    private volatile GraphInEdges inEdges; // built on first use (eagerly by loadFrom)
+    private volatile GraphEdgeIndex edgeIndex; // built on first use
 
 
     /**
@@ -37,10 +56,54 @@ public final class Graph {
      * @param attributeSets the graph's attribute sets
      */
     public Graph(GraphNodes nodes, GraphSectors sectors, GraphEdges edges, List<AttributeSet> attributeSets) {
+        this(nodes, sectors, edges, attributeSets, StorageMode.MAPPED);
+    }
+
+
+    /**
+     * Graph constructor, keeping its data as given by the storage mode
+     *
+     * @param nodes         the graph nodes
+     * @param sectors       the graph sectors
+     * @param edges         the graph edges
+     * @param attributeSets the graph's attribute sets
+     * @param storageMode   whether nodes and edges are decoded once into arrays (IN_HEAP),
+     *                      or read from the given storage (any other mode)
+     */
+    public Graph(NodeStore nodes, GraphSectors sectors, EdgeStore edges, List<AttributeSet> attributeSets,
+                 StorageMode storageMode) {
         this.nodes = nodes;
         this.sectors = sectors;
         this.edges = edges;
         this.attributeSets = List.copyOf(attributeSets);
+        this.arrays = storageMode == StorageMode.IN_HEAP ? GraphArrays.of(nodes, edges) : null;
+        this.profileCache = null;
+        this.osmIds = null;
+        this.osmIdsDirectory = null;
+    }
+
+
+    /**
+     * Graph constructor (private) sharing the data of the given graph, with the given profile cache
+     * and OpenStreetMap identities
+     *
+     * @param graph           the graph whose data is shared
+     * @param profileCache    cache of the decoded profiles, or null
+     * @param osmIds          OpenStreetMap identities of the nodes, or null
+     * @param osmIdsDirectory directory of the file of these identities (see OsmIdIndex), or null
+     */
+    private Graph(Graph graph, ProfileCache profileCache, LongBuffer osmIds, Path osmIdsDirectory) {
+        this.nodes = graph.nodes;
+        this.sectors = graph.sectors;
+        this.edges = graph.edges;
+        this.attributeSets = graph.attributeSets;
+        this.arrays = graph.arrays;
+        this.inEdges = graph.inEdges;
+        this.edgeIndex = graph.edgeIndex;
+        this.profileCache = profileCache;
+        this.osmIds = osmIds;
+        this.osmIdsDirectory = osmIdsDirectory;
+        this.osmIdIndex = graph.osmIdIndex;
     }
 
 
@@ -52,19 +115,106 @@ public final class Graph {
      * @throws IOException if the expected file does not exist
      */
     public static Graph loadFrom(Path basePath) throws IOException { // basePath = file lausanne
+        return loadFrom(basePath, StorageMode.MAPPED);
+    }
+
+
+    /**
+     * Returns JaVelo graph (Graph), obtained from the files located in the given directory,
+     * keeping its data as given by the storage mode
+     *
+     * @param  basePath path to given directory (Path)
+     * @param  storageMode whether the files are only mapped into memory (MAPPED), mapped in chunks (CHUNKED),
+     *                     their nodes and edges decoded into arrays of the heap (IN_HEAP, which routes faster
+     *                     but loads slower), or read from the files of the compact format (COMPACT, see
+     *                     CompactGraphFormat), only then used. Nodes and edges of the original format are always
+     *                     mapped in chunks if one of their files is larger than 2 GB, which a single buffer
+     *                     cannot map.
+     *                     The OpenStreetMap identities of the nodes are read from nodes_osmid.bin if it exists,
+     *                     their index being mapped if written (see OsmIdIndex), or else built, on the first
+     *                     lookup of a node by its OpenStreetMap identity.
+     * @return JaVelo graph (Graph)
+     * @throws IOException if the expected file does not exist
+     */
+    public static Graph loadFrom(Path basePath, StorageMode storageMode) throws IOException {
         LongBuffer attributesChannel = fileName(basePath, "attributes.bin").asLongBuffer();
-        ByteBuffer edgesChannel = fileName(basePath, "edges.bin");
-        ShortBuffer elevationsChannel = fileName(basePath, "elevations.bin").asShortBuffer();
-        IntBuffer nodesChannel = fileName(basePath, "nodes.bin").asIntBuffer();// from graphNodes
-        IntBuffer profileIdsChannel = fileName(basePath, "profile_ids.bin").asIntBuffer();
         ByteBuffer sectorsChannel = fileName(basePath, "sectors.bin");
 
         List<AttributeSet> attributeSets = new ArrayList<>();
         for (int i = 0; i < attributesChannel.capacity(); ++i) {
             attributeSets.add(new AttributeSet(attributesChannel.get(i)));
         }
-        return new Graph(new GraphNodes(nodesChannel), new GraphSectors(sectorsChannel),
-                new GraphEdges(edgesChannel, profileIdsChannel, elevationsChannel), attributeSets);
+
+        NodeStore nodes;
+        EdgeStore edges;
+        if (storageMode == StorageMode.COMPACT) {
+            nodes = new CompactGraphNodes(CompactGraphFormat.checkHeader(
+                    fileName(basePath, CompactGraphFormat.NODES_FILE), CompactGraphFormat.NODES_FILE));
+            edges = new CompactGraphEdges(CompactGraphFormat.checkHeader(
+                    fileName(basePath, CompactGraphFormat.EDGES_FILE), CompactGraphFormat.EDGES_FILE),
+                    fileName(basePath, "elevations.bin").asShortBuffer());
+        } else if (storageMode == StorageMode.CHUNKED || tooLarge(basePath)) {
+            nodes = new ChunkedGraphNodes(MappedFile.map(basePath.resolve("nodes.bin")));
+            edges = new ChunkedGraphEdges(MappedFile.map(basePath.resolve("edges.bin")),
+                    MappedFile.map(basePath.resolve("profile_ids.bin")),
+                    MappedFile.map(basePath.resolve("elevations.bin")));
+        } else {
+            nodes = new GraphNodes(fileName(basePath, "nodes.bin").asIntBuffer());
+            edges = new GraphEdges(fileName(basePath, "edges.bin"),
+                    fileName(basePath, "profile_ids.bin").asIntBuffer(),
+                    fileName(basePath, "elevations.bin").asShortBuffer());
+        }
+        Graph graph = new Graph(nodes, new GraphSectors(sectorsChannel), edges, attributeSets, storageMode);
+        graph.inEdges(); // the reverse adjacency is not stored in the files, build it now rather than mid-query
+        return Files.exists(basePath.resolve("nodes_osmid.bin"))
+                ? new Graph(graph, null, fileName(basePath, "nodes_osmid.bin").asLongBuffer(), basePath)
+                : graph;
+    }
+
+
+    /**
+     * Returns a graph sharing the data of this one (nothing being copied), whose edge profiles are read from
+     * the given cache of decoded profiles rather than decoded on every read: worth it when the same profiles
+     * are read over and over, as those of the routes redrawn by the interface
+     *
+     * @param profileCache cache of the decoded profiles, possibly shared with other graphs of the same files,
+     *                     or null for none
+     * @return graph reading its edge profiles from the cache
+     */
+    public Graph withProfileCache(ProfileCache profileCache) {
+        return new Graph(this, profileCache, osmIds, osmIdsDirectory);
+    }
+
+
+    /**
+     * Auxiliary (private) method checking whether one of the files of the nodes and edges of the graph
+     * of the given directory (in the original format) is too large to be mapped into a single buffer
+     *
+     * @param basePath path to given directory (Path)
+     * @return true iff one of the files is larger than 2 GB
+     * @throws IOException if the expected file does not exist
+     */
+    private static boolean tooLarge(Path basePath) throws IOException {
+        for (String file : List.of("nodes.bin", "edges.bin", "profile_ids.bin", "elevations.bin")) {
+            if (Files.size(basePath.resolve(file)) > MAX_BUFFER_SIZE) return true;
+        }
+        return false;
+    }
+
+
+    /**
+     * Unmaps the files of the graph if they were mapped in chunks (see MappedFile), reading the graph or anything
+     * computed lazily from it (such as the profiles of routes) then throwing an IllegalStateException;
+     * has no effect otherwise
+     */
+    @Override
+    public void close() {
+        if (nodes instanceof ChunkedGraphNodes chunkedNodes) chunkedNodes.file().close();
+        if (edges instanceof ChunkedGraphEdges chunkedEdges) {
+            chunkedEdges.edgesFile().close();
+            chunkedEdges.profileIdsFile().close();
+            chunkedEdges.elevationsFile().close();
+        }
     }
 
 
@@ -103,7 +253,57 @@ public final class Graph {
      * @return point (PointCh) at the node's position
      */
     public PointCh nodePoint(int nodeId) {
-        return new PointCh(nodes.nodeE(nodeId), nodes.nodeN(nodeId));
+        return new PointCh(nodeE(nodeId), nodeN(nodeId));
+    }
+
+
+    /**
+     * Returns the distance (in meters) between the given node and the given point (PointCh),
+     * without building the point of the node.
+     *
+     * @param nodeId node's identity
+     * @param point  (PointCh) anywhere on the map
+     * @return distance between the node and the point
+     */
+    public double nodeDistanceTo(int nodeId, PointCh point) {
+        return Math2.norm(nodeE(nodeId) - point.e(), nodeN(nodeId) - point.n());
+    }
+
+
+    /**
+     * Returns the (straight-line) distance in meters between the two given nodes, without building their points
+     *
+     * @param nodeId      first node's identity
+     * @param otherNodeId second node's identity
+     * @return distance between the two nodes
+     */
+    public double nodesDistance(int nodeId, int otherNodeId) {
+        return Math2.norm(nodeE(nodeId) - nodeE(otherNodeId), nodeN(nodeId) - nodeN(otherNodeId));
+    }
+
+
+    /**
+     * Returns the OpenStreetMap identity of the given node
+     *
+     * @param nodeId node's identity
+     * @return OpenStreetMap identity of the node, or -1 if the graph has none (no file nodes_osmid.bin)
+     */
+    public long nodeOsmId(int nodeId) {
+        return osmIds != null ? osmIds.get(nodeId) : -1;
+    }
+
+
+    /**
+     * Returns the identity of the node of the given OpenStreetMap identity, loading the index of these identities
+     * on the first call
+     *
+     * @param osmId OpenStreetMap identity
+     * @return identity of the node, or -1 if no node has this identity (or the graph has no OpenStreetMap
+     * identities)
+     * @throws UncheckedIOException if the index of the identities could not be loaded
+     */
+    public int nodeIdOfOsmId(long osmId) {
+        return osmIds != null ? osmIdIndex().nodeId(osmId) : -1;
     }
 
 
@@ -114,7 +314,7 @@ public final class Graph {
      * @return number of outgoing edges
      */
     public int nodeOutDegree(int nodeId) {
-        return nodes.outDegree(nodeId);
+        return arrays != null ? arrays.outDegree(nodeId) : nodes.outDegree(nodeId);
     }
 
 
@@ -126,7 +326,30 @@ public final class Graph {
      * @return the identity of the edgeIndex-th edge that leaves the given node
      */
     public int nodeOutEdgeId(int nodeId, int edgeIndex) {
-        return nodes.edgeId(nodeId, edgeIndex);
+        return arrays != null ? arrays.edgeId(nodeId, edgeIndex) : nodes.edgeId(nodeId, edgeIndex);
+    }
+
+
+    /**
+     * Returns the number of incoming edges, into the given node's identity
+     *
+     * @param nodeId node's identity
+     * @return number of incoming edges
+     */
+    public int nodeInDegree(int nodeId) {
+        return inEdges().inDegree(nodeId);
+    }
+
+
+    /**
+     * Returns the identity of the edgeIndex-th edge that enters the given node
+     *
+     * @param nodeId node's identity
+     * @param edgeIndex edge's index
+     * @return the identity of the edgeIndex-th edge that enters the given node
+     */
+    public int nodeInEdgeId(int nodeId, int edgeIndex) {
+        return inEdges().edgeId(nodeId, edgeIndex);
     }
 
 
@@ -138,28 +361,195 @@ public final class Graph {
      * @return closest node's identity
      */
     public int nodeClosestTo(PointCh point, double searchDistance) {
+        return nodeClosestTo(point, searchDistance, nodeId -> true);
+    }
+
 
-        List<GraphSectors.Sector> sectorsNearestBy = sectors.sectorsInArea(point, searchDistance);
+    /**
+     * Returns closest node's identity (nodeId) to the given point (PointCh), among the nodes accepted
+     * by the given predicate.
+     *
+     * @param point (PointCh) anywhere on the map
+     * @param searchDistance distance to search around
+     * @param accepted predicate of the nodes which can be returned
+     * @return closest accepted node's identity, or -1 if there is none within the search distance
+     */
+    public int nodeClosestTo(PointCh point, double searchDistance, IntPredicate accepted) {
+        // coordinates are compared in Q28.4, as stored, the point being scaled by a power of two (hence exactly)
+        double e = point.e() * Q28_4_SCALE;
+        double n = point.n() * Q28_4_SCALE;
+        double maxSquaredDistance = Math2.squaredNorm(searchDistance * Q28_4_SCALE, 0);
 
-        double minDistance = Integer.MAX_VALUE;
+        double minSquaredDistance = Double.POSITIVE_INFINITY;
         int nearestNodeId = -1;
-        double actualDistance;
 
-        for (GraphSectors.Sector sector : sectorsNearestBy) {
-            for (int nodeId = sector.startNodeId(); nodeId < sector.endNodeId(); nodeId++) {
+        int xMax = GraphSectors.column(point.e() + searchDistance);
+        int yMax = GraphSectors.row(point.n() + searchDistance);
+        for (int y = GraphSectors.row(point.n() - searchDistance); y <= yMax; y++) {
+            for (int x = GraphSectors.column(point.e() - searchDistance); x <= xMax; x++) {
+                int sectorId = GraphSectors.sectorId(x, y);
+                int endNodeId = sectors.endNodeId(sectorId);
+                for (int nodeId = sectors.startNodeId(sectorId); nodeId < endNodeId; nodeId++) {
+
+                    double squaredDistance =
+                            Math2.squaredNorm(nodeEQ28_4(nodeId) - e, nodeNQ28_4(nodeId) - n);
+
+                    if (squaredDistance < minSquaredDistance && squaredDistance <= maxSquaredDistance
+                            && accepted.test(nodeId)) {
+                        minSquaredDistance = squaredDistance;
+                        nearestNodeId = nodeId;
+                    }
+                }
+            }
+        }
+
+        return nearestNodeId;
+    }
 
-                PointCh targetPoint = nodePoint(nodeId);
 
-                actualDistance = point.squaredDistanceTo(targetPoint);
+    /**
+     * Returns the identities of the (at most) k nodes closest to the given point (PointCh), within the given
+     * search distance, from the closest to the farthest (nodes at the same distance in the order of nodeClosestTo)
+     *
+     * @param point (PointCh) anywhere on the map
+     * @param searchDistance distance to search around
+     * @param k greatest number of nodes to return
+     * @return identities of the closest nodes (empty if there is none within the search distance)
+     * @throws IllegalArgumentException if k is not strictly positive
+     */
+    public int[] nodesClosestTo(PointCh point, double searchDistance, int k) {
+        Preconditions.checkArgument(k > 0);
+        double e = point.e() * Q28_4_SCALE;
+        double n = point.n() * Q28_4_SCALE;
+        double maxSquaredDistance = Math2.squaredNorm(searchDistance * Q28_4_SCALE, 0);
+
+        // closest nodes found so far, sorted by distance
+        int[] nearestNodeIds = new int[k];
+        double[] squaredDistances = new double[k];
+        int count = 0;
+
+        int xMax = GraphSectors.column(point.e() + searchDistance);
+        int yMax = GraphSectors.row(point.n() + searchDistance);
+        for (int y = GraphSectors.row(point.n() - searchDistance); y <= yMax; y++) {
+            for (int x = GraphSectors.column(point.e() - searchDistance); x <= xMax; x++) {
+                int sectorId = GraphSectors.sectorId(x, y);
+                int endNodeId = sectors.endNodeId(sectorId);
+                for (int nodeId = sectors.startNodeId(sectorId); nodeId < endNodeId; nodeId++) {
+
+                    double squaredDistance =
+                            Math2.squaredNorm(nodeEQ28_4(nodeId) - e, nodeNQ28_4(nodeId) - n);
+                    if (squaredDistance > maxSquaredDistance
+                            || (count == k && squaredDistance >= squaredDistances[k - 1])) continue;
+
+                    // insertion after the nodes which are not farther
+                    int i = count < k ? count++ : k - 1;
+                    for (; i > 0 && squaredDistances[i - 1] > squaredDistance; i--) {
+                        nearestNodeIds[i] = nearestNodeIds[i - 1];
+                        squaredDistances[i] = squaredDistances[i - 1];
+                    }
+                    nearestNodeIds[i] = nodeId;
+                    squaredDistances[i] = squaredDistance;
+                }
+            }
+        }
+
+        return Arrays.copyOf(nearestNodeIds, count);
+    }
+
 
-                if (actualDistance < minDistance && actualDistance <= searchDistance * searchDistance) {
-                    minDistance = actualDistance;
-                    nearestNodeId = nodeId;
+    /**
+     * Returns the closest node's identity to each of the given points (PointCh), the points being
+     * distributed over the available processors
+     *
+     * @param points (PointCh) anywhere on the map
+     * @param searchDistance distance to search around every point
+     * @return closest node's identity to every point, in the same order (-1 where there is none)
+     */
+    public int[] nodesClosestTo(List<PointCh> points, double searchDistance) {
+        return IntStream.range(0, points.size())
+                .parallel()
+                .map(i -> nodeClosestTo(points.get(i), searchDistance))
+                .toArray();
+    }
+
+
+    /**
+     * Returns the edge closest to the given point (PointCh), with the projection of the point on it.
+     * Unlike nodeClosestTo, it finds edges passing by the point even if both of their nodes are far from it.
+     *
+     * @param point (PointCh) anywhere on the map
+     * @param searchDistance distance to search around
+     * @return the point snapped to the closest edge, or null if no edge passes within the search distance
+     */
+    public EdgeSnap edgeClosestTo(PointCh point, double searchDistance) {
+        GraphEdgeIndex index = edgeIndex();
+        // coordinates are compared in Q28.4, as stored (see nodeClosestTo)
+        double e = point.e() * Q28_4_SCALE;
+        double n = point.n() * Q28_4_SCALE;
+        double maxSquaredDistance = Math2.squaredNorm(searchDistance * Q28_4_SCALE, 0);
+
+        double minSquaredDistance = Double.POSITIVE_INFINITY;
+        int nearestEdgeId = -1;
+        double nearestFraction = 0;
+
+        int xMax = GraphEdgeIndex.column(point.e() + searchDistance);
+        int yMax = GraphEdgeIndex.row(point.n() + searchDistance);
+        for (int y = GraphEdgeIndex.row(point.n() - searchDistance); y <= yMax; y++) {
+            for (int x = GraphEdgeIndex.column(point.e() - searchDistance); x <= xMax; x++) {
+                int cellId = GraphEdgeIndex.cellId(x, y);
+                for (int i = 0; i < index.edgeCount(cellId); i++) {
+                    int edgeId = index.edgeId(cellId, i);
+                    int fromNodeId = index.sourceNodeId(cellId, i), toNodeId = edgeTargetNodeId(edgeId);
+                    double fromE = nodeEQ28_4(fromNodeId), fromN = nodeNQ28_4(fromNodeId);
+                    double toE = nodeEQ28_4(toNodeId), toN = nodeNQ28_4(toNodeId);
+
+                    // edges whose bounding box is farther than the closest edge so far cannot be closer
+                    double outsideE = Math.max(Math.min(fromE, toE) - e, e - Math.max(fromE, toE));
+                    double outsideN = Math.max(Math.min(fromN, toN) - n, n - Math.max(fromN, toN));
+                    if (Math2.squaredNorm(Math.max(outsideE, 0), Math.max(outsideN, 0))
+                            > Math.min(minSquaredDistance, maxSquaredDistance)) continue;
+
+                    double uE = toE - fromE, uN = toN - fromN;
+                    double squaredLength = Math2.squaredNorm(uE, uN);
+                    double fraction = squaredLength == 0 ? 0 : Math2.clamp(0,
+                            Math2.dotProduct(e - fromE, n - fromN, uE, uN) / squaredLength, 1);
+                    double squaredDistance = Math2.squaredNorm(fromE + fraction * uE - e, fromN + fraction * uN - n);
+
+                    if (squaredDistance < minSquaredDistance && squaredDistance <= maxSquaredDistance) {
+                        minSquaredDistance = squaredDistance;
+                        nearestEdgeId = edgeId;
+                        nearestFraction = fraction;
+                    }
                 }
             }
         }
+        if (nearestEdgeId == -1) return null;
 
-        return nearestNodeId;
+        PointCh from = nodePoint(edgeSourceNodeId(nearestEdgeId));
+        PointCh to = nodePoint(edgeTargetNodeId(nearestEdgeId));
+        return new EdgeSnap(nearestEdgeId, new PointCh(Math2.interpolate(from.e(), to.e(), nearestFraction),
+                Math2.interpolate(from.n(), to.n(), nearestFraction)), nearestFraction);
+    }
+
+
+    /**
+     * Counts the total number of edges inside the JaVelo Graph
+     *
+     * @return total number of edges
+     */
+    public int edgeCount() {
+        return edges.count();
+    }
+
+
+    /**
+     * Returns node's identity, which is at the start of the given edge
+     *
+     * @param edgeId edge's identity
+     * @return source node's ID, of the given edge (-1 if no node leaves from it, see GraphInEdges)
+     */
+    public int edgeSourceNodeId(int edgeId) {
+        return inEdges().sourceNodeId(edgeId);
     }
 
 
@@ -170,7 +560,7 @@ public final class Graph {
      * @return target node's ID, of the given edge
      */
     public int edgeTargetNodeId(int edgeId) {
-        return edges.targetNodeId(edgeId);
+        return arrays != null ? arrays.edgeTargets()[edgeId] : edges.targetNodeId(edgeId);
     }
 
 
@@ -181,7 +571,7 @@ public final class Graph {
      * @return (boolean) true if the given edge goes in the opposite direction of the OSM way
      */
     public boolean edgeIsInverted(int edgeId) {
-        return edges.isInverted(edgeId);
+        return arrays != null ? arrays.edgeInverted()[edgeId] : edges.isInverted(edgeId);
     }
 
 
@@ -192,7 +582,7 @@ public final class Graph {
      * @return the set (aka the list) of OSM attributes attached to the given identity edge
      */
     public AttributeSet edgeAttributes(int edgeId) {
-        return attributeSets.get(edges.attributesIndex(edgeId));
+        return attributeSets.get(arrays != null ? arrays.attributesIndex(edgeId) : edges.attributesIndex(edgeId));
     }
 
 
@@ -203,7 +593,7 @@ public final class Graph {
      * @return the length (in meters) of the given identity edge
      */
     public double edgeLength(int edgeId) {
-        return edges.length(edgeId); //
+        return arrays != null ? arrays.edgeLengths()[edgeId] : edges.length(edgeId);
     }
 
 
@@ -214,18 +604,151 @@ public final class Graph {
      * @return the elevation gain of the edge
      */
     public double edgeElevationGain(int edgeId) {
-        return edges.elevationGain(edgeId);
+        return arrays != null ? arrays.edgeElevationGains()[edgeId] : edges.elevationGain(edgeId);
     }
 
 
     /**
-     * Return the profile along the given edge's identity, as a function
+     * Return the profile along the given edge's identity, as a function. The profile is not decoded until the
+     * function is first evaluated, so that building the edges of a route costs nothing for the profiles which
+     * are never read; its samples are then decoded once (or read from the profile cache, see withProfileCache)
+     * and kept by the function for the following evaluations.
      *
      * @param edgeId edge's identity
      * @return the profile along the given edge
      */
     public DoubleUnaryOperator edgeProfile(int edgeId) {
-        return (edges.hasProfile(edgeId) ? Functions.sampled(edges.profileSamples(edgeId), edgeLength(edgeId)) :
-                Functions.constant(Double.NaN));
+        if (!edges.hasProfile(edgeId)) return Functions.constant(Double.NaN);
+        double length = edgeLength(edgeId);
+        boolean inverted = edges.isInverted(edgeId);
+        return new DoubleUnaryOperator() {
+            private volatile float[] samples; // in the order of the OSM way, null until the first evaluation
+
+            @Override
+            public double applyAsDouble(double position) {
+                float[] s = samples;
+                if (s == null) {
+                    s = profileCache == null ? edges.storedProfileSamples(edgeId) : cachedProfileSamples(edgeId);
+                    samples = s;
+                }
+                return ProfileCache.elevationAt(s, length, inverted, position);
+            }
+        };
+    }
+
+
+    /**
+     * Return the elevation at the given position along the given edge, decoding only the samples of its profile
+     * which are needed (without allocating anything)
+     *
+     * @param edgeId   edge's identity
+     * @param position position along the edge, in meters
+     * @return the elevation at the position, or NaN if the edge has no profile
+     */
+    public double edgeElevationAt(int edgeId, double position) {
+        return edges.elevationAt(edgeId, position);
+    }
+
+
+    /**
+     * Auxiliary (private) method returning the samples of the profile of the given edge, in the order of the OSM
+     * way, from the profile cache. The key identifies the stored samples (profile identity and length of the edge,
+     * which gives their number), so that an edge and its reverse share the same entry.
+     *
+     * @param edgeId edge's identity (having a profile)
+     * @return the samples of the profile of the edge, in the order of the OSM way
+     */
+    private float[] cachedProfileSamples(int edgeId) {
+        long key = (long) edges.profileId(edgeId) << Integer.SIZE | (long) (edgeLength(edgeId) * Q28_4_SCALE);
+        return profileCache.samples(key, k -> edges.storedProfileSamples(edgeId));
+    }
+
+
+    /**
+     * Auxiliary (private) method returning the East coordinate of the given node
+     *
+     * @param nodeId node's identity
+     * @return East coordinate of the node
+     */
+    private double nodeE(int nodeId) {
+        return arrays != null ? arrays.nodeE()[nodeId] : nodes.nodeE(nodeId);
+    }
+
+
+    /**
+     * Auxiliary (private) method returning the North coordinate of the given node
+     *
+     * @param nodeId node's identity
+     * @return North coordinate of the node
+     */
+    private double nodeN(int nodeId) {
+        return arrays != null ? arrays.nodeN()[nodeId] : nodes.nodeN(nodeId);
+    }
+
+
+    /**
+     * Auxiliary (private) method returning the East coordinate of the given node in Q28.4, as stored
+     * (exactly, the coordinates of the arrays being scaled back by a power of two)
+     *
+     * @param nodeId node's identity
+     * @return East coordinate of the node, in sixteenths of meter
+     */
+    private double nodeEQ28_4(int nodeId) {
+        return arrays != null ? arrays.nodeE()[nodeId] * Q28_4_SCALE : nodes.nodeEQ28_4(nodeId);
+    }
+
+
+    /**
+     * Auxiliary (private) method returning the North coordinate of the given node in Q28.4, as stored
+     *
+     * @param nodeId node's identity
+     * @return North coordinate of the node, in sixteenths of meter
+     */
+    private double nodeNQ28_4(int nodeId) {
+        return arrays != null ? arrays.nodeN()[nodeId] * Q28_4_SCALE : nodes.nodeNQ28_4(nodeId);
+    }
+
+
+    /**
+     * Auxiliary (private) method returning the reverse adjacency of the graph, building it on first use
+     *
+     * @return reverse adjacency of the graph
+     */
+    private GraphInEdges inEdges() {
+        GraphInEdges result = inEdges;
+        if (result == null) inEdges = result = GraphInEdges.of(nodes, edges); // racing threads build equal copies
+        return result;
+    }
+
+
+    /**
+     * Auxiliary (private) method returning the index of the OpenStreetMap identities of the nodes,
+     * loading it on first use
+     *
+     * @return index of the OpenStreetMap identities
+     * @throws UncheckedIOException if the index could not be loaded
+     */
+    private OsmIdIndex osmIdIndex() {
+        OsmIdIndex result = osmIdIndex;
+        if (result == null) {
+            try {
+                osmIdIndex = result = OsmIdIndex.loadFrom(osmIdsDirectory, osmIds); // racing threads load equal ones
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * Auxiliary (private) method returning the spatial index of the edges, building it on first use
+     *
+     * @return spatial index of the edges
+     */
+    private GraphEdgeIndex edgeIndex() {
+        GraphEdgeIndex result = edgeIndex;
+        if (result == null) edgeIndex = result = GraphEdgeIndex.of(nodes, edges); // racing threads build equal copies
+        return result;
     }
 }
\ No newline at end of file
@@ -0,0 +1,99 @@
+package ch.epfl.javelo.data;
+
+/**
+ * Recorded class representing the fields of the nodes and edges of the JaVelo graph which routing reads the most,
+ * decoded into one array per field (see StorageMode.IN_HEAP): reading them is a mere array access,
+ * without the decoding of the files (Q28.4 values, packed bits) nor the bounds checks of their buffers.
+ * <p>
+ * Values are exactly those of the files: coordinates in Q28.4 are exact as doubles, lengths and elevation gains
+ * (unsigned 16 bits in UQ12.4) as floats.
+ *
+ * @param nodeE              East coordinate of each node
+ * @param nodeN              North coordinate of each node
+ * @param firstOutEdges      index, in outEdges, of the first edge leaving each node (plus one final entry)
+ * @param outEdges           identities of the edges leaving each node, grouped by node
+ * @param edgeTargets        identity of the node which each edge enters
+ * @param edgeInverted       whether each edge goes in the opposite direction of its OSM way
+ * @param edgeLengths        length of each edge, in meters
+ * @param edgeElevationGains positive elevation gain of each edge, in meters
+ * @param edgeAttributes     index of the attribute set of each edge (unsigned)
+ *
+ * @author Timofey Kreslo (310686)
+ * @author Wei-En Hsieh (341271)
+ */
+public record GraphArrays(double[] nodeE, double[] nodeN, int[] firstOutEdges, int[] outEdges, int[] edgeTargets,
+                          boolean[] edgeInverted, float[] edgeLengths, float[] edgeElevationGains,
+                          short[] edgeAttributes) {
+
+    /**
+     * Decodes the given nodes and edges into arrays, in time proportional to the number of nodes and edges
+     *
+     * @param nodes the graph nodes
+     * @param edges the graph edges
+     * @return decoded nodes and edges
+     */
+    public static GraphArrays of(NodeStore nodes, EdgeStore edges) {
+        int nodeCount = nodes.count();
+        int edgeCount = edges.count();
+
+        double[] nodeE = new double[nodeCount];
+        double[] nodeN = new double[nodeCount];
+        int[] firstOutEdges = new int[nodeCount + 1];
+        int[] outEdges = new int[edgeCount];
+        int slot = 0;
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+            nodeE[nodeId] = nodes.nodeE(nodeId);
+            nodeN[nodeId] = nodes.nodeN(nodeId);
+            firstOutEdges[nodeId] = slot;
+            for (int i = 0; i < nodes.outDegree(nodeId); i++) outEdges[slot++] = nodes.edgeId(nodeId, i);
+        }
+        firstOutEdges[nodeCount] = slot;
+
+        int[] edgeTargets = new int[edgeCount];
+        boolean[] edgeInverted = new boolean[edgeCount];
+        float[] edgeLengths = new float[edgeCount];
+        float[] edgeElevationGains = new float[edgeCount];
+        short[] edgeAttributes = new short[edgeCount];
+        for (int edgeId = 0; edgeId < edgeCount; edgeId++) {
+            edgeTargets[edgeId] = edges.targetNodeId(edgeId);
+            edgeInverted[edgeId] = edges.isInverted(edgeId);
+            edgeLengths[edgeId] = (float) edges.length(edgeId);
+            edgeElevationGains[edgeId] = (float) edges.elevationGain(edgeId);
+            edgeAttributes[edgeId] = (short) edges.attributesIndex(edgeId);
+        }
+        return new GraphArrays(nodeE, nodeN, firstOutEdges, outEdges, edgeTargets, edgeInverted,
+                edgeLengths, edgeElevationGains, edgeAttributes);
+    }
+
+    /**
+     * Returns the number of outgoing edges of the given node
+     *
+     * @param nodeId node's identity
+     * @return the number of edges exiting the given node
+     */
+    public int outDegree(int nodeId) {
+        return firstOutEdges[nodeId + 1] - firstOutEdges[nodeId];
+    }
+
+    /**
+     * Returns the identity of the edgeIndex-th edge that exits the given node
+     *
+     * @param nodeId    node's identity
+     * @param edgeIndex edge's index
+     * @return the identity of the edgeIndex-th edge that exits the given node
+     */
+    public int edgeId(int nodeId, int edgeIndex) {
+        assert 0 <= edgeIndex && edgeIndex < outDegree(nodeId);
+        return outEdges[firstOutEdges[nodeId] + edgeIndex];
+    }
+
+    /**
+     * Returns the index of the attribute set of the given edge
+     *
+     * @param edgeId edge's identity
+     * @return the index of the attribute set of the edge
+     */
+    public int attributesIndex(int edgeId) {
+        return Short.toUnsignedInt(edgeAttributes[edgeId]);
+    }
+}
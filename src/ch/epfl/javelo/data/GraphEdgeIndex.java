@@ -0,0 +1,162 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.projection.SwissBounds;
+
+import java.util.Arrays;
+
+/**
+ * Recorded class representing a spatial index of the edges of the JaVelo graph, over a grid of cells covering
+ * Switzerland like the sectors of the nodes (see GraphSectors), each sector being split into 4 x 4 cells, as
+ * there are several edges per node: every cell lists the edges whose bounding box intersects it, an edge
+ * (a straight segment between its nodes) thus being listed in every cell it may cross.
+ * It is not stored in the graph files, but built from them on first use.
+ *
+ * @param firstCellEdges index, in cellEdges, of the first edge of each cell (plus one final entry)
+ * @param cellEdges      identities of the edges of each cell, grouped by cell
+ * @param cellSources    identity of the node from which each edge of cellEdges leaves (stored next to it,
+ *                       as searches need both)
+ *
+ * @author Timofey Kreslo (310686)
+ * @author Wei-En Hsieh (341271)
+ */
+public record GraphEdgeIndex(int[] firstCellEdges, int[] cellEdges, int[] cellSources) {
+    private final static int CELLS_PER_LINE = 128 * 4;
+    private final static int CELL_COUNT = CELLS_PER_LINE * CELLS_PER_LINE;
+    private final static int CELL_BITS = 9; // bits of a column or row of cells
+    private final static double cellX = SwissBounds.WIDTH / CELLS_PER_LINE;  // Horizontal dimension of a cell
+    private final static double cellY = SwissBounds.HEIGHT / CELLS_PER_LINE; // Vertical dimension of a cell
+
+    /**
+     * Builds the spatial index of the edges of the graph made of the given nodes and edges,
+     * in time proportional to the number of edges (counting sort by cell)
+     *
+     * @param nodes the graph nodes
+     * @param edges the graph edges
+     * @return spatial index of the edges
+     */
+    public static GraphEdgeIndex of(NodeStore nodes, EdgeStore edges) {
+        int edgeCount = edges.count();
+        long[] boxes = new long[edgeCount]; // cells of the bounding box of every edge, CELL_BITS bits per bound
+        int[] sources = new int[edgeCount]; // -1 for the edges left by no node, which are not indexed
+        int[] firstCellEdges = new int[CELL_COUNT + 1];
+        Arrays.fill(sources, -1);
+
+        for (int nodeId = 0; nodeId < nodes.count(); nodeId++) {
+            for (int i = 0; i < nodes.outDegree(nodeId); i++) {
+                int edgeId = nodes.edgeId(nodeId, i);
+                int targetNodeId = edges.targetNodeId(edgeId);
+                double e1 = nodes.nodeE(nodeId), e2 = nodes.nodeE(targetNodeId);
+                double n1 = nodes.nodeN(nodeId), n2 = nodes.nodeN(targetNodeId);
+                sources[edgeId] = nodeId;
+                boxes[edgeId] = (long) column(Math.min(e1, e2)) << 3 * CELL_BITS
+                        | (long) column(Math.max(e1, e2)) << 2 * CELL_BITS
+                        | (long) row(Math.min(n1, n2)) << CELL_BITS
+                        | row(Math.max(n1, n2));
+            }
+        }
+
+        for (int edgeId = 0; edgeId < edgeCount; edgeId++) {
+            if (sources[edgeId] == -1) continue;
+            long box = boxes[edgeId];
+            for (int y = boxBound(box, 1); y <= boxBound(box, 0); y++) {
+                for (int x = boxBound(box, 3); x <= boxBound(box, 2); x++) firstCellEdges[cellId(x, y) + 1]++;
+            }
+        }
+        for (int cellId = 0; cellId < CELL_COUNT; cellId++) firstCellEdges[cellId + 1] += firstCellEdges[cellId];
+
+        int[] cellEdges = new int[firstCellEdges[CELL_COUNT]];
+        int[] cellSources = new int[cellEdges.length];
+        int[] nextSlot = firstCellEdges.clone();
+        for (int edgeId = 0; edgeId < edgeCount; edgeId++) {
+            if (sources[edgeId] == -1) continue;
+            long box = boxes[edgeId];
+            for (int y = boxBound(box, 1); y <= boxBound(box, 0); y++) {
+                for (int x = boxBound(box, 3); x <= boxBound(box, 2); x++) {
+                    int slot = nextSlot[cellId(x, y)]++;
+                    cellEdges[slot] = edgeId;
+                    cellSources[slot] = sources[edgeId];
+                }
+            }
+        }
+        return new GraphEdgeIndex(firstCellEdges, cellEdges, cellSources);
+    }
+
+    /**
+     * Returns the column of the cells containing the given East coordinate, clamped to the bounds of Switzerland
+     *
+     * @param e East coordinate
+     * @return column of the cells
+     */
+    static int column(double e) {
+        double clampedE = Math2.clamp(SwissBounds.MIN_E, e, SwissBounds.MAX_E);
+        return Math2.clamp(0, (int) Math.floor((clampedE - SwissBounds.MIN_E) / cellX), CELLS_PER_LINE - 1);
+    }
+
+    /**
+     * Returns the row of the cells containing the given North coordinate, clamped to the bounds of Switzerland
+     *
+     * @param n North coordinate
+     * @return row of the cells
+     */
+    static int row(double n) {
+        double clampedN = Math2.clamp(SwissBounds.MIN_N, n, SwissBounds.MAX_N);
+        return Math2.clamp(0, (int) Math.floor((clampedN - SwissBounds.MIN_N) / cellY), CELLS_PER_LINE - 1);
+    }
+
+    /**
+     * Returns the identity of the cell at the given column and row
+     *
+     * @param column column of the cell
+     * @param row    row of the cell
+     * @return identity of the cell
+     */
+    static int cellId(int column, int row) {
+        return row * CELLS_PER_LINE + column;
+    }
+
+    /**
+     * Returns the number of edges listed in the given cell
+     *
+     * @param cellId cell's identity
+     * @return number of edges of the cell
+     */
+    public int edgeCount(int cellId) {
+        return firstCellEdges[cellId + 1] - firstCellEdges[cellId];
+    }
+
+    /**
+     * Returns the identity of the edgeIndex-th edge listed in the given cell
+     *
+     * @param cellId    cell's identity
+     * @param edgeIndex edge's index
+     * @return the identity of the edgeIndex-th edge of the cell
+     */
+    public int edgeId(int cellId, int edgeIndex) {
+        assert 0 <= edgeIndex && edgeIndex < edgeCount(cellId);
+        return cellEdges[firstCellEdges[cellId] + edgeIndex];
+    }
+
+    /**
+     * Returns the identity of the node from which the edgeIndex-th edge listed in the given cell leaves
+     *
+     * @param cellId    cell's identity
+     * @param edgeIndex edge's index
+     * @return the identity of the source node of the edgeIndex-th edge of the cell
+     */
+    public int sourceNodeId(int cellId, int edgeIndex) {
+        assert 0 <= edgeIndex && edgeIndex < edgeCount(cellId);
+        return cellSources[firstCellEdges[cellId] + edgeIndex];
+    }
+
+    /**
+     * Auxiliary (private) method extracting a bound of a packed bounding box
+     *
+     * @param box   bounding box, packed by the constructor
+     * @param index index of the bound: 3 for the first column, 2 for the last one, 1 for the first row, 0 for the last
+     * @return the bound
+     */
+    private static int boxBound(long box, int index) {
+        return (int) (box >>> index * CELL_BITS) & ((1 << CELL_BITS) - 1);
+    }
+}
@@ -8,6 +8,7 @@ import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
 import java.nio.ShortBuffer;
 import java.util.List;
+import java.util.function.IntUnaryOperator;
 
 /**
  * Recorded class representing the array of all edges of the JaVelo graph
@@ -15,7 +16,7 @@ import java.util.List;
  * @author Timofey Kreslo (310686)
  * @author Wei-En Hsieh (341271)
  */
-public record GraphEdges(ByteBuffer edgesBuffer, IntBuffer profileIds, ShortBuffer elevations) {
+public record GraphEdges(ByteBuffer edgesBuffer, IntBuffer profileIds, ShortBuffer elevations) implements EdgeStore {
 
     /* Edge's attributes are distributed over 80 bits in total = 4 Bytes + 3 * 2 Bytes */
     private static final int EDGE_PITCH = Integer.BYTES + 3 * Short.BYTES;
@@ -24,6 +25,15 @@ public record GraphEdges(ByteBuffer edgesBuffer, IntBuffer profileIds, ShortBuff
     private static final short OFFSET_OSM_ATTRIBUTES = OFFSET_ELEVATION_GAIN + Short.BYTES;
     private static final List<ProfileType> PROFILES = List.of(ProfileType.values());
 
+    /**
+     * Counts the total number of edges inside the edges buffer
+     *
+     * @return the total number of edges
+     */
+    public int count() {
+        return edgesBuffer.capacity() / EDGE_PITCH;
+    }
+
     /**
      * Determines whether the edge with the given identity goes in the opposite direction of the OSM way,
      * from where it comes from.
@@ -86,16 +96,151 @@ public record GraphEdges(ByteBuffer edgesBuffer, IntBuffer profileIds, ShortBuff
      * @return the edge profile samples array with the given identity
      */
     public float[] profileSamples(int edgeId) {
-        int profileType = Bits.extractUnsigned(profileIds.get(edgeId), 30, 2);
+        return profileSamples(profileIds.get(edgeId),
+                Short.toUnsignedInt(edgesBuffer.getShort(edgeId * EDGE_PITCH + OFFSET_LENGTH)),
+                isInverted(edgeId), elevations::get);
+    }
+
+    /**
+     * Returns the array of the given identity edge's profile's samples as stored, in the order of the OSM way
+     *
+     * @param edgeId Edge's Identity
+     * @return the edge profile samples array, not reversed even if the edge is inverted
+     */
+    public float[] storedProfileSamples(int edgeId) {
+        return profileSamples(profileIds.get(edgeId),
+                Short.toUnsignedInt(edgesBuffer.getShort(edgeId * EDGE_PITCH + OFFSET_LENGTH)),
+                false, elevations::get);
+    }
+
+    /**
+     * Returns the type and the index of the first elevation of the given identity edge's profile
+     *
+     * @param edgeId Edge's Identity
+     * @return the profile identity of the edge, as in profile_ids.bin
+     */
+    public int profileId(int edgeId) {
+        return profileIds.get(edgeId);
+    }
+
+    /**
+     * Returns the elevation at the given position along the given edge, as the function built from its profile
+     * samples would (see Functions.sampled), but decoding only the two samples around the position
+     * (compressed samples being differences, only those up to them are read), without allocating anything
+     *
+     * @param edgeId   Edge's Identity
+     * @param position position along the edge, in meters
+     * @return the elevation at the position, or NaN if the edge has no profile
+     */
+    public double elevationAt(int edgeId, double position) {
+        return elevationAt(profileIds.get(edgeId),
+                Short.toUnsignedInt(edgesBuffer.getShort(edgeId * EDGE_PITCH + OFFSET_LENGTH)),
+                isInverted(edgeId), elevations::get, position);
+    }
+
+    /**
+     * Returns the elevation at the given position along an edge, from its profile, whatever the storage
+     * of the elevations (package-private, shared with ChunkedGraphEdges)
+     *
+     * @param profileId  type and index of the first elevation of the profile, as in profile_ids.bin
+     * @param length     length of the edge, as stored (in UQ12.4)
+     * @param inverted   whether the edge goes in the opposite direction of the OSM way
+     * @param elevations function returning the elevation (as stored, a short) at the given index
+     * @param position   position along the edge, in meters
+     * @return the elevation at the position, or NaN if the edge has no profile
+     */
+    static double elevationAt(int profileId, int length, boolean inverted, IntUnaryOperator elevations,
+                              double position) {
+        ProfileType type = PROFILES.get(Bits.extractUnsigned(profileId, 30, 2));
+        if (type == ProfileType.NONEXISTENT_PROFILE) return Double.NaN;
+        int sampleNb = 1 + Math2.ceilDiv(length, Q28_4.ofInt(2));
+        int firstIndex = Bits.extractUnsigned(profileId, 0, 30);
+        double xMax = Q28_4.asDouble(length);
+
+        // same cases and arithmetic as Functions.sampled, hence the same elevations
+        if (position <= 0 || sampleNb == 1) {
+            return sample(type, firstIndex, inverted ? sampleNb - 1 : 0, elevations);
+        } else if (position >= xMax) {
+            return sample(type, firstIndex, inverted ? 0 : sampleNb - 1, elevations);
+        }
+        double interval = xMax / (sampleNb - 1);
+        int i = Math.min((int) (position / interval), sampleNb - 2);
+        // samples i and i + 1 of the edge, stored in the opposite order if it is inverted
+        int first = inverted ? sampleNb - 2 - i : i;
+        float firstSample = sample(type, firstIndex, first, elevations);
+        float secondSample = type == ProfileType.UNCOMPRESSED_PROFILE
+                ? sample(type, firstIndex, first + 1, elevations)
+                : firstSample + difference(type, firstIndex, first + 1, elevations);
+        return inverted
+                ? Math2.interpolate(secondSample, firstSample, (position - interval * i) / interval)
+                : Math2.interpolate(firstSample, secondSample, (position - interval * i) / interval);
+    }
+
+    /**
+     * Auxiliary (private) method decoding the given sample of a profile (in the order of the OSM way),
+     * adding the differences up to it if compressed, in the order of profileSamples (hence the same floats)
+     *
+     * @param type       type of the profile (not NONEXISTENT_PROFILE)
+     * @param firstIndex index of the first elevation of the profile
+     * @param index      index of the sample
+     * @param elevations function returning the elevation (as stored, a short) at the given index
+     * @return the sample, in meters
+     */
+    private static float sample(ProfileType type, int firstIndex, int index, IntUnaryOperator elevations) {
+        if (type == ProfileType.UNCOMPRESSED_PROFILE) {
+            return Q28_4.asFloat(Short.toUnsignedInt((short) elevations.applyAsInt(firstIndex + index)));
+        }
+        // differences summed in sixteenths of meter, as in profileSamples (hence the same float)
+        int perShort = (type == ProfileType.COMPRESSED_PROFILE_Q0_4) ? 2 : 4;
+        int bits = Short.SIZE / perShort;
+        int elevation = Short.toUnsignedInt((short) elevations.applyAsInt(firstIndex));
+        for (int i = 1, k = 1; k <= index; ++i) {
+            int packed = elevations.applyAsInt(firstIndex + i) << Short.SIZE;
+            for (int j = 0; j < perShort && k <= index; ++j, ++k, packed <<= bits) {
+                elevation += packed >> Integer.SIZE - bits;
+            }
+        }
+        return Q28_4.asFloat(elevation);
+    }
+
+    /**
+     * Auxiliary (private) method decoding the difference between the given sample of a compressed profile
+     * and the previous one
+     *
+     * @param type       type of the profile (COMPRESSED_PROFILE_Q0_4 or COMPRESSED_PROFILE_Q4_4)
+     * @param firstIndex index of the first elevation of the profile
+     * @param index      index of the sample (at least 1)
+     * @param elevations function returning the elevation (as stored, a short) at the given index
+     * @return the difference, in meters
+     */
+    private static float difference(ProfileType type, int firstIndex, int index, IntUnaryOperator elevations) {
+        int perShort = (type == ProfileType.COMPRESSED_PROFILE_Q0_4) ? 2 : 4;
+        int bits = Short.SIZE / perShort;
+        int i = (index + perShort - 1) / perShort; // index of the short, after the first sample
+        int j = perShort * i - index;              // index of the difference in the short, from its end
+        return Q28_4.asFloat(Bits.extractSigned(elevations.applyAsInt(firstIndex + i), bits * j, bits));
+    }
+
+    /**
+     * Decodes the samples of a profile, whatever the storage of the elevations
+     * (package-private, shared with ChunkedGraphEdges)
+     *
+     * @param profileId  type and index of the first elevation of the profile, as in profile_ids.bin
+     * @param length     length of the edge, as stored (in UQ12.4)
+     * @param inverted   whether the edge goes in the opposite direction of the OSM way
+     * @param elevations function returning the elevation (as stored, a short) at the given index
+     * @return the profile samples array
+     */
+    static float[] profileSamples(int profileId, int length, boolean inverted, IntUnaryOperator elevations) {
+        int profileType = Bits.extractUnsigned(profileId, 30, 2);
         ProfileType type = PROFILES.get(profileType);
-        int sampleNb = computeSampleNb(edgeId);
-        int firstIndex = Bits.extractUnsigned(profileIds.get(edgeId), 0, 30);
-        float currentAltitude;
+        int sampleNb = 1 + Math2.ceilDiv(length, Q28_4.ofInt(2)); // the formula to compute the sample number
+        int firstIndex = Bits.extractUnsigned(profileId, 0, 30);
         float[] samples = new float[sampleNb];
 
         int altitudeDifference = (type == ProfileType.COMPRESSED_PROFILE_Q0_4) ? 2 : 4;
 
-        int extractSignedLength = (type == ProfileType.COMPRESSED_PROFILE_Q0_4) ? Byte.SIZE : Byte.SIZE / 2;
+        int extractSignedLength = Short.SIZE / altitudeDifference;
 
         switch (type) {
             case NONEXISTENT_PROFILE:
@@ -103,47 +248,38 @@ public record GraphEdges(ByteBuffer edgesBuffer, IntBuffer profileIds, ShortBuff
 
             case UNCOMPRESSED_PROFILE:
                 for (int i = 0; i < sampleNb; ++i) {
-                    samples[i] = Q28_4.asFloat(Short.toUnsignedInt(elevations.get(firstIndex + i)));
+                    samples[i] = Q28_4.asFloat(Short.toUnsignedInt((short) elevations.applyAsInt(firstIndex + i)));
                 }
                 break;
 
             case COMPRESSED_PROFILE_Q0_4, COMPRESSED_PROFILE_Q4_4:
-                samples[0] = Q28_4.asFloat(Short.toUnsignedInt(elevations.get(firstIndex)));
-                currentAltitude = samples[0];
-                for (int i = 1; i <= Math.ceil((sampleNb - 1) / (double) altitudeDifference); ++i) {
-                    for (int j = altitudeDifference - 1; j >= 0; --j) {
-                        if ((altitudeDifference * i - j) < sampleNb) {
-                            currentAltitude += Q28_4.asFloat(Bits.extractSigned(elevations.get(firstIndex + i),
-                                    extractSignedLength * j, extractSignedLength));
-                            samples[altitudeDifference * i - j] = currentAltitude;
-                        }
+                // Differences are summed in sixteenths of meter, as integers, and every sample converted once.
+                // Summing them as floats gives the same samples: elevations and differences being multiples
+                // of 1/16 and every sum far below 2^20 m (a 24-bit significand), no float sum is ever rounded.
+                int altitude = Short.toUnsignedInt((short) elevations.applyAsInt(firstIndex));
+                samples[0] = Q28_4.asFloat(altitude);
+                for (int i = 1, k = 1; k < sampleNb; ++i) {
+                    // each short read once, its differences taken from its most significant bits
+                    int packed = elevations.applyAsInt(firstIndex + i) << Short.SIZE;
+                    for (int j = 0; j < altitudeDifference && k < sampleNb; ++j, ++k, packed <<= extractSignedLength) {
+                        altitude += packed >> Integer.SIZE - extractSignedLength;
+                        samples[k] = Q28_4.asFloat(altitude);
                     }
                 }
                 break;
         }
-        if (isInverted(edgeId)) flip(samples);
+        if (inverted) flip(samples);
 
         return samples;
     }
 
-    /**
-     * Computes the number of samples of the edge profile according to its length
-     *
-     * @param edgeId Edge's Identity
-     * @return the number of samples
-     */
-    private int computeSampleNb(int edgeId) {
-        int l = Short.toUnsignedInt(edgesBuffer.getShort(edgeId * EDGE_PITCH + OFFSET_LENGTH));
-        return 1 + Math2.ceilDiv(l, Q28_4.ofInt(2)); // the formula to compute the sample number
-    }
-
     /**
      * Auxiliary (private) method that flips the order of elements inside given array of profile types,
      * if the edge is inverted.
      *
      * @param profileType the array before flipping the order of elements
      */
-    private void flip(float[] profileType) {
+    private static void flip(float[] profileType) {
         int tabInverted = profileType.length;
         for (int i = 0; i < tabInverted / 2; ++i) {
             float temp = profileType[i];
@@ -0,0 +1,89 @@
+package ch.epfl.javelo.data;
+
+import java.util.Arrays;
+
+/**
+ * Recorded class representing the reverse adjacency of the JaVelo graph:
+ * the edges entering each node, and the node from which each edge leaves.
+ * It is not stored in the graph files, but built from them when the graph is loaded.
+ * Only the edges leaving a node are part of it: an edge left by no node (as in partially filled graphs)
+ * enters no node, and has no source node.
+ *
+ * @param firstInEdges index, in inEdges, of the first edge entering each node (plus one final entry)
+ * @param inEdges      identities of the edges entering each node, grouped by target node
+ * @param edgeSources  identity of the node from which each edge leaves, -1 if none
+ *
+ * @author Timofey Kreslo (310686)
+ * @author Wei-En Hsieh (341271)
+ */
+public record GraphInEdges(int[] firstInEdges, int[] inEdges, int[] edgeSources) {
+
+    /**
+     * Builds the reverse adjacency of the graph made of the given nodes and edges,
+     * in time proportional to the number of nodes and edges (counting sort by target node).
+     *
+     * @param nodes the graph nodes
+     * @param edges the graph edges
+     * @return reverse adjacency of the graph
+     */
+    public static GraphInEdges of(NodeStore nodes, EdgeStore edges) {
+        int nodeCount = nodes.count();
+        int edgeCount = edges.count();
+
+        int[] firstInEdges = new int[nodeCount + 1];
+        int[] edgeSources = new int[edgeCount];
+        Arrays.fill(edgeSources, -1);
+
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+            for (int i = 0; i < nodes.outDegree(nodeId); i++) {
+                int edgeId = nodes.edgeId(nodeId, i);
+                edgeSources[edgeId] = nodeId;
+                firstInEdges[edges.targetNodeId(edgeId) + 1]++;
+            }
+        }
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) firstInEdges[nodeId + 1] += firstInEdges[nodeId];
+
+        int[] inEdges = new int[firstInEdges[nodeCount]];
+        int[] nextSlot = new int[nodeCount];
+        System.arraycopy(firstInEdges, 0, nextSlot, 0, nodeCount);
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+            for (int i = 0; i < nodes.outDegree(nodeId); i++) {
+                int edgeId = nodes.edgeId(nodeId, i);
+                inEdges[nextSlot[edges.targetNodeId(edgeId)]++] = edgeId;
+            }
+        }
+        return new GraphInEdges(firstInEdges, inEdges, edgeSources);
+    }
+
+    /**
+     * Returns the number of edges entering the given node
+     *
+     * @param nodeId node's identity
+     * @return number of edges entering the node
+     */
+    public int inDegree(int nodeId) {
+        return firstInEdges[nodeId + 1] - firstInEdges[nodeId];
+    }
+
+    /**
+     * Returns the identity of the edgeIndex-th edge entering the given node
+     *
+     * @param nodeId    node's identity
+     * @param edgeIndex edge's index
+     * @return the identity of the edgeIndex-th edge entering the node
+     */
+    public int edgeId(int nodeId, int edgeIndex) {
+        assert 0 <= edgeIndex && edgeIndex < inDegree(nodeId);
+        return inEdges[firstInEdges[nodeId] + edgeIndex];
+    }
+
+    /**
+     * Returns the identity of the node from which the given edge leaves
+     *
+     * @param edgeId edge's identity
+     * @return identity of the source node of the edge, -1 if no node leaves from it
+     */
+    public int sourceNodeId(int edgeId) {
+        return edgeSources[edgeId];
+    }
+}
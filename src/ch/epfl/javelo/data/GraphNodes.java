@@ -11,7 +11,7 @@ import java.nio.IntBuffer;
  * @author Timofey Kreslo (310686)
  * @author Wei-En Hsieh (341271)
  */
-public record GraphNodes(IntBuffer buffer) {
+public record GraphNodes(IntBuffer buffer) implements NodeStore {
 
     /* Node's attributes are distributed over 96 bits in total = 12 Bytes = 3 Integers */
     private static final int OFFSET_E = 0;
@@ -46,6 +46,22 @@ public record GraphNodes(IntBuffer buffer) {
      */
     public double nodeN(int nodeId) { return Q28_4.asDouble(buffer.get(nodeId * NODE_INTS + OFFSET_N)); }
 
+    /**
+     * Returns the East coordinate of the given node of the graph, as stored (in Q28.4, i.e. sixteenths of meter)
+     *
+     * @param nodeId node's identity
+     * @return the E (East) coordinate of the given node's identity, in Q28.4
+     */
+    public int nodeEQ28_4(int nodeId) { return buffer.get(nodeId * NODE_INTS + OFFSET_E); }
+
+    /**
+     * Returns the North coordinate of the given node of the graph, as stored (in Q28.4, i.e. sixteenths of meter)
+     *
+     * @param nodeId node's identity
+     * @return the N (North) coordinate of the given node's identity, in Q28.4
+     */
+    public int nodeNQ28_4(int nodeId) { return buffer.get(nodeId * NODE_INTS + OFFSET_N); }
+
     /**
      * Returns the number of outgoing edges of the given node of the graph
      *
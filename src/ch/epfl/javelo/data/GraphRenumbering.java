@@ -0,0 +1,317 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.projection.SwissBounds;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Offline tool renumbering the nodes of the JaVelo graph along a Hilbert curve, so that nodes close to each
+ * other on the map are also close in the files, and so are the edges leaving them: a search reads fewer pages
+ * of the mapped files (hence faults on fewer pages when they are not in the page cache yet) and misses
+ * the processor caches less often.
+ * <p>
+ * Nodes stay grouped by sector, as sectors.bin requires: sectors are ordered along a Hilbert curve over the
+ * 128 x 128 sectors, and the nodes of each sector along a Hilbert curve over 128 x 128 cells of the sector
+ * (nodes of the same cell keeping their order). Edges are renumbered in the order of their source nodes.
+ * The files nodes.bin, edges.bin, profile_ids.bin, sectors.bin and nodes_osmid.bin (if any) are rewritten
+ * consistently, the others copied; files computed from the graph (landmarks, contraction hierarchy, index of
+ * the OpenStreetMap identities, components) depend on the identities of its nodes, and must be computed again.
+ *
+ * @author Timofey Kreslo (310686)
+ * @author Wei-En Hsieh (341271)
+ */
+public final class GraphRenumbering {
+    private final static int SECTOR_ORDER = 7; // 2^7 sectors per line
+    private final static int CELL_ORDER = 7;   // 2^7 cells per line of a sector
+    private final static int SECTORS_PER_LINE = 1 << SECTOR_ORDER;
+    private final static int SECTOR_COUNT = SECTORS_PER_LINE * SECTORS_PER_LINE;
+    private final static double SECTOR_WIDTH = SwissBounds.WIDTH / SECTORS_PER_LINE;
+    private final static double SECTOR_HEIGHT = SwissBounds.HEIGHT / SECTORS_PER_LINE;
+    private final static int SECTOR_PITCH = Integer.BYTES + Short.BYTES;
+    private final static int ID_BITS = 34; // bits of the node identity, after its position on the curve
+
+    private final static int NODE_BYTES = 3 * Integer.BYTES;
+    private final static int PAGE_SIZE = 4096; // in bytes, most common size of the pages of memory
+    private final static List<String> COPIED_FILES = List.of("attributes.bin", "elevations.bin");
+
+    /**
+     * Default (not instantiable) GraphRenumbering constructor
+     */
+    private GraphRenumbering() {}
+
+    /**
+     * Recorded class representing the locality of the numbering of a graph
+     *
+     * @param meanIdGap             mean difference between the identities of the source and target nodes of edges
+     * @param samePageRatio         proportion of edges whose source and target nodes lie on the same page
+     *                              (of 4 KB) of nodes.bin
+     * @param meanSuccessorDistance mean distance between nodes of consecutive identities, in meters
+     */
+    public record Locality(double meanIdGap, double samePageRatio, double meanSuccessorDistance) {}
+
+    /**
+     * Returns the locality of the numbering of the given graph
+     *
+     * @param graph the graph
+     * @return locality of its numbering
+     */
+    public static Locality locality(Graph graph) {
+        long edgeCount = 0, samePageCount = 0;
+        double idGaps = 0, successorDistances = 0;
+        for (int nodeId = 0; nodeId < graph.nodeCount(); nodeId++) {
+            for (int i = 0; i < graph.nodeOutDegree(nodeId); i++) {
+                int targetNodeId = graph.edgeTargetNodeId(graph.nodeOutEdgeId(nodeId, i));
+                idGaps += Math.abs(targetNodeId - nodeId);
+                if ((long) nodeId * NODE_BYTES / PAGE_SIZE == (long) targetNodeId * NODE_BYTES / PAGE_SIZE) {
+                    samePageCount++;
+                }
+                edgeCount++;
+            }
+            if (nodeId > 0) successorDistances += graph.nodesDistance(nodeId - 1, nodeId);
+        }
+        return new Locality(idGaps / Math.max(1, edgeCount), (double) samePageCount / Math.max(1, edgeCount),
+                successorDistances / Math.max(1, graph.nodeCount() - 1));
+    }
+
+    /**
+     * Returns the new identity of every node of the graph of the given directory, once renumbered
+     *
+     * @param basePath path to the directory of the graph
+     * @return new identity of every node, indexed by its current identity
+     * @throws IOException if the files could not be read
+     */
+    public static int[] newNodeIds(Path basePath) throws IOException {
+        try (MappedFile nodesFile = MappedFile.map(basePath.resolve("nodes.bin"))) {
+            return newNodeIds(new ChunkedGraphNodes(nodesFile), new GraphSectors(mapFile(basePath, "sectors.bin")));
+        }
+    }
+
+    /**
+     * Returns the new identity of every node of the given nodes, ordering them by sector along a Hilbert curve,
+     * then along a Hilbert curve within their sector
+     *
+     * @param nodes   the graph nodes
+     * @param sectors the graph sectors
+     * @return new identity of every node, indexed by its current identity
+     */
+    static int[] newNodeIds(NodeStore nodes, GraphSectors sectors) {
+        int nodeCount = nodes.count();
+        long[] keys = new long[nodeCount];
+        Arrays.fill(keys, (long) SECTOR_COUNT << (2 * CELL_ORDER + ID_BITS)); // nodes of no sector, at the end
+        for (int sectorId = 0; sectorId < SECTOR_COUNT; sectorId++) {
+            int column = sectorId % SECTORS_PER_LINE, row = sectorId / SECTORS_PER_LINE;
+            double minE = SwissBounds.MIN_E + column * SECTOR_WIDTH, minN = SwissBounds.MIN_N + row * SECTOR_HEIGHT;
+            long sectorIndex = hilbertIndex(SECTOR_ORDER, column, row);
+            for (int nodeId = sectors.startNodeId(sectorId); nodeId < sectors.endNodeId(sectorId); nodeId++) {
+                int x = cell((nodes.nodeE(nodeId) - minE) / SECTOR_WIDTH);
+                int y = cell((nodes.nodeN(nodeId) - minN) / SECTOR_HEIGHT);
+                keys[nodeId] = (sectorIndex << 2 * CELL_ORDER | hilbertIndex(CELL_ORDER, x, y)) << ID_BITS;
+            }
+        }
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) keys[nodeId] |= nodeId;
+        Arrays.sort(keys);
+
+        int[] newNodeIds = new int[nodeCount];
+        long idMask = (1L << ID_BITS) - 1;
+        for (int newNodeId = 0; newNodeId < nodeCount; newNodeId++) {
+            newNodeIds[(int) (keys[newNodeId] & idMask)] = newNodeId;
+        }
+        return newNodeIds;
+    }
+
+    /**
+     * Returns the index of the given cell along the Hilbert curve covering a square of 2^order x 2^order cells
+     *
+     * @param order base 2 logarithm of the number of cells per line of the square
+     * @param x     column of the cell
+     * @param y     row of the cell
+     * @return index of the cell along the curve, between 0 and 4^order - 1
+     */
+    static long hilbertIndex(int order, int x, int y) {
+        int size = 1 << order;
+        long index = 0;
+        for (int s = size >> 1; s > 0; s >>= 1) {
+            int rx = (x & s) != 0 ? 1 : 0;
+            int ry = (y & s) != 0 ? 1 : 0;
+            index += (long) s * s * ((3 * rx) ^ ry);
+            // rotation of the quadrant, so that the curve enters and leaves it through its neighbours
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = size - 1 - x;
+                    y = size - 1 - y;
+                }
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Renumbers the graph of the given directory along a Hilbert curve, into the other given directory
+     * (created if needed)
+     *
+     * @param fromPath path to the directory of the graph
+     * @param toPath   path to the directory of the renumbered graph
+     * @throws IOException if the files could not be read or written
+     */
+    public static void renumber(Path fromPath, Path toPath) throws IOException {
+        Files.createDirectories(toPath);
+        try (MappedFile nodesFile = MappedFile.map(fromPath.resolve("nodes.bin"));
+             MappedFile edgesFile = MappedFile.map(fromPath.resolve("edges.bin"));
+             MappedFile profileIdsFile = MappedFile.map(fromPath.resolve("profile_ids.bin"));
+             MappedFile elevationsFile = MappedFile.map(fromPath.resolve("elevations.bin"))) {
+            NodeStore nodes = new ChunkedGraphNodes(nodesFile);
+            EdgeStore edges = new ChunkedGraphEdges(edgesFile, profileIdsFile, elevationsFile);
+            GraphSectors sectors = new GraphSectors(mapFile(fromPath, "sectors.bin"));
+            int nodeCount = nodes.count();
+            int[] newNodeIds = newNodeIds(nodes, sectors);
+            int[] oldNodeIds = new int[nodeCount];
+            for (int nodeId = 0; nodeId < nodeCount; nodeId++) oldNodeIds[newNodeIds[nodeId]] = nodeId;
+
+            writeNodesAndEdges(toPath, nodes, edges, oldNodeIds, newNodeIds);
+            writeSectors(toPath, sectors, newNodeIds);
+            Path osmIdsPath = fromPath.resolve("nodes_osmid.bin");
+            if (Files.exists(osmIdsPath)) {
+                try (MappedFile osmIdsFile = MappedFile.map(osmIdsPath);
+                     DataOutputStream s = output(toPath, "nodes_osmid.bin")) {
+                    for (int oldNodeId : oldNodeIds) s.writeLong(osmIdsFile.getLong((long) oldNodeId * Long.BYTES));
+                }
+            }
+        }
+        for (String file : COPIED_FILES) {
+            Files.copy(fromPath.resolve(file), toPath.resolve(file), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Auxiliary (private) method writing the files nodes.bin, edges.bin and profile_ids.bin of the renumbered graph,
+     * the edges of every node following those of the previous one (edges leaving no node being dropped)
+     *
+     * @param toPath     path to the directory of the renumbered graph
+     * @param nodes      the graph nodes
+     * @param edges      the graph edges
+     * @param oldNodeIds current identity of every node, indexed by its new identity
+     * @param newNodeIds new identity of every node, indexed by its current identity
+     * @throws IOException if the files could not be written
+     */
+    private static void writeNodesAndEdges(Path toPath, NodeStore nodes, EdgeStore edges,
+                                           int[] oldNodeIds, int[] newNodeIds) throws IOException {
+        try (DataOutputStream nodesStream = output(toPath, "nodes.bin");
+             DataOutputStream edgesStream = output(toPath, "edges.bin");
+             DataOutputStream profileIdsStream = output(toPath, "profile_ids.bin")) {
+            int edgeCount = 0;
+            for (int oldNodeId : oldNodeIds) {
+                int outDegree = nodes.outDegree(oldNodeId);
+                nodesStream.writeInt(nodes.nodeEQ28_4(oldNodeId));
+                nodesStream.writeInt(nodes.nodeNQ28_4(oldNodeId));
+                nodesStream.writeInt(outDegree << 28 | edgeCount);
+                for (int i = 0; i < outDegree; i++) {
+                    int edgeId = nodes.edgeId(oldNodeId, i);
+                    int target = newNodeIds[edges.targetNodeId(edgeId)];
+                    edgesStream.writeInt(edges.isInverted(edgeId) ? ~target : target);
+                    edgesStream.writeShort((int) Math.scalb(edges.length(edgeId), 4));
+                    edgesStream.writeShort((int) Math.scalb(edges.elevationGain(edgeId), 4));
+                    edgesStream.writeShort(edges.attributesIndex(edgeId));
+                    profileIdsStream.writeInt(edges.profileId(edgeId));
+                }
+                edgeCount += outDegree;
+            }
+        }
+    }
+
+    /**
+     * Auxiliary (private) method writing the file sectors.bin of the renumbered graph: every sector keeps
+     * its nodes, which are still consecutive
+     *
+     * @param toPath     path to the directory of the renumbered graph
+     * @param sectors    the graph sectors
+     * @param newNodeIds new identity of every node, indexed by its current identity
+     * @throws IOException if the file could not be written
+     */
+    private static void writeSectors(Path toPath, GraphSectors sectors, int[] newNodeIds) throws IOException {
+        try (DataOutputStream s = output(toPath, "sectors.bin")) {
+            for (int sectorId = 0; sectorId < SECTOR_COUNT; sectorId++) {
+                int startNodeId = sectors.startNodeId(sectorId), endNodeId = sectors.endNodeId(sectorId);
+                int newStartNodeId = 0;
+                if (endNodeId > startNodeId) {
+                    newStartNodeId = Integer.MAX_VALUE;
+                    for (int nodeId = startNodeId; nodeId < endNodeId; nodeId++) {
+                        newStartNodeId = Math.min(newStartNodeId, newNodeIds[nodeId]);
+                    }
+                }
+                s.writeInt(newStartNodeId);
+                s.writeShort(endNodeId - startNodeId);
+            }
+        }
+    }
+
+    /**
+     * Auxiliary (private) method returning the cell containing the given position within a sector
+     *
+     * @param position position within the sector, as a fraction of its size
+     * @return cell of the position, between 0 and 2^CELL_ORDER - 1
+     */
+    private static int cell(double position) {
+        return Math2.clamp(0, (int) (position * (1 << CELL_ORDER)), (1 << CELL_ORDER) - 1);
+    }
+
+    /**
+     * Auxiliary (private) method opening a buffered stream writing to the given file
+     *
+     * @param basePath path to the directory of the file
+     * @param fileName name of the file
+     * @return stream writing to the file
+     * @throws IOException if the file could not be opened
+     */
+    private static DataOutputStream output(Path basePath, String fileName) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(basePath.resolve(fileName))));
+    }
+
+    /**
+     * Auxiliary (private) method mapping the given file into memory
+     *
+     * @param basePath path to the directory of the file
+     * @param fileName name of the file
+     * @return buffer containing the file
+     * @throws IOException if the file does not exist
+     */
+    private static ByteBuffer mapFile(Path basePath, String fileName) throws IOException {
+        try (FileChannel channel = FileChannel.open(basePath.resolve(fileName))) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Renumbers the graph of the given directory into the other given directory,
+     * and prints the locality of both numberings
+     *
+     * @param args directory of the graph, then of the renumbered graph
+     * @throws IOException if the files could not be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        Path fromPath = Path.of(args.length > 0 ? args[0] : "lausanne");
+        Path toPath = Path.of(args.length > 1 ? args[1] : fromPath + "-hilbert");
+
+        long t0 = System.nanoTime();
+        renumber(fromPath, toPath);
+        System.out.printf("graphe renuméroté en %d ms%n", (System.nanoTime() - t0) / 1_000_000);
+        for (Path path : List.of(fromPath, toPath)) {
+            Locality locality = locality(Graph.loadFrom(path));
+            System.out.printf("%s : écart moyen des identités %.0f, arêtes sur une même page %.1f %%, "
+                            + "distance moyenne entre noeuds consécutifs %.0f m%n",
+                    path, locality.meanIdGap(), 100 * locality.samePageRatio(), locality.meanSuccessorDistance());
+        }
+    }
+}
@@ -35,40 +35,72 @@ public record GraphSectors(ByteBuffer buffer) {
 
         ArrayList<Sector> sectorsInZone = new ArrayList<>();
 
-        /*
-          Bounds of the rectangle centered on the given point,
-          set to the bounds of Switzerland (maximum rectangle's dimensions)
-         */
-        double minE = Math2.clamp(SwissBounds.MIN_E, center.e() - distance, SwissBounds.MAX_E);
-        double maxE = Math2.clamp(SwissBounds.MIN_E, center.e() + distance, SwissBounds.MAX_E);
-        double minN = Math2.clamp(SwissBounds.MIN_N, center.n() - distance, SwissBounds.MAX_N);
-        double maxN = Math2.clamp(SwissBounds.MIN_N, center.n() + distance, SwissBounds.MAX_N);
-
-        /*
-          Bounds of the given GraphSector buffer,
-          set between 0 and 127 (number of sectors per line/column -1, for reaching ID)
-         */
-        // distances in meters
-        int xMin = Math2.clamp(0, (int) Math.floor((minE - SwissBounds.MIN_E) / sectorX), OFFSET_MAX_SECTORS_PER_LINE);
-        int xMax = Math2.clamp(0, (int) Math.floor((maxE - SwissBounds.MIN_E) / sectorX), OFFSET_MAX_SECTORS_PER_LINE);
-        int yMin = Math2.clamp(0, (int) Math.floor((minN - SwissBounds.MIN_N) / sectorY), OFFSET_MAX_SECTORS_PER_LINE);
-        int yMax = Math2.clamp(0, (int) Math.floor((maxN - SwissBounds.MIN_N) / sectorY), OFFSET_MAX_SECTORS_PER_LINE);
+        int xMin = column(center.e() - distance);
+        int xMax = column(center.e() + distance);
+        int yMin = row(center.n() - distance);
+        int yMax = row(center.n() + distance);
 
         for (int y = yMin; y <= yMax; y++) {
             for (int x = xMin; x <= xMax; x++) {
+                int sectorId = sectorId(x, y);
+                sectorsInZone.add(new Sector(startNodeId(sectorId), endNodeId(sectorId)));
+            }
+        }
+        return sectorsInZone;
+    }
+
+    /**
+     * Returns the column of the sectors containing the given East coordinate, clamped to the bounds of Switzerland
+     * (package-private, for searches which must not allocate the list of the sectors)
+     *
+     * @param e East coordinate
+     * @return column of the sectors, between 0 and 127
+     */
+    static int column(double e) {
+        double clampedE = Math2.clamp(SwissBounds.MIN_E, e, SwissBounds.MAX_E);
+        return Math2.clamp(0, (int) Math.floor((clampedE - SwissBounds.MIN_E) / sectorX), OFFSET_MAX_SECTORS_PER_LINE);
+    }
 
-                int sectorId = y * OFFSET_SECTORS_PER_LINE + x;
+    /**
+     * Returns the row of the sectors containing the given North coordinate, clamped to the bounds of Switzerland
+     *
+     * @param n North coordinate
+     * @return row of the sectors, between 0 and 127
+     */
+    static int row(double n) {
+        double clampedN = Math2.clamp(SwissBounds.MIN_N, n, SwissBounds.MAX_N);
+        return Math2.clamp(0, (int) Math.floor((clampedN - SwissBounds.MIN_N) / sectorY), OFFSET_MAX_SECTORS_PER_LINE);
+    }
 
-                int firstNodeId = buffer.getInt(sectorId * SECTOR_PITCH);
-                int numberNodes = Short.toUnsignedInt(buffer.getShort(sectorId * SECTOR_PITCH + Integer.BYTES));
-                int lastNodeId = firstNodeId + numberNodes;
+    /**
+     * Returns the identity of the sector at the given column and row
+     *
+     * @param column column of the sector
+     * @param row    row of the sector
+     * @return identity of the sector
+     */
+    static int sectorId(int column, int row) {
+        return row * OFFSET_SECTORS_PER_LINE + column;
+    }
 
-                Sector sector = new Sector(firstNodeId, lastNodeId);
+    /**
+     * Returns the identity of the first node of the given sector
+     *
+     * @param sectorId identity of the sector
+     * @return identity of the first node of the sector
+     */
+    int startNodeId(int sectorId) {
+        return buffer.getInt(sectorId * SECTOR_PITCH);
+    }
 
-                sectorsInZone.add(sector);
-            }
-        }
-        return sectorsInZone;
+    /**
+     * Returns the identity of the node following the last node of the given sector
+     *
+     * @param sectorId identity of the sector
+     * @return identity of the node following the last node of the sector
+     */
+    int endNodeId(int sectorId) {
+        return startNodeId(sectorId) + Short.toUnsignedInt(buffer.getShort(sectorId * SECTOR_PITCH + Integer.BYTES));
     }
 
     /**
@@ -0,0 +1,166 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Preconditions;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+/**
+ * File mapped into memory, of any size, read at long offsets (in bytes, big-endian like the JaVelo files).
+ * <p>
+ * A MappedByteBuffer cannot exceed 2 GB, so the file is mapped as consecutive chunks of 1 GB, each chunk
+ * overlapping the next one by a few bytes: a value starting in a chunk is thus always read from that chunk alone,
+ * whatever its alignment. Nothing is copied, the chunks being read directly from the page cache.
+ * <p>
+ * Closing the file unmaps its chunks at once, rather than whenever their buffers are garbage collected.
+ * Reading the file once closed throws an IllegalStateException; it must however not be closed while other threads
+ * are still reading it (the memory being then unmapped under them).
+ *
+ * @author Timofey Kreslo (310686)
+ * @author Wei-En Hsieh (341271)
+ */
+public final class MappedFile implements AutoCloseable {
+    private final static int CHUNK_BITS = 30;  // chunks of 1 GB
+    private final static int OVERLAP = Long.BYTES; // bytes of the largest value that can be read
+
+    private final MappedByteBuffer[] chunks;
+    private final int chunkBits;
+    private final long chunkMask;
+    private final long size;
+    private volatile boolean closed;
+
+    /**
+     * MappedFile constructor (private, files are obtained from map)
+     *
+     * @param chunks    mapped chunks of the file
+     * @param chunkBits base 2 logarithm of the size of the chunks (overlap excluded)
+     * @param size      size of the file, in bytes
+     */
+    private MappedFile(MappedByteBuffer[] chunks, int chunkBits, long size) {
+        this.chunks = chunks;
+        this.chunkBits = chunkBits;
+        this.chunkMask = (1L << chunkBits) - 1;
+        this.size = size;
+    }
+
+    /**
+     * Maps the given file into memory, read-only
+     *
+     * @param path path to the file
+     * @return the mapped file
+     * @throws IOException if the file does not exist or cannot be mapped
+     */
+    public static MappedFile map(Path path) throws IOException {
+        return map(path, CHUNK_BITS);
+    }
+
+    /**
+     * Maps the given file into memory, read-only, in chunks of the given size
+     * (package-private, so that tests can cross chunks without gigabytes of data)
+     *
+     * @param path      path to the file
+     * @param chunkBits base 2 logarithm of the size of the chunks, between 4 and 30
+     * @return the mapped file
+     * @throws IOException if the file does not exist or cannot be mapped
+     */
+    static MappedFile map(Path path, int chunkBits) throws IOException {
+        Preconditions.checkArgument(4 <= chunkBits && chunkBits <= CHUNK_BITS);
+        try (FileChannel channel = FileChannel.open(path)) {
+            long size = channel.size();
+            long chunkSize = 1L << chunkBits;
+            MappedByteBuffer[] chunks = new MappedByteBuffer[(int) Math.max(1, (size + chunkSize - 1) >> chunkBits)];
+            for (int i = 0; i < chunks.length; i++) {
+                long start = i * chunkSize;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                        Math.min(chunkSize + OVERLAP, size - start));
+            }
+            return new MappedFile(chunks, chunkBits, size);
+        }
+    }
+
+    /**
+     * Returns the size of the file
+     *
+     * @return size of the file, in bytes
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns the int starting at the given offset of the file
+     *
+     * @param offset offset of the int, in bytes
+     * @return the int at the given offset
+     * @throws IllegalStateException if the file is closed
+     */
+    public int getInt(long offset) {
+        checkOpen();
+        return chunks[(int) (offset >>> chunkBits)].getInt((int) (offset & chunkMask));
+    }
+
+    /**
+     * Returns the short starting at the given offset of the file
+     *
+     * @param offset offset of the short, in bytes
+     * @return the short at the given offset
+     * @throws IllegalStateException if the file is closed
+     */
+    public short getShort(long offset) {
+        checkOpen();
+        return chunks[(int) (offset >>> chunkBits)].getShort((int) (offset & chunkMask));
+    }
+
+    /**
+     * Returns the long starting at the given offset of the file
+     *
+     * @param offset offset of the long, in bytes
+     * @return the long at the given offset
+     * @throws IllegalStateException if the file is closed
+     */
+    public long getLong(long offset) {
+        checkOpen();
+        return chunks[(int) (offset >>> chunkBits)].getLong((int) (offset & chunkMask));
+    }
+
+    /**
+     * Unmaps the file (only once, later calls having no effect). If the JVM gives no way to unmap it,
+     * the file is unmapped when its chunks are garbage collected, as any MappedByteBuffer.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        for (MappedByteBuffer chunk : chunks) unmap(chunk);
+    }
+
+    /**
+     * Auxiliary (private) method checking that the file is not closed (its memory being then unmapped)
+     *
+     * @throws IllegalStateException if the file is closed
+     */
+    private void checkOpen() {
+        if (closed) throw new IllegalStateException("file closed");
+    }
+
+    /**
+     * Auxiliary (private) method unmapping the given buffer at once, with the cleaner of direct buffers
+     * (sun.misc.Unsafe.invokeCleaner, from the module jdk.unsupported, which is available without any option)
+     *
+     * @param buffer mapped buffer, not to be read anymore
+     */
+    private static void unmap(ByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(theUnsafe.get(null), buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // left to the garbage collector
+        }
+    }
+}
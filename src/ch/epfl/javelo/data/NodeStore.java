@@ -0,0 +1,67 @@
+package ch.epfl.javelo.data;
+
+/**
+ * Interface representing the storage of the nodes of the JaVelo graph, in the format of the file nodes.bin,
+ * whether it is read from a single buffer (GraphNodes) or from a file of any size (ChunkedGraphNodes)
+ *
+ * @author Timofey Kreslo (310686)
+ * @author Wei-En Hsieh (341271)
+ */
+public interface NodeStore {
+
+    /**
+     * Counts the total number of nodes
+     *
+     * @return the total number of nodes
+     */
+    int count();
+
+    /**
+     * Returns the East coordinate of the given node
+     *
+     * @param nodeId node's identity
+     * @return the E (East) coordinate of the given node's identity
+     */
+    double nodeE(int nodeId);
+
+    /**
+     * Returns the North coordinate of the given node
+     *
+     * @param nodeId node's identity
+     * @return the N (North) coordinate of the given node's identity
+     */
+    double nodeN(int nodeId);
+
+    /**
+     * Returns the East coordinate of the given node, as stored (in Q28.4, i.e. sixteenths of meter)
+     *
+     * @param nodeId node's identity
+     * @return the E (East) coordinate of the given node's identity, in Q28.4
+     */
+    int nodeEQ28_4(int nodeId);
+
+    /**
+     * Returns the North coordinate of the given node, as stored (in Q28.4, i.e. sixteenths of meter)
+     *
+     * @param nodeId node's identity
+     * @return the N (North) coordinate of the given node's identity, in Q28.4
+     */
+    int nodeNQ28_4(int nodeId);
+
+    /**
+     * Returns the number of outgoing edges of the given node
+     *
+     * @param nodeId node's identity
+     * @return the number of edges exiting the given node's identity
+     */
+    int outDegree(int nodeId);
+
+    /**
+     * Returns the identity of the edgeIndex-th edge that exits the given node
+     *
+     * @param nodeId    node's identity
+     * @param edgeIndex edge's index
+     * @return the identity of the edgeIndex-th edge that exits the given node
+     */
+    int edgeId(int nodeId, int edgeIndex);
+}
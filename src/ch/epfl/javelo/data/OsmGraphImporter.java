@@ -0,0 +1,439 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.Q28_4;
+import ch.epfl.javelo.projection.Ch1903;
+import ch.epfl.javelo.projection.SwissBounds;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Importer of the JaVelo graph from OpenStreetMap data (file .osm.pbf, see OsmPbfReader) and from an elevation
+ * model (see ElevationGrid), writing the files nodes.bin, edges.bin, sectors.bin, attributes.bin,
+ * profile_ids.bin and elevations.bin in the formats decoded by GraphNodes, GraphEdges and GraphSectors,
+ * as well as nodes_osmid.bin (see OsmIdIndex).
+ * <p>
+ * The graph is made of the ways tagged with a type of highway known to JaVelo (see Attribute), and of their nodes:
+ * every two consecutive nodes of a way give an edge in the direction of the way and an inverted edge in the
+ * opposite direction, sharing its profile (one-way roads being left to the cost function, which knows their tags).
+ * The segments these formats cannot represent are ignored, and counted: those longer than 4096 m, those leaving
+ * a node which already has 15 edges, and those having a node missing from the file or outside of Switzerland.
+ * Nodes are grouped by sector, and ordered by OpenStreetMap identity within their sector
+ * (GraphRenumbering orders them better).
+ * <p>
+ * The file is read twice, its blocks being decoded in parallel: first for the ways, then for the coordinates of
+ * their nodes only. The memory used is hence proportional to the size of the graph (of the order of 100 bytes
+ * per node), not to that of the file, whose other nodes are never kept. Profiles are computed in parallel too,
+ * by batches, and written as they go.
+ *
+ * @author Timofey Kreslo (310686)
+ * @author Wei-En Hsieh (341271)
+ */
+public final class OsmGraphImporter {
+    private final static int MAX_OUT_DEGREE = (1 << 4) - 1;
+    private final static int MAX_EDGE_COUNT = 1 << 28;
+    private final static int MAX_UNSIGNED_SHORT = (1 << 16) - 1; // length, elevation or gain, in UQ12.4
+    private final static int MAX_ATTRIBUTE_SETS = 1 << 16;
+    private final static int MAX_ELEVATION_COUNT = 1 << 30;
+    private final static int SECTOR_COUNT = 128 * 128;
+    private final static int SAMPLE_SPACING = Q28_4.ofInt(2); // longest distance between two samples, in UQ12.4
+    private final static int PROFILE_BATCH_SIZE = 4096; // segments whose profiles are computed by a single task
+
+    /* Types of profiles, as in profile_ids.bin */
+    private final static int NO_PROFILE = 0;
+    private final static int UNCOMPRESSED_PROFILE = 1;
+    private final static int PROFILE_Q4_4 = 2;
+    private final static int PROFILE_Q0_4 = 3;
+
+    private final static Map<String, Attribute> ATTRIBUTES = Attribute.ALL.stream()
+            .collect(Collectors.toMap(Attribute::toString, Function.identity()));
+    private final static AttributeSet HIGHWAYS = AttributeSet.of(Attribute.ALL.stream()
+            .filter(attribute -> attribute.key().equals("highway"))
+            .toArray(Attribute[]::new));
+
+    /**
+     * Default (not instantiable) OsmGraphImporter constructor
+     */
+    private OsmGraphImporter() {}
+
+    /**
+     * Recorded class summarizing an import
+     *
+     * @param nodeCount           number of nodes of the graph
+     * @param edgeCount           number of edges of the graph
+     * @param attributeSetCount   number of distinct sets of attributes
+     * @param ignoredSegmentCount number of segments of ways which could not be represented
+     */
+    public record Summary(int nodeCount, int edgeCount, int attributeSetCount, int ignoredSegmentCount) {}
+
+    /**
+     * Recorded class (private) representing a way of the graph
+     *
+     * @param nodeIds    OpenStreetMap identities of its nodes
+     * @param attributes its attributes
+     */
+    private record Way(long[] nodeIds, AttributeSet attributes) {}
+
+    /**
+     * Recorded class (private) representing the profiles of a batch of segments
+     *
+     * @param types           types of the profiles
+     * @param elevations      encoded elevations of the profiles (empty if none)
+     * @param gains           elevation gains in the direction of the segments, in UQ12.4
+     * @param oppositeGains   elevation gains in the opposite direction, in UQ12.4
+     */
+    private record Profiles(int[] types, short[][] elevations, int[] gains, int[] oppositeGains) {}
+
+    /**
+     * Imports the graph of the given OpenStreetMap file into the given directory (created if needed)
+     *
+     * @param osmPath       path to the OpenStreetMap file, in the PBF format
+     * @param elevationGrid elevation model of the profiles of the edges
+     * @param toPath        path to the directory of the graph
+     * @param threadCount   number of threads decoding the file and computing the profiles
+     * @return summary of the import
+     * @throws IOException if the files could not be read or written, or if the graph exceeds the limits
+     *                     of the formats (more than 65535 nodes in a sector, 2^28 edges or 65536 sets of attributes)
+     */
+    public static Summary importGraph(Path osmPath, ElevationGrid elevationGrid, Path toPath, int threadCount)
+            throws IOException {
+        Files.createDirectories(toPath);
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            return importGraph(osmPath, elevationGrid, toPath, executor, 2 * threadCount);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Auxiliary (private) method importing the graph, as importGraph, with the given executor
+     *
+     * @param osmPath       path to the OpenStreetMap file, in the PBF format
+     * @param elevationGrid elevation model of the profiles of the edges
+     * @param toPath        path to the directory of the graph
+     * @param executor      executor decoding the file and computing the profiles
+     * @param maxPending    number of tasks submitted ahead of their results
+     * @return summary of the import
+     * @throws IOException if the files could not be read or written, or if the graph exceeds the limits
+     *                     of the formats
+     */
+    private static Summary importGraph(Path osmPath, ElevationGrid elevationGrid, Path toPath,
+                                       ExecutorService executor, int maxPending) throws IOException {
+        // 1. ways of the graph, then the identities of their nodes
+        List<Way> ways = new ArrayList<>();
+        OsmPbfReader.read(osmPath, executor, maxPending, OsmGraphImporter::highways, ways::addAll);
+        long[] osmIds = ways.stream().flatMapToLong(way -> Arrays.stream(way.nodeIds())).sorted().distinct().toArray();
+
+        // 2. coordinates of these nodes (NaN if missing or outside of Switzerland), rounded as stored
+        double[] nodesE = new double[osmIds.length], nodesN = new double[osmIds.length];
+        Arrays.fill(nodesE, Double.NaN);
+        Arrays.fill(nodesN, Double.NaN);
+        OsmPbfReader.read(osmPath, executor, maxPending, block -> {
+            block.forEachNode((osmId, lon, lat) -> {
+                int node = Arrays.binarySearch(osmIds, osmId);
+                if (node < 0) return;
+                double e = Q28_4.asDouble((int) Math.round(Math.scalb(Ch1903.e(lon, lat), 4)));
+                double n = Q28_4.asDouble((int) Math.round(Math.scalb(Ch1903.n(lon, lat), 4)));
+                if (SwissBounds.containsEN(e, n)) {
+                    nodesE[node] = e;
+                    nodesN[node] = n;
+                }
+            });
+            return null;
+        }, result -> {});
+
+        // 3. segments of the ways, nodes being indexed in osmIds
+        int maxSegmentCount = ways.stream().mapToInt(way -> way.nodeIds().length - 1).sum();
+        int[] fromNodes = new int[maxSegmentCount], toNodes = new int[maxSegmentCount];
+        int[] lengths = new int[maxSegmentCount], attributesIndices = new int[maxSegmentCount];
+        int[] outDegrees = new int[osmIds.length];
+        Map<AttributeSet, Integer> attributeSets = new LinkedHashMap<>();
+        int segmentCount = 0, ignoredSegmentCount = 0;
+        for (Way way : ways) {
+            int attributesIndex = attributeSets.computeIfAbsent(way.attributes(), set -> attributeSets.size());
+            for (int i = 1; i < way.nodeIds().length; i++) {
+                int from = Arrays.binarySearch(osmIds, way.nodeIds()[i - 1]);
+                int to = Arrays.binarySearch(osmIds, way.nodeIds()[i]);
+                if (from == to) continue; // node repeated, no segment
+                int length = Double.isNaN(nodesE[from]) || Double.isNaN(nodesE[to])
+                        ? 0
+                        : (int) Math.round(Math.scalb(
+                                Math2.norm(nodesE[to] - nodesE[from], nodesN[to] - nodesN[from]), 4));
+                if (length == 0 || length > MAX_UNSIGNED_SHORT
+                        || outDegrees[from] == MAX_OUT_DEGREE || outDegrees[to] == MAX_OUT_DEGREE) {
+                    ignoredSegmentCount++;
+                    continue;
+                }
+                fromNodes[segmentCount] = from;
+                toNodes[segmentCount] = to;
+                lengths[segmentCount] = length;
+                attributesIndices[segmentCount] = attributesIndex;
+                outDegrees[from]++;
+                outDegrees[to]++;
+                segmentCount++;
+            }
+        }
+        if (attributeSets.size() > MAX_ATTRIBUTE_SETS) throw new IOException("too many sets of attributes");
+        if (2L * segmentCount > MAX_EDGE_COUNT) throw new IOException("too many edges");
+
+        // 4. nodes having edges, grouped by sector
+        int[] sectorCounts = new int[SECTOR_COUNT];
+        int[] sectorIds = new int[osmIds.length];
+        for (int node = 0; node < osmIds.length; node++) {
+            if (outDegrees[node] == 0) continue;
+            sectorIds[node] = GraphSectors.sectorId(GraphSectors.column(nodesE[node]), GraphSectors.row(nodesN[node]));
+            if (++sectorCounts[sectorIds[node]] > MAX_UNSIGNED_SHORT) throw new IOException("sector too dense");
+        }
+        int[] sectorStarts = new int[SECTOR_COUNT + 1];
+        for (int sectorId = 0; sectorId < SECTOR_COUNT; sectorId++) {
+            sectorStarts[sectorId + 1] = sectorStarts[sectorId] + sectorCounts[sectorId];
+        }
+        int nodeCount = sectorStarts[SECTOR_COUNT];
+        int[] nodeIds = new int[osmIds.length], nodes = new int[nodeCount];
+        int[] placedCounts = new int[SECTOR_COUNT];
+        for (int node = 0; node < osmIds.length; node++) {
+            if (outDegrees[node] == 0) continue;
+            nodeIds[node] = sectorStarts[sectorIds[node]] + placedCounts[sectorIds[node]]++;
+            nodes[nodeIds[node]] = node;
+        }
+
+        // 5. edges, grouped by source node: segment s for the edge in its direction, ~s for the inverted one
+        int[] firstEdgeIds = new int[nodeCount + 1];
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+            firstEdgeIds[nodeId + 1] = firstEdgeIds[nodeId] + outDegrees[nodes[nodeId]];
+        }
+        int[] edgeSegments = new int[2 * segmentCount];
+        int[] nextEdgeIds = Arrays.copyOf(firstEdgeIds, nodeCount);
+        for (int segment = 0; segment < segmentCount; segment++) {
+            edgeSegments[nextEdgeIds[nodeIds[fromNodes[segment]]]++] = segment;
+            edgeSegments[nextEdgeIds[nodeIds[toNodes[segment]]]++] = ~segment;
+        }
+
+        // 6. profiles of the segments, computed by batches and written in order
+        int[] profileIds = new int[segmentCount], gains = new int[segmentCount], oppositeGains = new int[segmentCount];
+        try (DataOutputStream s = output(toPath, "elevations.bin")) {
+            ArrayDeque<Future<Profiles>> pending = new ArrayDeque<>();
+            int elevationCount = 0;
+            for (int batch = 0, written = 0; written < segmentCount; ) {
+                if (batch < segmentCount && pending.size() <= maxPending) {
+                    int from = batch, to = Math.min(segmentCount, batch + PROFILE_BATCH_SIZE);
+                    pending.add(executor.submit(() ->
+                            profiles(elevationGrid, nodesE, nodesN, fromNodes, toNodes, lengths, from, to)));
+                    batch = to;
+                    continue;
+                }
+                Profiles profiles = OsmPbfReader.result(pending.remove());
+                for (int i = 0; i < profiles.types().length; i++, written++) {
+                    short[] elevations = profiles.elevations()[i];
+                    profileIds[written] = profiles.types()[i] == NO_PROFILE
+                            ? 0
+                            : profiles.types()[i] << 30 | elevationCount;
+                    gains[written] = profiles.gains()[i];
+                    oppositeGains[written] = profiles.oppositeGains()[i];
+                    for (short elevation : elevations) s.writeShort(elevation);
+                    elevationCount += elevations.length;
+                    if (elevationCount >= MAX_ELEVATION_COUNT) throw new IOException("too many elevations");
+                }
+            }
+        }
+
+        // 7. files of the graph
+        try (DataOutputStream s = output(toPath, "nodes.bin")) {
+            for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+                int node = nodes[nodeId];
+                s.writeInt((int) Math.scalb(nodesE[node], 4));
+                s.writeInt((int) Math.scalb(nodesN[node], 4));
+                s.writeInt(outDegrees[node] << 28 | firstEdgeIds[nodeId]);
+            }
+        }
+        try (DataOutputStream edgesStream = output(toPath, "edges.bin");
+             DataOutputStream profileIdsStream = output(toPath, "profile_ids.bin")) {
+            for (int edgeSegment : edgeSegments) {
+                boolean inverted = edgeSegment < 0;
+                int segment = inverted ? ~edgeSegment : edgeSegment;
+                int targetNodeId = nodeIds[inverted ? fromNodes[segment] : toNodes[segment]];
+                edgesStream.writeInt(inverted ? ~targetNodeId : targetNodeId);
+                edgesStream.writeShort(lengths[segment]);
+                edgesStream.writeShort(inverted ? oppositeGains[segment] : gains[segment]);
+                edgesStream.writeShort(attributesIndices[segment]);
+                profileIdsStream.writeInt(profileIds[segment]);
+            }
+        }
+        try (DataOutputStream s = output(toPath, "sectors.bin")) {
+            for (int sectorId = 0; sectorId < SECTOR_COUNT; sectorId++) {
+                s.writeInt(sectorStarts[sectorId]);
+                s.writeShort(sectorCounts[sectorId]);
+            }
+        }
+        try (DataOutputStream s = output(toPath, "attributes.bin")) {
+            for (AttributeSet attributeSet : attributeSets.keySet()) s.writeLong(attributeSet.bits());
+        }
+        try (DataOutputStream s = output(toPath, "nodes_osmid.bin")) {
+            for (int node : nodes) s.writeLong(osmIds[node]);
+        }
+        return new Summary(nodeCount, edgeSegments.length, attributeSets.size(), ignoredSegmentCount);
+    }
+
+    /**
+     * Auxiliary (private) method returning the ways of the given block which belong to the graph
+     *
+     * @param block block of the OpenStreetMap file
+     * @return its ways tagged with a type of highway known to JaVelo
+     */
+    private static List<Way> highways(OsmPbfReader.Block block) {
+        List<Way> ways = new ArrayList<>();
+        block.forEachWay((osmId, nodeIds, tags) -> {
+            long bits = 0;
+            for (int i = 0; i < tags.length; i += 2) {
+                Attribute attribute = ATTRIBUTES.get(tags[i] + "=" + tags[i + 1]);
+                if (attribute != null) bits |= 1L << attribute.ordinal();
+            }
+            AttributeSet attributes = new AttributeSet(bits);
+            if (attributes.intersects(HIGHWAYS) && nodeIds.length > 1) ways.add(new Way(nodeIds, attributes));
+        });
+        return ways;
+    }
+
+    /**
+     * Auxiliary (private) method computing the profiles of the given segments, sampled every 2 m at most
+     * along the segment
+     *
+     * @param elevationGrid elevation model
+     * @param nodesE        East coordinate of every node
+     * @param nodesN        North coordinate of every node
+     * @param fromNodes     node of the start of every segment
+     * @param toNodes       node of the end of every segment
+     * @param lengths       length of every segment, in UQ12.4
+     * @param from          first segment (included)
+     * @param to            last segment (excluded)
+     * @return the profiles of the segments
+     */
+    private static Profiles profiles(ElevationGrid elevationGrid, double[] nodesE, double[] nodesN,
+                                     int[] fromNodes, int[] toNodes, int[] lengths, int from, int to) {
+        int count = to - from;
+        Profiles profiles = new Profiles(new int[count], new short[count][], new int[count], new int[count]);
+        for (int i = 0; i < count; i++) {
+            int segment = from + i;
+            int sampleCount = 1 + Math2.ceilDiv(lengths[segment], SAMPLE_SPACING);
+            double fromE = nodesE[fromNodes[segment]], fromN = nodesN[fromNodes[segment]];
+            double toE = nodesE[toNodes[segment]], toN = nodesN[toNodes[segment]];
+            int[] samples = new int[sampleCount];
+            for (int j = 0; j < sampleCount && samples != null; j++) {
+                double x = (double) j / (sampleCount - 1);
+                double elevation = elevationGrid.elevationAt(
+                        Math2.interpolate(fromE, toE, x), Math2.interpolate(fromN, toN, x));
+                if (Double.isNaN(elevation)) samples = null;
+                else samples[j] = Math2.clamp(0, (int) Math.round(Math.scalb(elevation, 4)), MAX_UNSIGNED_SHORT);
+            }
+            if (samples == null) {
+                profiles.elevations()[i] = new short[0];
+                continue;
+            }
+            int gain = 0, oppositeGain = 0;
+            for (int j = 1; j < sampleCount; j++) {
+                gain += Math.max(0, samples[j] - samples[j - 1]);
+                oppositeGain += Math.max(0, samples[j - 1] - samples[j]);
+            }
+            profiles.types()[i] = profileType(samples);
+            profiles.elevations()[i] = encodeProfile(samples, profiles.types()[i]);
+            profiles.gains()[i] = Math.min(gain, MAX_UNSIGNED_SHORT);
+            profiles.oppositeGains()[i] = Math.min(oppositeGain, MAX_UNSIGNED_SHORT);
+        }
+        return profiles;
+    }
+
+    /**
+     * Returns the most compact type of profile representing the given samples exactly
+     * (package-private, for tests)
+     *
+     * @param samples elevations of the samples, in UQ12.4
+     * @return PROFILE_Q0_4 if the differences between samples fit in 4 bits, PROFILE_Q4_4 if they fit in 8 bits,
+     * UNCOMPRESSED_PROFILE otherwise
+     */
+    static int profileType(int[] samples) {
+        int maxDifference = 0;
+        for (int i = 1; i < samples.length; i++) {
+            int difference = samples[i] - samples[i - 1];
+            maxDifference = Math.max(maxDifference, difference < 0 ? -difference - 1 : difference);
+        }
+        if (maxDifference < 1 << 3) return PROFILE_Q0_4;
+        if (maxDifference < 1 << 7) return PROFILE_Q4_4;
+        return UNCOMPRESSED_PROFILE;
+    }
+
+    /**
+     * Encodes the given samples as stored in elevations.bin (package-private, for tests): the first sample, then
+     * the differences between consecutive samples, packed in shorts from their most significant bits if compressed
+     *
+     * @param samples elevations of the samples, in UQ12.4
+     * @param type    type of the profile (see profileType)
+     * @return the elevations to store
+     */
+    static short[] encodeProfile(int[] samples, int type) {
+        if (type == UNCOMPRESSED_PROFILE) {
+            short[] elevations = new short[samples.length];
+            for (int i = 0; i < samples.length; i++) elevations[i] = (short) samples[i];
+            return elevations;
+        }
+        int bits = type == PROFILE_Q4_4 ? 8 : 4;
+        int perShort = Short.SIZE / bits;
+        int[] packed = new int[1 + Math2.ceilDiv(samples.length - 1, perShort)];
+        packed[0] = samples[0];
+        for (int i = 1; i < samples.length; i++) {
+            int slot = (i - 1) % perShort;
+            packed[1 + (i - 1) / perShort] |=
+                    ((samples[i] - samples[i - 1]) & ((1 << bits) - 1)) << Short.SIZE - bits * (slot + 1);
+        }
+        short[] elevations = new short[packed.length];
+        for (int i = 0; i < packed.length; i++) elevations[i] = (short) packed[i];
+        return elevations;
+    }
+
+    /**
+     * Auxiliary (private) method opening a buffered stream writing to the given file
+     *
+     * @param basePath path to the directory of the file
+     * @param fileName name of the file
+     * @return stream writing to the file
+     * @throws IOException if the file could not be opened
+     */
+    private static DataOutputStream output(Path basePath, String fileName) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(basePath.resolve(fileName))));
+    }
+
+    /**
+     * Imports the graph of the given OpenStreetMap file into the given directory
+     *
+     * @param args OpenStreetMap file (.osm.pbf), directory of the elevation tiles (.hgt), directory of the graph,
+     *             and optionally the number of threads (by default, the number of processors)
+     * @throws IOException if the files could not be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        Path osmPath = Path.of(args[0]);
+        ElevationGrid elevationGrid = ElevationGrid.loadFrom(Path.of(args[1]));
+        Path toPath = Path.of(args[2]);
+        int threadCount = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+        long t0 = System.nanoTime();
+        Summary summary = importGraph(osmPath, elevationGrid, toPath, threadCount);
+        System.out.printf("graphe importé en %d ms : %d noeuds, %d arêtes, %d ensembles d'attributs, "
+                        + "%d segments ignorés%n", (System.nanoTime() - t0) / 1_000_000, summary.nodeCount(),
+                summary.edgeCount(), summary.attributeSetCount(), summary.ignoredSegmentCount());
+    }
+}
@@ -0,0 +1,257 @@
+package ch.epfl.javelo.data;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Class representing the OpenStreetMap identities of the nodes of the JaVelo graph, as stored by node
+ * in the file nodes_osmid.bin, along with their index: the identities sorted in increasing order, followed by
+ * the identities of their nodes, which a search for an OpenStreetMap identity finds its node in.
+ * <p>
+ * The index can be written to the file nodes_osmid_index.bin, next to the files of the graph, to be mapped into
+ * memory rather than sorted again on every load. It must then be written again whenever nodes_osmid.bin changes
+ * (for example once the graph renumbered, see GraphRenumbering): its header records the number and a checksum
+ * of the identities it was written for, and an index not matching them is rejected.
+ *
+ * @author Timofey Kreslo (310686)
+ * @author Wei-En Hsieh (341271)
+ */
+public final class OsmIdIndex {
+    private final static String OSM_IDS_FILE = "nodes_osmid.bin";
+    private final static String INDEX_FILE = "nodes_osmid_index.bin";
+    private final static int INTERPOLATION_STEPS = 3; // then binary search, whatever the distribution of identities
+    private final static int BENCHMARK_LOOKUPS = 10_000_000;
+
+    /* Header of the index file: magic (including the version), count, checksum of the identities */
+    private final static int MAGIC = 0x4A56_4931; // "JVI1"
+    private final static int HEADER_BYTES = 2 * Integer.BYTES + Long.BYTES;
+
+    private final LongBuffer osmIds;
+    private final LongBuffer sortedOsmIds;
+    private final IntBuffer sortedNodeIds;
+
+    /**
+     * OsmIdIndex constructor (private, indices are obtained from build or loadFrom)
+     *
+     * @param osmIds        OpenStreetMap identity of every node
+     * @param sortedOsmIds  OpenStreetMap identities, sorted in increasing order
+     * @param sortedNodeIds identities of the nodes of the sorted OpenStreetMap identities
+     */
+    private OsmIdIndex(LongBuffer osmIds, LongBuffer sortedOsmIds, IntBuffer sortedNodeIds) {
+        this.osmIds = osmIds;
+        this.sortedOsmIds = sortedOsmIds;
+        this.sortedNodeIds = sortedNodeIds;
+    }
+
+    /**
+     * Builds the index of the given OpenStreetMap identities (in heap), nodes of equal identities being
+     * kept in increasing order
+     *
+     * @param osmIds OpenStreetMap identity of every node, as in nodes_osmid.bin
+     * @return the index of the identities
+     */
+    public static OsmIdIndex build(LongBuffer osmIds) {
+        int nodeCount = osmIds.capacity();
+        long[] sortedOsmIds = new long[nodeCount];
+        osmIds.get(0, sortedOsmIds);
+        Arrays.sort(sortedOsmIds);
+        LongBuffer sortedBuffer = LongBuffer.wrap(sortedOsmIds);
+
+        // every node is put after the nodes of the same identity already put, from the first index of its identity
+        int[] sortedNodeIds = new int[nodeCount];
+        int[] putCounts = new int[nodeCount];
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+            int firstIndex = firstIndexOf(sortedBuffer, osmIds.get(nodeId));
+            sortedNodeIds[firstIndex + putCounts[firstIndex]++] = nodeId;
+        }
+        return new OsmIdIndex(osmIds, sortedBuffer, IntBuffer.wrap(sortedNodeIds));
+    }
+
+    /**
+     * Returns the OpenStreetMap identities of the nodes of the graph of the given directory, with their index,
+     * mapped from nodes_osmid_index.bin if written, or else built
+     *
+     * @param basePath path to the directory of the graph
+     * @return the index of the identities
+     * @throws IOException if the file nodes_osmid.bin does not exist, or if the index does not match it
+     */
+    public static OsmIdIndex loadFrom(Path basePath) throws IOException {
+        return loadFrom(basePath, mapFile(basePath.resolve(OSM_IDS_FILE)).asLongBuffer());
+    }
+
+    /**
+     * Returns the given OpenStreetMap identities of the nodes of the graph of the given directory, with their index,
+     * mapped from nodes_osmid_index.bin if written, or else built
+     *
+     * @param basePath path to the directory of the graph
+     * @param osmIds   OpenStreetMap identity of every node, as in the file nodes_osmid.bin of the directory
+     * @return the index of the identities
+     * @throws IOException if the index is not an index file, or does not match the identities
+     */
+    static OsmIdIndex loadFrom(Path basePath, LongBuffer osmIds) throws IOException {
+        if (!existIn(basePath)) return build(osmIds);
+
+        int nodeCount = osmIds.capacity();
+        ByteBuffer index = mapFile(basePath.resolve(INDEX_FILE));
+        if (index.capacity() < HEADER_BYTES || index.getInt(0) != MAGIC) {
+            throw new IOException(INDEX_FILE + " is not an index of OpenStreetMap identities");
+        }
+        if (index.getInt(Integer.BYTES) != nodeCount
+                || index.capacity() != HEADER_BYTES + (long) nodeCount * (Long.BYTES + Integer.BYTES)
+                || index.getLong(2 * Integer.BYTES) != checksum(osmIds)) {
+            throw new IOException(INDEX_FILE + " does not match " + OSM_IDS_FILE);
+        }
+        return new OsmIdIndex(osmIds,
+                index.slice(HEADER_BYTES, nodeCount * Long.BYTES).asLongBuffer(),
+                index.slice(HEADER_BYTES + nodeCount * Long.BYTES, nodeCount * Integer.BYTES).asIntBuffer());
+    }
+
+    /**
+     * Checks whether the index of the OpenStreetMap identities is written in the given directory
+     *
+     * @param basePath path to the directory of the graph
+     * @return true iff the files nodes_osmid.bin and nodes_osmid_index.bin exist in the directory
+     */
+    public static boolean existIn(Path basePath) {
+        return Files.exists(basePath.resolve(OSM_IDS_FILE)) && Files.exists(basePath.resolve(INDEX_FILE));
+    }
+
+    /**
+     * Writes the index to the file nodes_osmid_index.bin of the given directory, after the header
+     * of the identities it indexes
+     *
+     * @param basePath path to the directory of the graph
+     * @throws IOException if the file could not be written
+     */
+    public void writeTo(Path basePath) throws IOException {
+        try (DataOutputStream s = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(basePath.resolve(INDEX_FILE))))) {
+            s.writeInt(MAGIC);
+            s.writeInt(count());
+            s.writeLong(checksum(osmIds));
+            for (int i = 0; i < sortedOsmIds.capacity(); i++) s.writeLong(sortedOsmIds.get(i));
+            for (int i = 0; i < sortedNodeIds.capacity(); i++) s.writeInt(sortedNodeIds.get(i));
+        }
+    }
+
+    /**
+     * Writes the index of the OpenStreetMap identities of the graph of the given directory into it,
+     * and measures the lookup of random identities
+     *
+     * @param args directory of the graph
+     * @throws IOException if the files could not be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        Path basePath = Path.of(args.length > 0 ? args[0] : "lausanne");
+        long t0 = System.nanoTime();
+        OsmIdIndex index = build(mapFile(basePath.resolve(OSM_IDS_FILE)).asLongBuffer());
+        index.writeTo(basePath);
+        System.out.printf("index de %d identités OSM écrit en %d ms%n",
+                index.count(), (System.nanoTime() - t0) / 1_000_000);
+
+        index = loadFrom(basePath);
+        Random random = new Random(2022);
+        long[] lookups = new long[BENCHMARK_LOOKUPS];
+        for (int i = 0; i < lookups.length; i++) lookups[i] = index.osmId(random.nextInt(index.count()));
+        long found = 0;
+        t0 = System.nanoTime();
+        for (long osmId : lookups) found += index.nodeId(osmId) >= 0 ? 1 : 0;
+        double seconds = (System.nanoTime() - t0) / 1e9;
+        System.out.printf("%.1f millions de recherches par seconde (%d trouvées)%n",
+                lookups.length / seconds / 1e6, found);
+    }
+
+    /**
+     * Returns the number of nodes
+     *
+     * @return number of nodes
+     */
+    public int count() {
+        return osmIds.capacity();
+    }
+
+    /**
+     * Returns the OpenStreetMap identity of the given node
+     *
+     * @param nodeId node's identity
+     * @return OpenStreetMap identity of the node
+     */
+    public long osmId(int nodeId) {
+        return osmIds.get(nodeId);
+    }
+
+    /**
+     * Returns the identity of the node of the given OpenStreetMap identity
+     *
+     * @param osmId OpenStreetMap identity
+     * @return identity of the node (the smallest one, if several nodes have this identity),
+     * or -1 if no node has this identity
+     */
+    public int nodeId(long osmId) {
+        int index = firstIndexOf(sortedOsmIds, osmId);
+        return index < sortedOsmIds.capacity() && sortedOsmIds.get(index) == osmId ? sortedNodeIds.get(index) : -1;
+    }
+
+    /**
+     * Auxiliary (private) method searching the given sorted keys for the first one greater than or equal to
+     * the given key: the first steps interpolate its position between the bounds of the remaining range
+     * (OpenStreetMap identities being rather evenly distributed, they converge fast), the next ones halve the range
+     *
+     * @param keys keys sorted in increasing order
+     * @param key  key to search
+     * @return index of the first key greater than or equal to the given one (the number of keys if none is)
+     */
+    private static int firstIndexOf(LongBuffer keys, long key) {
+        int low = 0, high = keys.capacity(); // the index searched is between low and high, both included
+        for (int step = 0; low < high; step++) {
+            int probe;
+            if (step < INTERPOLATION_STEPS) {
+                long lowKey = keys.get(low), highKey = keys.get(high - 1);
+                if (key <= lowKey) return low;
+                if (key > highKey) return high;
+                // lowKey < key <= highKey, the key is searched between low + 1 and high - 1
+                probe = low + 1 + (int) ((high - low - 2) * (((double) key - lowKey) / ((double) highKey - lowKey)));
+            } else {
+                probe = (low + high) >>> 1;
+            }
+            if (keys.get(probe) < key) low = probe + 1;
+            else high = probe;
+        }
+        return low;
+    }
+
+    /**
+     * Auxiliary (private) method returning the checksum of the given OpenStreetMap identities, in their order
+     * (a single pass over them, far cheaper than sorting them again)
+     *
+     * @param osmIds OpenStreetMap identity of every node
+     * @return checksum of the identities
+     */
+    private static long checksum(LongBuffer osmIds) {
+        long checksum = 1;
+        for (int nodeId = 0; nodeId < osmIds.capacity(); nodeId++) checksum = 31 * checksum + osmIds.get(nodeId);
+        return checksum;
+    }
+
+    /**
+     * Auxiliary (private) method mapping the given file into memory
+     *
+     * @param path path to the file
+     * @return buffer containing the file
+     * @throws IOException if the file does not exist
+     */
+    private static ByteBuffer mapFile(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+}
@@ -0,0 +1,543 @@
+package ch.epfl.javelo.data;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reader of OpenStreetMap data in the PBF format (see https://wiki.openstreetmap.org/wiki/PBF_Format):
+ * a sequence of blobs, each made of the size of its header (4 bytes), of its header and of its content,
+ * raw or compressed with zlib. Every blob of data is a block of nodes and ways (among others) encoded with
+ * Protocol Buffers, which is decoded independently of the others: blocks are hence decompressed and decoded in
+ * parallel, while the file is read sequentially, and their results handed over in the order of the file.
+ * <p>
+ * Only what JaVelo needs is decoded: the coordinates of the nodes (dense or not), and the tags and nodes of
+ * the ways. Relations and metadata (versions, authors) are skipped.
+ *
+ * @author Timofey Kreslo (310686)
+ * @author Wei-En Hsieh (341271)
+ */
+public final class OsmPbfReader {
+    private final static int MAX_HEADER_SIZE = 64 * 1024;        // in bytes, as required by the format
+    private final static int MAX_BLOB_SIZE = 32 * 1024 * 1024;   // in bytes, as required by the format
+    private final static Set<String> SUPPORTED_FEATURES = Set.of("OsmSchema-V0.6", "DenseNodes");
+    private final static double NANODEGREE = 1e-9;
+    private final static int DEFAULT_GRANULARITY = 100;          // in nanodegrees
+
+    /* Wire types of Protocol Buffers */
+    private final static int WIRE_VARINT = 0;
+    private final static int WIRE_64_BITS = 1;
+    private final static int WIRE_LENGTH_DELIMITED = 2;
+    private final static int WIRE_32_BITS = 5;
+
+    /**
+     * Default (not instantiable) OsmPbfReader constructor
+     */
+    private OsmPbfReader() {}
+
+    /**
+     * Functional interface of the visitors of nodes
+     */
+    @FunctionalInterface
+    public interface NodeVisitor {
+        /**
+         * Visits a node
+         *
+         * @param osmId OpenStreetMap identity of the node
+         * @param lon   longitude of the node, in radians
+         * @param lat   latitude of the node, in radians
+         */
+        void node(long osmId, double lon, double lat);
+    }
+
+    /**
+     * Functional interface of the visitors of ways
+     */
+    @FunctionalInterface
+    public interface WayVisitor {
+        /**
+         * Visits a way
+         *
+         * @param osmId   OpenStreetMap identity of the way
+         * @param nodeIds OpenStreetMap identities of its nodes, in order
+         * @param tags    its tags, keys and values alternately
+         */
+        void way(long osmId, long[] nodeIds, String[] tags);
+    }
+
+    /**
+     * Reads the given file, handing every block of data (decompressed and decoded by the given executor)
+     * to the given function, and its results to the given consumer, in the order of the file
+     *
+     * @param path             path to the file
+     * @param executor         executor decoding the blocks
+     * @param maxPendingBlocks number of blocks read ahead of the consumer (which bounds the memory used)
+     * @param function         function applied to every block, by the executor
+     * @param consumer         consumer of the results of the function, called by the current thread
+     * @param <R>              type of the results of the function
+     * @throws IOException if the file could not be read, is not in the PBF format,
+     *                     or requires features not supported by this reader
+     */
+    public static <R> void read(Path path, ExecutorService executor, int maxPendingBlocks,
+                                Function<Block, R> function, Consumer<R> consumer) throws IOException {
+        ArrayDeque<Future<R>> pending = new ArrayDeque<>();
+        try (DataInputStream stream = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            for (int headerSize = readHeaderSize(stream); headerSize >= 0; headerSize = readHeaderSize(stream)) {
+                if (headerSize > MAX_HEADER_SIZE) throw new IOException("blob header too large: " + headerSize);
+                String type = null;
+                int blobSize = 0;
+                Message header = new Message(ByteBuffer.wrap(readFully(stream, headerSize)));
+                while (header.next()) {
+                    switch (header.field()) {
+                        case 1 -> type = header.string();
+                        case 3 -> blobSize = (int) header.varint();
+                        default -> header.skip();
+                    }
+                }
+                if (blobSize < 0 || blobSize > MAX_BLOB_SIZE) throw new IOException("blob too large: " + blobSize);
+                byte[] blob = readFully(stream, blobSize);
+
+                if ("OSMHeader".equals(type)) {
+                    checkFeatures(uncompress(blob));
+                } else if ("OSMData".equals(type)) {
+                    pending.add(executor.submit(() -> function.apply(Block.decode(uncompressUnchecked(blob)))));
+                    while (pending.size() > maxPendingBlocks) consumer.accept(result(pending.remove()));
+                } // blobs of other types are skipped, as required by the format
+            }
+            while (!pending.isEmpty()) consumer.accept(result(pending.remove()));
+        } finally {
+            for (Future<R> future : pending) future.cancel(true);
+        }
+    }
+
+    /**
+     * Class representing a block of data, whose nodes and ways are decoded while visited
+     */
+    public static final class Block {
+        private final String[] strings;
+        private final List<ByteBuffer> groups;
+        private final long granularity, latOffset, lonOffset;
+
+        /**
+         * Block constructor (private, blocks are obtained from decode)
+         *
+         * @param strings     table of the strings of the block
+         * @param groups      encoded groups of the block
+         * @param granularity unit of the coordinates, in nanodegrees
+         * @param latOffset   offset of the latitudes, in nanodegrees
+         * @param lonOffset   offset of the longitudes, in nanodegrees
+         */
+        private Block(String[] strings, List<ByteBuffer> groups, long granularity, long latOffset, long lonOffset) {
+            this.strings = strings;
+            this.groups = groups;
+            this.granularity = granularity;
+            this.latOffset = latOffset;
+            this.lonOffset = lonOffset;
+        }
+
+        /**
+         * Auxiliary (private) method decoding the table of strings and the parameters of a block
+         *
+         * @param buffer the encoded block (PrimitiveBlock)
+         * @return the block
+         */
+        private static Block decode(ByteBuffer buffer) {
+            List<String> strings = new ArrayList<>();
+            List<ByteBuffer> groups = new ArrayList<>();
+            long granularity = DEFAULT_GRANULARITY, latOffset = 0, lonOffset = 0;
+            Message block = new Message(buffer);
+            while (block.next()) {
+                switch (block.field()) {
+                    case 1 -> {
+                        Message table = new Message(block.bytes());
+                        while (table.next()) {
+                            if (table.field() == 1) strings.add(table.string());
+                            else table.skip();
+                        }
+                    }
+                    case 2 -> groups.add(block.bytes());
+                    case 17 -> granularity = block.varint();
+                    case 19 -> latOffset = block.varint();
+                    case 20 -> lonOffset = block.varint();
+                    default -> block.skip();
+                }
+            }
+            return new Block(strings.toArray(String[]::new), groups, granularity, latOffset, lonOffset);
+        }
+
+        /**
+         * Visits the nodes of the block, dense or not, in order
+         *
+         * @param visitor visitor of the nodes
+         */
+        public void forEachNode(NodeVisitor visitor) {
+            for (ByteBuffer group : groups) {
+                Message groupMessage = new Message(group.duplicate());
+                while (groupMessage.next()) {
+                    switch (groupMessage.field()) {
+                        case 1 -> visitNode(new Message(groupMessage.bytes()), visitor);
+                        case 2 -> visitDenseNodes(new Message(groupMessage.bytes()), visitor);
+                        default -> groupMessage.skip();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Visits the ways of the block, in order
+         *
+         * @param visitor visitor of the ways
+         */
+        public void forEachWay(WayVisitor visitor) {
+            for (ByteBuffer group : groups) {
+                Message groupMessage = new Message(group.duplicate());
+                while (groupMessage.next()) {
+                    if (groupMessage.field() == 3) visitWay(new Message(groupMessage.bytes()), visitor);
+                    else groupMessage.skip();
+                }
+            }
+        }
+
+        /**
+         * Auxiliary (private) method visiting a node (Node)
+         *
+         * @param node    the encoded node
+         * @param visitor visitor of the nodes
+         */
+        private void visitNode(Message node, NodeVisitor visitor) {
+            long id = 0, lat = 0, lon = 0;
+            while (node.next()) {
+                switch (node.field()) {
+                    case 1 -> id = node.signedVarint();
+                    case 8 -> lat = node.signedVarint();
+                    case 9 -> lon = node.signedVarint();
+                    default -> node.skip();
+                }
+            }
+            visitor.node(id, radians(lonOffset, lon), radians(latOffset, lat));
+        }
+
+        /**
+         * Auxiliary (private) method visiting dense nodes (DenseNodes), whose identities and coordinates
+         * are stored in three parallel lists of differences
+         *
+         * @param nodes   the encoded nodes
+         * @param visitor visitor of the nodes
+         */
+        private void visitDenseNodes(Message nodes, NodeVisitor visitor) {
+            Message ids = Message.EMPTY, lats = Message.EMPTY, lons = Message.EMPTY;
+            while (nodes.next()) {
+                switch (nodes.field()) {
+                    case 1 -> ids = new Message(nodes.bytes());
+                    case 8 -> lats = new Message(nodes.bytes());
+                    case 9 -> lons = new Message(nodes.bytes());
+                    default -> nodes.skip();
+                }
+            }
+            long id = 0, lat = 0, lon = 0;
+            while (ids.hasRemaining()) {
+                id += ids.signedVarint();
+                lat += lats.signedVarint();
+                lon += lons.signedVarint();
+                visitor.node(id, radians(lonOffset, lon), radians(latOffset, lat));
+            }
+        }
+
+        /**
+         * Auxiliary (private) method visiting a way (Way)
+         *
+         * @param way     the encoded way
+         * @param visitor visitor of the ways
+         */
+        private void visitWay(Message way, WayVisitor visitor) {
+            long id = 0;
+            Message keys = Message.EMPTY, values = Message.EMPTY, refs = Message.EMPTY;
+            while (way.next()) {
+                switch (way.field()) {
+                    case 1 -> id = way.varint();
+                    case 2 -> keys = new Message(way.bytes());
+                    case 3 -> values = new Message(way.bytes());
+                    case 8 -> refs = new Message(way.bytes());
+                    default -> way.skip();
+                }
+            }
+            List<String> tags = new ArrayList<>();
+            while (keys.hasRemaining() && values.hasRemaining()) {
+                tags.add(strings[(int) keys.varint()]);
+                tags.add(strings[(int) values.varint()]);
+            }
+            long[] nodeIds = new long[16];
+            int nodeCount = 0;
+            for (long nodeId = 0; refs.hasRemaining(); nodeCount++) {
+                if (nodeCount == nodeIds.length) nodeIds = Arrays.copyOf(nodeIds, 2 * nodeCount);
+                nodeIds[nodeCount] = nodeId += refs.signedVarint();
+            }
+            visitor.way(id, Arrays.copyOf(nodeIds, nodeCount), tags.toArray(String[]::new));
+        }
+
+        /**
+         * Auxiliary (private) method returning the angle of the given coordinate of the block
+         *
+         * @param offset     offset of the coordinate, in nanodegrees
+         * @param coordinate the coordinate, in units of the block
+         * @return angle of the coordinate, in radians
+         */
+        private double radians(long offset, long coordinate) {
+            return Math.toRadians(NANODEGREE * (offset + granularity * coordinate));
+        }
+    }
+
+    /**
+     * Auxiliary (private) class reading the fields of a message encoded with Protocol Buffers
+     * (see https://protobuf.dev/programming-guides/encoding/), or the values of a packed repeated field
+     */
+    private static final class Message {
+        private final static Message EMPTY = new Message(ByteBuffer.allocate(0));
+        private final ByteBuffer buffer;
+        private int tag;
+
+        /**
+         * Message constructor
+         *
+         * @param buffer the encoded message, from its position to its limit
+         */
+        private Message(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        /**
+         * Checks whether the message has more fields (or the packed field more values)
+         *
+         * @return true iff the message has not been read entirely
+         */
+        private boolean hasRemaining() {
+            return buffer.hasRemaining();
+        }
+
+        /**
+         * Reads the tag of the next field
+         *
+         * @return false iff the message has no more field
+         */
+        private boolean next() {
+            if (!buffer.hasRemaining()) return false;
+            tag = (int) varint();
+            return true;
+        }
+
+        /**
+         * Returns the number of the current field
+         *
+         * @return number of the field, as in the definition of the message
+         */
+        private int field() {
+            return tag >>> 3;
+        }
+
+        /**
+         * Reads a varint (7 bits per byte, least significant first, the last byte having its most significant
+         * bit cleared)
+         *
+         * @return the value read
+         */
+        private long varint() {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = buffer.get();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) return value;
+            }
+        }
+
+        /**
+         * Reads a signed varint (sint32 or sint64)
+         *
+         * @return the value read
+         */
+        private long signedVarint() {
+            long value = varint();
+            return (value >>> 1) ^ -(value & 1); // zigzag encoding
+        }
+
+        /**
+         * Reads a length-delimited value (bytes, string, message or packed repeated field)
+         *
+         * @return buffer of the value, sharing the content of the message
+         */
+        private ByteBuffer bytes() {
+            int length = (int) varint();
+            ByteBuffer bytes = buffer.slice(buffer.position(), length);
+            buffer.position(buffer.position() + length);
+            return bytes;
+        }
+
+        /**
+         * Reads a string
+         *
+         * @return the string read
+         */
+        private String string() {
+            return StandardCharsets.UTF_8.decode(bytes()).toString();
+        }
+
+        /**
+         * Skips the value of the current field
+         */
+        private void skip() {
+            switch (tag & 0b111) {
+                case WIRE_VARINT -> varint();
+                case WIRE_64_BITS -> buffer.position(buffer.position() + Long.BYTES);
+                case WIRE_LENGTH_DELIMITED -> bytes();
+                case WIRE_32_BITS -> buffer.position(buffer.position() + Integer.BYTES);
+                default -> throw new IllegalArgumentException("unsupported wire type: " + (tag & 0b111));
+            }
+        }
+    }
+
+    /**
+     * Auxiliary (private) method checking that the features required by the file (listed in its header)
+     * are supported
+     *
+     * @param header the file header (HeaderBlock)
+     * @throws IOException if a feature is not supported
+     */
+    private static void checkFeatures(ByteBuffer header) throws IOException {
+        Message message = new Message(header);
+        while (message.next()) {
+            if (message.field() == 4) {
+                String feature = message.string();
+                if (!SUPPORTED_FEATURES.contains(feature)) throw new IOException("unsupported feature: " + feature);
+            } else {
+                message.skip();
+            }
+        }
+    }
+
+    /**
+     * Auxiliary (private) method returning the content of a blob, decompressed if needed
+     *
+     * @param blob the blob (Blob)
+     * @return its content
+     * @throws IOException if the blob is compressed otherwise than with zlib, or if its content is corrupted
+     */
+    private static ByteBuffer uncompress(byte[] blob) throws IOException {
+        Message message = new Message(ByteBuffer.wrap(blob));
+        int rawSize = -1;
+        ByteBuffer zlibData = null;
+        while (message.next()) {
+            switch (message.field()) {
+                case 1 -> {
+                    return message.bytes();
+                }
+                case 2 -> rawSize = (int) message.varint();
+                case 3 -> zlibData = message.bytes();
+                case 4, 5, 6, 7 -> throw new IOException("unsupported compression of blob");
+                default -> message.skip();
+            }
+        }
+        if (zlibData == null || rawSize < 0 || rawSize > MAX_BLOB_SIZE) throw new IOException("invalid blob");
+
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(zlibData);
+            byte[] content = new byte[rawSize];
+            int size = 0;
+            while (size < rawSize && !inflater.finished()) {
+                int inflated = inflater.inflate(content, size, rawSize - size);
+                if (inflated == 0 && inflater.needsInput()) break;
+                size += inflated;
+            }
+            if (size != rawSize) throw new IOException("blob shorter than announced");
+            return ByteBuffer.wrap(content);
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Auxiliary (private) method returning the content of a blob, as uncompress, for the executor
+     *
+     * @param blob the blob (Blob)
+     * @return its content
+     * @throws UncheckedIOException if the blob is compressed otherwise than with zlib,
+     *                              or if its content is corrupted
+     */
+    private static ByteBuffer uncompressUnchecked(byte[] blob) {
+        try {
+            return uncompress(blob);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Waits for the result of a task, rethrowing its exception if it failed
+     * (package-private, shared with OsmGraphImporter)
+     *
+     * @param future the result of the task
+     * @param <R>    type of the result
+     * @return the result
+     * @throws IOException if the task failed with an (unchecked) IOException, or if the thread was interrupted
+     */
+    static <R> R result(Future<R> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException cause) throw cause.getCause();
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            if (e.getCause() instanceof Error cause) throw cause;
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Auxiliary (private) method reading the size of the header of the next blob
+     *
+     * @param stream stream of the file
+     * @return size of the header, or -1 at the end of the file
+     * @throws IOException if the file could not be read, or ends within the size
+     */
+    private static int readHeaderSize(DataInputStream stream) throws IOException {
+        int firstByte = stream.read();
+        if (firstByte < 0) return -1;
+        return firstByte << 24 | stream.readUnsignedByte() << 16 | stream.readUnsignedShort();
+    }
+
+    /**
+     * Auxiliary (private) method reading the given number of bytes
+     *
+     * @param stream stream of the file
+     * @param size   number of bytes
+     * @return the bytes read
+     * @throws IOException if the file could not be read, or ends before
+     */
+    private static byte[] readFully(DataInputStream stream, int size) throws IOException {
+        byte[] bytes = stream.readNBytes(size);
+        if (bytes.length != size) throw new EOFException("truncated blob");
+        return bytes;
+    }
+}
@@ -0,0 +1,264 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.Preconditions;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongFunction;
+
+/**
+ * Cache of decoded edge profiles, bounded by the memory they use, safe to use from several threads
+ * (see Graph.withProfileCache).
+ * <p>
+ * Profiles are stored once per profile of the files, in the order of the OSM way: an edge and its reverse,
+ * which share the same profile, share the same entry, the samples being read backwards for inverted edges
+ * rather than flipped. As RouteCache, entries are spread over independent stripes, each evicting its least
+ * recently used profiles once it holds more than its share of the memory.
+ *
+ * @author Timofey Kreslo (310686)
+ * @author Wei-En Hsieh (341271)
+ */
+public final class ProfileCache {
+    private final static int MAX_STRIPE_COUNT = 16;
+    // estimated memory of an entry besides its samples: map entry, boxed key and header of the array, in bytes
+    private final static int ENTRY_OVERHEAD = 64;
+
+    private final Stripe[] stripes;
+    private final int stripeShift;
+    private final long maxBytes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * ProfileCache constructor
+     *
+     * @param maxBytes greatest (estimated) memory used by the profiles of the cache, in bytes
+     * @throws IllegalArgumentException if the memory is not strictly positive
+     */
+    public ProfileCache(long maxBytes) {
+        Preconditions.checkArgument(maxBytes > 0);
+        int stripeCount = (int) Long.highestOneBit(Math.min(MAX_STRIPE_COUNT, maxBytes));
+        stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) stripes[i] = new Stripe(maxBytes / stripeCount);
+        stripeShift = 64 - Integer.numberOfTrailingZeros(stripeCount);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the estimated memory used by the given samples in the cache
+     *
+     * @param samples samples of a profile
+     * @return memory used by the entry of the samples, in bytes
+     */
+    static long weight(float[] samples) {
+        return ENTRY_OVERHEAD + (long) Float.BYTES * samples.length;
+    }
+
+    /**
+     * Returns the samples of the profile of the given key, decoding them with the given function and putting them
+     * into the cache if they are not already in it. As in RouteCache, they are decoded outside of any lock.
+     * Samples using more memory than a stripe may hold are returned without being cached.
+     *
+     * @param key    key of the profile, identifying its samples in the files
+     * @param decode function decoding the samples of the profile of a key, in the order of the OSM way
+     * @return the samples of the profile, in the order of the OSM way (not to be modified)
+     */
+    public float[] samples(long key, LongFunction<float[]> decode) {
+        Stripe stripe = stripes.length == 1 ? stripes[0] : stripes[(int) ((key * 0x9E37_79B9_7F4A_7C15L) >>> stripeShift)];
+        float[] samples;
+        synchronized (stripe) {
+            samples = stripe.get(key);
+        }
+        if (samples != null) {
+            hits.increment();
+            return samples;
+        }
+
+        misses.increment();
+        samples = decode.apply(key);
+        synchronized (stripe) {
+            stripe.putBounded(key, samples);
+        }
+        return samples;
+    }
+
+    /**
+     * Returns the elevation at the given position along an edge, from the samples of its profile,
+     * exactly as the function built from the samples in the direction of the edge (see Functions.sampled)
+     *
+     * @param samples  samples of the profile, in the order of the OSM way
+     * @param length   length of the edge, in meters
+     * @param inverted whether the edge goes in the opposite direction of the OSM way
+     * @param position position along the edge, in meters
+     * @return the elevation at the position
+     */
+    static double elevationAt(float[] samples, double length, boolean inverted, double position) {
+        int last = samples.length - 1;
+        if (position <= 0 || last == 0) {
+            return samples[inverted ? last : 0];
+        } else if (position >= length) {
+            return samples[inverted ? 0 : last];
+        }
+        double interval = length / last;
+        int i = Math.min((int) (position / interval), last - 1);
+        return inverted
+                ? Math2.interpolate(samples[last - i], samples[last - i - 1], (position - interval * i) / interval)
+                : Math2.interpolate(samples[i], samples[i + 1], (position - interval * i) / interval);
+    }
+
+    /**
+     * Removes all profiles from the cache (counters are kept)
+     */
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of profiles in the cache
+     *
+     * @return number of profiles in the cache
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the estimated memory used by the profiles of the cache
+     *
+     * @return memory used, in bytes (at most the one given to the constructor)
+     */
+    public long bytes() {
+        long bytes = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                bytes += stripe.bytes;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the greatest memory the profiles of the cache may use
+     *
+     * @return memory given to the constructor, in bytes
+     */
+    public long maxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Returns the number of requests which found their profile in the cache
+     *
+     * @return number of hits
+     */
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of requests which had to decode their profile
+     *
+     * @return number of misses
+     */
+    public long missCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of profiles evicted from the cache to make room for other ones
+     *
+     * @return number of evictions
+     */
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns the proportion of requests which found their profile in the cache
+     *
+     * @return hit ratio, between 0 and 1 (0 if there was no request)
+     */
+    public double hitRatio() {
+        long hitCount = hitCount();
+        long requestCount = hitCount + missCount();
+        return requestCount == 0 ? 0 : (double) hitCount / requestCount;
+    }
+
+    /**
+     * Stripe of the cache: map in access order, bounded by the memory of its samples, only used while holding its lock
+     */
+    private final class Stripe {
+        private final LinkedHashMap<Long, float[]> profiles = new LinkedHashMap<>(16, 0.75f, true);
+        private final long maxBytes;
+        private long bytes;
+
+        /**
+         * Default Stripe constructor
+         *
+         * @param maxBytes greatest memory used by the samples of the stripe, in bytes
+         */
+        private Stripe(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        /**
+         * Returns the samples of the given key, if they are in the stripe (making them the most recently used)
+         *
+         * @param key key of the profile
+         * @return the samples of the profile, or null if they are not in the stripe
+         */
+        private float[] get(long key) {
+            return profiles.get(key);
+        }
+
+        /**
+         * Puts the given samples into the stripe (unless they are already in it, or too large),
+         * then evicts the least recently used ones until the stripe uses no more than its memory
+         *
+         * @param key     key of the profile
+         * @param samples samples of the profile
+         */
+        private void putBounded(long key, float[] samples) {
+            long weight = weight(samples);
+            if (weight > maxBytes || profiles.putIfAbsent(key, samples) != null) return;
+            bytes += weight;
+
+            Iterator<float[]> eldest = profiles.values().iterator();
+            while (bytes > maxBytes) {
+                bytes -= weight(eldest.next());
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+
+        /**
+         * Removes all profiles from the stripe
+         */
+        private void clear() {
+            profiles.clear();
+            bytes = 0;
+        }
+
+        /**
+         * Returns the number of profiles in the stripe
+         *
+         * @return number of profiles in the stripe
+         */
+        private int size() {
+            return profiles.size();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package ch.epfl.javelo.data;
+
+/**
+ * Enumeration of the ways Graph can keep the data of its files in memory
+ *
+ * @author Timofey Kreslo (310686)
+ * @author Wei-En Hsieh (341271)
+ */
+public enum StorageMode {
+    /**
+     * Files mapped into memory and decoded on every access: loading is immediate and the data lives outside
+     * of the Java heap, shared with the page cache
+     */
+    MAPPED,
+
+    /**
+     * Files of the nodes and edges mapped into memory in chunks (see MappedFile), read at long offsets:
+     * as MAPPED, but for files of any size rather than at most 2 GB, unmapped as soon as the graph is closed
+     */
+    CHUNKED,
+
+    /**
+     * Nodes, edges and adjacency decoded once, when loading, into arrays of the Java heap (one per field):
+     * routing is faster, at the cost of loading time and of heap memory
+     */
+    IN_HEAP,
+
+    /**
+     * Nodes and edges read from the smaller files of the compact format (see CompactGraphFormat), mapped
+     * into memory and decoded a block at a time: less memory and disk, at the cost of slower routing
+     */
+    COMPACT
+}
@@ -12,6 +12,7 @@ import javafx.geometry.Point2D;
 import javafx.scene.layout.Pane;
 import javafx.scene.layout.StackPane;
 import java.util.function.Consumer;
+import java.util.function.IntPredicate;
 
 /**
  * Annotated Map Manager manages the “annotated” map display,
@@ -27,6 +28,7 @@ public final class AnnotatedMapManager {
     private final TileManager tileManager;
     private final RouteBean routeBean;
     private final Consumer<String> errorConsumer;
+    private final IntPredicate preferredNodes;
     private final ObjectProperty<MapViewParameters> mapViewParametersProperty;
     private final DoubleProperty mousePositionOnRouteProperty = new SimpleDoubleProperty();
     private final ObjectProperty<Point2D> currentMousePositionProperty = new SimpleObjectProperty<>();
@@ -46,10 +48,25 @@ public final class AnnotatedMapManager {
      */
     public AnnotatedMapManager(Graph graph, TileManager tileManager,
                                RouteBean routeBean, Consumer<String> errorConsumer) {
+        this(graph, tileManager, routeBean, errorConsumer, nodeId -> true);
+    }
+
+    /**
+     * AnnotatedMapManager constructor, snapping waypoints to preferred nodes whenever possible
+     *
+     * @param graph          Route network graph
+     * @param tileManager    Tile manager that gets the tiles of the map
+     * @param routeBean      Route's Bean (JavaFX)
+     * @param errorConsumer  Object for reporting errors
+     * @param preferredNodes Predicate of the nodes to which waypoints are preferably snapped
+     */
+    public AnnotatedMapManager(Graph graph, TileManager tileManager,
+                               RouteBean routeBean, Consumer<String> errorConsumer, IntPredicate preferredNodes) {
         this.graph = graph;
         this.tileManager = tileManager;
         this.routeBean = routeBean;
         this.errorConsumer = errorConsumer;
+        this.preferredNodes = preferredNodes;
 
         mapViewParametersProperty = new SimpleObjectProperty<>(INITIAL_MAP_VIEW_PARAMETERS);
 
@@ -93,7 +110,8 @@ public final class AnnotatedMapManager {
     private Pane buildStackPane() {
 
         WaypointsManager waypointsManager =
-                new WaypointsManager(graph, mapViewParametersProperty, routeBean.getWaypoints(), errorConsumer);
+                new WaypointsManager(graph, mapViewParametersProperty, routeBean.getWaypoints(), errorConsumer,
+                        preferredNodes);
 
         BaseMapManager baseMapManager = new BaseMapManager(tileManager, waypointsManager, mapViewParametersProperty);
 
@@ -1,5 +1,6 @@
 package ch.epfl.javelo.gui;
 import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.data.ProfileCache;
 import ch.epfl.javelo.routing.*;
 import javafx.application.Application;
 import javafx.beans.binding.Bindings;
@@ -18,6 +19,7 @@ import javafx.stage.Stage;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.function.Consumer;
 
 /**
@@ -31,6 +33,8 @@ public final class JaVelo extends Application {
     private final static int MIN_SCENE_WIDTH = 800;
     private final static int MIN_SCENE_HEIGHT = 600;
     private final static int ELEVATION_PANE_INDEX = 1;
+    private final static long PROFILE_CACHE_BYTES = 32L << 20; // 32 MB of decoded profiles
+    private final static Duration COST_TABLE_BUDGET = Duration.ofMillis(500); // longest delay of the launch
 
     /**
      * Default JaVelo constructor
@@ -54,11 +58,25 @@ public final class JaVelo extends Application {
     @Override
     public void start(Stage primaryStage) throws Exception {
 
-        Graph graph = Graph.loadFrom(Path.of("javelo-data"));
+        Path graphBasePath = Path.of("javelo-data");
+        // the profiles of the displayed route are read again whenever it changes, decode them only once
+        Graph graph = Graph.loadFrom(graphBasePath).withProfileCache(new ProfileCache(PROFILE_CACHE_BYTES));
         Path cacheBasePath = Path.of("osm-cache");
         String tileServerHost = "tile.openstreetmap.org";
-        CostFunction costFunction = new CityBikeCF(graph);
-        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+        // factors are precomputed once for all edges, instead of on every relaxation of every search,
+        // unless the graph is too large for this to be done in time
+        CostFunction costFunction = EdgeCostTable.of(graph, new CityBikeCF(graph), COST_TABLE_BUDGET);
+        // landmarks (built by Landmarks.main) guide the searches much better than straight-line distances
+        Heuristic heuristic = Landmarks.existIn(graphBasePath)
+                ? Landmarks.loadFrom(graphBasePath)
+                : new CrowFlyHeuristic(graph);
+        // components (stored by StronglyConnectedComponents.main, computed otherwise) tell instantly that a route
+        // does not exist, and keep waypoints away from isolated nodes
+        StronglyConnectedComponents components = StronglyConnectedComponents.existIn(graphBasePath)
+                ? StronglyConnectedComponents.loadFrom(graphBasePath)
+                : StronglyConnectedComponents.of(graph, costFunction);
+        RouteComputer routeComputer =
+                new RouteComputer(graph, costFunction, SearchMode.UNIDIRECTIONAL, heuristic, components);
 
         TileManager tileManager = new TileManager(cacheBasePath, tileServerHost);
         RouteBean routeBean = new RouteBean(routeComputer);
@@ -74,7 +92,7 @@ public final class JaVelo extends Application {
         Consumer<String> errorConsumer = errorManager::displayError;
 
         AnnotatedMapManager annotatedMapManager =
-                new AnnotatedMapManager(graph, tileManager, routeBean, errorConsumer);
+                new AnnotatedMapManager(graph, tileManager, routeBean, errorConsumer, components::isInLargest);
 
         SplitPane splitPane = new SplitPane(annotatedMapManager.pane());
         StackPane stackPane = new StackPane(splitPane, errorManager.pane());
@@ -100,6 +118,11 @@ public final class JaVelo extends Application {
 
         });
 
+        // a route that could not be computed in time may well exist, unlike one that is unreachable
+        routeBean.routeStatusProperty().addListener((p,o,n) -> {
+            if (n == QueryStatus.TIMED_OUT) errorConsumer.accept("Calcul de l'itinéraire trop long !");
+        });
+
 
         /*************************************************************************************************************
          *                                           PRIMARY STAGE                                                   *
@@ -1,16 +1,15 @@
 package ch.epfl.javelo.gui;
 
 import ch.epfl.javelo.routing.*;
+import javafx.application.Platform;
 import javafx.beans.Observable;
 import javafx.beans.property.*;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
-import javafx.util.Pair;
 
-import java.util.ArrayList;
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Map;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * Route Bean assembling properties relating to waypoints and the corresponding route
@@ -21,76 +20,191 @@ import java.util.Map;
 public final class RouteBean {
     private final static int MAX_ENTRIES = 100;
     private final static int MAX_STEP_LENGTH = 5;
+    // shared by all beans, RouteComputer being safe to use from several threads
+    private final static ExecutorService LEG_EXECUTOR = newLegExecutor();
+    // longest time a segment may take, the route not existing otherwise
+    private final static Duration LEG_TIMEOUT = Duration.ofSeconds(10);
     private final RouteComputer routeComputer;
+    private final RouteCache legCache;
+    private final int costFunctionId;
+    private CancellationToken legsToken = new CancellationToken(); // token of the route computed last
     private final List<Route> segments = new ArrayList<>();
-    private final Map<String, Route> cacheRoute = new LinkedHashMap<>(MAX_ENTRIES);
+    private List<Waypoint> routeWaypoints = List.of();             // waypoints of the route of the property
     private final ObjectProperty<Route> routeProperty = new SimpleObjectProperty<>();
+    private final ObjectProperty<QueryStatus> routeStatusProperty = new SimpleObjectProperty<>();
     private final ObservableList<Waypoint> waypoints = FXCollections.observableArrayList();
     private final DoubleProperty highlightedPositionProperty = new SimpleDoubleProperty();
     private final ObjectProperty<ElevationProfile> elevationProfileProperty = new SimpleObjectProperty<>();
 
     /**
-     * Default RouteBean constructor
+     * Default RouteBean constructor, caching the segments in a cache of its own
      *
      * @param routeComputer used to determine the best route between two waypoints.
      */
     public RouteBean(RouteComputer routeComputer) {
+        this(routeComputer, new RouteCache(MAX_ENTRIES), 0);
+    }
+
+    /**
+     * RouteBean constructor, caching the segments in the given (possibly shared) cache
+     *
+     * @param routeComputer  used to determine the best route between two waypoints.
+     * @param legCache       cache of the segments between waypoints
+     * @param costFunctionId identity of the cost function of the route computer in the cache
+     *                       (distinct for every route computer sharing the cache)
+     */
+    public RouteBean(RouteComputer routeComputer, RouteCache legCache, int costFunctionId) {
         this.routeComputer = routeComputer;
+        this.legCache = legCache;
+        this.costFunctionId = costFunctionId;
         waypoints.addListener((Observable o) -> computeRoute());
     }
 
     /**
-     * Auxiliary (private) method computing a new (best) route passing through all waypoints
+     * Auxiliary (private) method computing a new (best) route passing through all waypoints.
+     * Segments which are not in the cache are computed concurrently on the executor of the segments, off the
+     * JavaFX thread, and the route is published on the JavaFX thread once all of them are known, unless
+     * the waypoints changed meanwhile: the previous route stays displayed until then. The route does not exist
+     * if a segment does not, or if its computation failed, its status telling why.
      */
     private void computeRoute() {
-        segments.clear();
+        legsToken.cancel();                                //segments of the previous route are no longer needed
+        CancellationToken token = legsToken = new CancellationToken();
+        List<Waypoint> currentWaypoints = List.copyOf(waypoints);
 
-        if (waypoints.size() > 1) {
-
-            boolean segmentIsNull = false;
-            for (int i = 1; i < waypoints.size(); i++) {
+        if (currentWaypoints.size() < 2) {                 //if there are less than 2 waypoints on the map
+            setRoute(currentWaypoints, null, null);        // -> no route can exist (nor be queried)
+            return;
+        }
 
-                Pair<Integer, Integer> pairNode = new Pair<>(waypoints.get(i - 1).nearestNodeId(),
-                                                             waypoints.get(i).nearestNodeId());
+        for (int i = 0; i < currentWaypoints.size() - 1; i++) {
+            if (currentWaypoints.get(i).nearestNodeId() == currentWaypoints.get(i + 1).nearestNodeId()) {
+                setRoute(currentWaypoints, null, QueryStatus.UNREACHABLE); //The segment between two equal nodes
+                                                                           //does not exist
+                return;                                    //-> the route must not exist, nothing is computed
+            }
+        }
 
-                if (cacheRoute.containsKey(pairNode.toString())) {       //if the segment has already been computed
-                    Route segment = cacheRoute.get(pairNode.toString()); //get it from the cache
-                    segments.add(segment);
-                }
-                else {                                             //otherwise compute segment if it exists
-                                                                   //                     between two nodes
-                    Route segment = null;                          //The segment between two nodes does not exists
-                    if (!pairNode.getKey().equals(pairNode.getValue())) {          // if these two nodes are equal
-                        segment = routeComputer.bestRouteBetween(pairNode.getKey(), pairNode.getValue());
-                    }
-
-                    if (segment == null) {                         //if at least one segment composing the route
-                        segmentIsNull = true;                      //does not exist  -> the route must not exist
-                        break;                                     //                -> break the loop
-                    }
-
-                    else {
-                        segments.add(segment);                        //otherwise continue building the route
-                        cacheRoute.put(pairNode.toString(), segment); //and save the computed segment into the cache
-                    }
-                }
+        Route[] legs = new Route[currentWaypoints.size() - 1];
+        long[] keys = new long[legs.length];
+        Map<Long, CompletableFuture<RouteQueryResult>> pending = new LinkedHashMap<>();
+        for (int i = 0; i < legs.length; i++) {
+            int fromNodeId = currentWaypoints.get(i).nearestNodeId();
+            int toNodeId = currentWaypoints.get(i + 1).nearestNodeId();
+            keys[i] = RouteCache.key(fromNodeId, toNodeId, costFunctionId);
+            legs[i] = legCache.get(keys[i]);             //if the segment has already been computed, get it
+            if (legs[i] == null) {                         //from the cache, otherwise it must be computed
+                pending.computeIfAbsent(keys[i], key -> CompletableFuture.supplyAsync(
+                        () -> computeLeg(fromNodeId, toNodeId, token), LEG_EXECUTOR));
             }
+        }
+
+        if (pending.isEmpty()) {                           //all segments are cached -> the route is known at once
+            setRoute(currentWaypoints, legs, QueryStatus.FOUND);
+            return;
+        }
+        CompletableFuture.allOf(pending.values().toArray(new CompletableFuture<?>[0]))
+                .whenComplete((ignored, e) -> Platform.runLater(() -> {
+                    if (token != legsToken) return;        //the waypoints changed meanwhile -> route outdated
+                    if (e != null) setRoute(currentWaypoints, null, null);
+                    else completeRoute(currentWaypoints, legs, keys, pending);
+                }));
+    }
 
-            if (segments.isEmpty() || segmentIsNull) {            //if the route does not exist,
-                elevationProfileProperty.set(null);               //or an empty segment has been found
-                routeProperty.set(null);                          // -> appropriate properties contain null object
+    /**
+     * Auxiliary (private) method completing the given segments with the computed ones, once all of them
+     * are computed, saving the computed ones into the cache and setting the route they compose. A route
+     * that does not exist because a segment could not be computed in time is told apart from one that
+     * does not exist at all.
+     *
+     * @param routeWaypoints waypoints of the route
+     * @param legs           segments between consecutive waypoints, null if not in the cache
+     * @param keys           keys of the segments in the cache
+     * @param pending        computed segments, by key, all of them completed normally
+     */
+    private void completeRoute(List<Waypoint> routeWaypoints, Route[] legs, long[] keys,
+                               Map<Long, CompletableFuture<RouteQueryResult>> pending) {
+        QueryStatus status = QueryStatus.FOUND;
+        for (Map.Entry<Long, CompletableFuture<RouteQueryResult>> entry : pending.entrySet()) {
+            RouteQueryResult result = entry.getValue().join();
+            switch (result.status()) {                     //a segment timing out prevails over a missing one,
+                case FOUND -> legCache.put(entry.getKey(), result.route()); //the segments cancelled in turn
+                case TIMED_OUT -> status = QueryStatus.TIMED_OUT;           //telling nothing
+                case UNREACHABLE -> {
+                    if (status != QueryStatus.TIMED_OUT) status = QueryStatus.UNREACHABLE;
+                }
+                case CANCELLED -> {}
             }
-            else {
-                MultiRoute multiRoute = new MultiRoute(segments); //otherwise build the route
-                                                                  //composed of existing segments
-                elevationProfileProperty.set(ElevationProfileComputer.elevationProfile(multiRoute, MAX_STEP_LENGTH));
-                routeProperty.set(multiRoute);
+        }
+        if (status == QueryStatus.FOUND) {
+            for (int i = 0; i < legs.length; i++) {
+                if (legs[i] == null) legs[i] = pending.get(keys[i]).join().route();
             }
+            setRoute(routeWaypoints, legs, status);
+        }
+        else setRoute(routeWaypoints, null, status);
+    }
+
+    /**
+     * Auxiliary (private) method setting the route passing through the given waypoints, its elevation profile
+     * and its status
+     *
+     * @param routeWaypoints waypoints of the route
+     * @param legs           segments between consecutive waypoints, or null if the route does not exist
+     * @param status         status of the route, or null if it could not be queried
+     */
+    private void setRoute(List<Waypoint> routeWaypoints, Route[] legs, QueryStatus status) {
+        this.routeWaypoints = routeWaypoints;
+        routeStatusProperty.set(status);
+        segments.clear();
+        if (legs == null) {                                       //if the route does not exist
+            elevationProfileProperty.set(null);                   // -> appropriate properties contain null object
+            routeProperty.set(null);
         }
-        else {                                                    //if there are less than 2 waypoints on the map
-            routeProperty.set(null);                              // -> no route can exist
-            elevationProfileProperty.set(null);                   // -> no elevation profile can exist
+        else {
+            segments.addAll(Arrays.asList(legs));
+            MultiRoute multiRoute = new MultiRoute(segments); //otherwise build the route
+                                                              //composed of existing segments
+            elevationProfileProperty.set(ElevationProfileComputer.elevationProfile(multiRoute, MAX_STEP_LENGTH));
+            routeProperty.set(multiRoute);
+        }
+    }
+
+    /**
+     * Auxiliary (private) method computing the segment between the two given nodes, within the timeout of
+     * the segments. As a single missing (or failing) segment makes the whole route not exist,
+     * the computation of the other segments is then cancelled through the given token, as it is
+     * once the waypoints change.
+     *
+     * @param fromNodeId starting node of the segment
+     * @param toNodeId   ending node of the segment
+     * @param token      token of the segments of the route
+     * @return the outcome of the query of the segment
+     */
+    private RouteQueryResult computeLeg(int fromNodeId, int toNodeId, CancellationToken token) {
+        RouteQueryResult result;
+        try {
+            result = routeComputer.bestRouteBetween(fromNodeId, toNodeId, LEG_TIMEOUT, token);
+        } catch (RuntimeException | Error e) {
+            token.cancel();
+            throw e;
         }
+        if (result.status() != QueryStatus.FOUND) token.cancel();
+        return result;
+    }
+
+    /**
+     * Auxiliary (private) method building the executor of the segments: a bounded number of daemon threads
+     * (one per processor), which do not prevent the application from exiting
+     *
+     * @return the executor of the segments
+     */
+    private static ExecutorService newLegExecutor() {
+        return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "javelo-route-leg");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
 
@@ -139,6 +253,17 @@ public final class RouteBean {
         return routeProperty;
     }
 
+    /**
+     * Public getter of the route status' property, telling why the route does not exist: FOUND when it
+     * exists, TIMED_OUT when a segment could not be computed in time, UNREACHABLE when a segment does not exist,
+     * and null when there are not enough waypoints or the computation failed
+     *
+     * @return route status' property itself in read only mode
+     */
+    public ReadOnlyObjectProperty<QueryStatus> routeStatusProperty() {
+        return routeStatusProperty;
+    }
+
     /**
      * Public getter of the elevation profile's property
      *
@@ -151,7 +276,8 @@ public final class RouteBean {
 
     /**
      * Returns the index of the segment containing the given position along the route,
-     * ignoring empty segments
+     * ignoring empty segments (between the waypoints of the route, which may differ from the current ones
+     * while a new route is being computed)
      *
      * @param  position (double) position along the route
      * @return index of the segment on the route
@@ -159,8 +285,8 @@ public final class RouteBean {
     public int indexOfNonEmptySegmentAt(double position) {
         int index = routeProperty().get().indexOfSegmentAt(position);
         for (int i = 0; i <= index; i += 1) {
-            int n1 = waypoints.get(i).nearestNodeId();
-            int n2 = waypoints.get(i + 1).nearestNodeId();
+            int n1 = routeWaypoints.get(i).nearestNodeId();
+            int n2 = routeWaypoints.get(i + 1).nearestNodeId();
             if (n1 == n2) index += 1;
         }
         return index;
@@ -14,6 +14,7 @@ import javafx.scene.shape.SVGPath;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Consumer;
+import java.util.function.IntPredicate;
 
 /**
  * WaypointsManager manages display and interaction with waypoints
@@ -28,6 +29,7 @@ public final class WaypointsManager {
     private final ObjectProperty<MapViewParameters> mapViewParametersProperty;
     private final ObjectProperty<Point2D> point2DProperty = new SimpleObjectProperty<>();
     private final Consumer<String> errorConsumer;
+    private final IntPredicate preferredNodes;
     private final List<Node> markersList = new ArrayList<>();
     private final static int SEARCH_DISTANCE = 1000/2;
 
@@ -42,11 +44,28 @@ public final class WaypointsManager {
      */
     public WaypointsManager(Graph graph, ObjectProperty<MapViewParameters> mapViewParametersProperty,
                             ObservableList<Waypoint> waypoints, Consumer<String> errorConsumer) {
+        this(graph, mapViewParametersProperty, waypoints, errorConsumer, nodeId -> true);
+    }
+
+    /**
+     * WaypointsManager constructor, snapping waypoints to preferred nodes whenever possible
+     * (e.g. the nodes of the largest strongly connected component, from which most routes exist)
+     *
+     * @param graph                     Route network graph
+     * @param mapViewParametersProperty JavaFX property containing the parameters of the map displayed
+     * @param waypoints                 Observable list of all waypoints
+     * @param errorConsumer             Object for reporting errors
+     * @param preferredNodes            Predicate of the nodes to which waypoints are preferably snapped
+     */
+    public WaypointsManager(Graph graph, ObjectProperty<MapViewParameters> mapViewParametersProperty,
+                            ObservableList<Waypoint> waypoints, Consumer<String> errorConsumer,
+                            IntPredicate preferredNodes) {
 
         this.graph = graph;
         this.waypoints = waypoints;
         this.mapViewParametersProperty = mapViewParametersProperty;
         this.errorConsumer = errorConsumer;
+        this.preferredNodes = preferredNodes;
 
         pane = new Pane();
         pane.setPickOnBounds(false);
@@ -111,7 +130,7 @@ public final class WaypointsManager {
                             .toPointCh();
 
                     if (newPointCh != null) {
-                        int newNodeId = graph.nodeClosestTo(newPointCh, SEARCH_DISTANCE);
+                        int newNodeId = nodeClosestTo(newPointCh);
                         if (newNodeId != -1) waypoints.set(indexI, new Waypoint(newPointCh, newNodeId));
                         else {
                             drawWaypoints();
@@ -169,7 +188,7 @@ public final class WaypointsManager {
         PointCh pointCh = p.toPointCh();
 
         if (pointCh != null) {
-            int nearestNodeId = graph.nodeClosestTo(pointCh, SEARCH_DISTANCE);
+            int nearestNodeId = nodeClosestTo(pointCh);
 
             if (nearestNodeId == -1) { // if there's no nearestNodes
                 errorConsumer.accept("Aucune route à proximité !");
@@ -180,6 +199,19 @@ public final class WaypointsManager {
     }
 
 
+    /**
+     * Auxiliary (private) method returning the node to which a waypoint at the given point is snapped:
+     * the closest preferred node if there is one within the search distance, the closest node otherwise
+     *
+     * @param pointCh point of the waypoint
+     * @return identity of the node, or -1 if there is no node within the search distance
+     */
+    private int nodeClosestTo(PointCh pointCh) {
+        int preferredNodeId = graph.nodeClosestTo(pointCh, SEARCH_DISTANCE, preferredNodes);
+        return preferredNodeId != -1 ? preferredNodeId : graph.nodeClosestTo(pointCh, SEARCH_DISTANCE);
+    }
+
+
     /**
      * Auxiliary (private) method setting up listeners
      */
@@ -0,0 +1,33 @@
+package ch.epfl.javelo.routing;
+
+/**
+ * Token through which a route query can be cancelled, from any thread, while it is running:
+ * the query notices it the next time it checks its limits, and stops.
+ *
+ * @author Tim Kreslo (310686)
+ * @author Wei-En Hsieh (341271)
+ */
+public final class CancellationToken {
+    private volatile boolean cancelled;
+
+    /**
+     * Default CancellationToken constructor, the token being not cancelled
+     */
+    public CancellationToken() {}
+
+    /**
+     * Cancels the queries using this token (irreversibly)
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Checks whether the token has been cancelled
+     *
+     * @return true iff cancel has been called
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
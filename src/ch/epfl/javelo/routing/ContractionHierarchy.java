@@ -0,0 +1,416 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Contraction hierarchy of the JaVelo graph for a given cost function: a rank for every node, and shortcut arcs
+ * standing for paths through lower ranked nodes. It answers best route queries with two small Dijkstra searches
+ * going up the hierarchy, one from each end, and unpacks the shortcuts of the result into the edges of the graph.
+ * <p>
+ * Arcs are identified by an integer: identities below the edge count of the graph are its edges,
+ * the following ones are the shortcuts, in the order in which they are stored.
+ * A hierarchy is built offline by ContractionHierarchyBuilder, and is only valid for the graph and cost function
+ * it was built with: its files start with a header recording both, checked when they are loaded.
+ *
+ * @author Tim Kreslo (310686)
+ * @author Wei-En Hsieh (341271)
+ */
+public final class ContractionHierarchy {
+    /* Shortcut's attributes are distributed over 160 bits in total = 4 Integers + 1 Float */
+    private final static int SHORTCUT_BYTES = 4 * Integer.BYTES + Float.BYTES;
+    private final static String RANKS_FILE = "ch_ranks.bin";
+    private final static String SHORTCUTS_FILE = "ch_shortcuts.bin";
+
+    /* Header of the ranks file: magic, version, node count, edge count, shortcut count, cost fingerprint */
+    private final static int MAGIC = 0x4A56_4348; // "JVCH"
+    private final static int VERSION = 1;
+    private final static int HEADER_BYTES = 6 * Integer.BYTES;
+
+    private final Graph graph;
+    private final int[] ranks;
+    private final int[] shortcutFrom, shortcutTo, shortcutFirstArc, shortcutSecondArc;
+    private final float[] shortcutCost;
+    private final int costFingerprint;
+
+    // Arcs going up the hierarchy, by tail node (forward search) and by head node (backward search)
+    private final int[] firstUpArc, upArcs, upArcHeads;
+    private final float[] upArcCosts;
+    private final int[] firstDownArc, downArcs, downArcTails;
+    private final float[] downArcCosts;
+
+    private final ThreadLocal<SearchWorkspace> forwardWorkspaces;
+    private final ThreadLocal<SearchWorkspace> backwardWorkspaces;
+
+    /**
+     * ContractionHierarchy constructor, building the arcs used by queries from the given ranks and shortcuts
+     * (package private, hierarchies are obtained from ContractionHierarchyBuilder or loadFrom)
+     *
+     * @param graph             the whole JaVelo graph
+     * @param costFunction      cost function the hierarchy was built with
+     * @param ranks             rank of every node in the hierarchy
+     * @param shortcutFrom      node from which each shortcut leaves
+     * @param shortcutTo        node which each shortcut enters
+     * @param shortcutFirstArc  first arc of the path replaced by each shortcut
+     * @param shortcutSecondArc second arc of the path replaced by each shortcut
+     * @param shortcutCost      cost of each shortcut
+     */
+    ContractionHierarchy(Graph graph, CostFunction costFunction, int[] ranks,
+                         int[] shortcutFrom, int[] shortcutTo, int[] shortcutFirstArc, int[] shortcutSecondArc,
+                         float[] shortcutCost) {
+        Preconditions.checkArgument(ranks.length == graph.nodeCount());
+        this.graph = graph;
+        this.ranks = ranks;
+        this.shortcutFrom = shortcutFrom;
+        this.shortcutTo = shortcutTo;
+        this.shortcutFirstArc = shortcutFirstArc;
+        this.shortcutSecondArc = shortcutSecondArc;
+        this.shortcutCost = shortcutCost;
+
+        int nodeCount = graph.nodeCount();
+        int arcCount = graph.edgeCount() + shortcutFrom.length;
+        float[] arcCosts = new float[arcCount];
+        for (int arc = 0; arc < arcCount; arc++) arcCosts[arc] = arcCost(costFunction, arc);
+        costFingerprint = costFingerprint(arcCosts, graph.edgeCount());
+
+        firstUpArc = new int[nodeCount + 1];
+        firstDownArc = new int[nodeCount + 1];
+        for (int arc = 0; arc < arcCount; arc++) {
+            if (arcCosts[arc] == Float.POSITIVE_INFINITY) continue;
+            int from = arcFrom(arc), to = arcTo(arc);
+            if (ranks[to] > ranks[from]) firstUpArc[from + 1]++;
+            else if (ranks[to] < ranks[from]) firstDownArc[to + 1]++;
+        }
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+            firstUpArc[nodeId + 1] += firstUpArc[nodeId];
+            firstDownArc[nodeId + 1] += firstDownArc[nodeId];
+        }
+
+        upArcs = new int[firstUpArc[nodeCount]];
+        upArcHeads = new int[upArcs.length];
+        upArcCosts = new float[upArcs.length];
+        downArcs = new int[firstDownArc[nodeCount]];
+        downArcTails = new int[downArcs.length];
+        downArcCosts = new float[downArcs.length];
+
+        int[] nextUp = firstUpArc.clone();
+        int[] nextDown = firstDownArc.clone();
+        for (int arc = 0; arc < arcCount; arc++) {
+            if (arcCosts[arc] == Float.POSITIVE_INFINITY) continue;
+            int from = arcFrom(arc), to = arcTo(arc);
+            if (ranks[to] > ranks[from]) {
+                int slot = nextUp[from]++;
+                upArcs[slot] = arc;
+                upArcHeads[slot] = to;
+                upArcCosts[slot] = arcCosts[arc];
+            } else if (ranks[to] < ranks[from]) {
+                int slot = nextDown[to]++;
+                downArcs[slot] = arc;
+                downArcTails[slot] = from;
+                downArcCosts[slot] = arcCosts[arc];
+            }
+        }
+
+        forwardWorkspaces = ThreadLocal.withInitial(() -> new SearchWorkspace(nodeCount));
+        backwardWorkspaces = ThreadLocal.withInitial(() -> new SearchWorkspace(nodeCount));
+    }
+
+    /**
+     * Returns the contraction hierarchy stored in the files ch_ranks.bin and ch_shortcuts.bin
+     * of the given directory (next to the files of the graph). The files are mapped into memory,
+     * and their content copied into the arrays of the hierarchy, which queries access far more often.
+     *
+     * @param basePath     path to the directory of the graph
+     * @param graph        the whole JaVelo graph, loaded from the same directory
+     * @param costFunction cost function the hierarchy was built with
+     * @return the contraction hierarchy
+     * @throws IOException if the expected files do not exist, are not hierarchy files of this version,
+     *                     or were built for another graph or another cost function
+     */
+    public static ContractionHierarchy loadFrom(Path basePath, Graph graph, CostFunction costFunction)
+            throws IOException {
+        ByteBuffer ranksFile = mapFile(basePath.resolve(RANKS_FILE));
+        ByteBuffer shortcutsBuffer = mapFile(basePath.resolve(SHORTCUTS_FILE));
+
+        if (ranksFile.capacity() < HEADER_BYTES || ranksFile.getInt() != MAGIC) {
+            throw new IOException(RANKS_FILE + " is not a contraction hierarchy file");
+        }
+        int version = ranksFile.getInt();
+        if (version != VERSION) throw new IOException(RANKS_FILE + " has unsupported version " + version);
+        int nodeCount = ranksFile.getInt(), edgeCount = ranksFile.getInt();
+        int shortcutCount = ranksFile.getInt(), fingerprint = ranksFile.getInt();
+        if (nodeCount != graph.nodeCount() || edgeCount != graph.edgeCount()) {
+            throw new IOException("the hierarchy was built for another graph");
+        }
+        if (ranksFile.remaining() != (long) nodeCount * Integer.BYTES
+                || shortcutsBuffer.capacity() != (long) shortcutCount * SHORTCUT_BYTES) {
+            throw new IOException("the files of the hierarchy are truncated");
+        }
+
+        IntBuffer ranksBuffer = ranksFile.slice().asIntBuffer();
+        int[] ranks = new int[nodeCount];
+        ranksBuffer.get(ranks);
+
+        int[] from = new int[shortcutCount], to = new int[shortcutCount];
+        int[] firstArc = new int[shortcutCount], secondArc = new int[shortcutCount];
+        float[] cost = new float[shortcutCount];
+        for (int i = 0; i < shortcutCount; i++) {
+            from[i] = shortcutsBuffer.getInt();
+            to[i] = shortcutsBuffer.getInt();
+            firstArc[i] = shortcutsBuffer.getInt();
+            secondArc[i] = shortcutsBuffer.getInt();
+            cost[i] = shortcutsBuffer.getFloat();
+        }
+        ContractionHierarchy hierarchy =
+                new ContractionHierarchy(graph, costFunction, ranks, from, to, firstArc, secondArc, cost);
+        if (hierarchy.costFingerprint != fingerprint) {
+            throw new IOException("the hierarchy was built with another cost function");
+        }
+        return hierarchy;
+    }
+
+    /**
+     * Writes the ranks and the shortcuts of the hierarchy to the files ch_ranks.bin and ch_shortcuts.bin
+     * of the given directory, the header of the graph and the cost function preceding the ranks
+     *
+     * @param basePath path to the directory of the graph
+     * @throws IOException if the files could not be written
+     */
+    public void writeTo(Path basePath) throws IOException {
+        try (DataOutputStream s = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(basePath.resolve(RANKS_FILE))))) {
+            s.writeInt(MAGIC);
+            s.writeInt(VERSION);
+            s.writeInt(graph.nodeCount());
+            s.writeInt(graph.edgeCount());
+            s.writeInt(shortcutFrom.length);
+            s.writeInt(costFingerprint);
+            for (int rank : ranks) s.writeInt(rank);
+        }
+        try (DataOutputStream s = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(basePath.resolve(SHORTCUTS_FILE))))) {
+            for (int i = 0; i < shortcutFrom.length; i++) {
+                s.writeInt(shortcutFrom[i]);
+                s.writeInt(shortcutTo[i]);
+                s.writeInt(shortcutFirstArc[i]);
+                s.writeInt(shortcutSecondArc[i]);
+                s.writeFloat(shortcutCost[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of shortcuts of the hierarchy
+     *
+     * @return number of shortcuts
+     */
+    public int shortcutCount() {
+        return shortcutFrom.length;
+    }
+
+    /**
+     * Returns the rank of the given node in the hierarchy (its position in the contraction order)
+     *
+     * @param nodeId node's identity
+     * @return rank of the node
+     */
+    public int rank(int nodeId) {
+        return ranks[nodeId];
+    }
+
+    /**
+     * Returns the minimum total cost route from startNodeId to endNodeId,
+     * or null if no route exists, exactly like RouteComputer does with the same cost function.
+     *
+     * @param startNodeId starting Node identity
+     * @param endNodeId   ending Node identity
+     * @return the ideal route between two given nodes, made of edges of the graph
+     * @throws IllegalArgumentException if startNodeId and endNodeId are identical (no route exists)
+     */
+    public Route bestRouteBetween(int startNodeId, int endNodeId) {
+        Preconditions.checkArgument(startNodeId != endNodeId);
+
+        // the "predecessor" of a node is the arc through which it was reached, in both searches
+        SearchWorkspace forward = forwardWorkspaces.get();
+        SearchWorkspace backward = backwardWorkspaces.get();
+        forward.reset();
+        backward.reset();
+        NodeHeap forwardVisiting = forward.heap();
+        NodeHeap backwardVisiting = backward.heap();
+
+        forward.reach(startNodeId, 0f, -1);
+        forwardVisiting.insertOrDecrease(startNodeId, 0f);
+        backward.reach(endNodeId, 0f, -1);
+        backwardVisiting.insertOrDecrease(endNodeId, 0f);
+
+        double bestCost = Double.POSITIVE_INFINITY;
+        int meetingNode = -1;
+
+        while (true) {
+            // a search may stop as soon as it can only find nodes farther than the best route found so far
+            boolean forwardGoesOn = forwardVisiting.minKey() < bestCost;
+            boolean backwardGoesOn = backwardVisiting.minKey() < bestCost;
+            if (!forwardGoesOn && !backwardGoesOn) break;
+
+            boolean forwardStep = forwardGoesOn
+                    && (!backwardGoesOn || forwardVisiting.minKey() <= backwardVisiting.minKey());
+            SearchWorkspace workspace = forwardStep ? forward : backward;
+            SearchWorkspace other = forwardStep ? backward : forward;
+            int[] firstArc = forwardStep ? firstUpArc : firstDownArc;
+            int[] arcs = forwardStep ? upArcs : downArcs;
+            int[] arcEnds = forwardStep ? upArcHeads : downArcTails;
+            float[] arcCosts = forwardStep ? upArcCosts : downArcCosts;
+
+            int currentNode = workspace.heap().removeMin();
+            float currentDistance = workspace.distance(currentNode);
+            workspace.settle(currentNode);
+
+            double routeCost = (double) currentDistance + other.distance(currentNode);
+            if (routeCost < bestCost) {
+                bestCost = routeCost;
+                meetingNode = currentNode;
+            }
+
+            for (int slot = firstArc[currentNode]; slot < firstArc[currentNode + 1]; slot++) {
+                int nTemp = arcEnds[slot];
+                if (workspace.isSettled(nTemp)) continue;
+                float totalDistance = currentDistance + arcCosts[slot];
+                if (totalDistance < workspace.distance(nTemp)) {
+                    workspace.reach(nTemp, totalDistance, arcs[slot]);
+                    workspace.heap().insertOrDecrease(nTemp, totalDistance);
+                }
+            }
+        }
+        if (meetingNode == -1) return null;
+
+        List<Integer> arcsOfTheRoute = new ArrayList<>();
+        for (int nodeId = meetingNode; nodeId != startNodeId; nodeId = arcFrom(forward.predecessor(nodeId))) {
+            arcsOfTheRoute.add(forward.predecessor(nodeId));
+        }
+        Collections.reverse(arcsOfTheRoute);
+        for (int nodeId = meetingNode; nodeId != endNodeId; nodeId = arcTo(backward.predecessor(nodeId))) {
+            arcsOfTheRoute.add(backward.predecessor(nodeId));
+        }
+
+        List<Edge> edgesOfTheRoute = new ArrayList<>();
+        for (int arc : arcsOfTheRoute) unpack(arc, edgesOfTheRoute);
+        return new SingleRoute(edgesOfTheRoute);
+    }
+
+    /**
+     * Auxiliary (private) method appending to the given list the edges of the graph that the given arc stands for
+     *
+     * @param arc             arc's identity
+     * @param edgesOfTheRoute list to which the edges are appended, in order
+     */
+    private void unpack(int arc, List<Edge> edgesOfTheRoute) {
+        int[] stack = new int[16];
+        int size = 0;
+        stack[size++] = arc;
+        while (size > 0) {
+            int current = stack[--size];
+            int shortcut = current - graph.edgeCount();
+            if (shortcut < 0) {
+                edgesOfTheRoute.add(Edge.of(graph, current, graph.edgeSourceNodeId(current),
+                        graph.edgeTargetNodeId(current)));
+            } else {
+                if (size + 2 > stack.length) stack = Arrays.copyOf(stack, 2 * stack.length);
+                stack[size++] = shortcutSecondArc[shortcut]; // pushed first, to be unpacked last
+                stack[size++] = shortcutFirstArc[shortcut];
+            }
+        }
+    }
+
+    /**
+     * Auxiliary (private) method returning the node from which the given arc leaves
+     *
+     * @param arc arc's identity
+     * @return tail node of the arc
+     */
+    private int arcFrom(int arc) {
+        int shortcut = arc - graph.edgeCount();
+        return shortcut < 0 ? graph.edgeSourceNodeId(arc) : shortcutFrom[shortcut];
+    }
+
+    /**
+     * Auxiliary (private) method returning the node which the given arc enters
+     *
+     * @param arc arc's identity
+     * @return head node of the arc
+     */
+    private int arcTo(int arc) {
+        int shortcut = arc - graph.edgeCount();
+        return shortcut < 0 ? graph.edgeTargetNodeId(arc) : shortcutTo[shortcut];
+    }
+
+    /**
+     * Auxiliary (private) method returning the cost of the given arc, infinite for the edges that cannot be used
+     * (self loops included, they are never part of a best route)
+     *
+     * @param costFunction cost function the hierarchy was built with
+     * @param arc          arc's identity
+     * @return cost of the arc
+     */
+    private float arcCost(CostFunction costFunction, int arc) {
+        int shortcut = arc - graph.edgeCount();
+        if (shortcut >= 0) return shortcutCost[shortcut];
+        return edgeCost(graph, costFunction, arc);
+    }
+
+    /**
+     * Returns the cost of the given edge, as used in hierarchies: infinite for self loops,
+     * its cost factor times its length otherwise
+     *
+     * @param graph        the whole JaVelo graph
+     * @param costFunction cost function of the hierarchy
+     * @param edgeId       edge's identity
+     * @return cost of the edge
+     */
+    static float edgeCost(Graph graph, CostFunction costFunction, int edgeId) {
+        int from = graph.edgeSourceNodeId(edgeId);
+        if (from == graph.edgeTargetNodeId(edgeId)) return Float.POSITIVE_INFINITY;
+        return (float) (costFunction.costFactor(from, edgeId) * graph.edgeLength(edgeId));
+    }
+
+    /**
+     * Auxiliary (private) method returning the fingerprint of the costs of the edges of the graph, which
+     * identifies the cost function of the hierarchy (and the content of the graph) in its files
+     *
+     * @param arcCosts  cost of every arc, the edges first
+     * @param edgeCount number of edges of the graph
+     * @return fingerprint of the costs of the edges
+     */
+    private static int costFingerprint(float[] arcCosts, int edgeCount) {
+        int fingerprint = 1;
+        for (int edgeId = 0; edgeId < edgeCount; edgeId++) {
+            fingerprint = 31 * fingerprint + Float.floatToIntBits(arcCosts[edgeId]);
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Auxiliary (private) method that maps the given file into memory
+     *
+     * @param path path to the file
+     * @return buffer containing the file
+     * @throws IOException if the file does not exist
+     */
+    private static ByteBuffer mapFile(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Offline builder of the contraction hierarchy of a graph, for a given cost function.
+ * Nodes are contracted one by one, least important first (fewest shortcuts added compared to arcs removed,
+ * and fewest already contracted neighbours), adding a shortcut between two neighbours of the contracted node
+ * whenever a bounded witness search finds no path between them that is at least as cheap without it.
+ * <p>
+ * Usage: ContractionHierarchyBuilder [graph directory], which writes ch_ranks.bin and ch_shortcuts.bin
+ * into the directory, for CityBikeCF.
+ *
+ * @author Tim Kreslo (310686)
+ * @author Wei-En Hsieh (341271)
+ */
+public final class ContractionHierarchyBuilder {
+    // Witness searches are cut short when simulating contractions, fewer found witnesses only overestimate priorities
+    private final static int SIMULATION_SETTLED_LIMIT = 50;
+    private final static int CONTRACTION_SETTLED_LIMIT = 500;
+    private final static int INITIAL_ARC_CAPACITY = 4;
+
+    private final Graph graph;
+    private final int edgeCount;
+
+    // Arcs of the remaining graph: edges of the graph first, then shortcuts
+    private int arcCount;
+    private int[] arcFrom, arcTo, arcFirstArc, arcSecondArc;
+    private float[] arcCost;
+
+    private final int[][] outArcs, inArcs;
+    private final int[] outSizes, inSizes;
+
+    private final boolean[] contracted;
+    private final int[] contractedNeighbours;
+    private final int[] ranks;
+    private final SearchWorkspace witness;
+
+    /**
+     * ContractionHierarchyBuilder constructor, preparing the remaining graph from the edges of finite cost
+     *
+     * @param graph        the whole JaVelo graph
+     * @param costFunction cost function of the hierarchy
+     */
+    private ContractionHierarchyBuilder(Graph graph, CostFunction costFunction) {
+        this.graph = graph;
+        int nodeCount = graph.nodeCount();
+        edgeCount = graph.edgeCount();
+
+        arcCount = edgeCount;
+        arcFrom = new int[edgeCount];
+        arcTo = new int[edgeCount];
+        arcFirstArc = new int[edgeCount];
+        arcSecondArc = new int[edgeCount];
+        arcCost = new float[edgeCount];
+
+        outArcs = new int[nodeCount][];
+        inArcs = new int[nodeCount][];
+        outSizes = new int[nodeCount];
+        inSizes = new int[nodeCount];
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+            outArcs[nodeId] = new int[INITIAL_ARC_CAPACITY];
+            inArcs[nodeId] = new int[INITIAL_ARC_CAPACITY];
+        }
+
+        for (int edgeId = 0; edgeId < edgeCount; edgeId++) {
+            arcFrom[edgeId] = graph.edgeSourceNodeId(edgeId);
+            arcTo[edgeId] = graph.edgeTargetNodeId(edgeId);
+            arcFirstArc[edgeId] = arcSecondArc[edgeId] = -1;
+            arcCost[edgeId] = ContractionHierarchy.edgeCost(graph, costFunction, edgeId);
+            if (arcCost[edgeId] != Float.POSITIVE_INFINITY) link(edgeId);
+        }
+
+        contracted = new boolean[nodeCount];
+        contractedNeighbours = new int[nodeCount];
+        ranks = new int[nodeCount];
+        witness = new SearchWorkspace(nodeCount);
+    }
+
+    /**
+     * Builds the contraction hierarchy of the given graph, for the given cost function
+     *
+     * @param graph        the whole JaVelo graph
+     * @param costFunction cost function of the hierarchy
+     * @return the contraction hierarchy
+     */
+    public static ContractionHierarchy build(Graph graph, CostFunction costFunction) {
+        return new ContractionHierarchyBuilder(graph, costFunction).build(costFunction);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path basePath = Path.of(args.length > 0 ? args[0] : "lausanne");
+        Graph graph = Graph.loadFrom(basePath);
+
+        long t0 = System.nanoTime();
+        ContractionHierarchy hierarchy = build(graph, new CityBikeCF(graph));
+        hierarchy.writeTo(basePath);
+        System.out.printf("Hiérarchie calculée en %d s : %d nœuds, %d arêtes, %d raccourcis%n",
+                (System.nanoTime() - t0) / 1_000_000_000,
+                graph.nodeCount(), graph.edgeCount(), hierarchy.shortcutCount());
+    }
+
+    /**
+     * Auxiliary (private) method contracting every node, and returning the resulting hierarchy
+     *
+     * @param costFunction cost function of the hierarchy
+     * @return the contraction hierarchy
+     */
+    private ContractionHierarchy build(CostFunction costFunction) {
+        int nodeCount = graph.nodeCount();
+        NodeHeap queue = new NodeHeap(nodeCount);
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) queue.insertOrDecrease(nodeId, priority(nodeId));
+
+        int rank = 0;
+        while (!queue.isEmpty()) {
+            int nodeId = queue.removeMin();
+
+            // priorities are updated lazily: contract the node only if it is still the least important one
+            float priority = priority(nodeId);
+            if (!queue.isEmpty() && priority > queue.minKey()) {
+                queue.insertOrDecrease(nodeId, priority);
+                continue;
+            }
+
+            contract(nodeId, false);
+            ranks[nodeId] = rank++;
+            unlinkNeighbours(nodeId);
+        }
+
+        int shortcutCount = arcCount - edgeCount;
+        return new ContractionHierarchy(graph, costFunction, ranks,
+                Arrays.copyOfRange(arcFrom, edgeCount, arcCount),
+                Arrays.copyOfRange(arcTo, edgeCount, arcCount),
+                Arrays.copyOfRange(arcFirstArc, edgeCount, edgeCount + shortcutCount),
+                Arrays.copyOfRange(arcSecondArc, edgeCount, edgeCount + shortcutCount),
+                Arrays.copyOfRange(arcCost, edgeCount, arcCount));
+    }
+
+    /**
+     * Auxiliary (private) method computing the priority of the given (remaining) node:
+     * twice the difference between the number of shortcuts its contraction would add and the number of arcs
+     * it would remove, plus the number of its neighbours already contracted (to spread contractions uniformly)
+     *
+     * @param nodeId node's identity
+     * @return priority of the node, the lowest being contracted first
+     */
+    private float priority(int nodeId) {
+        int removedArcs = 0;
+        for (int i = 0; i < outSizes[nodeId]; i++) if (!contracted[arcTo[outArcs[nodeId][i]]]) removedArcs++;
+        for (int i = 0; i < inSizes[nodeId]; i++) if (!contracted[arcFrom[inArcs[nodeId][i]]]) removedArcs++;
+        return 2 * (contract(nodeId, true) - removedArcs) + contractedNeighbours[nodeId];
+    }
+
+    /**
+     * Auxiliary (private) method contracting the given node, or only simulating its contraction
+     *
+     * @param nodeId   node's identity
+     * @param simulate true to only count the shortcuts, without adding them nor contracting the node
+     * @return number of shortcuts needed by the contraction
+     */
+    private int contract(int nodeId, boolean simulate) {
+        contracted[nodeId] = true; // witness paths must avoid the node
+        int shortcuts = 0;
+
+        for (int i = 0; i < inSizes[nodeId]; i++) {
+            int inArc = inArcs[nodeId][i];
+            int from = arcFrom[inArc];
+            if (contracted[from] || !isCheapestIn(nodeId, inArc)) continue;
+
+            float maxCost = 0;
+            for (int j = 0; j < outSizes[nodeId]; j++) {
+                int outArc = outArcs[nodeId][j];
+                if (!contracted[arcTo[outArc]]) maxCost = Math.max(maxCost, arcCost[inArc] + arcCost[outArc]);
+            }
+            witnessSearch(from, maxCost, simulate ? SIMULATION_SETTLED_LIMIT : CONTRACTION_SETTLED_LIMIT);
+
+            for (int j = 0; j < outSizes[nodeId]; j++) {
+                int outArc = outArcs[nodeId][j];
+                int to = arcTo[outArc];
+                if (contracted[to] || to == from || !isCheapestOut(nodeId, outArc)) continue;
+
+                float viaCost = arcCost[inArc] + arcCost[outArc];
+                if (witness.distance(to) > viaCost) {
+                    shortcuts++;
+                    if (!simulate) addShortcut(from, to, viaCost, inArc, outArc);
+                }
+            }
+        }
+
+        if (simulate) contracted[nodeId] = false;
+        return shortcuts;
+    }
+
+    /**
+     * Auxiliary (private) method running a Dijkstra search from the given node, in the remaining graph,
+     * until every node closer than maxCost is settled, or the given number of nodes is settled
+     *
+     * @param startNodeId  starting Node identity
+     * @param maxCost      cost beyond which no witness is useful
+     * @param settledLimit maximum number of nodes to settle
+     */
+    private void witnessSearch(int startNodeId, float maxCost, int settledLimit) {
+        witness.reset();
+        NodeHeap visiting = witness.heap();
+        witness.reach(startNodeId, 0f, -1);
+        visiting.insertOrDecrease(startNodeId, 0f);
+
+        int settled = 0;
+        while (!visiting.isEmpty() && visiting.minKey() <= maxCost && settled++ < settledLimit) {
+            int currentNode = visiting.removeMin();
+            float currentDistance = witness.distance(currentNode);
+            witness.settle(currentNode);
+
+            for (int i = 0; i < outSizes[currentNode]; i++) {
+                int arc = outArcs[currentNode][i];
+                int nTemp = arcTo[arc];
+                if (contracted[nTemp] || witness.isSettled(nTemp)) continue;
+                float totalDistance = currentDistance + arcCost[arc];
+                if (totalDistance < witness.distance(nTemp)) {
+                    witness.reach(nTemp, totalDistance, currentNode);
+                    visiting.insertOrDecrease(nTemp, totalDistance);
+                }
+            }
+        }
+    }
+
+    /**
+     * Auxiliary (private) method checking that no other arc from the same node into the given node is cheaper
+     * (parallel arcs only need to be considered once, through the cheapest one)
+     *
+     * @param nodeId node's identity
+     * @param inArc  arc entering the node
+     * @return true iff the arc is the cheapest (first one in case of tie) among the parallel ones
+     */
+    private boolean isCheapestIn(int nodeId, int inArc) {
+        for (int i = 0; i < inSizes[nodeId]; i++) {
+            int other = inArcs[nodeId][i];
+            if (other == inArc) return true;
+            if (arcFrom[other] == arcFrom[inArc] && arcCost[other] <= arcCost[inArc]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Auxiliary (private) method checking that no other arc from the given node into the same node is cheaper
+     *
+     * @param nodeId node's identity
+     * @param outArc arc leaving the node
+     * @return true iff the arc is the cheapest (first one in case of tie) among the parallel ones
+     */
+    private boolean isCheapestOut(int nodeId, int outArc) {
+        for (int i = 0; i < outSizes[nodeId]; i++) {
+            int other = outArcs[nodeId][i];
+            if (other == outArc) return true;
+            if (arcTo[other] == arcTo[outArc] && arcCost[other] <= arcCost[outArc]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Auxiliary (private) method adding a shortcut to the remaining graph
+     *
+     * @param from      node from which the shortcut leaves
+     * @param to        node which the shortcut enters
+     * @param cost      cost of the shortcut
+     * @param firstArc  first arc of the path replaced by the shortcut
+     * @param secondArc second arc of the path replaced by the shortcut
+     */
+    private void addShortcut(int from, int to, float cost, int firstArc, int secondArc) {
+        if (arcCount == arcFrom.length) {
+            int capacity = arcCount + arcCount / 2 + 1;
+            arcFrom = Arrays.copyOf(arcFrom, capacity);
+            arcTo = Arrays.copyOf(arcTo, capacity);
+            arcFirstArc = Arrays.copyOf(arcFirstArc, capacity);
+            arcSecondArc = Arrays.copyOf(arcSecondArc, capacity);
+            arcCost = Arrays.copyOf(arcCost, capacity);
+        }
+        int arc = arcCount++;
+        arcFrom[arc] = from;
+        arcTo[arc] = to;
+        arcFirstArc[arc] = firstArc;
+        arcSecondArc[arc] = secondArc;
+        arcCost[arc] = cost;
+        link(arc);
+    }
+
+    /**
+     * Auxiliary (private) method removing the arcs of the given (contracted) node from the adjacency lists
+     * of its neighbours, which are left with the remaining graph only, and counting it as a contracted neighbour
+     *
+     * @param nodeId node's identity
+     */
+    private void unlinkNeighbours(int nodeId) {
+        for (int i = 0; i < outSizes[nodeId]; i++) {
+            int arc = outArcs[nodeId][i];
+            int to = arcTo[arc];
+            inSizes[to] = remove(inArcs[to], inSizes[to], arc);
+            contractedNeighbours[to]++;
+        }
+        for (int i = 0; i < inSizes[nodeId]; i++) {
+            int arc = inArcs[nodeId][i];
+            int from = arcFrom[arc];
+            outSizes[from] = remove(outArcs[from], outSizes[from], arc);
+            contractedNeighbours[from]++;
+        }
+    }
+
+    /**
+     * Auxiliary (private) method removing the given arc from the given adjacency list (order is not preserved)
+     *
+     * @param arcs adjacency list
+     * @param size number of arcs in the list
+     * @param arc  arc to remove
+     * @return new number of arcs in the list
+     */
+    private static int remove(int[] arcs, int size, int arc) {
+        for (int i = 0; i < size; i++) {
+            if (arcs[i] == arc) {
+                arcs[i] = arcs[--size];
+                return size;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Auxiliary (private) method adding the given arc to the adjacency lists of its nodes
+     *
+     * @param arc arc's identity
+     */
+    private void link(int arc) {
+        int from = arcFrom[arc], to = arcTo[arc];
+        if (outSizes[from] == outArcs[from].length) outArcs[from] = Arrays.copyOf(outArcs[from], 2 * outSizes[from]);
+        outArcs[from][outSizes[from]++] = arc;
+        if (inSizes[to] == inArcs[to].length) inArcs[to] = Arrays.copyOf(inArcs[to], 2 * inSizes[to]);
+        inArcs[to][inSizes[to]++] = arc;
+    }
+}
@@ -18,4 +18,16 @@ public interface CostFunction {
      * @return factor to multiply by (must be greater or equal to 1)
      */
     double costFactor(int nodeId, int edgeId);
+
+    /**
+     * Returns the cost function whose factor is 1 on every edge which can be used with this one
+     * (i.e. whose factor is finite), and infinite on the others: costs are then lengths in meters.
+     *
+     * @return the cost function with unit factors
+     */
+    default CostFunction withUnitFactors() {
+        return (nodeId, edgeId) -> costFactor(nodeId, edgeId) == Double.POSITIVE_INFINITY
+                ? Double.POSITIVE_INFINITY
+                : 1;
+    }
 }
@@ -0,0 +1,20 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+
+/**
+ * Recorded class representing the default heuristic of RouteComputer: the straight-line distance between
+ * two nodes, which is a lower bound of the cost of any route as long as cost factors are at least 1.
+ *
+ * @param graph the whole JaVelo graph
+ *
+ * @author Tim Kreslo (310686)
+ * @author Wei-En Hsieh (341271)
+ */
+public record CrowFlyHeuristic(Graph graph) implements Heuristic {
+
+    @Override
+    public double lowerBound(int fromNodeId, int toNodeId) {
+        return graph.nodesDistance(fromNodeId, toNodeId);
+    }
+}
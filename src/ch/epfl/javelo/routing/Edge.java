@@ -24,7 +24,8 @@ public record Edge(int fromNodeId, int toNodeId, PointCh fromPoint, PointCh toPo
      * @param fromNodeId the identity of the start node of the edge
      * @param toNodeId   the identity of the arrival node of the edge,
      * @return an instance of Edge whose attributes fromNodeId and toNodeId are those given, the others being those of
-     * the edge's identity edgeId in the graph Graph.
+     * the edge's identity edgeId in the graph Graph (its profile being only read from the graph when asked,
+     * see Graph.edgeProfile).
      */
     public static Edge of(Graph graph, int edgeId, int fromNodeId, int toNodeId) {
         return new Edge(fromNodeId, toNodeId, graph.nodePoint(fromNodeId), graph.nodePoint(toNodeId),
@@ -0,0 +1,153 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+
+/**
+ * Cost function whose factors are precomputed, one (float) factor per edge, from another cost function:
+ * searches read a single slot of a table instead of evaluating attributes, slopes, etc. on every relaxation.
+ * <p>
+ * The factor of an edge is the one of the wrapped cost function for the node from which the edge leaves,
+ * which is the only node searches ever pass along with it; the node given to costFactor is thus ignored.
+ * The table can be kept on the Java heap, outside of it, or in a file mapped into memory. Where the time to build it
+ * is limited (when launching JaVelo, for instance), it is only used if it could be built in time.
+ *
+ * @author Tim Kreslo (310686)
+ * @author Wei-En Hsieh (341271)
+ */
+public final class EdgeCostTable implements CostFunction {
+    private final static Duration NO_BUDGET = Duration.ofNanos(Long.MAX_VALUE);
+    private final static int CHECK_INTERVAL_MASK = (1 << 16) - 1;
+
+    private final FloatBuffer costFactors;
+
+    /**
+     * EdgeCostTable constructor (private, tables are obtained from of or loadFrom)
+     *
+     * @param costFactors cost factor of every edge
+     */
+    private EdgeCostTable(FloatBuffer costFactors) {
+        this.costFactors = costFactors;
+    }
+
+    /**
+     * Returns the table of the factors of the given cost function, for every edge of the given graph,
+     * kept on the Java heap
+     *
+     * @param graph        the whole JaVelo graph
+     * @param costFunction cost function to precompute
+     * @return the table of the cost factors
+     */
+    public static EdgeCostTable of(Graph graph, CostFunction costFunction) {
+        return of(graph, costFunction, false);
+    }
+
+    /**
+     * Returns the table of the factors of the given cost function, for every edge of the given graph
+     *
+     * @param graph        the whole JaVelo graph
+     * @param costFunction cost function to precompute
+     * @param offHeap      true to keep the table outside of the Java heap (not scanned by the garbage collector)
+     * @return the table of the cost factors
+     */
+    public static EdgeCostTable of(Graph graph, CostFunction costFunction, boolean offHeap) {
+        return build(graph, costFunction, offHeap, NO_BUDGET);
+    }
+
+    /**
+     * Returns the table of the factors of the given cost function, for every edge of the given graph,
+     * kept on the Java heap, if it can be built within the given time, or else the cost function itself,
+     * whose factors are then evaluated by every search
+     *
+     * @param graph        the whole JaVelo graph
+     * @param costFunction cost function to precompute
+     * @param budget       longest time the table may take to build
+     * @return the table of the cost factors, or the given cost function if it could not be built in time
+     */
+    public static CostFunction of(Graph graph, CostFunction costFunction, Duration budget) {
+        EdgeCostTable table = build(graph, costFunction, false, budget);
+        return table != null ? table : costFunction;
+    }
+
+    /**
+     * Auxiliary (private) method building the table of the factors of the given cost function,
+     * checking every few thousand edges that it does not take longer than the given time
+     *
+     * @param graph        the whole JaVelo graph
+     * @param costFunction cost function to precompute
+     * @param offHeap      true to keep the table outside of the Java heap
+     * @param budget       longest time the table may take to build
+     * @return the table of the cost factors, or null if it could not be built in time
+     */
+    private static EdgeCostTable build(Graph graph, CostFunction costFunction, boolean offHeap, Duration budget) {
+        long deadline = System.nanoTime() + budget.toNanos();
+        int edgeCount = graph.edgeCount();
+        FloatBuffer costFactors = offHeap
+                ? ByteBuffer.allocateDirect(edgeCount * Float.BYTES).asFloatBuffer()
+                : FloatBuffer.allocate(edgeCount);
+
+        for (int edgeId = 0; edgeId < edgeCount; edgeId++) {
+            // robust to numerical overflow, as the deadline of an unlimited budget
+            if ((edgeId & CHECK_INTERVAL_MASK) == 0 && System.nanoTime() - deadline >= 0) return null;
+            int sourceNodeId = graph.edgeSourceNodeId(edgeId);
+            // an edge left by no node (in partially filled graphs) is never relaxed
+            costFactors.put(edgeId, sourceNodeId == -1
+                    ? Float.POSITIVE_INFINITY
+                    : (float) costFunction.costFactor(sourceNodeId, edgeId));
+        }
+        return new EdgeCostTable(costFactors);
+    }
+
+    /**
+     * Returns the table stored in the given file, mapped into memory
+     *
+     * @param path  path to the file of the table
+     * @param graph the whole JaVelo graph, whose edges the table must cover
+     * @return the table of the cost factors
+     * @throws IOException              if the file does not exist
+     * @throws IllegalArgumentException if the table does not have one factor per edge of the graph
+     */
+    public static EdgeCostTable loadFrom(Path path, Graph graph) throws IOException {
+        FloatBuffer costFactors;
+        try (FileChannel channel = FileChannel.open(path)) {
+            costFactors = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).asFloatBuffer();
+        }
+        Preconditions.checkArgument(costFactors.capacity() == graph.edgeCount());
+        return new EdgeCostTable(costFactors);
+    }
+
+    /**
+     * Writes the table to the given file (one float per edge, in the order of their identities)
+     *
+     * @param path path to the file of the table
+     * @throws IOException if the file could not be written
+     */
+    public void writeTo(Path path) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(costFactors.capacity() * Float.BYTES);
+        bytes.asFloatBuffer().put(costFactors.duplicate().clear());
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (bytes.hasRemaining()) channel.write(bytes);
+        }
+    }
+
+    /**
+     * Returns the precomputed factor of the given edge
+     *
+     * @param nodeId Identity of the node, from which the edge exists (ignored, see above)
+     * @param edgeId Identity of the edge, in the whole graph (with all edges)
+     * @return factor to multiply by
+     */
+    @Override
+    public double costFactor(int nodeId, int edgeId) {
+        return costFactors.get(edgeId);
+    }
+}
@@ -0,0 +1,92 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.projection.Ch1903;
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.javelo.projection.SwissBounds;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Reader of the points of GPX documents (track points, as recorded by GPS devices, and route points,
+ * as written by GpxGenerator). Documents are read as a stream, point by point, so that traces of any
+ * length can be processed without being loaded into memory.
+ *
+ * @author Tim Kreslo (310686)
+ * @author Wei-En Hsieh (341271)
+ */
+public final class GpxReader {
+    /**
+     * Default (not instantiable) GpxReader constructor
+     */
+    private GpxReader() {}
+
+    /**
+     * Returns the points of the GPX document in the given file, in order
+     *
+     * @param path path to the GPX file
+     * @return the points of the document within Switzerland
+     * @throws IOException if the file does not exist or is not a valid GPX document
+     */
+    public static List<PointCh> readPoints(Path path) throws IOException {
+        List<PointCh> points = new ArrayList<>();
+        try (InputStream stream = Files.newInputStream(path)) {
+            readPoints(stream, points::add);
+        }
+        return points;
+    }
+
+    /**
+     * Reads the GPX document of the given stream, giving its points to the given consumer as they are read.
+     * Points outside of Switzerland, which cannot be represented by PointCh, are ignored.
+     *
+     * @param stream   stream of the GPX document
+     * @param consumer consumer of the points of the document, in order
+     * @throws IOException if the stream cannot be read or is not a valid GPX document
+     */
+    public static void readPoints(InputStream stream, Consumer<PointCh> consumer) throws IOException {
+        try {
+            XMLStreamReader reader = XMLInputFactory.newDefaultFactory().createXMLStreamReader(stream);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() != XMLStreamConstants.START_ELEMENT) continue;
+                    String name = reader.getLocalName();
+                    if (!name.equals("trkpt") && !name.equals("rtept")) continue;
+
+                    double lon = angle(reader, "lon");
+                    double lat = angle(reader, "lat");
+                    double e = Ch1903.e(lon, lat);
+                    double n = Ch1903.n(lon, lat);
+                    if (SwissBounds.containsEN(e, n)) consumer.accept(new PointCh(e, n));
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException | NumberFormatException e) {
+            throw new IOException("invalid GPX document", e);
+        }
+    }
+
+    /**
+     * Auxiliary (private) method returning the angle of the given attribute (in degrees) of the current point
+     *
+     * @param reader reader positioned on the start of a point
+     * @param name   name of the attribute ("lon" or "lat")
+     * @return the angle, in radians
+     * @throws XMLStreamException if the point has no such attribute
+     */
+    private static double angle(XMLStreamReader reader, String name) throws XMLStreamException {
+        String value = reader.getAttributeValue(null, name);
+        if (value == null) throw new XMLStreamException("point without " + name, reader.getLocation());
+        return Math.toRadians(Double.parseDouble(value));
+    }
+}
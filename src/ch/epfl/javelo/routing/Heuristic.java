@@ -0,0 +1,22 @@
+package ch.epfl.javelo.routing;
+
+/**
+ * Interface representing the heuristic guiding the A* searches of RouteComputer:
+ * a lower bound of the cost of the best route between two nodes.
+ * To keep the routes found optimal, the bound must be consistent, i.e. it must never decrease by more than
+ * the cost of an edge when moving along it.
+ *
+ * @author Tim Kreslo (310686)
+ * @author Wei-En Hsieh (341271)
+ */
+public interface Heuristic {
+
+    /**
+     * Returns a lower bound of the cost of the best route going from fromNodeId to toNodeId
+     *
+     * @param fromNodeId identity of the node from which the route leaves
+     * @param toNodeId   identity of the node which the route enters
+     * @return lower bound of the cost (positive infinity if no route can exist)
+     */
+    double lowerBound(int fromNodeId, int toNodeId);
+}
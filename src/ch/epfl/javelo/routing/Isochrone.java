@@ -0,0 +1,54 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+
+/**
+ * Recorded class representing the nodes reachable from a start node within a cost budget,
+ * in increasing order of cost, stored in primitive arrays.
+ *
+ * @param nodeIds identities of the reached nodes (the start node first)
+ * @param costs   cost of the best route from the start node to each reached node
+ *
+ * @author Tim Kreslo (310686)
+ * @author Wei-En Hsieh (341271)
+ */
+public record Isochrone(int[] nodeIds, float[] costs) {
+
+    /**
+     * Compact Isochrone constructor, checking the dimensions of the arrays
+     *
+     * @throws IllegalArgumentException if the arrays do not have the same length
+     */
+    public Isochrone {
+        Preconditions.checkArgument(nodeIds.length == costs.length);
+    }
+
+    /**
+     * Returns the number of reached nodes
+     *
+     * @return number of reached nodes
+     */
+    public int size() {
+        return nodeIds.length;
+    }
+
+    /**
+     * Returns the identity of the index-th reached node
+     *
+     * @param index node's index, in increasing order of cost
+     * @return identity of the node
+     */
+    public int nodeId(int index) {
+        return nodeIds[index];
+    }
+
+    /**
+     * Returns the cost of the index-th reached node
+     *
+     * @param index node's index, in increasing order of cost
+     * @return cost of the best route from the start node to the node
+     */
+    public float cost(int index) {
+        return costs[index];
+    }
+}
@@ -0,0 +1,105 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+
+import java.util.Arrays;
+
+/**
+ * Class that computes isochrones: all the nodes reachable from a start node within a cost budget,
+ * found by a Dijkstra search which stops as soon as the budget is exceeded.
+ * Budgets in meters are obtained with a cost function whose factors are 1 (see CostFunction.withUnitFactors).
+ *
+ * @author Tim Kreslo (310686)
+ * @author Wei-En Hsieh (341271)
+ */
+public final class IsochroneComputer {
+    private final static int INITIAL_CAPACITY = 1 << 10;
+    // "predecessor" edge of the start node
+    private final static int NO_EDGE = -1;
+
+    private final Graph graph;
+    private final CostFunction costFunction;
+    // one reusable workspace per searching thread
+    private final ThreadLocal<SearchWorkspace> workspaces;
+
+    /**
+     * Default IsochroneComputer constructor
+     *
+     * @param graph        the whole JaVelo graph
+     * @param costFunction cost factor, for bike Routes.
+     */
+    public IsochroneComputer(Graph graph, CostFunction costFunction) {
+        this.graph = graph;
+        this.costFunction = costFunction;
+        this.workspaces = ThreadLocal.withInitial(() -> new SearchWorkspace(graph.nodeCount()));
+    }
+
+    /**
+     * Returns the nodes reachable from the given start node with a cost of at most maxCost
+     *
+     * @param startNodeId starting Node identity
+     * @param maxCost     cost budget
+     * @return reached nodes and their costs, in increasing order of cost
+     * @throws IllegalArgumentException if the budget is negative
+     */
+    public Isochrone isochroneFrom(int startNodeId, double maxCost) {
+        var collector = new ReachedNodeVisitor() {
+            int[] nodeIds = new int[INITIAL_CAPACITY];
+            float[] costs = new float[INITIAL_CAPACITY];
+            int size;
+
+            @Override
+            public void visit(int nodeId, float cost) {
+                if (size == nodeIds.length) {
+                    nodeIds = Arrays.copyOf(nodeIds, 2 * size);
+                    costs = Arrays.copyOf(costs, 2 * size);
+                }
+                nodeIds[size] = nodeId;
+                costs[size++] = cost;
+            }
+        };
+        visitReachable(startNodeId, maxCost, collector);
+        return new Isochrone(Arrays.copyOf(collector.nodeIds, collector.size),
+                Arrays.copyOf(collector.costs, collector.size));
+    }
+
+    /**
+     * Passes to the given visitor every node reachable from the given start node with a cost of at most maxCost,
+     * in increasing order of cost, as soon as its cost is final (nothing is stored in the meantime)
+     *
+     * @param startNodeId starting Node identity
+     * @param maxCost     cost budget
+     * @param visitor     visitor of the reached nodes
+     * @throws IllegalArgumentException if the budget is negative
+     */
+    public void visitReachable(int startNodeId, double maxCost, ReachedNodeVisitor visitor) {
+        Preconditions.checkArgument(maxCost >= 0);
+        SearchWorkspace workspace = workspaces.get();
+        workspace.reset();
+        NodeHeap visiting = workspace.heap();
+
+        workspace.reach(startNodeId, 0f, NO_EDGE);
+        visiting.insertOrDecrease(startNodeId, 0f);
+
+        while (!visiting.isEmpty() && visiting.minKey() <= maxCost) {
+            int currentNode = visiting.removeMin();
+            float currentDistance = workspace.distance(currentNode);
+            workspace.settle(currentNode);
+            visitor.visit(currentNode, currentDistance);
+
+            for (int i = 0; i < graph.nodeOutDegree(currentNode); i++) {
+                int edge = graph.nodeOutEdgeId(currentNode, i);
+                int nTemp = graph.edgeTargetNodeId(edge);
+                if (workspace.isSettled(nTemp)) continue;
+
+                double totalDistance = currentDistance
+                        + costFunction.costFactor(currentNode, edge) * graph.edgeLength(edge);
+                if (totalDistance <= maxCost && totalDistance < workspace.distance(nTemp)) {
+                    workspace.reach(nTemp, (float) totalDistance, edge);
+                    visiting.insertOrDecrease(nTemp, (float) totalDistance);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * ALT heuristic (A*, landmarks and triangle inequality): the costs of the best routes from a few landmark nodes
+ * to every node, and from every node to the landmarks, give lower bounds of the cost between any two nodes.
+ * Unlike the straight-line distance, these bounds account for the cost factors, and are thus much tighter where
+ * they are well above 1 (hills, roads unsuited to bikes).
+ * <p>
+ * Costs are stored by node, each node having, for each landmark, the cost from the landmark to the node
+ * followed by the cost from the node to the landmark (positive infinity if there is no route).
+ * Landmarks are only valid for the graph and cost function they were built with.
+ *
+ * @author Tim Kreslo (310686)
+ * @author Wei-En Hsieh (341271)
+ */
+public final class Landmarks implements Heuristic {
+    private final static int DEFAULT_LANDMARK_COUNT = 16;
+    private final static long SEED = 2022;
+    private final static String LANDMARKS_FILE = "landmarks.bin";
+    private final static String COSTS_FILE = "landmark_costs.bin";
+
+    private final int[] landmarks;
+    private final FloatBuffer costs;
+
+    /**
+     * Landmarks constructor (private, landmarks are obtained from build or loadFrom)
+     *
+     * @param landmarks identities of the landmark nodes
+     * @param costs     costs from and to every landmark, by node
+     */
+    private Landmarks(int[] landmarks, FloatBuffer costs) {
+        this.landmarks = landmarks;
+        this.costs = costs;
+    }
+
+    /**
+     * Selects the given number of landmarks in the given graph and computes their costs from and to every node.
+     * Each landmark is the node farthest (in cost) from the previous ones, the first one being the node farthest
+     * from a random node, so that landmarks lie on the border of the graph, "behind" most nodes.
+     *
+     * @param graph         the whole JaVelo graph
+     * @param costFunction  cost function of the landmarks
+     * @param landmarkCount number of landmarks
+     * @return the landmarks
+     * @throws IllegalArgumentException if the number of landmarks is not strictly positive,
+     *                                  or if no node of the graph has any edge leaving it (nor any node at all)
+     */
+    public static Landmarks build(Graph graph, CostFunction costFunction, int landmarkCount) {
+        Preconditions.checkArgument(landmarkCount > 0);
+        int nodeCount = graph.nodeCount();
+        // the random node from which the first landmark is found must have an edge leaving it
+        boolean hasEdges = false;
+        for (int nodeId = 0; nodeId < nodeCount && !hasEdges; nodeId++) {
+            hasEdges = graph.nodeOutDegree(nodeId) > 0;
+        }
+        Preconditions.checkArgument(hasEdges);
+        int[] landmarks = new int[landmarkCount];
+        float[][] forwardCosts = new float[landmarkCount][];
+
+        // forward costs (from the landmarks) are needed to select the next landmark, hence computed in sequence
+        float[] minCosts = new float[nodeCount];
+        Arrays.fill(minCosts, Float.POSITIVE_INFINITY);
+        NodeHeap heap = new NodeHeap(nodeCount);
+        Random random = new Random(SEED);
+        int origin;
+        do origin = random.nextInt(nodeCount); while (graph.nodeOutDegree(origin) == 0);
+        int next = farthestNode(costsFrom(graph, costFunction, origin, false, heap));
+
+        for (int i = 0; i < landmarkCount; i++) {
+            landmarks[i] = next;
+            forwardCosts[i] = costsFrom(graph, costFunction, next, false, heap);
+            for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+                minCosts[nodeId] = Math.min(minCosts[nodeId], forwardCosts[i][nodeId]);
+            }
+            next = farthestNode(minCosts);
+        }
+
+        float[][] backwardCosts = IntStream.range(0, landmarkCount).parallel()
+                .mapToObj(i -> costsFrom(graph, costFunction, landmarks[i], true, new NodeHeap(nodeCount)))
+                .toArray(float[][]::new);
+
+        FloatBuffer costs = FloatBuffer.allocate(2 * landmarkCount * nodeCount);
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+            for (int i = 0; i < landmarkCount; i++) {
+                costs.put(forwardCosts[i][nodeId]);
+                costs.put(backwardCosts[i][nodeId]);
+            }
+        }
+        return new Landmarks(landmarks, costs.flip());
+    }
+
+    /**
+     * Returns the landmarks stored in the files landmarks.bin and landmark_costs.bin of the given directory
+     * (next to the files of the graph), the costs being mapped into memory
+     *
+     * @param basePath path to the directory of the graph
+     * @return the landmarks
+     * @throws IOException if the expected files do not exist
+     */
+    public static Landmarks loadFrom(Path basePath) throws IOException {
+        IntBuffer landmarksBuffer = mapFile(basePath.resolve(LANDMARKS_FILE)).asIntBuffer();
+        int[] landmarks = new int[landmarksBuffer.capacity()];
+        landmarksBuffer.get(landmarks);
+        return new Landmarks(landmarks, mapFile(basePath.resolve(COSTS_FILE)).asFloatBuffer());
+    }
+
+    /**
+     * Checks whether landmarks are stored in the given directory
+     *
+     * @param basePath path to the directory of the graph
+     * @return true iff the files landmarks.bin and landmark_costs.bin exist in the directory
+     */
+    public static boolean existIn(Path basePath) {
+        return Files.exists(basePath.resolve(LANDMARKS_FILE)) && Files.exists(basePath.resolve(COSTS_FILE));
+    }
+
+    /**
+     * Writes the landmarks and their costs to the files landmarks.bin and landmark_costs.bin
+     * of the given directory
+     *
+     * @param basePath path to the directory of the graph
+     * @throws IOException if the files could not be written
+     */
+    public void writeTo(Path basePath) throws IOException {
+        try (DataOutputStream s = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(basePath.resolve(LANDMARKS_FILE))))) {
+            for (int landmark : landmarks) s.writeInt(landmark);
+        }
+        try (DataOutputStream s = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(basePath.resolve(COSTS_FILE))))) {
+            for (int i = 0; i < costs.capacity(); i++) s.writeFloat(costs.get(i));
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path basePath = Path.of(args.length > 0 ? args[0] : "lausanne");
+        int landmarkCount = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_LANDMARK_COUNT;
+        Graph graph = Graph.loadFrom(basePath);
+
+        long t0 = System.nanoTime();
+        build(graph, new CityBikeCF(graph), landmarkCount).writeTo(basePath);
+        System.out.printf("%d points de repère calculés en %d s%n",
+                landmarkCount, (System.nanoTime() - t0) / 1_000_000_000);
+    }
+
+    /**
+     * Returns the number of landmarks
+     *
+     * @return number of landmarks
+     */
+    public int count() {
+        return landmarks.length;
+    }
+
+    /**
+     * Returns the identity of the given landmark's node
+     *
+     * @param landmarkIndex landmark's index
+     * @return identity of the landmark's node
+     */
+    public int nodeId(int landmarkIndex) {
+        return landmarks[landmarkIndex];
+    }
+
+    /**
+     * Returns the cost of the best route from the given landmark to the given node
+     *
+     * @param landmarkIndex landmark's index
+     * @param nodeId        node's identity
+     * @return cost of the best route (positive infinity if no route exists)
+     */
+    public float costFromLandmark(int landmarkIndex, int nodeId) {
+        return costs.get(2 * (nodeId * landmarks.length + landmarkIndex));
+    }
+
+    /**
+     * Returns the cost of the best route from the given node to the given landmark
+     *
+     * @param landmarkIndex landmark's index
+     * @param nodeId        node's identity
+     * @return cost of the best route (positive infinity if no route exists)
+     */
+    public float costToLandmark(int landmarkIndex, int nodeId) {
+        return costs.get(2 * (nodeId * landmarks.length + landmarkIndex) + 1);
+    }
+
+    /**
+     * Returns the best lower bound given by the landmarks, by the triangle inequality:
+     * cost(from, to) ≥ cost(L, to) - cost(L, from) and cost(from, to) ≥ cost(from, L) - cost(to, L)
+     * for every landmark L.
+     */
+    @Override
+    public double lowerBound(int fromNodeId, int toNodeId) {
+        int from = 2 * fromNodeId * landmarks.length;
+        int to = 2 * toNodeId * landmarks.length;
+        float bound = 0;
+        for (int i = 0; i < 2 * landmarks.length; i += 2) {
+            // differences of two infinities (NaN) bound nothing, and are ignored by the comparisons
+            float forward = costs.get(to + i) - costs.get(from + i);
+            float backward = costs.get(from + i + 1) - costs.get(to + i + 1);
+            if (forward > bound) bound = forward;
+            if (backward > bound) bound = backward;
+        }
+        return bound;
+    }
+
+    /**
+     * Auxiliary (private) method computing, with Dijkstra's algorithm, the costs of the best routes
+     * from the given node to every node, or from every node to the given node (along incoming edges)
+     *
+     * @param graph        the whole JaVelo graph
+     * @param costFunction cost function of the landmarks
+     * @param nodeId       node's identity
+     * @param backward     true to compute costs to the node, false to compute costs from the node
+     * @param heap         (empty) queue of nodes to visit
+     * @return cost of the best route of every node (positive infinity if no route exists)
+     */
+    private static float[] costsFrom(Graph graph, CostFunction costFunction, int nodeId, boolean backward,
+                                     NodeHeap heap) {
+        float[] costs = new float[graph.nodeCount()];
+        Arrays.fill(costs, Float.POSITIVE_INFINITY);
+        costs[nodeId] = 0f;
+        heap.insertOrDecrease(nodeId, 0f);
+
+        while (!heap.isEmpty()) {
+            int currentNode = heap.removeMin();
+            int degree = backward ? graph.nodeInDegree(currentNode) : graph.nodeOutDegree(currentNode);
+            for (int i = 0; i < degree; i++) {
+                int edgeId = backward ? graph.nodeInEdgeId(currentNode, i) : graph.nodeOutEdgeId(currentNode, i);
+                int nTemp = backward ? graph.edgeSourceNodeId(edgeId) : graph.edgeTargetNodeId(edgeId);
+                float totalCost = costs[currentNode] + ContractionHierarchy.edgeCost(graph, costFunction, edgeId);
+                if (totalCost < costs[nTemp]) {
+                    costs[nTemp] = totalCost;
+                    heap.insertOrDecrease(nTemp, totalCost);
+                }
+            }
+        }
+        return costs;
+    }
+
+    /**
+     * Auxiliary (private) method returning the node of greatest finite cost
+     *
+     * @param costs cost of every node
+     * @return identity of the node of greatest finite cost
+     */
+    private static int farthestNode(float[] costs) {
+        int farthest = 0;
+        for (int nodeId = 1; nodeId < costs.length; nodeId++) {
+            if (costs[nodeId] != Float.POSITIVE_INFINITY
+                    && (costs[farthest] == Float.POSITIVE_INFINITY || costs[nodeId] > costs[farthest]))
+                farthest = nodeId;
+        }
+        return farthest;
+    }
+
+    /**
+     * Auxiliary (private) method that maps the given file into memory
+     *
+     * @param path path to the file
+     * @return buffer containing the file
+     * @throws IOException if the file does not exist
+     */
+    private static ByteBuffer mapFile(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+}
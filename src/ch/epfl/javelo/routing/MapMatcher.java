@@ -0,0 +1,312 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.projection.PointCh;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Map matcher aligning GPS traces to the JaVelo graph, with a hidden Markov model (Newson and Krumm):
+ * the hidden states of each point of a trace are the nodes close to it, a node being all the more likely
+ * as it is close to the point (emission), and a pair of nodes of consecutive points all the more likely as the
+ * length of the best route between them is close to the distance between the points (transition).
+ * The most likely sequence of nodes is found with Viterbi's algorithm, and the trace is matched to the
+ * best routes between them, kept from the searches which gave their lengths. As Newson and Krumm,
+ * routes much longer than the distance between their points are not searched for at all.
+ * <p>
+ * Traces are processed point by point: the part of the sequence on which all likely sequences agree is
+ * matched as soon as it is known, and the number of points kept in memory is bounded. Where no route exists
+ * between the nodes of consecutive points, the trace is split, and its parts are matched separately.
+ * A map matcher can be used by several threads at once, each trace being processed by a single thread.
+ *
+ * @author Tim Kreslo (310686)
+ * @author Wei-En Hsieh (341271)
+ */
+public final class MapMatcher {
+    // standard deviation of the GPS errors, in meters
+    private final static double GPS_SIGMA = 10;
+    // scale of the differences between route lengths and distances between points, in meters
+    private final static double TRANSITION_BETA = 5;
+    // distance from a point within which its nodes are searched, and greatest number of them
+    private final static double CANDIDATE_DISTANCE = 100;
+    private final static int CANDIDATE_COUNT = 8;
+    // points closer to the previous one carry no information, given the GPS errors
+    private final static double MIN_POINT_DISTANCE = 2 * GPS_SIGMA;
+    // greatest number of points kept before the most likely sequence is matched, whether decided or not
+    private final static int MAX_WINDOW = 64;
+    // routes between the nodes of two points whose cost exceeds this factor times the greatest possible distance
+    // between these nodes (the cost of a route being at most a few times its length) are considered as not existing
+    private final static double MAX_ROUTE_FACTOR = 8;
+
+    private final Graph graph;
+    private final RouteComputer routeComputer;
+
+    /**
+     * Default MapMatcher constructor
+     *
+     * @param graph         the whole JaVelo graph
+     * @param routeComputer route computer of the graph, computing the routes between the nodes of the points
+     */
+    public MapMatcher(Graph graph, RouteComputer routeComputer) {
+        this.graph = graph;
+        this.routeComputer = routeComputer;
+    }
+
+    /**
+     * Returns the routes matching the given trace, one for each of its parts between which no route exists
+     *
+     * @param points points of the trace, in order
+     * @return the matched route of each part of the trace, made of the routes between the nodes of its
+     * consecutive points, in order (empty if nothing matched)
+     */
+    public List<Route> match(List<PointCh> points) {
+        List<Route> parts = new ArrayList<>();
+        List<Route> segments = new ArrayList<>();
+        Trace trace = newTrace(segments::add, () -> {
+            if (segments.isEmpty()) return;                //a part reduced to a single node matches nothing
+            parts.add(new MultiRoute(List.copyOf(segments)));
+            segments.clear();
+        });
+        for (PointCh point : points) trace.add(point);
+        trace.finish();
+        return List.copyOf(parts);
+    }
+
+    /**
+     * Returns the routes matching the given traces, which are matched in parallel
+     *
+     * @param traces traces, each being the list of its points, in order
+     * @return the matched routes of each trace (see match), in the same order
+     */
+    public List<List<Route>> matchAll(List<List<PointCh>> traces) {
+        return traces.parallelStream().map(this::match).toList();
+    }
+
+    /**
+     * Returns a new trace, to be matched point by point, whose parts are not told apart
+     *
+     * @param consumer consumer of the matched routes, given as soon as they are known, in order
+     * @return the new trace
+     */
+    public Trace newTrace(Consumer<Route> consumer) {
+        return newTrace(consumer, () -> {});
+    }
+
+    /**
+     * Returns a new trace, to be matched point by point
+     *
+     * @param consumer consumer of the matched routes, given as soon as they are known, in order
+     * @param partEnd  called once all the routes of a part of the trace are given, before those of the next part
+     *                 (no route existing between the nodes of the last point of a part and those of the next one)
+     * @return the new trace
+     */
+    public Trace newTrace(Consumer<Route> consumer, Runnable partEnd) {
+        return new Trace(consumer, partEnd);
+    }
+
+    /**
+     * Trace being matched, point by point (not thread safe)
+     */
+    public final class Trace {
+        private final Consumer<Route> consumer;
+        private final Runnable partEnd;
+        private final ArrayDeque<Step> window = new ArrayDeque<>();
+        private PointCh lastPoint;
+
+        /**
+         * Default Trace constructor
+         *
+         * @param consumer consumer of the matched routes
+         * @param partEnd  called at the end of every part of the trace
+         */
+        private Trace(Consumer<Route> consumer, Runnable partEnd) {
+            this.consumer = consumer;
+            this.partEnd = partEnd;
+        }
+
+        /**
+         * Adds the given point to the trace, matching the part of the trace which is decided from then on.
+         * Points without any node within the search distance are ignored.
+         *
+         * @param point next point of the trace
+         */
+        public void add(PointCh point) {
+            if (lastPoint != null && point.distanceTo(lastPoint) < MIN_POINT_DISTANCE) return;
+            int[] nodeIds = graph.nodesClosestTo(point, CANDIDATE_DISTANCE, CANDIDATE_COUNT);
+            if (nodeIds.length == 0) return;
+
+            double[] costs = new double[nodeIds.length]; // negative log-likelihoods of the best sequences
+            int[] previous = new int[nodeIds.length];    // index of the previous node of these sequences
+            Arrays.fill(previous, -1);
+            for (int j = 0; j < nodeIds.length; j++) costs[j] = emissionCost(point, nodeIds[j]);
+
+            Route[] legs = new Route[nodeIds.length];     // best routes from these previous nodes
+            if (!window.isEmpty()) {
+                Step last = window.getLast();
+                double distance = last.point.distanceTo(point);
+                double maxCost = MAX_ROUTE_FACTOR * (distance + 2 * CANDIDATE_DISTANCE);
+
+                double[] bestCosts = new double[nodeIds.length];
+                Arrays.fill(bestCosts, Double.POSITIVE_INFINITY);
+                for (int i = 0; i < last.nodeIds.length; i++) {
+                    if (last.costs[i] == Double.POSITIVE_INFINITY) continue; // no sequence to extend
+                    Route[] routes = routeComputer.bestRoutesFrom(last.nodeIds[i], nodeIds, maxCost);
+                    for (int j = 0; j < nodeIds.length; j++) {
+                        double length = last.nodeIds[i] == nodeIds[j] ? 0
+                                : routes[j] == null ? Double.POSITIVE_INFINITY : routes[j].length();
+                        double cost = last.costs[i] + Math.abs(length - distance) / TRANSITION_BETA;
+                        if (cost < bestCosts[j]) {
+                            bestCosts[j] = cost;
+                            previous[j] = i;
+                            legs[j] = routes[j];
+                        }
+                    }
+                }
+
+                double minCost = Double.POSITIVE_INFINITY;
+                for (int j = 0; j < nodeIds.length; j++) {
+                    costs[j] += bestCosts[j];
+                    minCost = Math.min(minCost, costs[j]);
+                }
+
+                if (minCost == Double.POSITIVE_INFINITY) {
+                    // no route from the previous point: the trace is matched again from this point on
+                    finish();
+                    Arrays.fill(previous, -1);
+                    Arrays.fill(legs, null);
+                    for (int j = 0; j < nodeIds.length; j++) costs[j] = emissionCost(point, nodeIds[j]);
+                } else {
+                    for (int j = 0; j < nodeIds.length; j++) costs[j] -= minCost; // keeps costs small
+                }
+            }
+
+            window.addLast(new Step(point, nodeIds, costs, previous, legs));
+            lastPoint = point;
+            if (window.size() > MAX_WINDOW) {
+                matchMostLikely();
+            } else {
+                matchDecided();
+            }
+        }
+
+        /**
+         * Matches the rest of the trace (or of its current part), following its most likely sequence of nodes,
+         * which ends the current part
+         */
+        public void finish() {
+            if (window.isEmpty()) return;
+            matchMostLikely();
+            window.clear();
+            partEnd.run();
+        }
+
+        /**
+         * Auxiliary (private) method matching the part of the trace on which all possible sequences agree:
+         * the points up to the last one where all these sequences pass through the same node
+         */
+        private void matchDecided() {
+            Step last = window.getLast();
+            boolean[] alive = new boolean[last.nodeIds.length];
+            int aliveCount = 0;
+            for (int j = 0; j < alive.length; j++) {
+                alive[j] = last.costs[j] != Double.POSITIVE_INFINITY;
+                if (alive[j]) aliveCount++;
+            }
+
+            // going back step by step, until the sequences meet at a single node
+            Iterator<Step> steps = window.descendingIterator();
+            Step step = steps.next();
+            int decidedSteps = window.size();
+            while (aliveCount > 1 && steps.hasNext()) {
+                Step before = steps.next();
+                boolean[] aliveBefore = new boolean[before.nodeIds.length];
+                aliveCount = 0;
+                for (int j = 0; j < alive.length; j++) {
+                    if (alive[j] && !aliveBefore[step.previous[j]]) {
+                        aliveBefore[step.previous[j]] = true;
+                        aliveCount++;
+                    }
+                }
+                alive = aliveBefore;
+                step = before;
+                decidedSteps--;
+            }
+            if (aliveCount != 1 || decidedSteps == 1) return;
+
+            int index = 0;
+            while (!alive[index]) index++;
+            matchUpTo(decidedSteps, index);
+        }
+
+        /**
+         * Auxiliary (private) method matching the whole window, following its most likely sequence of nodes,
+         * only its last point being kept, with the node of that sequence
+         */
+        private void matchMostLikely() {
+            Step last = window.getLast();
+            int index = 0;
+            for (int j = 1; j < last.costs.length; j++) if (last.costs[j] < last.costs[index]) index = j;
+            matchUpTo(window.size(), index);
+
+            Arrays.fill(last.costs, Double.POSITIVE_INFINITY);
+            last.costs[index] = 0;
+        }
+
+        /**
+         * Auxiliary (private) method matching the first given steps of the window, which are then removed
+         * from it, except the last one of them (the window then starting with it). The route leading to the first
+         * step, if any, was matched with the steps before it.
+         *
+         * @param stepCount number of steps to match
+         * @param index     index of the node of the last of these steps
+         */
+        private void matchUpTo(int stepCount, int index) {
+            Step[] steps = new Step[stepCount];
+            Iterator<Step> iterator = window.iterator();
+            for (int s = 0; s < stepCount; s++) steps[s] = iterator.next();
+
+            Route[] legs = new Route[stepCount];
+            for (int s = stepCount - 1; s > 0; s--) {
+                legs[s] = steps[s].legs[index];
+                index = steps[s].previous[index];
+            }
+            for (Route leg : legs) if (leg != null) consumer.accept(leg);
+
+            for (int s = 0; s < stepCount - 1; s++) window.removeFirst();
+            Step first = window.getFirst();
+            Arrays.fill(first.previous, -1);
+            Arrays.fill(first.legs, null);
+        }
+
+        /**
+         * Auxiliary (private) method returning the emission cost of the given node for the given point,
+         * the negative log-likelihood (up to a constant) of a GPS error equal to their distance
+         *
+         * @param point  point of the trace
+         * @param nodeId node's identity
+         * @return emission cost of the node
+         */
+        private double emissionCost(PointCh point, int nodeId) {
+            double error = point.distanceTo(graph.nodePoint(nodeId)) / GPS_SIGMA;
+            return error * error / 2;
+        }
+    }
+
+    /**
+     * Recorded class representing a step of Viterbi's algorithm: a point of the trace, its candidate nodes,
+     * the costs of the best sequences ending at each of them, their previous nodes and the routes from these
+     *
+     * @param point    point of the trace
+     * @param nodeIds  identities of the candidate nodes of the point
+     * @param costs    cost of the best sequence ending at each candidate (positive infinity if there is none)
+     * @param previous index, in the previous step, of the previous node of these sequences (-1 for a first step)
+     * @param legs     best route from the previous node of these sequences to each candidate
+     *                 (null for a first step, or if both nodes are the same)
+     */
+    private record Step(PointCh point, int[] nodeIds, double[] costs, int[] previous, Route[] legs) {}
+}
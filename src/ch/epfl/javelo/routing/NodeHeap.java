@@ -0,0 +1,154 @@
+package ch.epfl.javelo.routing;
+
+import java.util.Arrays;
+
+/**
+ * Indexed d-ary min-heap of node identities, ordered by a float key,
+ * supporting a true decrease-key operation and never allocating once built.
+ *
+ * @author Tim Kreslo (310686)
+ * @author Wei-En Hsieh (341271)
+ */
+final class NodeHeap {
+    private final static int ARITY = 4;
+    private final static int ABSENT = -1;
+
+    private final int[] nodes;     // heap slot -> node identity
+    private final float[] keys;    // heap slot -> key of the node in that slot
+    private final int[] positions; // node identity -> heap slot, or ABSENT
+    private int size;
+
+    /**
+     * Default NodeHeap constructor
+     *
+     * @param nodeCount total number of nodes that may be stored in the heap
+     */
+    NodeHeap(int nodeCount) {
+        nodes = new int[nodeCount];
+        keys = new float[nodeCount];
+        positions = new int[nodeCount];
+        Arrays.fill(positions, ABSENT);
+    }
+
+    /**
+     * Checks whether the heap contains no node
+     *
+     * @return true iff the heap is empty
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the number of nodes currently stored in the heap
+     *
+     * @return number of nodes in the heap
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the smallest key of the heap, without removing its node
+     *
+     * @return smallest key, or positive infinity if the heap is empty
+     */
+    float minKey() {
+        return size == 0 ? Float.POSITIVE_INFINITY : keys[0];
+    }
+
+    /**
+     * Inserts the given node with the given key, or decreases its key if the node is already in the heap.
+     * Nothing happens if the node is already in the heap with a smaller (or equal) key.
+     *
+     * @param nodeId node's identity
+     * @param key    key of the node
+     */
+    void insertOrDecrease(int nodeId, float key) {
+        int slot = positions[nodeId];
+        if (slot == ABSENT) {
+            slot = size++;
+        } else if (key >= keys[slot]) {
+            return;
+        }
+        siftUp(slot, nodeId, key);
+    }
+
+    /**
+     * Removes the node with the smallest key from the heap, and returns it
+     *
+     * @return identity of the node with the smallest key
+     */
+    int removeMin() {
+        assert size > 0;
+        int minNode = nodes[0];
+        positions[minNode] = ABSENT;
+
+        int lastSlot = --size;
+        if (lastSlot > 0) siftDown(0, nodes[lastSlot], keys[lastSlot]);
+        return minNode;
+    }
+
+    /**
+     * Removes all nodes from the heap, in time proportional to the number of nodes it contains
+     */
+    void clear() {
+        for (int slot = 0; slot < size; slot++) positions[nodes[slot]] = ABSENT;
+        size = 0;
+    }
+
+    /**
+     * Auxiliary (private) method moving the given node up from the given slot, until the heap order is restored
+     *
+     * @param slot   slot (hole) from which the node starts going up
+     * @param nodeId node's identity
+     * @param key    key of the node
+     */
+    private void siftUp(int slot, int nodeId, float key) {
+        while (slot > 0) {
+            int parent = (slot - 1) / ARITY;
+            if (keys[parent] <= key) break;
+            place(slot, nodes[parent], keys[parent]);
+            slot = parent;
+        }
+        place(slot, nodeId, key);
+    }
+
+    /**
+     * Auxiliary (private) method moving the given node down from the given slot, until the heap order is restored
+     *
+     * @param slot   slot (hole) from which the node starts going down
+     * @param nodeId node's identity
+     * @param key    key of the node
+     */
+    private void siftDown(int slot, int nodeId, float key) {
+        while (true) {
+            int firstChild = slot * ARITY + 1;
+            if (firstChild >= size) break;
+
+            int lastChild = Math.min(firstChild + ARITY, size);
+            int minChild = firstChild;
+            for (int child = firstChild + 1; child < lastChild; child++) {
+                if (keys[child] < keys[minChild]) minChild = child;
+            }
+            if (keys[minChild] >= key) break;
+
+            place(slot, nodes[minChild], keys[minChild]);
+            slot = minChild;
+        }
+        place(slot, nodeId, key);
+    }
+
+    /**
+     * Auxiliary (private) method storing the given node and key in the given slot
+     *
+     * @param slot   slot of the heap
+     * @param nodeId node's identity
+     * @param key    key of the node
+     */
+    private void place(int slot, int nodeId, float key) {
+        nodes[slot] = nodeId;
+        keys[slot] = key;
+        positions[nodeId] = slot;
+    }
+}
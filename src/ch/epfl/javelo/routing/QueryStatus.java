@@ -0,0 +1,29 @@
+package ch.epfl.javelo.routing;
+
+/**
+ * Enumeration of the outcomes of a route query
+ *
+ * @author Tim Kreslo (310686)
+ * @author Wei-En Hsieh (341271)
+ */
+public enum QueryStatus {
+    /**
+     * The best route has been found
+     */
+    FOUND,
+
+    /**
+     * No route exists between the two nodes
+     */
+    UNREACHABLE,
+
+    /**
+     * The query reached its deadline before it could conclude
+     */
+    TIMED_OUT,
+
+    /**
+     * The query was cancelled through its token before it could conclude
+     */
+    CANCELLED
+}
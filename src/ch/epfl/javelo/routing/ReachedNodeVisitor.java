@@ -0,0 +1,19 @@
+package ch.epfl.javelo.routing;
+
+/**
+ * Interface representing a consumer of the nodes reached by an isochrone search,
+ * receiving primitive values so that no object is created per node
+ *
+ * @author Tim Kreslo (310686)
+ * @author Wei-En Hsieh (341271)
+ */
+public interface ReachedNodeVisitor {
+
+    /**
+     * Called once for every reached node, in increasing order of cost
+     *
+     * @param nodeId identity of the reached node
+     * @param cost   cost of the best route from the start node to it
+     */
+    void visit(int nodeId, float cost);
+}
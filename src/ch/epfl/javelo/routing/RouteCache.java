@@ -0,0 +1,239 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongFunction;
+
+/**
+ * Bounded cache of routes, safe to use from several threads, whose keys pack the starting node,
+ * the ending node and the identity of the cost function of a route in a single long.
+ * <p>
+ * Entries are spread over independent stripes (each with its own lock), every stripe evicting its least
+ * recently used entry once full: eviction is thus only approximately LRU for the whole cache, but threads
+ * working on different routes rarely wait for each other.
+ *
+ * @author Tim Kreslo (310686)
+ * @author Wei-En Hsieh (341271)
+ */
+public final class RouteCache {
+    private final static int NODE_BITS = 28;
+    private final static int COST_FUNCTION_BITS = 64 - 2 * NODE_BITS;
+    private final static int MAX_STRIPE_COUNT = 16;
+
+    private final Stripe[] stripes;
+    private final int stripeShift;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * RouteCache constructor
+     *
+     * @param capacity greatest number of routes in the cache
+     * @throws IllegalArgumentException if the capacity is not strictly positive
+     */
+    public RouteCache(int capacity) {
+        Preconditions.checkArgument(capacity > 0);
+        int stripeCount = Integer.highestOneBit(Math.min(MAX_STRIPE_COUNT, capacity));
+        stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            // the first stripes take the remainder, so that capacities sum to the capacity of the cache
+            stripes[i] = new Stripe(capacity / stripeCount + (i < capacity % stripeCount ? 1 : 0));
+        }
+        stripeShift = 64 - Integer.numberOfTrailingZeros(stripeCount);
+    }
+
+    /**
+     * Returns the key of the route between the given nodes, for the given cost function
+     *
+     * @param startNodeId    identity of the starting node (less than 2^28)
+     * @param endNodeId      identity of the ending node (less than 2^28)
+     * @param costFunctionId identity given by the caller to the cost function of the route (less than 256)
+     * @return the key of the route
+     * @throws IllegalArgumentException if one of the identities is negative or too large
+     */
+    public static long key(int startNodeId, int endNodeId, int costFunctionId) {
+        Preconditions.checkArgument(startNodeId >= 0 && startNodeId >>> NODE_BITS == 0);
+        Preconditions.checkArgument(endNodeId >= 0 && endNodeId >>> NODE_BITS == 0);
+        Preconditions.checkArgument(costFunctionId >= 0 && costFunctionId >>> COST_FUNCTION_BITS == 0);
+        return (long) startNodeId << (NODE_BITS + COST_FUNCTION_BITS)
+                | (long) endNodeId << COST_FUNCTION_BITS
+                | costFunctionId;
+    }
+
+    /**
+     * Returns the route of the given key, if it is in the cache
+     *
+     * @param key key of the route (see key)
+     * @return the route, or null if it is not in the cache
+     */
+    public Route get(long key) {
+        Stripe stripe = stripeOf(key);
+        Route route;
+        synchronized (stripe) {
+            route = stripe.get(key);
+        }
+        (route == null ? misses : hits).increment();
+        return route;
+    }
+
+    /**
+     * Puts the given route into the cache, evicting the least recently used route of its stripe if it is full
+     *
+     * @param key   key of the route (see key)
+     * @param route route to put into the cache
+     * @throws NullPointerException if the route is null
+     */
+    public void put(long key, Route route) {
+        if (route == null) throw new NullPointerException();
+        Stripe stripe = stripeOf(key);
+        synchronized (stripe) {
+            stripe.put(key, route);
+        }
+    }
+
+    /**
+     * Returns the route of the given key, computing it with the given function and putting it into the cache
+     * if it is not already in it. The route is computed outside of any lock, so that other threads are not
+     * blocked meanwhile; two threads missing the same key may thus both compute it.
+     *
+     * @param key     key of the route (see key)
+     * @param compute function computing the route of a key (null if it does not exist, which is not cached)
+     * @return the route, or null if it does not exist
+     */
+    public Route getOrCompute(long key, LongFunction<Route> compute) {
+        Route route = get(key);
+        if (route == null) {
+            route = compute.apply(key);
+            if (route != null) put(key, route);
+        }
+        return route;
+    }
+
+    /**
+     * Removes all routes from the cache (counters are kept)
+     */
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of routes in the cache
+     *
+     * @return number of routes in the cache
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the number of calls to get (or getOrCompute) which found their route in the cache
+     *
+     * @return number of hits
+     */
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of calls to get (or getOrCompute) which did not find their route in the cache
+     *
+     * @return number of misses
+     */
+    public long missCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of routes evicted from the cache to make room for other ones
+     *
+     * @return number of evictions
+     */
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Auxiliary (private) method returning the stripe of the given key (chosen from the high bits
+     * of a multiplicative hash, as consecutive nodes must not all fall into the same stripe)
+     *
+     * @param key key of a route
+     * @return the stripe of the key
+     */
+    private Stripe stripeOf(long key) {
+        return stripes.length == 1 ? stripes[0] : stripes[(int) ((key * 0x9E37_79B9_7F4A_7C15L) >>> stripeShift)];
+    }
+
+    /**
+     * Stripe of the cache: map of bounded size, in access order, only used while holding its lock
+     */
+    private final class Stripe {
+        private final LinkedHashMap<Long, Route> routes;
+        private final int capacity;
+
+        /**
+         * Default Stripe constructor
+         *
+         * @param capacity greatest number of routes in the stripe
+         */
+        private Stripe(int capacity) {
+            this.routes = new LinkedHashMap<>(2 * capacity, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        /**
+         * Returns the route of the given key, if it is in the stripe (making it the most recently used)
+         *
+         * @param key key of the route
+         * @return the route, or null if it is not in the stripe
+         */
+        private Route get(long key) {
+            return routes.get(key);
+        }
+
+        /**
+         * Puts the given route into the stripe, then evicts its least recently used route if it is full
+         *
+         * @param key   key of the route
+         * @param route route to put into the stripe
+         */
+        private void put(long key, Route route) {
+            routes.put(key, route);
+            if (routes.size() > capacity) {
+                Iterator<Route> eldest = routes.values().iterator();
+                eldest.next();
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+
+        /**
+         * Removes all routes from the stripe
+         */
+        private void clear() {
+            routes.clear();
+        }
+
+        /**
+         * Returns the number of routes in the stripe
+         *
+         * @return number of routes in the stripe
+         */
+        private int size() {
+            return routes.size();
+        }
+    }
+}
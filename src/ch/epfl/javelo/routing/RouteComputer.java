@@ -1,9 +1,12 @@
 package ch.epfl.javelo.routing;
 
 import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.EdgeSnap;
 import ch.epfl.javelo.data.Graph;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.stream.IntStream;
 
 /**
  * Class that computes the full Route
@@ -12,19 +15,81 @@ import java.util.*;
  * @author Wei-En Hsieh (341271)
  */
 public final class RouteComputer {
+    // "predecessor" edge of the nodes from which searches start
+    private final static int NO_EDGE = -1;
+    // limits of a query are checked every 4096 settled nodes
+    private final static int CHECK_INTERVAL_MASK = (1 << 12) - 1;
+    private final static Duration NO_TIMEOUT = Duration.ofNanos(Long.MAX_VALUE);
+    private final static CancellationToken NEVER_CANCELLED = new CancellationToken();
+    // number of sources from which matrices are computed in parallel
+    private final static int PARALLEL_MATRIX_SOURCES = 4;
+
     private final Graph graph;
     private final CostFunction costFunction;
+    private final SearchMode searchMode;
+    private final Heuristic heuristic;
+    private final StronglyConnectedComponents components; // null if unknown
+    // one reusable workspace per searching thread (and per direction, for bidirectional searches)
+    private final ThreadLocal<SearchWorkspace> workspaces;
+    private final ThreadLocal<SearchWorkspace> backwardWorkspaces;
 
 
     /**
-     * Default RouteComputer constructor
+     * Default RouteComputer constructor, searching routes from the start node only
      *
      * @param graph        the whole JaVelo graph
      * @param costFunction cost factor, for bike Routes.
      */
     public RouteComputer(Graph graph, CostFunction costFunction) {
+        this(graph, costFunction, SearchMode.UNIDIRECTIONAL);
+    }
+
+
+    /**
+     * RouteComputer constructor, searching routes in the given mode
+     *
+     * @param graph        the whole JaVelo graph
+     * @param costFunction cost factor, for bike Routes.
+     * @param searchMode   the way the graph is explored (both modes give routes of identical cost)
+     */
+    public RouteComputer(Graph graph, CostFunction costFunction, SearchMode searchMode) {
+        this(graph, costFunction, searchMode, new CrowFlyHeuristic(graph));
+    }
+
+
+    /**
+     * RouteComputer constructor, searching routes in the given mode, guided by the given heuristic
+     * (e.g. Landmarks, built for the same cost function)
+     *
+     * @param graph        the whole JaVelo graph
+     * @param costFunction cost factor, for bike Routes.
+     * @param searchMode   the way the graph is explored (both modes give routes of identical cost)
+     * @param heuristic    consistent lower bound of the cost between two nodes
+     */
+    public RouteComputer(Graph graph, CostFunction costFunction, SearchMode searchMode, Heuristic heuristic) {
+        this(graph, costFunction, searchMode, heuristic, null);
+    }
+
+
+    /**
+     * RouteComputer constructor, searching routes in the given mode, guided by the given heuristic,
+     * and answering without any search when the given components tell that no route exists
+     *
+     * @param graph        the whole JaVelo graph
+     * @param costFunction cost factor, for bike Routes.
+     * @param searchMode   the way the graph is explored (both modes give routes of identical cost)
+     * @param heuristic    consistent lower bound of the cost between two nodes
+     * @param components   strongly connected components of the graph, for the same cost function (or null)
+     */
+    public RouteComputer(Graph graph, CostFunction costFunction, SearchMode searchMode, Heuristic heuristic,
+                         StronglyConnectedComponents components) {
         this.graph = graph;
         this.costFunction = costFunction;
+        this.searchMode = searchMode;
+        this.heuristic = heuristic;
+        this.components = components;
+        this.workspaces = ThreadLocal.withInitial(() -> new SearchWorkspace(graph.nodeCount()));
+        this.backwardWorkspaces = ThreadLocal.withInitial(() -> new SearchWorkspace(graph.nodeCount()));
     }
 
 
@@ -39,100 +104,558 @@ public final class RouteComputer {
      * @throws NullPointerException     if the route couldn't be built with provided data
      */
     public Route bestRouteBetween(int startNodeId, int endNodeId) {
+        return bestRouteBetween(startNodeId, endNodeId, NO_TIMEOUT, NEVER_CANCELLED).route();
+    }
+
+
+    /**
+     * Searches the minimum total cost route from startNodeId to endNodeId, in the graph given to the constructor,
+     * giving up once the given timeout has elapsed or the given token has been cancelled.
+     * Both are checked every few thousand settled nodes, so that the query stops shortly after.
+     *
+     * @param startNodeId starting Node identity
+     * @param endNodeId   ending Node identity
+     * @param timeout     maximum duration of the query
+     * @param token       token through which the query can be cancelled
+     * @return outcome of the query, with the ideal route between two given nodes if it has been found
+     * @throws IllegalArgumentException if startNodeId and endNodeId are identical (no route exists)
+     */
+    public RouteQueryResult bestRouteBetween(int startNodeId, int endNodeId, Duration timeout,
+                                             CancellationToken token) {
         Preconditions.checkArgument(startNodeId != endNodeId);
+        if (components != null && !components.mayReach(startNodeId, endNodeId)) {
+            return RouteQueryResult.notFound(QueryStatus.UNREACHABLE);
+        }
+        long deadline = System.nanoTime() + timeout.toNanos();
+
+        return (searchMode == SearchMode.BIDIRECTIONAL)
+                ? bidirectionalRouteBetween(startNodeId, endNodeId, deadline, token)
+                : unidirectionalRouteBetween(startNodeId, endNodeId, deadline, token);
+    }
+
+
+    /**
+     * Returns the minimum total cost route between the two given points snapped to edges (see Graph.edgeClosestTo),
+     * or null if no route exists. The route starts and ends in the middle of these edges, which can be travelled
+     * in both directions if their reverse edge exists, its first and last edges being the parts of them travelled.
+     * Such routes are searched from the start only, whatever the search mode, towards both nodes of the end edge.
+     *
+     * @param start starting point, snapped to an edge
+     * @param end   ending point, snapped to an edge
+     * @return the ideal route between the two given points
+     */
+    public Route bestRouteBetween(EdgeSnap start, EdgeSnap end) {
+        // each end can be travelled along its edge or along the reverse edge (NO_EDGE if there is none)
+        int[] startEdges = {start.edgeId(), reverseEdgeOf(start.edgeId())};
+        double[] startFractions = {start.fraction(), 1 - start.fraction()};
+        int[] endEdges = {end.edgeId(), reverseEdgeOf(end.edgeId())};
+        double[] endFractions = {end.fraction(), 1 - end.fraction()};
+
+        // both points on the same edge, the end being ahead of the start: the route may not leave the edge
+        double bestCost = Double.POSITIVE_INFINITY;
+        int directIndex = -1;
+        for (int i = 0; i < 2; i++) {
+            if (startEdges[i] == NO_EDGE) continue;
+            int j = startEdges[i] == endEdges[0] ? 0 : startEdges[i] == endEdges[1] ? 1 : -1;
+            if (j != -1 && startFractions[i] <= endFractions[j]) {
+                double cost = partialCost(startEdges[i], endFractions[j] - startFractions[i]);
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    directIndex = i;
+                }
+            }
+        }
 
-        /*
-          Nested recorded class representing a node, which is compared to a given node,
-          by its distance to target node.
-
-          @param nodeId node's identity
-          @param distance between this and target node
-         */
-        record WeightedNode(int nodeId, float distance)
-                implements Comparable<WeightedNode> {
-            @Override
-            public int compareTo(WeightedNode that) {
-                return Float.compare(this.distance, that.distance);
+        SearchWorkspace workspace = workspaces.get();
+        workspace.reset();
+        NodeHeap visiting = workspace.heap();
+        for (int i = 0; i < 2; i++) {
+            if (startEdges[i] == NO_EDGE) continue;
+            int nodeId = graph.edgeTargetNodeId(startEdges[i]);
+            float cost = (float) partialCost(startEdges[i], 1 - startFractions[i]);
+            if (cost < workspace.distance(nodeId)) {
+                workspace.reach(nodeId, cost, NO_EDGE);
+                visiting.insertOrDecrease(nodeId, cost + (float) endPotential(nodeId, endEdges));
             }
         }
 
-        PriorityQueue<WeightedNode> Visiting = new PriorityQueue<>();
+        int bestEndNode = -1;  // node from which the route enters the end edge, if it leaves the start edge
+        int bestEndIndex = -1; // index (in endEdges) of the edge through which it does
+        while (!visiting.isEmpty() && visiting.minKey() < bestCost) {
+            int currentNode = visiting.removeMin();
+            float currentDistance = workspace.distance(currentNode);
 
-        float[] distance = new float[graph.nodeCount()];
-        int[] predecessor = new int[graph.nodeCount()];
+            for (int j = 0; j < 2; j++) {
+                if (endEdges[j] == NO_EDGE || graph.edgeSourceNodeId(endEdges[j]) != currentNode) continue;
+                double cost = currentDistance + partialCost(endEdges[j], endFractions[j]);
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    bestEndNode = currentNode;
+                    bestEndIndex = j;
+                    directIndex = -1;
+                }
+            }
+
+            for (int i = 0; i < graph.nodeOutDegree(currentNode); i++) {
+                int edge = graph.nodeOutEdgeId(currentNode, i);
+                int nTemp = graph.edgeTargetNodeId(edge);
+                if (workspace.isSettled(nTemp)) continue;
+
+                double totalDistance = currentDistance
+                        + costFunction.costFactor(currentNode, edge) * graph.edgeLength(edge);
+                if (totalDistance < workspace.distance(nTemp)) {
+                    workspace.reach(nTemp, (float) totalDistance, edge);
+                    visiting.insertOrDecrease(nTemp, (float) (totalDistance + endPotential(nTemp, endEdges)));
+                }
+            }
+            workspace.settle(currentNode);
+        }
+
+        if (directIndex != -1) {
+            int j = startEdges[directIndex] == endEdges[0] ? 0 : 1;
+            return new SingleRoute(List.of(
+                    partialEdge(startEdges[directIndex], startFractions[directIndex], endFractions[j])));
+        }
+        if (bestEndNode == -1) return null;
+
+        // edges between the start and end edges, back to the node at which the route left the start edge
+        List<Edge> edgesOfTheRoute = new ArrayList<>();
+        int nodeId = bestEndNode;
+        for (int edgeId = workspace.predecessor(nodeId); edgeId != NO_EDGE; edgeId = workspace.predecessor(nodeId)) {
+            int predecessorId = graph.edgeSourceNodeId(edgeId);
+            edgesOfTheRoute.add(Edge.of(graph, edgeId, predecessorId, nodeId));
+            nodeId = predecessorId;
+        }
+        int i = (startEdges[0] != NO_EDGE && graph.edgeTargetNodeId(startEdges[0]) == nodeId) ? 0 : 1;
+        edgesOfTheRoute.add(partialEdge(startEdges[i], startFractions[i], 1));
+        Collections.reverse(edgesOfTheRoute);
+        edgesOfTheRoute.add(partialEdge(endEdges[bestEndIndex], 0, endFractions[bestEndIndex]));
+
+        // parts of the start and end edges of zero length (points snapped to nodes) are left out
+        List<Edge> nonEmptyEdges = edgesOfTheRoute.stream().filter(edge -> edge.length() > 0).toList();
+        return new SingleRoute(nonEmptyEdges.isEmpty() ? edgesOfTheRoute.subList(0, 1) : nonEmptyEdges);
+    }
+
+
+    /**
+     * Returns the costs and lengths of the best routes from every source node to every target node,
+     * without building their edges. Each source is swept once by Dijkstra's algorithm, until every target
+     * is settled, and sources are swept in parallel for large matrices.
+     *
+     * @param sourceNodeIds identities of the source nodes (rows of the matrix)
+     * @param targetNodeIds identities of the target nodes (columns of the matrix)
+     * @return matrix of the costs and lengths of the best routes
+     */
+    public RouteMatrix matrixBetween(int[] sourceNodeIds, int[] targetNodeIds) {
+        return matrixBetween(sourceNodeIds, targetNodeIds, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Returns the costs and lengths of the best routes from every source node to every target node, as above,
+     * routes costing more than the given bound being considered as not existing: the sweep of a source
+     * stops as soon as every target is settled or the bound is exceeded, whichever comes first.
+     *
+     * @param sourceNodeIds identities of the source nodes (rows of the matrix)
+     * @param targetNodeIds identities of the target nodes (columns of the matrix)
+     * @param maxCost       greatest cost of the routes (positive infinity for no bound)
+     * @return matrix of the costs and lengths of the best routes not costing more than the bound
+     */
+    public RouteMatrix matrixBetween(int[] sourceNodeIds, int[] targetNodeIds, double maxCost) {
+        int targetCount = targetNodeIds.length;
+        float[] costs = new float[Math.multiplyExact(sourceNodeIds.length, targetCount)];
+        float[] lengths = new float[costs.length];
+        int[] sortedTargets = Arrays.stream(targetNodeIds).sorted().distinct().toArray();
+
+        IntStream sources = IntStream.range(0, sourceNodeIds.length);
+        if (sourceNodeIds.length >= PARALLEL_MATRIX_SOURCES) sources = sources.parallel();
+        sources.forEach(i -> {
+            SearchWorkspace workspace = workspaces.get();
+            sweep(sourceNodeIds[i], sortedTargets, maxCost, workspace);
+            for (int j = 0; j < targetCount; j++) {
+                boolean found = workspace.isSettled(targetNodeIds[j]);
+                costs[i * targetCount + j] = found ? workspace.distance(targetNodeIds[j]) : Float.POSITIVE_INFINITY;
+                lengths[i * targetCount + j] = found
+                        ? lengthTo(sourceNodeIds[i], targetNodeIds[j], workspace)
+                        : Float.POSITIVE_INFINITY;
+            }
+        });
+        return new RouteMatrix(sourceNodeIds.length, targetCount, costs, lengths);
+    }
+
+
+    /**
+     * Returns the best routes from the given source node to each of the given target nodes, found with a single
+     * sweep (as those of matrixBetween, with the same bound), their edges following the predecessor edges
+     * of the sweep rather than being searched for again
+     *
+     * @param sourceNodeId  identity of the source node
+     * @param targetNodeIds identities of the target nodes
+     * @param maxCost       greatest cost of the routes (positive infinity for no bound)
+     * @return the best route to each target, in the same order (null for the source itself, and for the targets
+     * which cannot be reached without exceeding the bound)
+     */
+    public Route[] bestRoutesFrom(int sourceNodeId, int[] targetNodeIds, double maxCost) {
+        SearchWorkspace workspace = workspaces.get();
+        sweep(sourceNodeId, Arrays.stream(targetNodeIds).sorted().distinct().toArray(), maxCost, workspace);
+        Route[] routes = new Route[targetNodeIds.length];
+        for (int j = 0; j < targetNodeIds.length; j++) {
+            if (targetNodeIds[j] != sourceNodeId && workspace.isSettled(targetNodeIds[j]))
+                routes[j] = computeRoute(sourceNodeId, targetNodeIds[j], workspace);
+        }
+        return routes;
+    }
+
+
+    /**
+     * Auxiliary (private) method searching the best route with A*, from the start node only
+     *
+     * @param startNodeId starting Node identity
+     * @param endNodeId   ending Node identity
+     * @param deadline    time (as given by System.nanoTime) at which the search gives up
+     * @param token       token through which the search can be cancelled
+     * @return outcome of the search, with the ideal route between two given nodes if it has been found
+     */
+    private RouteQueryResult unidirectionalRouteBetween(int startNodeId, int endNodeId, long deadline,
+                                                        CancellationToken token) {
+        SearchWorkspace workspace = workspaces.get();
+        workspace.reset();
+        NodeHeap visiting = workspace.heap();
 
         int currentNode;      //index of the current Node
         int edge;             //index of the current Edge
         int nTemp;            // index of a temporary Node
         double totalDistance; // total distance through visited Nodes
+        int settledCount = 0; // number of settled Nodes, to check the limits of the search now and then
 
-        Arrays.fill(distance, 0, distance.length, Float.POSITIVE_INFINITY);
-        Arrays.fill(predecessor, 0, predecessor.length, 0);
-
-        distance[startNodeId] = 0f;
-        Visiting.add(new WeightedNode(startNodeId, distance[startNodeId]));
+        workspace.reach(startNodeId, 0f, NO_EDGE);
+        visiting.insertOrDecrease(startNodeId, 0f);
 
-        while (!Visiting.isEmpty()) {
-            currentNode = Visiting.remove().nodeId; // for which distance[N] is minimal
+        while (!visiting.isEmpty()) {
+            currentNode = visiting.removeMin(); // for which distance[N] is minimal
 
-            if (currentNode == endNodeId) return computeRoute(startNodeId, endNodeId, predecessor);
+            if (currentNode == endNodeId) {
+                return RouteQueryResult.found(computeRoute(startNodeId, endNodeId, workspace));
+            }
+            if ((++settledCount & CHECK_INTERVAL_MASK) == 0) {
+                QueryStatus interruption = interruption(deadline, token);
+                if (interruption != null) return RouteQueryResult.notFound(interruption);
+            }
 
-            if (distance[currentNode] != Float.NEGATIVE_INFINITY) {
-                for (int currentEdge = 0; currentEdge < graph.nodeOutDegree(currentNode); currentEdge++) {
-                    edge = graph.nodeOutEdgeId(currentNode, currentEdge); // considering current edge
-                    nTemp = graph.edgeTargetNodeId(edge);
+            float currentDistance = workspace.distance(currentNode);
+            for (int currentEdge = 0; currentEdge < graph.nodeOutDegree(currentNode); currentEdge++) {
+                edge = graph.nodeOutEdgeId(currentNode, currentEdge); // considering current edge
+                nTemp = graph.edgeTargetNodeId(edge);
+                if (workspace.isSettled(nTemp)) continue;
 
-                    totalDistance = distance[currentNode]
-                                  + costFunction.costFactor(currentNode, edge) * graph.edgeLength(edge);
+                totalDistance = currentDistance
+                              + costFunction.costFactor(currentNode, edge) * graph.edgeLength(edge);
 
-                    if (totalDistance < distance[nTemp]) {
-                        distance[nTemp] = (float) totalDistance;
-                        predecessor[nTemp] = currentNode;
-                        Visiting.add(new WeightedNode(nTemp, distance[nTemp]
-                                + (float) graph.nodePoint(nTemp).distanceTo(graph.nodePoint(endNodeId))));
-                    }
+                if (totalDistance < workspace.distance(nTemp)) {
+                    workspace.reach(nTemp, (float) totalDistance, edge);
+                    visiting.insertOrDecrease(nTemp, (float) totalDistance
+                            + (float) heuristic.lowerBound(nTemp, endNodeId));
                 }
-                distance[currentNode] = Float.NEGATIVE_INFINITY;
             }
+            workspace.settle(currentNode);
         }
         //case reached only if the route couldn't be build with provided data
         // -> should never be executed with correct data.
+        return RouteQueryResult.notFound(QueryStatus.UNREACHABLE);
+    }
+
+    /**
+     * Auxiliary (private) method searching the best route with two A* searches, one forward from the start node
+     * and one backward from the end node (along incoming edges).
+     * Both use the average of the heuristic potentials towards each end, which is consistent in both
+     * directions, so that the search can stop as soon as the sum of the smallest keys of both queues
+     * reaches the cost of the best route found so far.
+     *
+     * @param startNodeId starting Node identity
+     * @param endNodeId   ending Node identity
+     * @param deadline    time (as given by System.nanoTime) at which the search gives up
+     * @param token       token through which the search can be cancelled
+     * @return outcome of the search, with the ideal route between two given nodes if it has been found
+     */
+    private RouteQueryResult bidirectionalRouteBetween(int startNodeId, int endNodeId, long deadline,
+                                                       CancellationToken token) {
+        SearchWorkspace forward = workspaces.get();
+        SearchWorkspace backward = backwardWorkspaces.get();
+        forward.reset();
+        backward.reset();
+        NodeHeap forwardVisiting = forward.heap();
+        NodeHeap backwardVisiting = backward.heap();
+
+        double bestCost = Double.POSITIVE_INFINITY; // cost of the best route found so far
+        int meetingNode = -1;                       // node where the forward and backward parts of it meet
+        int settledCount = 0;                       // number of settled nodes, to check the limits now and then
+
+        forward.reach(startNodeId, 0f, NO_EDGE);
+        forwardVisiting.insertOrDecrease(startNodeId, (float) potential(startNodeId, startNodeId, endNodeId));
+        backward.reach(endNodeId, 0f, NO_EDGE);
+        backwardVisiting.insertOrDecrease(endNodeId, (float) -potential(endNodeId, startNodeId, endNodeId));
+
+        while (!forwardVisiting.isEmpty() && !backwardVisiting.isEmpty()) {
+            if ((double) forwardVisiting.minKey() + backwardVisiting.minKey() >= bestCost) break;
+            if ((++settledCount & CHECK_INTERVAL_MASK) == 0) {
+                QueryStatus interruption = interruption(deadline, token);
+                if (interruption != null) return RouteQueryResult.notFound(interruption);
+            }
+
+            if (forwardVisiting.size() <= backwardVisiting.size()) {
+                int currentNode = forwardVisiting.removeMin();
+                float currentDistance = forward.distance(currentNode);
+                for (int i = 0; i < graph.nodeOutDegree(currentNode); i++) {
+                    int edge = graph.nodeOutEdgeId(currentNode, i);
+                    int nTemp = graph.edgeTargetNodeId(edge);
+                    if (forward.isSettled(nTemp)) continue;
+
+                    double totalDistance = currentDistance
+                            + costFunction.costFactor(currentNode, edge) * graph.edgeLength(edge);
+                    if (totalDistance < forward.distance(nTemp)) {
+                        forward.reach(nTemp, (float) totalDistance, edge);
+                        forwardVisiting.insertOrDecrease(nTemp, (float) (totalDistance
+                                + potential(nTemp, startNodeId, endNodeId)));
+
+                        double routeCost = (double) forward.distance(nTemp) + backward.distance(nTemp);
+                        if (routeCost < bestCost) {
+                            bestCost = routeCost;
+                            meetingNode = nTemp;
+                        }
+                    }
+                }
+                forward.settle(currentNode);
+            } else {
+                int currentNode = backwardVisiting.removeMin();
+                float currentDistance = backward.distance(currentNode);
+                for (int i = 0; i < graph.nodeInDegree(currentNode); i++) {
+                    int edge = graph.nodeInEdgeId(currentNode, i);
+                    int nTemp = graph.edgeSourceNodeId(edge);
+                    if (backward.isSettled(nTemp)) continue;
+
+                    double totalDistance = currentDistance
+                            + costFunction.costFactor(nTemp, edge) * graph.edgeLength(edge);
+                    if (totalDistance < backward.distance(nTemp)) {
+                        backward.reach(nTemp, (float) totalDistance, edge);
+                        backwardVisiting.insertOrDecrease(nTemp, (float) (totalDistance
+                                - potential(nTemp, startNodeId, endNodeId)));
+
+                        double routeCost = (double) forward.distance(nTemp) + backward.distance(nTemp);
+                        if (routeCost < bestCost) {
+                            bestCost = routeCost;
+                            meetingNode = nTemp;
+                        }
+                    }
+                }
+                backward.settle(currentNode);
+            }
+        }
+        if (meetingNode == -1) return RouteQueryResult.notFound(QueryStatus.UNREACHABLE);
+
+        List<Edge> edgesOfTheRoute = new ArrayList<>();
+        addEdgesTo(edgesOfTheRoute, startNodeId, meetingNode, forward);
+        // in the backward search, the "predecessor" of a node is the edge leading to the next node towards the end
+        for (int nodeId = meetingNode; nodeId != endNodeId; ) {
+            int edgeId = backward.predecessor(nodeId);
+            int nextNodeId = graph.edgeTargetNodeId(edgeId);
+            edgesOfTheRoute.add(Edge.of(graph, edgeId, nodeId, nextNodeId));
+            nodeId = nextNodeId;
+        }
+        return RouteQueryResult.found(new SingleRoute(edgesOfTheRoute));
+    }
+
+    /**
+     * Auxiliary (private) method settling, with Dijkstra's algorithm, the nodes closest to the given source node,
+     * until every given target which may be reached from it (according to the components, if known) is settled,
+     * or every node reachable from the source is, or the nodes left cost more than the given bound.
+     * Only settled targets have their final cost afterwards.
+     *
+     * @param sourceNodeId  source Node identity
+     * @param sortedTargets identities of the target nodes, sorted and distinct
+     * @param maxCost       greatest cost of the settled nodes (positive infinity for no bound)
+     * @param workspace     Workspace of the search, containing the costs and predecessor edges of settled nodes
+     */
+    private void sweep(int sourceNodeId, int[] sortedTargets, double maxCost, SearchWorkspace workspace) {
+        workspace.reset();
+        NodeHeap visiting = workspace.heap();
+        int remainingTargets = 0;
+        for (int target : sortedTargets) {
+            if (components == null || components.mayReach(sourceNodeId, target)) remainingTargets++;
+        }
+        if (remainingTargets == 0) return;
+
+        workspace.reach(sourceNodeId, 0f, NO_EDGE);
+        visiting.insertOrDecrease(sourceNodeId, 0f);
+
+        while (!visiting.isEmpty() && remainingTargets > 0) {
+            int currentNode = visiting.removeMin();
+            float currentDistance = workspace.distance(currentNode);
+            if (currentDistance > maxCost) break; // so are all the nodes left
+            if (Arrays.binarySearch(sortedTargets, currentNode) >= 0) remainingTargets--;
+
+            for (int i = 0; i < graph.nodeOutDegree(currentNode); i++) {
+                int edge = graph.nodeOutEdgeId(currentNode, i);
+                int nTemp = graph.edgeTargetNodeId(edge);
+                if (workspace.isSettled(nTemp)) continue;
+
+                double totalDistance = currentDistance
+                        + costFunction.costFactor(currentNode, edge) * graph.edgeLength(edge);
+                if (totalDistance < workspace.distance(nTemp)) {
+                    workspace.reach(nTemp, (float) totalDistance, edge);
+                    visiting.insertOrDecrease(nTemp, (float) totalDistance);
+                }
+            }
+            workspace.settle(currentNode);
+        }
+    }
+
+    /**
+     * Auxiliary (private) method returning the length of the best route from the given source node
+     * to the given target node, following the predecessor edges of a sweep
+     *
+     * @param sourceNodeId source Node identity
+     * @param targetNodeId target Node identity
+     * @param workspace    Workspace of the sweep from the source node, which settled the target node
+     * @return length of the route in meters
+     */
+    private float lengthTo(int sourceNodeId, int targetNodeId, SearchWorkspace workspace) {
+        double length = 0;
+        for (int nodeId = targetNodeId; nodeId != sourceNodeId; ) {
+            int edgeId = workspace.predecessor(nodeId);
+            length += graph.edgeLength(edgeId);
+            nodeId = graph.edgeSourceNodeId(edgeId);
+        }
+        return (float) length;
+    }
+
+    /**
+     * Auxiliary (private) method checking the limits of a search
+     *
+     * @param deadline time (as given by System.nanoTime) at which the search gives up
+     * @param token    token through which the search can be cancelled
+     * @return CANCELLED or TIMED_OUT if the search must stop, null otherwise
+     */
+    private static QueryStatus interruption(long deadline, CancellationToken token) {
+        if (token.isCancelled()) return QueryStatus.CANCELLED;
+        if (System.nanoTime() - deadline >= 0) return QueryStatus.TIMED_OUT; // robust to numerical overflow
         return null;
     }
 
+    /**
+     * Auxiliary (private) method returning the potential of the given node in a bidirectional search,
+     * half the difference between the lower bounds of its cost to the end node and from the start node.
+     * Its opposite is the potential of the node in the backward search.
+     *
+     * @param nodeId      node's identity
+     * @param startNodeId starting Node identity
+     * @param endNodeId   ending Node identity
+     * @return forward potential of the node
+     */
+    private double potential(int nodeId, int startNodeId, int endNodeId) {
+        return (heuristic.lowerBound(nodeId, endNodeId) - heuristic.lowerBound(startNodeId, nodeId)) / 2;
+    }
+
+    /**
+     * Auxiliary (private) method returning the reverse of the given edge: the edge going from its target node
+     * back to its source node, with the same length
+     *
+     * @param edgeId edge's identity
+     * @return identity of the reverse edge, or NO_EDGE if there is none (e.g. one-way roads)
+     */
+    private int reverseEdgeOf(int edgeId) {
+        int sourceNodeId = graph.edgeSourceNodeId(edgeId);
+        int targetNodeId = graph.edgeTargetNodeId(edgeId);
+        for (int i = 0; i < graph.nodeOutDegree(targetNodeId); i++) {
+            int reverseEdgeId = graph.nodeOutEdgeId(targetNodeId, i);
+            if (graph.edgeTargetNodeId(reverseEdgeId) == sourceNodeId
+                    && graph.edgeLength(reverseEdgeId) == graph.edgeLength(edgeId)) return reverseEdgeId;
+        }
+        return NO_EDGE;
+    }
+
+    /**
+     * Auxiliary (private) method returning the cost of the given fraction of the given edge
+     *
+     * @param edgeId   edge's identity
+     * @param fraction fraction of the edge, between 0 and 1
+     * @return cost of that part of the edge (positive infinity if the edge cannot be used, even partly)
+     */
+    private double partialCost(int edgeId, double fraction) {
+        double costFactor = costFunction.costFactor(graph.edgeSourceNodeId(edgeId), edgeId);
+        return costFactor == Double.POSITIVE_INFINITY ? costFactor : fraction * costFactor * graph.edgeLength(edgeId);
+    }
+
+    /**
+     * Auxiliary (private) method returning the part of the given edge between the two given fractions of it
+     *
+     * @param edgeId       edge's identity
+     * @param fromFraction fraction of the edge at which the part starts
+     * @param toFraction   fraction of the edge at which the part ends
+     * @return the part of the edge, with the nodes of the whole edge
+     */
+    private Edge partialEdge(int edgeId, double fromFraction, double toFraction) {
+        Edge edge = Edge.of(graph, edgeId, graph.edgeSourceNodeId(edgeId), graph.edgeTargetNodeId(edgeId));
+        double offset = fromFraction * edge.length();
+        return new Edge(edge.fromNodeId(), edge.toNodeId(), edge.pointAt(offset),
+                edge.pointAt(toFraction * edge.length()), (toFraction - fromFraction) * edge.length(),
+                position -> edge.elevationAt(offset + position));
+    }
+
+    /**
+     * Auxiliary (private) method returning the potential of the given node in a search towards the end edges,
+     * the smallest lower bound of its cost to their source nodes (consistent, as a minimum of consistent bounds)
+     *
+     * @param nodeId   node's identity
+     * @param endEdges identities of the end edges (NO_EDGE for missing ones)
+     * @return potential of the node
+     */
+    private double endPotential(int nodeId, int[] endEdges) {
+        double potential = Double.POSITIVE_INFINITY;
+        for (int endEdge : endEdges) {
+            if (endEdge != NO_EDGE) {
+                potential = Math.min(potential, heuristic.lowerBound(nodeId, graph.edgeSourceNodeId(endEdge)));
+            }
+        }
+        return potential;
+    }
+
     /**
      * Auxiliary (private) method, that computes the final route
-     * (using starting node index, ending node index and the array of predecessors), and returns a Route,
+     * (using starting node index, ending node index and the predecessor edges of the search), and returns a Route,
      * providing it a list of edges, composing the route.
      *
      * @param startNodeId Starting node index
      * @param endNodeId   Ending node index
-     * @param predecessor Array of preceding nodes
+     * @param workspace   Workspace of the search, containing the preceding edges
      * @return            Route, composed of a list of edges
      */
-    private SingleRoute computeRoute(int startNodeId, int endNodeId, int[] predecessor) {
+    private SingleRoute computeRoute(int startNodeId, int endNodeId, SearchWorkspace workspace) {
         List<Edge> edgesOfTheRoute = new ArrayList<>();
+        addEdgesTo(edgesOfTheRoute, startNodeId, endNodeId, workspace);
+        return new SingleRoute(edgesOfTheRoute);
+    }
 
+    /**
+     * Auxiliary (private) method appending to the given list the edges going from startNodeId to endNodeId,
+     * following the predecessor edges recorded in the given workspace (the edges through which nodes were reached),
+     * in a single pass without scanning the edges leaving each node.
+     *
+     * @param edgesOfTheRoute list to which the edges are appended, in order
+     * @param startNodeId     Starting node index
+     * @param endNodeId       Ending node index
+     * @param workspace       Workspace of the search, containing the preceding edges
+     */
+    private void addEdgesTo(List<Edge> edgesOfTheRoute, int startNodeId, int endNodeId, SearchWorkspace workspace) {
+        int firstIndex = edgesOfTheRoute.size();
         int nodeId = endNodeId;
 
         while (nodeId != startNodeId) {
-
-            for (int edgeTemp = 0; edgeTemp < graph.nodeOutDegree(predecessor[nodeId]); edgeTemp++) {
-
-                int edgeId = graph.nodeOutEdgeId(predecessor[nodeId], edgeTemp);
-                int nodeTemp = graph.edgeTargetNodeId(edgeId);
-                if (nodeTemp == nodeId) {
-                    Edge edgeOnRoute = Edge.of(graph, edgeId, predecessor[nodeId], nodeId);
-                    edgesOfTheRoute.add(edgeOnRoute);
-                    break;
-                }
-            }
-            nodeId = predecessor[nodeId];
+            int edgeId = workspace.predecessor(nodeId);
+            int predecessorId = graph.edgeSourceNodeId(edgeId);
+            edgesOfTheRoute.add(Edge.of(graph, edgeId, predecessorId, nodeId));
+            nodeId = predecessorId;
         }
 
         //The list contains inverted edges, in the reverse order -> order must be reversed for building path.
-        Collections.reverse(edgesOfTheRoute);
-
-        return new SingleRoute(edgesOfTheRoute);
+        Collections.reverse(edgesOfTheRoute.subList(firstIndex, edgesOfTheRoute.size()));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,87 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+
+/**
+ * Recorded class representing the costs and lengths of the best routes between several sources and targets,
+ * stored row by row (one row per source) in primitive arrays.
+ *
+ * @param sourceCount number of sources (rows)
+ * @param targetCount number of targets (columns)
+ * @param costs       cost of the best route from each source to each target (positive infinity if none exists)
+ * @param lengths     length in meters of these routes (positive infinity if none exists)
+ *
+ * @author Tim Kreslo (310686)
+ * @author Wei-En Hsieh (341271)
+ */
+public record RouteMatrix(int sourceCount, int targetCount, float[] costs, float[] lengths) {
+
+    /**
+     * Compact RouteMatrix constructor, checking the dimensions of the arrays, and copying them
+     * (so that the matrix cannot be modified)
+     *
+     * @throws IllegalArgumentException if the arrays do not have one element per (source, target) pair
+     * @throws ArithmeticException      if the number of pairs exceeds the size of an array
+     */
+    public RouteMatrix {
+        Preconditions.checkArgument(sourceCount >= 0 && targetCount >= 0
+                && costs.length == Math.multiplyExact(sourceCount, targetCount) && lengths.length == costs.length);
+        costs = costs.clone();
+        lengths = lengths.clone();
+    }
+
+    /**
+     * Returns the costs of the best routes, row by row
+     *
+     * @return copy of the costs of the best routes
+     */
+    @Override
+    public float[] costs() {
+        return costs.clone();
+    }
+
+    /**
+     * Returns the lengths of the best routes, row by row
+     *
+     * @return copy of the lengths of the best routes
+     */
+    @Override
+    public float[] lengths() {
+        return lengths.clone();
+    }
+
+    /**
+     * Returns the cost of the best route from the given source to the given target
+     *
+     * @param sourceIndex source's index
+     * @param targetIndex target's index
+     * @return cost of the best route, positive infinity if no route exists
+     */
+    public float cost(int sourceIndex, int targetIndex) {
+        return costs[index(sourceIndex, targetIndex)];
+    }
+
+    /**
+     * Returns the length of the best route from the given source to the given target
+     *
+     * @param sourceIndex source's index
+     * @param targetIndex target's index
+     * @return length of the best route in meters, positive infinity if no route exists
+     */
+    public float length(int sourceIndex, int targetIndex) {
+        return lengths[index(sourceIndex, targetIndex)];
+    }
+
+    /**
+     * Auxiliary (private) method returning the index of the given pair in the arrays
+     *
+     * @param sourceIndex source's index
+     * @param targetIndex target's index
+     * @return index of the pair
+     */
+    private int index(int sourceIndex, int targetIndex) {
+        if (sourceIndex < 0 || sourceIndex >= sourceCount || targetIndex < 0 || targetIndex >= targetCount)
+            throw new IndexOutOfBoundsException();
+        return sourceIndex * targetCount + targetIndex;
+    }
+}
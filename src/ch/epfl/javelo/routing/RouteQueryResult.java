@@ -0,0 +1,44 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+
+/**
+ * Recorded class representing the outcome of a route query
+ *
+ * @param status outcome of the query
+ * @param route  the best route if it has been found, null otherwise
+ *
+ * @author Tim Kreslo (310686)
+ * @author Wei-En Hsieh (341271)
+ */
+public record RouteQueryResult(QueryStatus status, Route route) {
+
+    /**
+     * Compact RouteQueryResult constructor, checking that a route is given iff it has been found
+     *
+     * @throws IllegalArgumentException if a route is given with another status than FOUND, or no route with FOUND
+     */
+    public RouteQueryResult {
+        Preconditions.checkArgument((status == QueryStatus.FOUND) == (route != null));
+    }
+
+    /**
+     * Returns the result of a query which found the given route
+     *
+     * @param route the best route
+     * @return result of the query
+     */
+    public static RouteQueryResult found(Route route) {
+        return new RouteQueryResult(QueryStatus.FOUND, route);
+    }
+
+    /**
+     * Returns the result of a query which did not find any route, for the given reason
+     *
+     * @param status outcome of the query (other than FOUND)
+     * @return result of the query
+     */
+    public static RouteQueryResult notFound(QueryStatus status) {
+        return new RouteQueryResult(status, null);
+    }
+}
@@ -0,0 +1,20 @@
+package ch.epfl.javelo.routing;
+
+/**
+ * Enumeration of the ways RouteComputer can explore the graph to find the best route
+ *
+ * @author Tim Kreslo (310686)
+ * @author Wei-En Hsieh (341271)
+ */
+public enum SearchMode {
+    /**
+     * A* search from the start node towards the end node only
+     */
+    UNIDIRECTIONAL,
+
+    /**
+     * A* searches from both the start node (forward) and the end node (backward, along incoming edges),
+     * stopping once they can no longer improve the best route found where they meet
+     */
+    BIDIRECTIONAL
+}
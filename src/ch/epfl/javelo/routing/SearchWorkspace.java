@@ -0,0 +1,109 @@
+package ch.epfl.javelo.routing;
+
+import java.util.Arrays;
+
+/**
+ * Reusable state of a graph search (distances, predecessors and the queue of nodes to visit).
+ * Arrays are stamped with a generation number (negated once the node is settled), so that resetting
+ * the workspace for a new search costs O(1) instead of refilling arrays sized to the whole graph.
+ * A workspace is not thread safe, and is meant to be used by a single thread at a time.
+ *
+ * @author Tim Kreslo (310686)
+ * @author Wei-En Hsieh (341271)
+ */
+final class SearchWorkspace {
+    private final int[] stamps;
+    private final float[] distances;
+    private final int[] predecessors;
+    private final NodeHeap heap;
+    private int generation;
+
+    /**
+     * Default SearchWorkspace constructor
+     *
+     * @param nodeCount total number of nodes of the graph to search
+     */
+    SearchWorkspace(int nodeCount) {
+        stamps = new int[nodeCount];
+        distances = new float[nodeCount];
+        predecessors = new int[nodeCount];
+        heap = new NodeHeap(nodeCount);
+    }
+
+    /**
+     * Prepares the workspace for a new search, where every node has an infinite distance
+     * and the queue of nodes to visit is empty.
+     */
+    void reset() {
+        heap.clear();
+        if (generation == Integer.MAX_VALUE) { // stamps would wrap around, and collide with stale ones
+            Arrays.fill(stamps, 0);
+            generation = 0;
+        }
+        generation++;
+    }
+
+    /**
+     * Returns the queue of nodes to visit
+     *
+     * @return queue of nodes to visit
+     */
+    NodeHeap heap() {
+        return heap;
+    }
+
+    /**
+     * Returns the distance of the given node, since the last reset
+     *
+     * @param nodeId node's identity
+     * @return distance of the node, positive infinity if it has not been reached yet
+     */
+    float distance(int nodeId) {
+        int stamp = stamps[nodeId];
+        return (stamp == generation || stamp == -generation) ? distances[nodeId] : Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Checks whether the given node has been settled since the last reset
+     *
+     * @param nodeId node's identity
+     * @return true iff the node is settled, its distance being final
+     */
+    boolean isSettled(int nodeId) {
+        return stamps[nodeId] == -generation;
+    }
+
+    /**
+     * Returns the predecessor of the given node, which is only meaningful if the node has been reached
+     *
+     * @param nodeId node's identity
+     * @return predecessor of the node
+     */
+    int predecessor(int nodeId) {
+        assert distance(nodeId) != Float.POSITIVE_INFINITY;
+        return predecessors[nodeId];
+    }
+
+    /**
+     * Records that the given node has been reached with the given distance, from the given predecessor
+     *
+     * @param nodeId      node's identity
+     * @param distance    distance of the node
+     * @param predecessor predecessor of the node
+     */
+    void reach(int nodeId, float distance, int predecessor) {
+        stamps[nodeId] = generation;
+        distances[nodeId] = distance;
+        predecessors[nodeId] = predecessor;
+    }
+
+    /**
+     * Marks the given (reached) node as settled, its distance being final
+     *
+     * @param nodeId node's identity
+     */
+    void settle(int nodeId) {
+        assert stamps[nodeId] == generation;
+        stamps[nodeId] = -generation;
+    }
+}
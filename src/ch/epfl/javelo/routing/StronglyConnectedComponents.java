@@ -0,0 +1,273 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Strongly connected components of the JaVelo graph for a given cost function (edges of infinite cost being
+ * ignored): two nodes are in the same component iff there is a route from each of them to the other.
+ * <p>
+ * Components are numbered in the order in which Tarjan's algorithm completes them, which is such that every
+ * component reachable from another one has a smaller number. A node can thus only reach a node whose component
+ * number is smaller or equal to its own. As components are numbered from node 0 on, an isolated node may still
+ * have a smaller number than the component of most nodes: every component also records whether edges enter it from
+ * and leave it to other components, a node of a component which no edge enters being reachable from no other one.
+ * Both tell in constant time that most routes do not exist, in particular those to or from isolated nodes.
+ * Components are only valid for the graph and cost function they were computed with.
+ *
+ * @author Tim Kreslo (310686)
+ * @author Wei-En Hsieh (341271)
+ */
+public final class StronglyConnectedComponents {
+    private final static String COMPONENTS_FILE = "components.bin";
+    private final static String LINKS_FILE = "component_links.bin";
+    private final static byte ENTERED = 1; // an edge enters the component from another one
+    private final static byte LEFT = 2;    // an edge leaves the component to another one
+
+    private final IntBuffer components;
+    private final ByteBuffer links;
+    private final int[] componentSizes;
+    private final int largestComponent;
+
+    /**
+     * StronglyConnectedComponents constructor (private, components are obtained from of or loadFrom)
+     *
+     * @param components component of every node
+     * @param links      whether edges enter (ENTERED) and leave (LEFT) every component, from and to other ones
+     */
+    private StronglyConnectedComponents(IntBuffer components, ByteBuffer links) {
+        this.components = components;
+        this.links = links;
+        int componentCount = 0;
+        for (int nodeId = 0; nodeId < components.capacity(); nodeId++) {
+            componentCount = Math.max(componentCount, components.get(nodeId) + 1);
+        }
+        componentSizes = new int[componentCount];
+        int largest = 0;
+        for (int nodeId = 0; nodeId < components.capacity(); nodeId++) {
+            int component = components.get(nodeId);
+            if (++componentSizes[component] > componentSizes[largest]) largest = component;
+        }
+        largestComponent = largest;
+    }
+
+    /**
+     * Computes the strongly connected components of the given graph, for the given cost function,
+     * with an iterative version of Tarjan's algorithm (in time proportional to the number of nodes and edges)
+     *
+     * @param graph        the whole JaVelo graph
+     * @param costFunction cost function whose infinite cost edges are ignored
+     * @return the strongly connected components
+     */
+    public static StronglyConnectedComponents of(Graph graph, CostFunction costFunction) {
+        int nodeCount = graph.nodeCount();
+        int[] components = new int[nodeCount];
+        int[] indices = new int[nodeCount];   // order in which nodes are discovered (-1 if not yet)
+        int[] lowLinks = new int[nodeCount];  // smallest index of a node reachable from the node, still on stack
+        boolean[] onStack = new boolean[nodeCount];
+        int[] stack = new int[nodeCount];
+        int[] callNodes = new int[nodeCount]; // explicit call stack: node and index of its next edge
+        int[] callEdges = new int[nodeCount];
+        Arrays.fill(indices, -1);
+
+        int index = 0, stackSize = 0, componentCount = 0;
+        for (int root = 0; root < nodeCount; root++) {
+            if (indices[root] != -1) continue;
+
+            int callSize = 0;
+            callNodes[callSize] = root;
+            callEdges[callSize++] = 0;
+            indices[root] = lowLinks[root] = index++;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+
+            while (callSize > 0) {
+                int nodeId = callNodes[callSize - 1];
+                int edgeIndex = callEdges[callSize - 1];
+
+                if (edgeIndex < graph.nodeOutDegree(nodeId)) {
+                    callEdges[callSize - 1]++;
+                    int edgeId = graph.nodeOutEdgeId(nodeId, edgeIndex);
+                    if (costFunction.costFactor(nodeId, edgeId) == Double.POSITIVE_INFINITY) continue;
+
+                    int targetId = graph.edgeTargetNodeId(edgeId);
+                    if (indices[targetId] == -1) {
+                        callNodes[callSize] = targetId;
+                        callEdges[callSize++] = 0;
+                        indices[targetId] = lowLinks[targetId] = index++;
+                        stack[stackSize++] = targetId;
+                        onStack[targetId] = true;
+                    } else if (onStack[targetId]) {
+                        lowLinks[nodeId] = Math.min(lowLinks[nodeId], indices[targetId]);
+                    }
+                } else {
+                    if (lowLinks[nodeId] == indices[nodeId]) { // nodeId is the root of a component
+                        int memberId;
+                        do {
+                            memberId = stack[--stackSize];
+                            onStack[memberId] = false;
+                            components[memberId] = componentCount;
+                        } while (memberId != nodeId);
+                        componentCount++;
+                    }
+                    callSize--;
+                    if (callSize > 0) {
+                        int parentId = callNodes[callSize - 1];
+                        lowLinks[parentId] = Math.min(lowLinks[parentId], lowLinks[nodeId]);
+                    }
+                }
+            }
+        }
+
+        byte[] links = new byte[componentCount];
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+            for (int edgeIndex = 0; edgeIndex < graph.nodeOutDegree(nodeId); edgeIndex++) {
+                int edgeId = graph.nodeOutEdgeId(nodeId, edgeIndex);
+                int targetId = graph.edgeTargetNodeId(edgeId);
+                if (components[targetId] == components[nodeId]
+                        || costFunction.costFactor(nodeId, edgeId) == Double.POSITIVE_INFINITY) continue;
+                links[components[nodeId]] |= LEFT;
+                links[components[targetId]] |= ENTERED;
+            }
+        }
+        return new StronglyConnectedComponents(IntBuffer.wrap(components), ByteBuffer.wrap(links));
+    }
+
+    /**
+     * Returns the components stored in the files components.bin and component_links.bin of the given directory
+     * (next to the files of the graph), mapped into memory
+     *
+     * @param basePath path to the directory of the graph
+     * @return the strongly connected components
+     * @throws IOException if the expected files do not exist
+     */
+    public static StronglyConnectedComponents loadFrom(Path basePath) throws IOException {
+        return new StronglyConnectedComponents(mapFile(basePath.resolve(COMPONENTS_FILE)).asIntBuffer(),
+                mapFile(basePath.resolve(LINKS_FILE)));
+    }
+
+    /**
+     * Checks whether components are stored in the given directory
+     *
+     * @param basePath path to the directory of the graph
+     * @return true iff the files components.bin and component_links.bin exist in the directory
+     */
+    public static boolean existIn(Path basePath) {
+        return Files.exists(basePath.resolve(COMPONENTS_FILE)) && Files.exists(basePath.resolve(LINKS_FILE));
+    }
+
+    /**
+     * Writes the component of every node to the file components.bin of the given directory,
+     * and the edges entering and leaving every component to the file component_links.bin
+     *
+     * @param basePath path to the directory of the graph
+     * @throws IOException if the files could not be written
+     */
+    public void writeTo(Path basePath) throws IOException {
+        try (DataOutputStream s = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(basePath.resolve(COMPONENTS_FILE))))) {
+            for (int nodeId = 0; nodeId < components.capacity(); nodeId++) s.writeInt(components.get(nodeId));
+        }
+        try (DataOutputStream s = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(basePath.resolve(LINKS_FILE))))) {
+            for (int component = 0; component < links.capacity(); component++) s.writeByte(links.get(component));
+        }
+    }
+
+    /**
+     * Auxiliary (private) method mapping the given file into memory
+     *
+     * @param path path to the file
+     * @return content of the file
+     * @throws IOException if the file does not exist
+     */
+    private static ByteBuffer mapFile(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path basePath = Path.of(args.length > 0 ? args[0] : "lausanne");
+        Graph graph = Graph.loadFrom(basePath);
+
+        long t0 = System.nanoTime();
+        StronglyConnectedComponents components = of(graph, new CityBikeCF(graph));
+        components.writeTo(basePath);
+        System.out.printf("%d composantes calculées en %d ms, la plus grande ayant %d nœuds sur %d%n",
+                components.count(), (System.nanoTime() - t0) / 1_000_000,
+                components.size(components.largest()), graph.nodeCount());
+    }
+
+    /**
+     * Returns the number of components
+     *
+     * @return number of components
+     */
+    public int count() {
+        return componentSizes.length;
+    }
+
+    /**
+     * Returns the component of the given node
+     *
+     * @param nodeId node's identity
+     * @return number of the node's component
+     */
+    public int componentOf(int nodeId) {
+        return components.get(nodeId);
+    }
+
+    /**
+     * Returns the number of nodes of the given component
+     *
+     * @param component component's number
+     * @return number of nodes of the component
+     */
+    public int size(int component) {
+        return componentSizes[component];
+    }
+
+    /**
+     * Returns the component with the most nodes
+     *
+     * @return number of the largest component
+     */
+    public int largest() {
+        return largestComponent;
+    }
+
+    /**
+     * Checks whether the given node belongs to the largest component
+     *
+     * @param nodeId node's identity
+     * @return true iff the node is in the largest component
+     */
+    public boolean isInLargest(int nodeId) {
+        return components.get(nodeId) == largestComponent;
+    }
+
+    /**
+     * Checks, in constant time, whether a route may exist from the first given node to the second one.
+     * If not, no route exists; otherwise, it exists for sure only if both nodes are in the same component.
+     * A route between different components must leave the first one and enter the second one, which has a smaller
+     * number.
+     *
+     * @param fromNodeId identity of the node from which the route leaves
+     * @param toNodeId   identity of the node which the route enters
+     * @return false if no route exists between the nodes, true if one may exist
+     */
+    public boolean mayReach(int fromNodeId, int toNodeId) {
+        int from = components.get(fromNodeId), to = components.get(toNodeId);
+        return from == to || (to < from && (links.get(from) & LEFT) != 0 && (links.get(to) & ENTERED) != 0);
+    }
+}
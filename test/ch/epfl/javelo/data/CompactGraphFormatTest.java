@@ -0,0 +1,172 @@
+package ch.epfl.javelo.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.random.RandomGenerator;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactGraphFormatTest {
+    private static Map<String, byte[]> randomGraphFiles(RandomGenerator rng, int nodeCount) {
+        var nodes = ByteBuffer.allocate(12 * nodeCount);
+        var edges = ByteBuffer.allocate(10 * 18 * nodeCount);
+        var profileIds = ByteBuffer.allocate(4 * 18 * nodeCount);
+        var elevations = new ArrayList<Short>();
+        var edgeCount = 0;
+        for (int nodeId = 0; nodeId < nodeCount; nodeId += 1) {
+            var outDegree = rng.nextInt(16);
+            // edges of some nodes not directly following those of the previous node
+            var firstEdgeId = rng.nextInt(10) == 0 ? edgeCount + rng.nextInt(1, 3) : edgeCount;
+            nodes.putInt(rng.nextInt(2_485_000 << 4, 2_834_000 << 4));
+            nodes.putInt(rng.nextInt(1_075_000 << 4, 1_296_000 << 4));
+            nodes.putInt((outDegree << 28) | firstEdgeId);
+            for (int i = 0; i < outDegree; i += 1) {
+                var target = rng.nextInt(nodeCount);
+                var length = rng.nextInt(1, 1 << 16);
+                var edgeId = firstEdgeId + i;
+                edges.putInt(10 * edgeId, rng.nextBoolean() ? target : ~target)
+                        .putShort(10 * edgeId + 4, (short) length)
+                        .putShort(10 * edgeId + 6, (short) rng.nextInt(1 << 16))
+                        .putShort(10 * edgeId + 8, (short) rng.nextInt(3));
+                var profileType = rng.nextInt(4);
+                profileIds.putInt(4 * edgeId, (profileType << 30) | (profileType == 0 ? 0 : elevations.size()));
+                if (profileType != 0) {
+                    for (int j = 0; j <= Math.ceil(length / 32.0); j += 1) elevations.add((short) rng.nextInt(1 << 16));
+                }
+            }
+            if (outDegree > 0) edgeCount = firstEdgeId + outDegree;
+        }
+        edges.position(10 * edgeCount);
+        profileIds.position(4 * edgeCount);
+        var elevationsBuffer = ByteBuffer.allocate(2 * elevations.size());
+        for (short elevation : elevations) elevationsBuffer.putShort(elevation);
+        return Map.of(
+                "nodes.bin", Arrays.copyOf(nodes.array(), nodes.position()),
+                "edges.bin", Arrays.copyOf(edges.array(), edges.position()),
+                "profile_ids.bin", Arrays.copyOf(profileIds.array(), profileIds.position()),
+                "elevations.bin", elevationsBuffer.array(),
+                "sectors.bin", new byte[6 * 128 * 128],
+                "attributes.bin", ByteBuffer.allocate(3 * 8).putLong(1).putLong(2).putLong(4).array());
+    }
+
+    private static ByteBuffer encodedNodes(NodeStore nodes, int blockSize) throws IOException {
+        var path = Files.createTempFile("javelo", ".bin");
+        try {
+            CompactGraphFormat.encodeNodes(nodes, blockSize, path);
+            return ByteBuffer.wrap(Files.readAllBytes(path));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    private static ByteBuffer encodedEdges(EdgeStore edges, int nodeCount, int blockSize) throws IOException {
+        var path = Files.createTempFile("javelo", ".bin");
+        try {
+            CompactGraphFormat.encodeEdges(edges, nodeCount, blockSize, path);
+            return ByteBuffer.wrap(Files.readAllBytes(path));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    void compactGraphStoresWorkLikeOriginalOnes() throws IOException {
+        var rng = newRandom();
+        var files = randomGraphFiles(rng, 300);
+        var nodes = new GraphNodes(ByteBuffer.wrap(files.get("nodes.bin")).asIntBuffer());
+        var elevations = ByteBuffer.wrap(files.get("elevations.bin")).asShortBuffer();
+        var edges = new GraphEdges(ByteBuffer.wrap(files.get("edges.bin")),
+                ByteBuffer.wrap(files.get("profile_ids.bin")).asIntBuffer(), elevations);
+
+        for (int blockSize : new int[]{1, 3, 16, 1_000}) {
+            var compactNodes = new CompactGraphNodes(encodedNodes(nodes, blockSize));
+            var compactEdges = new CompactGraphEdges(
+                    encodedEdges(edges, nodes.count(), blockSize), elevations);
+            assertEquals(nodes.count(), compactNodes.count());
+            for (int nodeId = 0; nodeId < nodes.count(); nodeId += 1) {
+                assertEquals(nodes.nodeEQ28_4(nodeId), compactNodes.nodeEQ28_4(nodeId));
+                assertEquals(nodes.nodeNQ28_4(nodeId), compactNodes.nodeNQ28_4(nodeId));
+                assertEquals(nodes.nodeE(nodeId), compactNodes.nodeE(nodeId));
+                assertEquals(nodes.outDegree(nodeId), compactNodes.outDegree(nodeId));
+                for (int i = 0; i < nodes.outDegree(nodeId); i += 1) {
+                    assertEquals(nodes.edgeId(nodeId, i), compactNodes.edgeId(nodeId, i));
+                }
+            }
+            assertEquals(edges.count(), compactEdges.count());
+            for (int edgeId = 0; edgeId < edges.count(); edgeId += 1) {
+                assertEquals(edges.targetNodeId(edgeId), compactEdges.targetNodeId(edgeId));
+                assertEquals(edges.isInverted(edgeId), compactEdges.isInverted(edgeId));
+                assertEquals(edges.length(edgeId), compactEdges.length(edgeId));
+                assertEquals(edges.elevationGain(edgeId), compactEdges.elevationGain(edgeId));
+                assertEquals(edges.attributesIndex(edgeId), compactEdges.attributesIndex(edgeId));
+                assertEquals(edges.hasProfile(edgeId), compactEdges.hasProfile(edgeId));
+                if (edges.hasProfile(edgeId)) {
+                    assertEquals(edges.profileId(edgeId), compactEdges.profileId(edgeId));
+                    assertArrayEquals(edges.profileSamples(edgeId), compactEdges.profileSamples(edgeId));
+                    assertEquals(edges.elevationAt(edgeId, 10), compactEdges.elevationAt(edgeId, 10));
+                }
+            }
+        }
+    }
+
+    @Test
+    void compactGraphFormatConvertsGraphFiles() throws IOException {
+        var files = randomGraphFiles(newRandom(), 500);
+        var directory = Files.createTempDirectory("javelo");
+        var compactDirectory = directory.resolve("v2");
+        try {
+            for (var file : files.entrySet()) Files.write(directory.resolve(file.getKey()), file.getValue());
+            CompactGraphFormat.convert(directory, compactDirectory, 8);
+            assertFalse(CompactGraphFormat.existIn(directory));
+            assertTrue(CompactGraphFormat.existIn(compactDirectory));
+            assertTrue(Files.size(compactDirectory.resolve(CompactGraphFormat.NODES_FILE))
+                    < Files.size(directory.resolve("nodes.bin")));
+
+            var graph = Graph.loadFrom(directory);
+            var compact = Graph.loadFrom(compactDirectory, StorageMode.COMPACT);
+            assertEquals(graph.nodeCount(), compact.nodeCount());
+            assertEquals(graph.edgeCount(), compact.edgeCount());
+            for (int nodeId = 0; nodeId < graph.nodeCount(); nodeId += 1) {
+                assertEquals(graph.nodePoint(nodeId), compact.nodePoint(nodeId));
+                assertEquals(graph.nodeInDegree(nodeId), compact.nodeInDegree(nodeId));
+            }
+            for (int edgeId = 0; edgeId < graph.edgeCount(); edgeId += 1) {
+                assertEquals(graph.edgeSourceNodeId(edgeId), compact.edgeSourceNodeId(edgeId));
+                assertEquals(graph.edgeAttributes(edgeId), compact.edgeAttributes(edgeId));
+                assertEquals(graph.edgeLength(edgeId), compact.edgeLength(edgeId));
+                assertEquals(graph.edgeElevationAt(edgeId, 5), compact.edgeElevationAt(edgeId, 5));
+            }
+            // the compact files are only read if asked for
+            assertThrows(IOException.class, () -> Graph.loadFrom(compactDirectory));
+            assertThrows(IOException.class, () -> Graph.loadFrom(directory, StorageMode.COMPACT));
+        } finally {
+            for (Path path : new Path[]{compactDirectory, directory}) {
+                try (var paths = Files.list(path)) {
+                    for (Path file : paths.toList()) if (!file.equals(compactDirectory)) Files.delete(file);
+                }
+            }
+            Files.delete(compactDirectory);
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    void compactGraphFormatRejectsOtherFiles() throws IOException {
+        var nodes = new GraphNodes(ByteBuffer.allocate(12).asIntBuffer());
+        var file = encodedNodes(nodes, 16);
+        assertDoesNotThrow(() -> CompactGraphFormat.checkHeader(file, "nodes_v2.bin"));
+
+        file.putInt(4, 3);
+        assertThrows(IOException.class, () -> CompactGraphFormat.checkHeader(file, "nodes_v2.bin"));
+        assertThrows(IOException.class, () -> CompactGraphFormat.checkHeader(ByteBuffer.allocate(100), "nodes_v2.bin"));
+        assertThrows(IOException.class, () -> CompactGraphFormat.checkHeader(ByteBuffer.allocate(3), "nodes_v2.bin"));
+    }
+}
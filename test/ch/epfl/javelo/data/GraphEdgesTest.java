@@ -1,5 +1,7 @@
 package ch.epfl.javelo.data;
 
+import ch.epfl.javelo.Bits;
+import ch.epfl.javelo.Functions;
 import org.junit.jupiter.api.Test;
 
 import java.nio.ByteBuffer;
@@ -264,6 +266,62 @@ class GraphEdgesTest {
         }
     }
 
+    @Test
+    void graphEdgesProfileSamplesWorksLikeFloatSumOfDifferences() {
+        var rng = newRandom();
+        var edgesBuffer = ByteBuffer.allocate(10);
+        var elevations = ShortBuffer.allocate(2_100);
+        for (int i = 0; i < RANDOM_ITERATIONS; i += 1) {
+            var profileType = rng.nextInt(2, 4);
+            var length = rng.nextInt(1, 1 << 16);
+            for (int j = 0; j < elevations.capacity(); j += 1) elevations.put(j, (short) rng.nextInt(1 << 16));
+            edgesBuffer.putShort(4, (short) length);
+            var firstIndex = rng.nextInt(10);
+            var profileIds = IntBuffer.wrap(new int[]{(profileType << 30) | firstIndex});
+            var graphEdges = new GraphEdges(edgesBuffer, profileIds, elevations);
+
+            // samples decoded one difference at a time, summed as floats
+            var perShort = profileType == 2 ? 2 : 4;
+            var bits = 16 / perShort;
+            var expected = new float[1 + (length + 31) / 32];
+            expected[0] = Short.toUnsignedInt(elevations.get(firstIndex)) / 16f;
+            for (int k = 1; k < expected.length; k += 1) {
+                var packed = elevations.get(firstIndex + (k + perShort - 1) / perShort);
+                var start = bits * ((perShort - k % perShort) % perShort);
+                expected[k] = expected[k - 1] + Bits.extractSigned(packed, start, bits) / 16f;
+            }
+            assertArrayEquals(expected, graphEdges.profileSamples(0));
+        }
+    }
+
+    @Test
+    void graphEdgesElevationAtWorksLikeDecodedProfile() {
+        var rng = newRandom();
+        var edgesBuffer = ByteBuffer.allocate(10);
+        var elevations = ShortBuffer.allocate(2_100);
+        for (int i = 0; i < RANDOM_ITERATIONS; i += 1) {
+            var profileType = rng.nextInt(4);
+            var length = rng.nextInt(1, 1 << 16);
+            for (int j = 0; j < elevations.capacity(); j += 1) elevations.put(j, (short) rng.nextInt(1 << 16));
+            edgesBuffer.putInt(0, rng.nextBoolean() ? 0 : ~0);
+            edgesBuffer.putShort(4, (short) length);
+            var profileIds = IntBuffer.wrap(new int[]{(profileType << 30) | rng.nextInt(10)});
+            var graphEdges = new GraphEdges(edgesBuffer, profileIds, elevations);
+
+            var xMax = length / 16.0;
+            for (int j = 0; j < 20; j += 1) {
+                var position = rng.nextDouble(-10, xMax + 10);
+                if (profileType == 0) {
+                    assertTrue(Double.isNaN(graphEdges.elevationAt(0, position)));
+                } else {
+                    var profile = Functions.sampled(graphEdges.profileSamples(0), xMax);
+                    assertEquals(profile.applyAsDouble(position), graphEdges.elevationAt(0, position));
+                    assertEquals(profile.applyAsDouble(xMax), graphEdges.elevationAt(0, xMax));
+                }
+            }
+        }
+    }
+
     private record TestCase(short[] compressed, float[] uncompressed) {
         public float[] uncompressedInverted() {
             float[] array = uncompressed();
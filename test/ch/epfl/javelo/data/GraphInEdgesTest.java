@@ -0,0 +1,97 @@
+package ch.epfl.javelo.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphInEdgesTest {
+    // Node 0 -> edges 0 (to 1) and 1 (to 2), node 1 -> edge 2 (to 2), node 2 -> edge 3 (to 0, inverted)
+    private static GraphNodes nodes() {
+        return new GraphNodes(IntBuffer.wrap(new int[]{
+                0, 0, (2 << 28),
+                0, 0, (1 << 28) | 2,
+                0, 0, (1 << 28) | 3
+        }));
+    }
+
+    private static GraphEdges edges() {
+        var edgesBuffer = ByteBuffer.allocate(4 * 10);
+        edgesBuffer.putInt(0, 1);
+        edgesBuffer.putInt(10, 2);
+        edgesBuffer.putInt(20, 2);
+        edgesBuffer.putInt(30, ~0);
+        return new GraphEdges(edgesBuffer, IntBuffer.allocate(4), ShortBuffer.allocate(0));
+    }
+
+    @Test
+    void graphInEdgesComputesInDegrees() {
+        var inEdges = GraphInEdges.of(nodes(), edges());
+        assertEquals(1, inEdges.inDegree(0));
+        assertEquals(1, inEdges.inDegree(1));
+        assertEquals(2, inEdges.inDegree(2));
+    }
+
+    @Test
+    void graphInEdgesListsEdgesEnteringEachNode() {
+        var inEdges = GraphInEdges.of(nodes(), edges());
+        assertEquals(3, inEdges.edgeId(0, 0));
+        assertEquals(0, inEdges.edgeId(1, 0));
+        assertEquals(1, inEdges.edgeId(2, 0));
+        assertEquals(2, inEdges.edgeId(2, 1));
+    }
+
+    @Test
+    void graphInEdgesComputesSourceNodes() {
+        var inEdges = GraphInEdges.of(nodes(), edges());
+        assertEquals(0, inEdges.sourceNodeId(0));
+        assertEquals(0, inEdges.sourceNodeId(1));
+        assertEquals(1, inEdges.sourceNodeId(2));
+        assertEquals(2, inEdges.sourceNodeId(3));
+    }
+
+    @Test
+    void graphInEdgesIgnoreEdgesLeftByNoNode() {
+        // Node 0 -> edges 0 (to 1) and 1 (to 2), node 1 -> edge 3 (to 0, inverted), edge 2 (to 2) left by no node
+        var nodes = new GraphNodes(IntBuffer.wrap(new int[]{
+                0, 0, (2 << 28),
+                0, 0, (1 << 28) | 3,
+                0, 0, 0
+        }));
+        var edges = edges();
+        var inEdges = GraphInEdges.of(nodes, edges);
+        assertEquals(1, inEdges.inDegree(0));
+        assertEquals(1, inEdges.inDegree(1));
+        assertEquals(1, inEdges.inDegree(2));
+        assertEquals(3, inEdges.edgeId(0, 0));
+        assertEquals(1, inEdges.edgeId(2, 0));
+        assertEquals(1, inEdges.sourceNodeId(3));
+        assertEquals(-1, inEdges.sourceNodeId(2));
+
+        var index = GraphEdgeIndex.of(nodes, edges);
+        var cellId = GraphEdgeIndex.cellId(GraphEdgeIndex.column(0), GraphEdgeIndex.row(0));
+        assertEquals(3, index.edgeCount(cellId));
+        for (int i = 0; i < index.edgeCount(cellId); i += 1) assertNotEquals(2, index.edgeId(cellId, i));
+    }
+
+    @Test
+    void graphInEdgesAreConsistentWithOutEdges() {
+        var graph = new Graph(nodes(), new GraphSectors(ByteBuffer.allocate(0)), edges(), List.of());
+        assertEquals(4, graph.edgeCount());
+        for (int nodeId = 0; nodeId < graph.nodeCount(); nodeId += 1) {
+            for (int i = 0; i < graph.nodeInDegree(nodeId); i += 1) {
+                var edgeId = graph.nodeInEdgeId(nodeId, i);
+                assertEquals(nodeId, graph.edgeTargetNodeId(edgeId));
+                var sourceNodeId = graph.edgeSourceNodeId(edgeId);
+                var found = false;
+                for (int j = 0; j < graph.nodeOutDegree(sourceNodeId); j += 1)
+                    found |= graph.nodeOutEdgeId(sourceNodeId, j) == edgeId;
+                assertTrue(found);
+            }
+        }
+    }
+}
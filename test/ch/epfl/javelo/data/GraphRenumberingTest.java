@@ -0,0 +1,158 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.javelo.projection.SwissBounds;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphRenumberingTest {
+    private static void writeRandomGraph(RandomGenerator rng, Path directory, int sectorCount, int nodesPerSector)
+            throws IOException {
+        var nodeCount = sectorCount * nodesPerSector;
+        var nodes = ByteBuffer.allocate(12 * nodeCount);
+        var edges = ByteBuffer.allocate(10 * 15 * nodeCount);
+        var profileIds = ByteBuffer.allocate(4 * 15 * nodeCount);
+        var sectors = ByteBuffer.allocate(6 * 128 * 128);
+        var osmIds = ByteBuffer.allocate(8 * nodeCount);
+        var elevations = new ArrayList<Short>();
+        var sectorIds = rng.ints(0, 128 * 128).distinct().limit(sectorCount).sorted().toArray();
+        var edgeCount = 0;
+        for (int i = 0; i < sectorCount; i += 1) {
+            var sectorId = sectorIds[i];
+            var minE = SwissBounds.MIN_E + (sectorId % 128) * SwissBounds.WIDTH / 128;
+            var minN = SwissBounds.MIN_N + (sectorId / 128) * SwissBounds.HEIGHT / 128;
+            sectors.putInt(6 * sectorId, i * nodesPerSector).putShort(6 * sectorId + 4, (short) nodesPerSector);
+            for (int j = 0; j < nodesPerSector; j += 1) {
+                var outDegree = rng.nextInt(15);
+                nodes.putInt((int) Math.scalb(minE + rng.nextDouble(SwissBounds.WIDTH / 128), 4));
+                nodes.putInt((int) Math.scalb(minN + rng.nextDouble(SwissBounds.HEIGHT / 128), 4));
+                nodes.putInt((outDegree << 28) | edgeCount);
+                osmIds.putLong(rng.nextLong(1, 1L << 40));
+                for (int k = 0; k < outDegree; k += 1) {
+                    var target = rng.nextInt(nodeCount);
+                    var length = rng.nextInt(1, 1 << 16);
+                    edges.putInt(rng.nextBoolean() ? target : ~target)
+                            .putShort((short) length)
+                            .putShort((short) rng.nextInt(1 << 16))
+                            .putShort((short) rng.nextInt(3));
+                    var profileType = rng.nextInt(4);
+                    profileIds.putInt((profileType << 30) | (profileType == 0 ? 0 : elevations.size()));
+                    if (profileType != 0) {
+                        for (int l = 0; l <= Math.ceil(length / 32.0); l += 1) {
+                            elevations.add((short) rng.nextInt(1 << 16));
+                        }
+                    }
+                }
+                edgeCount += outDegree;
+            }
+        }
+        var elevationsBuffer = ByteBuffer.allocate(2 * elevations.size());
+        for (short elevation : elevations) elevationsBuffer.putShort(elevation);
+        Files.write(directory.resolve("nodes.bin"), nodes.array());
+        Files.write(directory.resolve("edges.bin"), Arrays.copyOf(edges.array(), edges.position()));
+        Files.write(directory.resolve("profile_ids.bin"),
+                Arrays.copyOf(profileIds.array(), profileIds.position()));
+        Files.write(directory.resolve("elevations.bin"), elevationsBuffer.array());
+        Files.write(directory.resolve("sectors.bin"), sectors.array());
+        Files.write(directory.resolve("nodes_osmid.bin"), osmIds.array());
+        Files.write(directory.resolve("attributes.bin"),
+                ByteBuffer.allocate(3 * 8).putLong(1).putLong(2).putLong(4).array());
+    }
+
+    private static void deleteAll(Path directory) throws IOException {
+        try (var paths = Files.list(directory)) {
+            for (Path path : paths.toList()) {
+                if (Files.isDirectory(path)) deleteAll(path);
+                else Files.delete(path);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    void hilbertIndexIsABijectionBetweenNeighbouringCells() {
+        for (int order = 0; order <= 5; order += 1) {
+            var size = 1 << order;
+            var cells = new int[size * size][];
+            for (int x = 0; x < size; x += 1) {
+                for (int y = 0; y < size; y += 1) {
+                    var index = (int) GraphRenumbering.hilbertIndex(order, x, y);
+                    assertNull(cells[index]);
+                    cells[index] = new int[]{x, y};
+                }
+            }
+            for (int i = 1; i < cells.length; i += 1) {
+                var distance = Math.abs(cells[i][0] - cells[i - 1][0]) + Math.abs(cells[i][1] - cells[i - 1][1]);
+                assertEquals(1, distance);
+            }
+        }
+    }
+
+    @Test
+    void graphRenumberingPreservesGraph() throws IOException {
+        var rng = newRandom();
+        var directory = Files.createTempDirectory("javelo");
+        var renumberedDirectory = directory.resolve("hilbert");
+        try {
+            writeRandomGraph(rng, directory, 20, 30);
+            GraphRenumbering.renumber(directory, renumberedDirectory);
+            var newNodeIds = GraphRenumbering.newNodeIds(directory);
+            var graph = Graph.loadFrom(directory);
+            var renumbered = Graph.loadFrom(renumberedDirectory);
+
+            assertEquals(graph.nodeCount(), renumbered.nodeCount());
+            assertEquals(graph.edgeCount(), renumbered.edgeCount());
+            assertEquals(graph.nodeCount(), Arrays.stream(newNodeIds).distinct().count());
+            for (int nodeId = 0; nodeId < graph.nodeCount(); nodeId += 1) {
+                var newNodeId = newNodeIds[nodeId];
+                assertEquals(graph.nodePoint(nodeId), renumbered.nodePoint(newNodeId));
+                assertEquals(graph.nodeOsmId(nodeId), renumbered.nodeOsmId(newNodeId));
+                assertEquals(newNodeId, renumbered.nodeIdOfOsmId(graph.nodeOsmId(nodeId)));
+                assertEquals(graph.nodeOutDegree(nodeId), renumbered.nodeOutDegree(newNodeId));
+                assertEquals(graph.nodeInDegree(nodeId), renumbered.nodeInDegree(newNodeId));
+                for (int i = 0; i < graph.nodeOutDegree(nodeId); i += 1) {
+                    var edgeId = graph.nodeOutEdgeId(nodeId, i);
+                    var newEdgeId = renumbered.nodeOutEdgeId(newNodeId, i);
+                    assertEquals(newNodeIds[graph.edgeTargetNodeId(edgeId)], renumbered.edgeTargetNodeId(newEdgeId));
+                    assertEquals(graph.edgeIsInverted(edgeId), renumbered.edgeIsInverted(newEdgeId));
+                    assertEquals(graph.edgeLength(edgeId), renumbered.edgeLength(newEdgeId));
+                    assertEquals(graph.edgeElevationGain(edgeId), renumbered.edgeElevationGain(newEdgeId));
+                    assertEquals(graph.edgeAttributes(edgeId), renumbered.edgeAttributes(newEdgeId));
+                    var position = rng.nextDouble(graph.edgeLength(edgeId));
+                    assertEquals(graph.edgeElevationAt(edgeId, position),
+                            renumbered.edgeElevationAt(newEdgeId, position));
+                }
+            }
+
+            var osmIds = ByteBuffer.wrap(Files.readAllBytes(directory.resolve("nodes_osmid.bin")));
+            var newOsmIds = ByteBuffer.wrap(Files.readAllBytes(renumberedDirectory.resolve("nodes_osmid.bin")));
+            for (int nodeId = 0; nodeId < graph.nodeCount(); nodeId += 1) {
+                assertEquals(osmIds.getLong(8 * nodeId), newOsmIds.getLong(8 * newNodeIds[nodeId]));
+            }
+
+            for (int i = 0; i < RANDOM_ITERATIONS; i += 1) {
+                var point = new PointCh(
+                        rng.nextDouble(SwissBounds.MIN_E, SwissBounds.MAX_E),
+                        rng.nextDouble(SwissBounds.MIN_N, SwissBounds.MAX_N));
+                var nodeId = graph.nodeClosestTo(point, 5_000);
+                var newNodeId = renumbered.nodeClosestTo(point, 5_000);
+                if (nodeId == -1) assertEquals(-1, newNodeId);
+                else assertEquals(graph.nodePoint(nodeId).distanceTo(point),
+                        renumbered.nodePoint(newNodeId).distanceTo(point));
+            }
+        } finally {
+            deleteAll(directory);
+        }
+    }
+}
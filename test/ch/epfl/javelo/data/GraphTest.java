@@ -1,6 +1,7 @@
 package ch.epfl.javelo.data;
 
 import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.javelo.projection.SwissBounds;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -11,12 +12,17 @@ import java.nio.IntBuffer;
 import java.nio.ShortBuffer;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.random.RandomGenerator;
 
 import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
 import static ch.epfl.test.TestRandomizer.newRandom;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class GraphTest {
@@ -179,6 +185,216 @@ class GraphTest {
         assertEquals(expected3, actual3);
     }
 
+    // Graph of one node per sector (the node i being in the sector i, see SECTORS_BUFFER), randomly placed in it.
+    private static Graph newOneNodePerSectorGraph(RandomGenerator rng) {
+        var nodesBuffer = IntBuffer.allocate(3 * SECTORS_COUNT);
+        for (int i = 0; i < SECTORS_COUNT; i += 1) {
+            var e = SwissBounds.MIN_E + (i % SUBDIVISIONS_PER_SIDE + rng.nextDouble(0.01, 0.99))
+                    * SwissBounds.WIDTH / SUBDIVISIONS_PER_SIDE;
+            var n = SwissBounds.MIN_N + (i / SUBDIVISIONS_PER_SIDE + rng.nextDouble(0.01, 0.99))
+                    * SwissBounds.HEIGHT / SUBDIVISIONS_PER_SIDE;
+            nodesBuffer.put((int) Math.scalb(e, 4));
+            nodesBuffer.put((int) Math.scalb(n, 4));
+            nodesBuffer.put(0);
+        }
+        var graphEdges = new GraphEdges(ByteBuffer.allocate(0), IntBuffer.allocate(0), ShortBuffer.allocate(0));
+        return new Graph(new GraphNodes(nodesBuffer.flip()), new GraphSectors(SECTORS_BUFFER), graphEdges, List.of());
+    }
+
+    // Identities of the nodes within the given distance of the given point, from the closest to the farthest.
+    private static List<Integer> nodesWithin(Graph graph, PointCh point, double distance) {
+        var nodeIds = new ArrayList<Integer>();
+        for (int nodeId = 0; nodeId < graph.nodeCount(); nodeId += 1) {
+            if (graph.nodePoint(nodeId).distanceTo(point) <= distance) nodeIds.add(nodeId);
+        }
+        nodeIds.sort(Comparator.comparingDouble(nodeId -> graph.nodePoint(nodeId).distanceTo(point)));
+        return nodeIds;
+    }
+
+    private static PointCh randomPointCh(RandomGenerator rng) {
+        return new PointCh(rng.nextDouble(2_500_000, 2_800_000), rng.nextDouble(1_100_000, 1_280_000));
+    }
+
+    @Test
+    void graphNodeClosestToWorksOnRandomValues() {
+        var rng = newRandom();
+        var graph = newOneNodePerSectorGraph(rng);
+        for (int i = 0; i < RANDOM_ITERATIONS / 10; i += 1) {
+            var point = randomPointCh(rng);
+            var searchDistance = rng.nextDouble(100, 5_000);
+            var expected = nodesWithin(graph, point, searchDistance);
+            assertEquals(expected.isEmpty() ? -1 : expected.get(0), graph.nodeClosestTo(point, searchDistance));
+
+            int evenExpected = expected.stream().filter(nodeId -> nodeId % 2 == 0).findFirst().orElse(-1);
+            assertEquals(evenExpected, graph.nodeClosestTo(point, searchDistance, nodeId -> nodeId % 2 == 0));
+        }
+    }
+
+    @Test
+    void graphNodesClosestToWorksOnRandomValues() {
+        var rng = newRandom();
+        var graph = newOneNodePerSectorGraph(rng);
+        for (int i = 0; i < RANDOM_ITERATIONS / 10; i += 1) {
+            var point = randomPointCh(rng);
+            var searchDistance = rng.nextDouble(100, 5_000);
+            var k = rng.nextInt(1, 6);
+            var expected = nodesWithin(graph, point, searchDistance);
+            var actual = graph.nodesClosestTo(point, searchDistance, k);
+            assertEquals(Math.min(k, expected.size()), actual.length);
+            for (int j = 0; j < actual.length; j += 1) assertEquals((int) expected.get(j), actual[j]);
+        }
+        assertThrows(IllegalArgumentException.class, () -> graph.nodesClosestTo(randomPointCh(rng), 100, 0));
+    }
+
+    @Test
+    void graphNodesClosestToPointsWorksOnRandomValues() {
+        var rng = newRandom();
+        var graph = newOneNodePerSectorGraph(rng);
+        var points = new ArrayList<PointCh>();
+        for (int i = 0; i < RANDOM_ITERATIONS; i += 1) points.add(randomPointCh(rng));
+        var actual = graph.nodesClosestTo(points, 2_000);
+        assertEquals(points.size(), actual.length);
+        for (int i = 0; i < points.size(); i += 1) assertEquals(graph.nodeClosestTo(points.get(i), 2_000), actual[i]);
+    }
+
+    // Graph of the given nodes (as (e, n) pairs), every node having the given edges (as target nodes).
+    private static Graph newGraph(double[][] points, int[][] targets) {
+        var nodesBuffer = IntBuffer.allocate(3 * points.length);
+        var edgesBuffer = ByteBuffer.allocate(10 * Arrays.stream(targets).mapToInt(t -> t.length).sum());
+        var edgeCount = 0;
+        for (int nodeId = 0; nodeId < points.length; nodeId += 1) {
+            nodesBuffer.put((int) Math.scalb(points[nodeId][0], 4));
+            nodesBuffer.put((int) Math.scalb(points[nodeId][1], 4));
+            nodesBuffer.put((targets[nodeId].length << 28) | edgeCount);
+            for (int target : targets[nodeId]) {
+                edgesBuffer.putInt(target).putShort((short) 0).putShort((short) 0).putShort((short) 0);
+                edgeCount += 1;
+            }
+        }
+        var graphEdges = new GraphEdges(edgesBuffer.flip(), IntBuffer.allocate(edgeCount), ShortBuffer.allocate(0));
+        return new Graph(new GraphNodes(nodesBuffer.flip()), new GraphSectors(ByteBuffer.allocate(0)),
+                graphEdges, List.of());
+    }
+
+    @Test
+    void graphEdgeClosestToWorksOnKnownValues() {
+        // a 3 km long edge (and its reverse), followed by a 4 km long edge
+        var graph = newGraph(
+                new double[][]{{2_600_000, 1_200_000}, {2_603_000, 1_200_000}, {2_603_000, 1_204_000}},
+                new int[][]{{1}, {0, 2}, {}});
+
+        var snap = graph.edgeClosestTo(new PointCh(2_601_500, 1_200_100), 500);
+        assertEquals(0, snap.edgeId());
+        assertEquals(0.5, snap.fraction(), 1e-9);
+        assertEquals(2_601_500, snap.point().e(), 1e-6);
+        assertEquals(1_200_000, snap.point().n(), 1e-6);
+
+        var endSnap = graph.edgeClosestTo(new PointCh(2_603_100, 1_204_300), 500);
+        assertEquals(2, endSnap.edgeId());
+        assertEquals(1, endSnap.fraction(), 1e-9);
+
+        assertNull(graph.edgeClosestTo(new PointCh(2_601_500, 1_200_600), 500));
+    }
+
+    @Test
+    void graphEdgeClosestToWorksOnRandomValues() {
+        var rng = newRandom();
+        var nodeCount = 200;
+        var points = new double[nodeCount][];
+        var targets = new int[nodeCount][];
+        for (int nodeId = 0; nodeId < nodeCount; nodeId += 1) {
+            points[nodeId] = new double[]{rng.nextDouble(2_590_000, 2_610_000), rng.nextDouble(1_190_000, 1_210_000)};
+            targets[nodeId] = rng.ints(rng.nextInt(3), 0, nodeCount).toArray();
+        }
+        var graph = newGraph(points, targets);
+
+        for (int i = 0; i < RANDOM_ITERATIONS; i += 1) {
+            var point = new PointCh(rng.nextDouble(2_590_000, 2_610_000), rng.nextDouble(1_190_000, 1_210_000));
+            var searchDistance = rng.nextDouble(100, 3_000);
+            var expected = Double.POSITIVE_INFINITY;
+            for (int edgeId = 0; edgeId < graph.edgeCount(); edgeId += 1) {
+                var from = graph.nodePoint(graph.edgeSourceNodeId(edgeId));
+                var to = graph.nodePoint(graph.edgeTargetNodeId(edgeId));
+                var length = from.distanceTo(to);
+                var position = length == 0 ? 0 : Math.max(0, Math.min(length,
+                        ((point.e() - from.e()) * (to.e() - from.e()) + (point.n() - from.n()) * (to.n() - from.n())) / length));
+                var distance = length == 0 ? from.distanceTo(point) : new PointCh(
+                        from.e() + (to.e() - from.e()) * position / length,
+                        from.n() + (to.n() - from.n()) * position / length).distanceTo(point);
+                if (distance <= searchDistance) expected = Math.min(expected, distance);
+            }
+
+            var snap = graph.edgeClosestTo(point, searchDistance);
+            if (expected == Double.POSITIVE_INFINITY) {
+                assertNull(snap);
+            } else {
+                assertEquals(expected, snap.point().distanceTo(point), 1e-6);
+                var from = graph.nodePoint(graph.edgeSourceNodeId(snap.edgeId()));
+                var to = graph.nodePoint(graph.edgeTargetNodeId(snap.edgeId()));
+                assertEquals(snap.fraction() * from.distanceTo(to), from.distanceTo(snap.point()), 1e-6);
+            }
+        }
+    }
+
+    @Test
+    void graphInHeapStorageWorksLikeMappedStorage() {
+        var rng = newRandom();
+        var attributeSets = new ArrayList<AttributeSet>();
+        for (int i = 0; i < 100; i += 1) attributeSets.add(new AttributeSet(rng.nextLong(1L << 62)));
+
+        // one node per sector (see newOneNodePerSectorGraph), each with random edges
+        var nodesBuffer = IntBuffer.allocate(3 * SECTORS_COUNT);
+        var edgesBuffer = ByteBuffer.allocate(10 * 3 * SECTORS_COUNT);
+        var edgeCount = 0;
+        for (int i = 0; i < SECTORS_COUNT; i += 1) {
+            var e = SwissBounds.MIN_E + (i % SUBDIVISIONS_PER_SIDE + rng.nextDouble(0.01, 0.99))
+                    * SwissBounds.WIDTH / SUBDIVISIONS_PER_SIDE;
+            var n = SwissBounds.MIN_N + (i / SUBDIVISIONS_PER_SIDE + rng.nextDouble(0.01, 0.99))
+                    * SwissBounds.HEIGHT / SUBDIVISIONS_PER_SIDE;
+            var outDegree = rng.nextInt(4);
+            nodesBuffer.put((int) Math.scalb(e, 4));
+            nodesBuffer.put((int) Math.scalb(n, 4));
+            nodesBuffer.put((outDegree << 28) | edgeCount);
+            for (int j = 0; j < outDegree; j += 1) {
+                var target = Math.min(SECTORS_COUNT - 1, Math.max(0, i + rng.nextInt(-2, 3)));
+                edgesBuffer.putInt(rng.nextBoolean() ? target : ~target)
+                        .putShort((short) rng.nextInt(1 << 16))
+                        .putShort((short) rng.nextInt(1 << 16))
+                        .putShort((short) rng.nextInt(attributeSets.size()));
+                edgeCount += 1;
+            }
+        }
+        var graphNodes = new GraphNodes(nodesBuffer.flip());
+        var graphSectors = new GraphSectors(SECTORS_BUFFER);
+        var graphEdges = new GraphEdges(edgesBuffer.flip().slice(), IntBuffer.allocate(edgeCount),
+                ShortBuffer.allocate(0));
+        var mapped = new Graph(graphNodes, graphSectors, graphEdges, attributeSets, StorageMode.MAPPED);
+        var inHeap = new Graph(graphNodes, graphSectors, graphEdges, attributeSets, StorageMode.IN_HEAP);
+
+        assertEquals(mapped.nodeCount(), inHeap.nodeCount());
+        for (int nodeId = 0; nodeId < mapped.nodeCount(); nodeId += 1) {
+            assertEquals(mapped.nodePoint(nodeId), inHeap.nodePoint(nodeId));
+            assertEquals(mapped.nodeOutDegree(nodeId), inHeap.nodeOutDegree(nodeId));
+            for (int i = 0; i < mapped.nodeOutDegree(nodeId); i += 1) {
+                assertEquals(mapped.nodeOutEdgeId(nodeId, i), inHeap.nodeOutEdgeId(nodeId, i));
+            }
+        }
+        assertEquals(mapped.edgeCount(), inHeap.edgeCount());
+        for (int edgeId = 0; edgeId < mapped.edgeCount(); edgeId += 1) {
+            assertEquals(mapped.edgeTargetNodeId(edgeId), inHeap.edgeTargetNodeId(edgeId));
+            assertEquals(mapped.edgeIsInverted(edgeId), inHeap.edgeIsInverted(edgeId));
+            assertEquals(mapped.edgeLength(edgeId), inHeap.edgeLength(edgeId));
+            assertEquals(mapped.edgeElevationGain(edgeId), inHeap.edgeElevationGain(edgeId));
+            assertEquals(mapped.edgeAttributes(edgeId), inHeap.edgeAttributes(edgeId));
+        }
+        for (int i = 0; i < RANDOM_ITERATIONS / 10; i += 1) {
+            var point = randomPointCh(rng);
+            var searchDistance = rng.nextDouble(100, 5_000);
+            assertEquals(mapped.nodeClosestTo(point, searchDistance), inHeap.nodeClosestTo(point, searchDistance));
+            assertEquals(mapped.edgeClosestTo(point, searchDistance), inHeap.edgeClosestTo(point, searchDistance));
+        }
+    }
+
     @Test
     void graphEdgeTargetNodeIdWorksOnRandomValues() {
         var nodesCount = 10;
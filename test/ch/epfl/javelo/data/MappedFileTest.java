@@ -0,0 +1,156 @@
+package ch.epfl.javelo.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedFileTest {
+    private static Path randomFile(byte[] bytes) throws IOException {
+        newRandom().nextBytes(bytes);
+        var file = Files.createTempFile("javelo", ".bin");
+        Files.write(file, bytes);
+        return file;
+    }
+
+    @Test
+    void mappedFileReadsLikeByteBufferAcrossChunks() throws IOException {
+        var bytes = new byte[1_000];
+        var file = randomFile(bytes);
+        var expected = ByteBuffer.wrap(bytes);
+        try (var mapped = MappedFile.map(file, 4)) { // chunks of 16 bytes, values crossing their ends
+            assertEquals(bytes.length, mapped.size());
+            for (int offset = 0; offset + Long.BYTES <= bytes.length; offset += 1) {
+                assertEquals(expected.getShort(offset), mapped.getShort(offset));
+                assertEquals(expected.getInt(offset), mapped.getInt(offset));
+                assertEquals(expected.getLong(offset), mapped.getLong(offset));
+            }
+            assertEquals(expected.getShort(bytes.length - 2), mapped.getShort(bytes.length - 2));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void mappedFileWorksWithDefaultChunksAndEmptyFiles() throws IOException {
+        var bytes = new byte[100];
+        var file = randomFile(bytes);
+        try (var mapped = MappedFile.map(file)) {
+            assertEquals(ByteBuffer.wrap(bytes).order(ByteOrder.BIG_ENDIAN).getInt(96), mapped.getInt(96));
+        } finally {
+            Files.delete(file);
+        }
+
+        var empty = Files.createTempFile("javelo", ".bin");
+        try (var mapped = MappedFile.map(empty)) {
+            assertEquals(0, mapped.size());
+        } finally {
+            Files.delete(empty);
+        }
+    }
+
+    @Test
+    void mappedFileThrowsWhenReadOnceClosed() throws IOException {
+        var file = randomFile(new byte[100]);
+        try {
+            var mapped = MappedFile.map(file, 4);
+            mapped.getLong(40);
+            mapped.close();
+            mapped.close();
+            assertEquals(100, mapped.size());
+            assertThrows(IllegalStateException.class, () -> mapped.getShort(0));
+            assertThrows(IllegalStateException.class, () -> mapped.getInt(40));
+            assertThrows(IllegalStateException.class, () -> mapped.getLong(80));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void mappedFileThrowsOnInvalidChunkSize() throws IOException {
+        var file = randomFile(new byte[10]);
+        try {
+            assertThrows(IllegalArgumentException.class, () -> MappedFile.map(file, 3));
+            assertThrows(IllegalArgumentException.class, () -> MappedFile.map(file, 31));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void chunkedGraphWorksLikeMappedGraph() throws IOException {
+        var rng = newRandom();
+        var directory = Files.createTempDirectory("javelo");
+        var nodeCount = 500;
+        var nodes = ByteBuffer.allocate(12 * nodeCount);
+        var edges = ByteBuffer.allocate(10 * 4 * nodeCount);
+        var profileIds = ByteBuffer.allocate(4 * 4 * nodeCount);
+        var elevations = new ArrayList<Short>();
+        var edgeCount = 0;
+        for (int nodeId = 0; nodeId < nodeCount; nodeId += 1) {
+            var outDegree = rng.nextInt(4);
+            nodes.putInt(rng.nextInt(2_485_000 << 4, 2_834_000 << 4));
+            nodes.putInt(rng.nextInt(1_075_000 << 4, 1_296_000 << 4));
+            nodes.putInt((outDegree << 28) | edgeCount);
+            for (int i = 0; i < outDegree; i += 1) {
+                var target = rng.nextInt(nodeCount);
+                var length = rng.nextInt(1, 1 << 12);
+                edges.putInt(rng.nextBoolean() ? target : ~target)
+                        .putShort((short) length)
+                        .putShort((short) rng.nextInt(1 << 16))
+                        .putShort((short) rng.nextInt(3));
+                var profileType = rng.nextInt(2);
+                profileIds.putInt((profileType << 30) | elevations.size());
+                if (profileType == 1) {
+                    for (int j = 0; j <= Math.ceil(length / 32.0); j += 1) elevations.add((short) rng.nextInt(1 << 16));
+                }
+                edgeCount += 1;
+            }
+        }
+        var elevationsBuffer = ByteBuffer.allocate(2 * elevations.size());
+        for (short elevation : elevations) elevationsBuffer.putShort(elevation);
+        Files.write(directory.resolve("nodes.bin"), Arrays.copyOf(nodes.array(), nodes.position()));
+        Files.write(directory.resolve("edges.bin"), Arrays.copyOf(edges.array(), edges.position()));
+        Files.write(directory.resolve("profile_ids.bin"), Arrays.copyOf(profileIds.array(), profileIds.position()));
+        Files.write(directory.resolve("elevations.bin"), elevationsBuffer.array());
+        Files.write(directory.resolve("sectors.bin"), new byte[6 * 128 * 128]);
+        Files.write(directory.resolve("attributes.bin"), ByteBuffer.allocate(3 * 8).putLong(1).putLong(2).putLong(4).array());
+
+        try (var mapped = Graph.loadFrom(directory, StorageMode.MAPPED);
+             var chunked = Graph.loadFrom(directory, StorageMode.CHUNKED)) {
+            assertEquals(mapped.nodeCount(), chunked.nodeCount());
+            assertEquals(mapped.edgeCount(), chunked.edgeCount());
+            for (int nodeId = 0; nodeId < mapped.nodeCount(); nodeId += 1) {
+                assertEquals(mapped.nodePoint(nodeId), chunked.nodePoint(nodeId));
+                assertEquals(mapped.nodeOutDegree(nodeId), chunked.nodeOutDegree(nodeId));
+                for (int i = 0; i < mapped.nodeOutDegree(nodeId); i += 1) {
+                    assertEquals(mapped.nodeOutEdgeId(nodeId, i), chunked.nodeOutEdgeId(nodeId, i));
+                }
+            }
+            for (int edgeId = 0; edgeId < mapped.edgeCount(); edgeId += 1) {
+                assertEquals(mapped.edgeTargetNodeId(edgeId), chunked.edgeTargetNodeId(edgeId));
+                assertEquals(mapped.edgeIsInverted(edgeId), chunked.edgeIsInverted(edgeId));
+                assertEquals(mapped.edgeLength(edgeId), chunked.edgeLength(edgeId));
+                assertEquals(mapped.edgeElevationGain(edgeId), chunked.edgeElevationGain(edgeId));
+                assertEquals(mapped.edgeAttributes(edgeId), chunked.edgeAttributes(edgeId));
+                var length = mapped.edgeLength(edgeId);
+                for (double x = 0; x <= length; x += 7) {
+                    assertEquals(mapped.edgeProfile(edgeId).applyAsDouble(x), chunked.edgeProfile(edgeId).applyAsDouble(x));
+                }
+            }
+        } finally {
+            try (var files = Files.list(directory)) {
+                for (Path file : files.toList()) Files.delete(file);
+            }
+            Files.delete(directory);
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Q28_4;
+import ch.epfl.javelo.projection.Ch1903;
+import ch.epfl.javelo.projection.PointCh;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.zip.Deflater;
+
+import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class OsmGraphImporterTest {
+    // nodes 1000 + 5 * j + i on a grid of 5 x 5 nodes near Lausanne, 0.001 degree apart
+    private static final long FIRST_NODE_ID = 1000;
+    private static final long MIN_LON = 6_600_000_000L, MIN_LAT = 46_520_000_000L; // in nanodegrees
+    private static final long STEP = 1_000_000; // in nanodegrees
+
+    private static final List<String> FILES = List.of("nodes.bin", "edges.bin", "profile_ids.bin",
+            "elevations.bin", "sectors.bin", "attributes.bin", "nodes_osmid.bin");
+
+    // Tiny real extract of OpenStreetMap around the Flon, in Lausanne, written by osmium rather than by the encoder
+    // below, and checked against the graph of Lausanne (built from OpenStreetMap by other tools):
+    //   osmium extract -b 6.625,46.517,6.64,46.525 -s complete_ways switzerland-latest.osm.pbf -o lausanne.osm.pbf
+    private static final Path REAL_EXTRACT = Path.of("lausanne.osm.pbf");
+
+    /* Protocol Buffers encoding */
+
+    private static void varint(ByteArrayOutputStream stream, long value) {
+        while ((value & ~0x7FL) != 0) {
+            stream.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        stream.write((int) value);
+    }
+
+    private static void varintField(ByteArrayOutputStream stream, int field, long value) {
+        varint(stream, field << 3);
+        varint(stream, value);
+    }
+
+    private static void bytesField(ByteArrayOutputStream stream, int field, byte[] bytes) {
+        varint(stream, field << 3 | 2);
+        varint(stream, bytes.length);
+        stream.writeBytes(bytes);
+    }
+
+    private static byte[] packedSignedDeltas(long... values) {
+        var stream = new ByteArrayOutputStream();
+        var previous = 0L;
+        for (long value : values) {
+            var delta = value - previous;
+            varint(stream, (delta << 1) ^ (delta >> 63));
+            previous = value;
+        }
+        return stream.toByteArray();
+    }
+
+    private static byte[] packedVarints(int... values) {
+        var stream = new ByteArrayOutputStream();
+        for (int value : values) varint(stream, value);
+        return stream.toByteArray();
+    }
+
+    private static void writeBlob(DataOutputStream file, String type, byte[] content) throws IOException {
+        var deflater = new Deflater();
+        deflater.setInput(content);
+        deflater.finish();
+        var compressed = new byte[content.length + 64];
+        var compressedSize = deflater.deflate(compressed);
+        deflater.end();
+
+        var blob = new ByteArrayOutputStream();
+        varintField(blob, 2, content.length);
+        bytesField(blob, 3, Arrays.copyOf(compressed, compressedSize));
+        var header = new ByteArrayOutputStream();
+        bytesField(header, 1, type.getBytes(StandardCharsets.UTF_8));
+        varintField(header, 3, blob.size());
+        file.writeInt(header.size());
+        file.write(header.toByteArray());
+        file.write(blob.toByteArray());
+    }
+
+    private static byte[] block(List<String> strings, byte[] group, long granularity, long latOffset) {
+        var table = new ByteArrayOutputStream();
+        for (String string : strings) bytesField(table, 1, string.getBytes(StandardCharsets.UTF_8));
+        var block = new ByteArrayOutputStream();
+        bytesField(block, 1, table.toByteArray());
+        bytesField(block, 2, group);
+        varintField(block, 17, granularity);
+        varintField(block, 19, latOffset);
+        return block.toByteArray();
+    }
+
+    private static long lon(long nodeId) {
+        return MIN_LON + STEP * ((nodeId - FIRST_NODE_ID) % 5);
+    }
+
+    private static long lat(long nodeId) {
+        return MIN_LAT + STEP * ((nodeId - FIRST_NODE_ID) / 5);
+    }
+
+    private static byte[] way(long id, int[] keys, int[] values, long... nodeIds) {
+        var way = new ByteArrayOutputStream();
+        varintField(way, 1, id);
+        bytesField(way, 2, packedVarints(keys));
+        bytesField(way, 3, packedVarints(values));
+        bytesField(way, 8, packedSignedDeltas(nodeIds));
+        return way.toByteArray();
+    }
+
+    private static void writeOsmFile(Path path) throws IOException {
+        try (var file = new DataOutputStream(Files.newOutputStream(path))) {
+            var header = new ByteArrayOutputStream();
+            bytesField(header, 4, "OsmSchema-V0.6".getBytes(StandardCharsets.UTF_8));
+            bytesField(header, 4, "DenseNodes".getBytes(StandardCharsets.UTF_8));
+            writeBlob(file, "OSMHeader", header.toByteArray());
+
+            // nodes 1000 to 1014, dense, with the default granularity
+            var ids = new long[15];
+            var lats = new long[15];
+            var lons = new long[15];
+            for (int i = 0; i < 15; i += 1) {
+                ids[i] = FIRST_NODE_ID + i;
+                lats[i] = lat(ids[i]) / 100;
+                lons[i] = lon(ids[i]) / 100;
+            }
+            var dense = new ByteArrayOutputStream();
+            bytesField(dense, 1, packedSignedDeltas(ids));
+            bytesField(dense, 8, packedSignedDeltas(lats));
+            bytesField(dense, 9, packedSignedDeltas(lons));
+            var denseGroup = new ByteArrayOutputStream();
+            bytesField(denseGroup, 2, dense.toByteArray());
+            writeBlob(file, "OSMData", block(List.of(""), denseGroup.toByteArray(), 100, 0));
+
+            // nodes 1015 to 1024, not dense, with another granularity and an offset of latitudes
+            var nodesGroup = new ByteArrayOutputStream();
+            for (long id = FIRST_NODE_ID + 15; id < FIRST_NODE_ID + 25; id += 1) {
+                var node = new ByteArrayOutputStream();
+                varintField(node, 1, (id << 1) ^ (id >> 63));
+                var lat = (lat(id) - 20_000) / 1_000;
+                var lon = lon(id) / 1_000;
+                varintField(node, 8, (lat << 1) ^ (lat >> 63));
+                varintField(node, 9, (lon << 1) ^ (lon >> 63));
+                bytesField(nodesGroup, 1, node.toByteArray());
+            }
+            writeBlob(file, "OSMData", block(List.of(""), nodesGroup.toByteArray(), 1_000, 20_000));
+
+            // an unknown blob, to be skipped
+            writeBlob(file, "OSMUnknown", new byte[]{1, 2, 3});
+
+            var strings = List.of("", "highway", "residential", "surface", "asphalt", "cycleway", "oneway", "yes",
+                    "building", "track", "path");
+            var waysGroup = new ByteArrayOutputStream();
+            bytesField(waysGroup, 3, way(1, new int[]{1, 3}, new int[]{2, 4}, 1000, 1001, 1002, 1003, 1004));
+            bytesField(waysGroup, 3, way(2, new int[]{1, 6}, new int[]{5, 7}, 1002, 1007, 1012, 1017, 1022));
+            bytesField(waysGroup, 3, way(3, new int[]{8}, new int[]{7}, 1020, 1021, 1022, 1023, 1024));
+            bytesField(waysGroup, 3, way(4, new int[]{1}, new int[]{9}, 1010, 99_999, 1011));
+            bytesField(waysGroup, 3, way(5, new int[]{1}, new int[]{10}, 1013, 1013, 1014));
+            writeBlob(file, "OSMData", block(strings, waysGroup.toByteArray(), 100, 0));
+        }
+    }
+
+    // elevation of 400 m at the north-west corner of the tile, rising by 10 m per column and 5 m per row
+    private static void writeElevationTile(Path path) throws IOException {
+        var size = 121;
+        var tile = ByteBuffer.allocate(2 * size * size);
+        for (int row = 0; row < size; row += 1) {
+            for (int column = 0; column < size; column += 1) tile.putShort((short) (400 + 10 * column + 5 * row));
+        }
+        Files.write(path, tile.array());
+    }
+
+    private static double expectedElevation(PointCh point) {
+        var lon = Math.toDegrees(Ch1903.lon(point.e(), point.n()));
+        var lat = Math.toDegrees(Ch1903.lat(point.e(), point.n()));
+        return 400 + 10 * 120 * (lon - 6) + 5 * 120 * (47 - lat);
+    }
+
+    private static int edgeBetween(Graph graph, int fromNodeId, int toNodeId) {
+        for (int i = 0; i < graph.nodeOutDegree(fromNodeId); i += 1) {
+            var edgeId = graph.nodeOutEdgeId(fromNodeId, i);
+            if (graph.edgeTargetNodeId(edgeId) == toNodeId) return edgeId;
+        }
+        return -1;
+    }
+
+    private static void deleteAll(Path directory) throws IOException {
+        try (var paths = Files.list(directory)) {
+            for (Path path : paths.toList()) {
+                if (Files.isDirectory(path)) deleteAll(path);
+                else Files.delete(path);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    void osmGraphImporterEncodesProfilesAsGraphEdgesDecodesThem() {
+        var rng = newRandom();
+        for (int i = 0; i < RANDOM_ITERATIONS; i += 1) {
+            var sampleCount = rng.nextInt(2, 100);
+            var maxStep = 1 << rng.nextInt(1, 12);
+            var samples = new int[sampleCount];
+            samples[0] = rng.nextInt(1 << 15);
+            for (int j = 1; j < sampleCount; j += 1) {
+                samples[j] = Math.max(0, Math.min((1 << 16) - 1, samples[j - 1] + rng.nextInt(-maxStep, maxStep)));
+            }
+            var type = OsmGraphImporter.profileType(samples);
+            var elevations = OsmGraphImporter.encodeProfile(samples, type);
+            var length = (sampleCount - 1) * 32 - rng.nextInt(32); // in UQ12.4, giving the same number of samples
+            var decoded = GraphEdges.profileSamples(type << 30, length, false, index -> elevations[index]);
+            assertEquals(sampleCount, decoded.length);
+            for (int j = 0; j < sampleCount; j += 1) assertEquals(samples[j] / 16f, decoded[j]);
+        }
+        assertEquals(3, OsmGraphImporter.profileType(new int[]{100, 107, 99}));
+        assertEquals(2, OsmGraphImporter.profileType(new int[]{100, 108, 99}));
+        assertEquals(1, OsmGraphImporter.profileType(new int[]{100, 228}));
+    }
+
+    @Test
+    void osmGraphImporterImportsGraph() throws IOException {
+        var directory = Files.createTempDirectory("javelo");
+        try {
+            var osmPath = directory.resolve("extract.osm.pbf");
+            writeOsmFile(osmPath);
+            Files.createDirectory(directory.resolve("srtm"));
+            writeElevationTile(directory.resolve("srtm").resolve("N46E006.hgt"));
+            var elevationGrid = ElevationGrid.loadFrom(directory.resolve("srtm"));
+
+            var summary = OsmGraphImporter.importGraph(osmPath, elevationGrid, directory.resolve("graph"), 3);
+            assertEquals(new OsmGraphImporter.Summary(11, 18, 4, 2), summary);
+            OsmGraphImporter.importGraph(osmPath, elevationGrid, directory.resolve("graph1"), 1);
+            for (String file : FILES) {
+                assertArrayEquals(Files.readAllBytes(directory.resolve("graph").resolve(file)),
+                        Files.readAllBytes(directory.resolve("graph1").resolve(file)));
+            }
+
+            var graph = Graph.loadFrom(directory.resolve("graph"));
+            assertEquals(11, graph.nodeCount());
+            assertEquals(18, graph.edgeCount());
+            for (int nodeId = 0; nodeId < graph.nodeCount(); nodeId += 1) {
+                var osmId = graph.nodeOsmId(nodeId);
+                var lon = Math.toRadians(lon(osmId) * 1e-9);
+                var lat = Math.toRadians(lat(osmId) * 1e-9);
+                assertEquals(Ch1903.e(lon, lat), graph.nodePoint(nodeId).e(), 1 / 32.0);
+                assertEquals(Ch1903.n(lon, lat), graph.nodePoint(nodeId).n(), 1 / 32.0);
+                assertEquals(nodeId, graph.nodeClosestTo(graph.nodePoint(nodeId), 1));
+            }
+            assertEquals(-1, graph.nodeIdOfOsmId(1010));
+            assertEquals(-1, graph.nodeIdOfOsmId(1024));
+
+            var residential = AttributeSet.of(Attribute.HIGHWAY_RESIDENTIAL, Attribute.SURFACE_ASPHALT);
+            var cycleway = AttributeSet.of(Attribute.HIGHWAY_CYCLEWAY, Attribute.ONEWAY_YES);
+            var path = AttributeSet.of(Attribute.HIGHWAY_PATH);
+            long[][] segments = {
+                    {1000, 1001}, {1001, 1002}, {1002, 1003}, {1003, 1004},
+                    {1002, 1007}, {1007, 1012}, {1012, 1017}, {1017, 1022},
+                    {1013, 1014}};
+            var attributes = List.of(residential, residential, residential, residential,
+                    cycleway, cycleway, cycleway, cycleway, path);
+            for (int i = 0; i < segments.length; i += 1) {
+                var fromNodeId = graph.nodeIdOfOsmId(segments[i][0]);
+                var toNodeId = graph.nodeIdOfOsmId(segments[i][1]);
+                var edgeId = edgeBetween(graph, fromNodeId, toNodeId);
+                var oppositeEdgeId = edgeBetween(graph, toNodeId, fromNodeId);
+                assertFalse(graph.edgeIsInverted(edgeId));
+                assertTrue(graph.edgeIsInverted(oppositeEdgeId));
+                assertEquals(attributes.get(i), graph.edgeAttributes(edgeId));
+                assertEquals(attributes.get(i), graph.edgeAttributes(oppositeEdgeId));
+                var length = graph.nodePoint(fromNodeId).distanceTo(graph.nodePoint(toNodeId));
+                assertEquals(length, graph.edgeLength(edgeId), 1 / 32.0);
+                assertEquals(graph.edgeLength(edgeId), graph.edgeLength(oppositeEdgeId));
+
+                var from = graph.nodePoint(fromNodeId);
+                var to = graph.nodePoint(toNodeId);
+                var rise = expectedElevation(to) - expectedElevation(from);
+                assertEquals(Math.max(0, rise), graph.edgeElevationGain(edgeId), 0.2);
+                assertEquals(Math.max(0, -rise), graph.edgeElevationGain(oppositeEdgeId), 0.2);
+                for (double x = 0; x <= 1; x += 0.25) {
+                    var point = new PointCh(from.e() + x * (to.e() - from.e()), from.n() + x * (to.n() - from.n()));
+                    var position = x * graph.edgeLength(edgeId);
+                    assertEquals(expectedElevation(point), graph.edgeElevationAt(edgeId, position), 0.1);
+                    assertEquals(expectedElevation(point),
+                            graph.edgeElevationAt(oppositeEdgeId, graph.edgeLength(edgeId) - position), 0.1);
+                }
+            }
+        } finally {
+            deleteAll(directory);
+        }
+    }
+
+    @Test
+    void osmGraphImporterLeavesProfilesOutsideOfElevationModelEmpty() throws IOException {
+        var directory = Files.createTempDirectory("javelo");
+        try {
+            var osmPath = directory.resolve("extract.osm.pbf");
+            writeOsmFile(osmPath);
+            Files.createDirectory(directory.resolve("srtm"));
+            var summary = OsmGraphImporter.importGraph(osmPath, ElevationGrid.loadFrom(directory.resolve("srtm")),
+                    directory.resolve("graph"), 2);
+            assertEquals(18, summary.edgeCount());
+            assertEquals(0, Files.size(directory.resolve("graph").resolve("elevations.bin")));
+
+            var graph = Graph.loadFrom(directory.resolve("graph"));
+            for (int edgeId = 0; edgeId < graph.edgeCount(); edgeId += 1) {
+                assertTrue(Double.isNaN(graph.edgeElevationAt(edgeId, 0)));
+                assertEquals(0, graph.edgeElevationGain(edgeId));
+            }
+        } finally {
+            deleteAll(directory);
+        }
+    }
+
+    @Test
+    void osmGraphImporterImportsRealExtractLikeLausanneGraph() throws IOException {
+        assumeTrue(Files.exists(REAL_EXTRACT), "lausanne.osm.pbf (see above) is not in the working directory");
+        var directory = Files.createTempDirectory("javelo");
+        try {
+            Files.createDirectory(directory.resolve("srtm"));
+            var summary = OsmGraphImporter.importGraph(REAL_EXTRACT,
+                    ElevationGrid.loadFrom(directory.resolve("srtm")), directory.resolve("graph"), 2);
+            var graph = Graph.loadFrom(directory.resolve("graph"));
+            assertEquals(summary.nodeCount(), graph.nodeCount());
+            assertEquals(summary.edgeCount(), graph.edgeCount());
+            assertTrue(graph.nodeCount() > 100);
+            for (int edgeId = 0; edgeId < graph.edgeCount(); edgeId += 1) {
+                var from = graph.nodePoint(graph.edgeSourceNodeId(edgeId));
+                var to = graph.nodePoint(graph.edgeTargetNodeId(edgeId));
+                assertEquals(from.distanceTo(to), graph.edgeLength(edgeId), 1 / 16.0);
+            }
+
+            var lausanneNodes = ByteBuffer.wrap(Files.readAllBytes(Path.of("lausanne", "nodes.bin"))).asIntBuffer();
+            var lausanneOsmIds =
+                    ByteBuffer.wrap(Files.readAllBytes(Path.of("lausanne", "nodes_osmid.bin"))).asLongBuffer();
+            var lausanneNodeIds = new HashMap<Long, Integer>();
+            for (int nodeId = 0; nodeId < lausanneOsmIds.capacity(); nodeId += 1)
+                lausanneNodeIds.put(lausanneOsmIds.get(nodeId), nodeId);
+            var commonCount = 0;
+            var samePointCount = 0;
+            for (int nodeId = 0; nodeId < graph.nodeCount(); nodeId += 1) {
+                var osmId = graph.nodeOsmId(nodeId);
+                assertEquals(nodeId, graph.nodeIdOfOsmId(osmId));
+                var lausanneNodeId = lausanneNodeIds.get(osmId);
+                if (lausanneNodeId == null) continue;
+                commonCount += 1;
+                var point = graph.nodePoint(nodeId);
+                var e = Q28_4.asDouble(lausanneNodes.get(3 * lausanneNodeId));
+                var n = Q28_4.asDouble(lausanneNodes.get(3 * lausanneNodeId + 1));
+                if (Math.abs(point.e() - e) <= 0.1 && Math.abs(point.n() - n) <= 0.1) samePointCount += 1;
+            }
+            // a few nodes were added or moved since the graph of Lausanne was built, but most were not
+            assertTrue(commonCount > graph.nodeCount() / 2);
+            assertTrue(samePointCount >= 0.99 * commonCount);
+        } finally {
+            deleteAll(directory);
+        }
+    }
+
+    @Test
+    void osmPbfReaderRejectsUnsupportedFeatures() throws IOException {
+        var path = Files.createTempFile("javelo", ".osm.pbf");
+        try (var file = new DataOutputStream(Files.newOutputStream(path))) {
+            var header = new ByteArrayOutputStream();
+            bytesField(header, 4, "HistoricalInformation".getBytes(StandardCharsets.UTF_8));
+            writeBlob(file, "OSMHeader", header.toByteArray());
+        }
+        try {
+            assertThrows(IOException.class, () -> OsmGraphImporter.importGraph(
+                    path, ElevationGrid.loadFrom(path.getParent()), path.resolveSibling("javelo-graph"), 1));
+        } finally {
+            Files.delete(path);
+            Files.deleteIfExists(path.resolveSibling("javelo-graph"));
+        }
+    }
+}
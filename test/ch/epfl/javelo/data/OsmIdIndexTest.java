@@ -0,0 +1,151 @@
+package ch.epfl.javelo.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.file.Files;
+import java.util.List;
+
+import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class OsmIdIndexTest {
+    @Test
+    void osmIdIndexFindsEveryNode() {
+        var rng = newRandom();
+        for (int i = 0; i < RANDOM_ITERATIONS / 10; i += 1) {
+            var nodeCount = rng.nextInt(1, 2_000);
+            // identities clustered in a few ranges, as those of OpenStreetMap
+            var osmIds = new long[nodeCount];
+            for (int nodeId = 0; nodeId < nodeCount; nodeId += 1) {
+                osmIds[nodeId] = (rng.nextInt(4) * 3_000_000_000L) + rng.nextLong(1, 1L << rng.nextInt(2, 24));
+            }
+            var index = OsmIdIndex.build(LongBuffer.wrap(osmIds));
+            assertEquals(nodeCount, index.count());
+            for (int nodeId = 0; nodeId < nodeCount; nodeId += 1) {
+                assertEquals(osmIds[nodeId], index.osmId(nodeId));
+                var foundNodeId = index.nodeId(osmIds[nodeId]);
+                assertEquals(osmIds[nodeId], osmIds[foundNodeId]);
+                assertTrue(foundNodeId <= nodeId);
+            }
+            for (int j = 0; j < 100; j += 1) {
+                var osmId = rng.nextLong(-10, 10_000_000_000L);
+                var expected = -1;
+                for (int nodeId = nodeCount - 1; nodeId >= 0; nodeId -= 1) if (osmIds[nodeId] == osmId) expected = nodeId;
+                assertEquals(expected, index.nodeId(osmId));
+            }
+        }
+    }
+
+    @Test
+    void osmIdIndexWorksOnExtremeIdentities() {
+        var osmIds = new long[]{Long.MAX_VALUE, 5, Long.MIN_VALUE, 5, 0, Long.MAX_VALUE};
+        var index = OsmIdIndex.build(LongBuffer.wrap(osmIds));
+        assertEquals(0, index.nodeId(Long.MAX_VALUE));
+        assertEquals(1, index.nodeId(5));
+        assertEquals(2, index.nodeId(Long.MIN_VALUE));
+        assertEquals(4, index.nodeId(0));
+        assertEquals(-1, index.nodeId(4));
+        assertEquals(-1, index.nodeId(Long.MAX_VALUE - 1));
+        assertEquals(-1, OsmIdIndex.build(LongBuffer.allocate(0)).nodeId(0));
+    }
+
+    @Test
+    void osmIdIndexIsWrittenAndMapped() throws IOException {
+        var rng = newRandom();
+        var nodeCount = 1_000;
+        var osmIds = ByteBuffer.allocate(8 * nodeCount);
+        for (int nodeId = 0; nodeId < nodeCount; nodeId += 1) osmIds.putLong(rng.nextLong(1, 1L << 34));
+        var directory = Files.createTempDirectory("javelo");
+        var osmIdsPath = directory.resolve("nodes_osmid.bin");
+        var indexPath = directory.resolve("nodes_osmid_index.bin");
+        try {
+            Files.write(osmIdsPath, osmIds.array());
+            assertFalse(OsmIdIndex.existIn(directory));
+            var builtIndex = OsmIdIndex.loadFrom(directory);
+            builtIndex.writeTo(directory);
+            assertTrue(OsmIdIndex.existIn(directory));
+            var mappedIndex = OsmIdIndex.loadFrom(directory);
+            for (int nodeId = 0; nodeId < nodeCount; nodeId += 1) {
+                var osmId = osmIds.getLong(8 * nodeId);
+                assertEquals(osmId, mappedIndex.osmId(nodeId));
+                assertEquals(builtIndex.nodeId(osmId), mappedIndex.nodeId(osmId));
+            }
+
+            Files.write(osmIdsPath, new byte[8]);
+            assertThrows(IOException.class, () -> OsmIdIndex.loadFrom(directory));
+        } finally {
+            for (var path : List.of(osmIdsPath, indexPath, directory)) Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    void osmIdIndexThrowsOnIdentitiesChangedSinceWritten() throws IOException {
+        var nodeCount = 1_000;
+        var osmIds = ByteBuffer.allocate(8 * nodeCount);
+        for (int nodeId = 0; nodeId < nodeCount; nodeId += 1) osmIds.putLong(1_000 + 3L * nodeId);
+        var directory = Files.createTempDirectory("javelo");
+        var osmIdsPath = directory.resolve("nodes_osmid.bin");
+        var indexPath = directory.resolve("nodes_osmid_index.bin");
+        try {
+            Files.write(osmIdsPath, osmIds.array());
+            OsmIdIndex.loadFrom(directory).writeTo(directory);
+            assertEquals(1_000 + 3 * 42, OsmIdIndex.loadFrom(directory).osmId(42));
+
+            // same number of identities, two of them swapped (as by a renumbering of the graph)
+            osmIds.putLong(8 * 42, 1_000 + 3 * 43).putLong(8 * 43, 1_000 + 3 * 42);
+            Files.write(osmIdsPath, osmIds.array());
+            assertThrows(IOException.class, () -> OsmIdIndex.loadFrom(directory));
+
+            Files.write(indexPath, new byte[12 * nodeCount]);
+            assertThrows(IOException.class, () -> OsmIdIndex.loadFrom(directory));
+        } finally {
+            for (var path : List.of(osmIdsPath, indexPath, directory)) Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    void graphWithoutOsmIdsHasNone() {
+        var nodes = new GraphNodes(ByteBuffer.allocate(12).asIntBuffer());
+        var edges = new GraphEdges(ByteBuffer.allocate(0), ByteBuffer.allocate(0).asIntBuffer(),
+                ByteBuffer.allocate(0).asShortBuffer());
+        var graph = new Graph(nodes, new GraphSectors(ByteBuffer.allocate(6 * 128 * 128)), edges, List.of());
+        assertEquals(-1, graph.nodeOsmId(0));
+        assertEquals(-1, graph.nodeIdOfOsmId(1234));
+    }
+
+    @Test
+    void graphLoadsOsmIdIndexOnFirstLookup() throws IOException {
+        var nodeCount = 100;
+        var osmIds = ByteBuffer.allocate(8 * nodeCount);
+        for (int nodeId = 0; nodeId < nodeCount; nodeId += 1) osmIds.putLong(1_000 + 7L * nodeId);
+        var directory = Files.createTempDirectory("javelo");
+        var files = List.of("nodes.bin", "edges.bin", "profile_ids.bin", "elevations.bin", "sectors.bin",
+                "attributes.bin", "nodes_osmid.bin", "nodes_osmid_index.bin");
+        try {
+            Files.write(directory.resolve("nodes.bin"), new byte[12 * nodeCount]);
+            for (var file : List.of("edges.bin", "profile_ids.bin", "elevations.bin", "attributes.bin"))
+                Files.write(directory.resolve(file), new byte[0]);
+            Files.write(directory.resolve("sectors.bin"), new byte[6 * 128 * 128]);
+            Files.write(directory.resolve("nodes_osmid.bin"), osmIds.array());
+            // index not matching the identities, only read once a node is looked up by its identity
+            Files.write(directory.resolve("nodes_osmid_index.bin"), new byte[12]);
+
+            var graph = Graph.loadFrom(directory);
+            assertEquals(1_000 + 7 * 42, graph.nodeOsmId(42));
+            assertThrows(UncheckedIOException.class, () -> graph.nodeIdOfOsmId(1_000));
+
+            Files.delete(directory.resolve("nodes_osmid_index.bin"));
+            var reloadedGraph = Graph.loadFrom(directory);
+            assertEquals(42, reloadedGraph.nodeIdOfOsmId(1_000 + 7 * 42));
+            assertEquals(-1, reloadedGraph.nodeIdOfOsmId(1_001));
+        } finally {
+            for (var file : files) Files.deleteIfExists(directory.resolve(file));
+            Files.delete(directory);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package ch.epfl.javelo.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProfileCacheTest {
+    @Test
+    void profileCacheConstructorThrowsOnInvalidMemory() {
+        assertThrows(IllegalArgumentException.class, () -> new ProfileCache(0));
+        assertThrows(IllegalArgumentException.class, () -> new ProfileCache(-1));
+    }
+
+    @Test
+    void profileCacheSamplesDecodesOnlyOnMiss() {
+        var cache = new ProfileCache(1 << 20);
+        var decodeCount = new AtomicInteger();
+        var samples = new float[]{1, 2, 3};
+        assertEquals(0, cache.hitRatio());
+
+        assertSame(samples, cache.samples(42, k -> { decodeCount.incrementAndGet(); return samples; }));
+        assertSame(samples, cache.samples(42, k -> { decodeCount.incrementAndGet(); return new float[3]; }));
+        assertEquals(1, decodeCount.get());
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.missCount());
+        assertEquals(0.5, cache.hitRatio());
+        assertEquals(1, cache.size());
+        assertEquals(ProfileCache.weight(samples), cache.bytes());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.bytes());
+    }
+
+    @Test
+    void profileCacheEvictsToStayWithinItsMemory() {
+        var rng = newRandom();
+        var cache = new ProfileCache(1 << 14);
+        for (int i = 0; i < RANDOM_ITERATIONS; i += 1) {
+            var samples = new float[rng.nextInt(2, 200)];
+            cache.samples(rng.nextLong(), k -> samples);
+            assertTrue(cache.bytes() <= cache.maxBytes());
+        }
+        assertTrue(cache.evictionCount() > 0);
+        assertEquals(RANDOM_ITERATIONS, cache.missCount());
+    }
+
+    @Test
+    void profileCacheDoesNotKeepSamplesLargerThanAStripe() {
+        var cache = new ProfileCache(1 << 10);
+        var samples = new float[1 << 10];
+        assertSame(samples, cache.samples(1, k -> samples));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.bytes());
+    }
+
+    @Test
+    void graphWithProfileCacheWorksLikeGraphWithout() {
+        var rng = newRandom();
+        var elevations = ShortBuffer.allocate(2_100);
+        for (int i = 0; i < RANDOM_ITERATIONS; i += 1) {
+            var profileType = rng.nextInt(1, 4);
+            var length = rng.nextInt(1, 1 << 16);
+            for (int j = 0; j < elevations.capacity(); j += 1) elevations.put(j, (short) rng.nextInt(1 << 16));
+            // an edge and its reverse, sharing the same profile
+            var edgesBuffer = ByteBuffer.allocate(20);
+            edgesBuffer.putInt(0, 1);
+            edgesBuffer.putShort(4, (short) length);
+            edgesBuffer.putInt(10, ~0);
+            edgesBuffer.putShort(14, (short) length);
+            var profileId = (profileType << 30) | rng.nextInt(10);
+            var edges = new GraphEdges(edgesBuffer, IntBuffer.wrap(new int[]{profileId, profileId}), elevations);
+            var nodes = new GraphNodes(IntBuffer.wrap(new int[]{0, 0, 1 << 28, 0, 0, (1 << 28) | 1}));
+            var graph = new Graph(nodes, new GraphSectors(ByteBuffer.allocate(0)), edges, List.of(),
+                    StorageMode.MAPPED);
+            var cache = new ProfileCache(1 << 20);
+            var cachedGraph = graph.withProfileCache(cache);
+
+            var xMax = length / 16.0;
+            for (int edgeId = 0; edgeId < 2; edgeId += 1) {
+                var profile = graph.edgeProfile(edgeId);
+                var cachedProfile = cachedGraph.edgeProfile(edgeId);
+                for (int j = 0; j < 20; j += 1) {
+                    var position = rng.nextDouble(-10, xMax + 10);
+                    assertEquals(profile.applyAsDouble(position), cachedProfile.applyAsDouble(position));
+                }
+                assertEquals(profile.applyAsDouble(xMax), cachedProfile.applyAsDouble(xMax));
+            }
+            assertEquals(1, cache.size());
+            assertEquals(1, cache.missCount());
+        }
+    }
+}
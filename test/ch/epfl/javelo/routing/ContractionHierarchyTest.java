@@ -0,0 +1,98 @@
+package ch.epfl.javelo.routing;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContractionHierarchyTest {
+    @Test
+    void contractionHierarchyFindsRoutesOfSameLengthAsRouteComputer() {
+        var graph = TestGraphs.grid();
+        var costFunction = TestGraphs.unevenCostFunction();
+        var hierarchy = ContractionHierarchyBuilder.build(graph, costFunction);
+        var routeComputer = new RouteComputer(graph, costFunction);
+
+        for (int startNodeId = 0; startNodeId < graph.nodeCount(); startNodeId += 1) {
+            for (int endNodeId = 0; endNodeId < graph.nodeCount(); endNodeId += 1) {
+                if (startNodeId == endNodeId) continue;
+                var expected = routeComputer.bestRouteBetween(startNodeId, endNodeId);
+                var actual = hierarchy.bestRouteBetween(startNodeId, endNodeId);
+                if (expected == null) {
+                    assertNull(actual);
+                    continue;
+                }
+                assertNotNull(actual);
+                assertEquals(expected.length(), actual.length(), 1e-6);
+                assertEquals(startNodeId, actual.edges().get(0).fromNodeId());
+                assertEquals(endNodeId, actual.edges().get(actual.edges().size() - 1).toNodeId());
+                for (int i = 1; i < actual.edges().size(); i += 1)
+                    assertEquals(actual.edges().get(i - 1).toNodeId(), actual.edges().get(i).fromNodeId());
+            }
+        }
+    }
+
+    @Test
+    void contractionHierarchyRanksAreAPermutation() {
+        var graph = TestGraphs.grid();
+        var hierarchy = ContractionHierarchyBuilder.build(graph, TestGraphs.unevenCostFunction());
+        var seen = new boolean[graph.nodeCount()];
+        for (int nodeId = 0; nodeId < graph.nodeCount(); nodeId += 1) {
+            var rank = hierarchy.rank(nodeId);
+            assertFalse(seen[rank]);
+            seen[rank] = true;
+        }
+    }
+
+    @Test
+    void contractionHierarchyIsPreservedByWriteAndLoad() throws IOException {
+        var graph = TestGraphs.grid();
+        var costFunction = TestGraphs.unevenCostFunction();
+        var hierarchy = ContractionHierarchyBuilder.build(graph, costFunction);
+        var directory = Files.createTempDirectory("javelo");
+        hierarchy.writeTo(directory);
+        var loaded = ContractionHierarchy.loadFrom(directory, graph, costFunction);
+
+        assertEquals(hierarchy.shortcutCount(), loaded.shortcutCount());
+        for (int nodeId = 0; nodeId < graph.nodeCount(); nodeId += 1)
+            assertEquals(hierarchy.rank(nodeId), loaded.rank(nodeId));
+        var expected = hierarchy.bestRouteBetween(0, graph.nodeCount() - 1);
+        var actual = loaded.bestRouteBetween(0, graph.nodeCount() - 1);
+        assertEquals(expected.edges(), actual.edges());
+    }
+
+    @Test
+    void contractionHierarchyLoadThrowsOnOtherGraphOrCostFunction() throws IOException {
+        var graph = TestGraphs.grid();
+        var costFunction = TestGraphs.unevenCostFunction();
+        var directory = Files.createTempDirectory("javelo");
+        ContractionHierarchyBuilder.build(graph, costFunction).writeTo(directory);
+
+        assertThrows(IOException.class, () -> ContractionHierarchy.loadFrom(directory, graph, (n, e) -> 1));
+        assertThrows(IOException.class,
+                () -> ContractionHierarchy.loadFrom(directory, TestGraphs.grid(3), costFunction));
+    }
+
+    @Test
+    void contractionHierarchyLoadThrowsOnFilesWithoutHeader() throws IOException {
+        var graph = TestGraphs.grid();
+        var directory = Files.createTempDirectory("javelo");
+        var ranks = ByteBuffer.allocate(graph.nodeCount() * Integer.BYTES);
+        for (int nodeId = 0; nodeId < graph.nodeCount(); nodeId += 1) ranks.putInt(nodeId);
+        Files.write(directory.resolve("ch_ranks.bin"), ranks.array());
+        Files.write(directory.resolve("ch_shortcuts.bin"), new byte[0]);
+
+        assertThrows(IOException.class,
+                () -> ContractionHierarchy.loadFrom(directory, graph, TestGraphs.unevenCostFunction()));
+    }
+
+    @Test
+    void contractionHierarchyThrowsOnIdenticalStartAndEndNodes() {
+        var graph = TestGraphs.grid();
+        var hierarchy = ContractionHierarchyBuilder.build(graph, TestGraphs.unevenCostFunction());
+        assertThrows(IllegalArgumentException.class, () -> hierarchy.bestRouteBetween(3, 3));
+    }
+}
@@ -0,0 +1,109 @@
+package ch.epfl.javelo.routing;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EdgeCostTableTest {
+    @Test
+    void edgeCostTableIsEquivalentToCostFunction() {
+        var graph = TestGraphs.grid();
+        var costFunction = TestGraphs.unevenCostFunction();
+        for (boolean offHeap : new boolean[]{false, true}) {
+            var table = EdgeCostTable.of(graph, costFunction, offHeap);
+            for (int nodeId = 0; nodeId < graph.nodeCount(); nodeId += 1) {
+                for (int i = 0; i < graph.nodeOutDegree(nodeId); i += 1) {
+                    var edgeId = graph.nodeOutEdgeId(nodeId, i);
+                    assertEquals((float) costFunction.costFactor(nodeId, edgeId), table.costFactor(nodeId, edgeId));
+                }
+            }
+        }
+    }
+
+    @Test
+    void edgeCostTableIsEquivalentToCityBikeCF() {
+        var graph = TestGraphs.taggedGrid();
+        var costFunction = new CityBikeCF(graph);
+        var table = EdgeCostTable.of(graph, costFunction);
+        var factors = new HashSet<Double>();
+        for (int nodeId = 0; nodeId < graph.nodeCount(); nodeId += 1) {
+            for (int i = 0; i < graph.nodeOutDegree(nodeId); i += 1) {
+                var edgeId = graph.nodeOutEdgeId(nodeId, i);
+                var factor = costFunction.costFactor(nodeId, edgeId);
+                factors.add(factor);
+                assertEquals((float) factor, table.costFactor(nodeId, edgeId));
+            }
+        }
+        // the grid covers many cases of the cost function, among which edges that cannot be used
+        assertTrue(factors.size() > 10);
+        assertTrue(factors.contains(Double.POSITIVE_INFINITY));
+    }
+
+    @Test
+    void routeComputerFindsSameRoutesWithEdgeCostTableOfCityBikeCF() {
+        var graph = TestGraphs.taggedGrid();
+        var costFunction = new CityBikeCF(graph);
+        var expectedComputer = new RouteComputer(graph, costFunction);
+        var actualComputer = new RouteComputer(graph, EdgeCostTable.of(graph, costFunction));
+        var routeCount = 0;
+        for (int startNodeId = 0; startNodeId < graph.nodeCount(); startNodeId += 1) {
+            for (int endNodeId = 0; endNodeId < graph.nodeCount(); endNodeId += 1) {
+                if (startNodeId == endNodeId) continue;
+                var expected = expectedComputer.bestRouteBetween(startNodeId, endNodeId);
+                var actual = actualComputer.bestRouteBetween(startNodeId, endNodeId);
+                if (expected == null) assertNull(actual);
+                else {
+                    assertEquals(expected.edges(), actual.edges());
+                    routeCount += 1;
+                }
+            }
+        }
+        assertTrue(routeCount > 0);
+    }
+
+    @Test
+    void routeComputerFindsSameRoutesWithEdgeCostTable() {
+        var graph = TestGraphs.grid();
+        var costFunction = TestGraphs.unevenCostFunction();
+        var expectedComputer = new RouteComputer(graph, costFunction);
+        var actualComputer = new RouteComputer(graph, EdgeCostTable.of(graph, costFunction));
+        for (int startNodeId = 0; startNodeId < graph.nodeCount(); startNodeId += 1) {
+            for (int endNodeId = 0; endNodeId < graph.nodeCount(); endNodeId += 1) {
+                if (startNodeId == endNodeId) continue;
+                var expected = expectedComputer.bestRouteBetween(startNodeId, endNodeId);
+                var actual = actualComputer.bestRouteBetween(startNodeId, endNodeId);
+                if (expected == null) assertNull(actual);
+                else {
+                    assertEquals(expected.length(), actual.length());
+                    assertEquals(expected.edges().size(), actual.edges().size());
+                }
+            }
+        }
+    }
+
+    @Test
+    void edgeCostTableFallsBackToCostFunctionBeyondBudget() {
+        var graph = TestGraphs.taggedGrid();
+        var costFunction = new CityBikeCF(graph);
+        assertSame(costFunction, EdgeCostTable.of(graph, costFunction, Duration.ZERO));
+        assertTrue(EdgeCostTable.of(graph, costFunction, Duration.ofMinutes(1)) instanceof EdgeCostTable);
+    }
+
+    @Test
+    void edgeCostTableIsPreservedByWriteAndLoad() throws IOException {
+        var graph = TestGraphs.grid();
+        var table = EdgeCostTable.of(graph, TestGraphs.unevenCostFunction(), true);
+        var path = Files.createTempFile("javelo", ".bin");
+        table.writeTo(path);
+        var loaded = EdgeCostTable.loadFrom(path, graph);
+        for (int edgeId = 0; edgeId < graph.edgeCount(); edgeId += 1)
+            assertEquals(table.costFactor(0, edgeId), loaded.costFactor(0, edgeId));
+
+        assertThrows(IllegalArgumentException.class, () -> EdgeCostTable.loadFrom(path, TestGraphs.parallelEdges()));
+    }
+}
@@ -0,0 +1,72 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.projection.PointCh;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GpxReaderTest {
+    private static List<PointCh> read(String gpx) throws IOException {
+        var points = new ArrayList<PointCh>();
+        GpxReader.readPoints(new ByteArrayInputStream(gpx.getBytes(StandardCharsets.UTF_8)), points::add);
+        return points;
+    }
+
+    private static String point(String name, PointCh point) {
+        return "<%s lat=\"%s\" lon=\"%s\"><ele>400</ele></%1$s>".formatted(
+                name, Math.toDegrees(point.lat()), Math.toDegrees(point.lon()));
+    }
+
+    @Test
+    void gpxReaderReadsTrackAndRoutePointsInOrder() throws IOException {
+        var p1 = new PointCh(2_533_132, 1_152_206);
+        var p2 = new PointCh(2_600_000, 1_200_000);
+        var p3 = new PointCh(2_700_000, 1_250_000);
+        var gpx = "<?xml version=\"1.0\"?><gpx xmlns=\"http://www.topografix.com/GPX/1/1\" version=\"1.1\">"
+                + "<trk><trkseg>" + point("trkpt", p1) + point("trkpt", p2) + "</trkseg></trk>"
+                + "<rte>" + point("rtept", p3) + "</rte></gpx>";
+        var points = read(gpx);
+        assertEquals(3, points.size());
+        var expected = List.of(p1, p2, p3);
+        for (int i = 0; i < expected.size(); i += 1) {
+            assertEquals(expected.get(i).e(), points.get(i).e(), 1);
+            assertEquals(expected.get(i).n(), points.get(i).n(), 1);
+        }
+    }
+
+    @Test
+    void gpxReaderIgnoresPointsOutsideSwitzerland() throws IOException {
+        var gpx = "<gpx><trk><trkseg>"
+                + "<trkpt lat=\"48.8566\" lon=\"2.3522\"/>"
+                + point("trkpt", new PointCh(2_600_000, 1_200_000))
+                + "</trkseg></trk></gpx>";
+        assertEquals(1, read(gpx).size());
+    }
+
+    @Test
+    void gpxReaderThrowsOnInvalidDocuments() {
+        assertThrows(IOException.class, () -> read("<gpx><trk><trkseg><trkpt lat=\"46.5\"/></trkseg></trk></gpx>"));
+        assertThrows(IOException.class, () -> read("<gpx><trk><trkseg><trkpt lat=\"46.5\" lon=\"x\"/>"));
+        assertThrows(IOException.class, () -> read("<gpx><trk>"));
+    }
+
+    @Test
+    void gpxReaderReadsFiles() throws IOException {
+        var file = Files.createTempFile("trace", ".gpx");
+        try {
+            Files.writeString(file, "<gpx><rte>" + point("rtept", new PointCh(2_600_000, 1_200_000)) + "</rte></gpx>");
+            var points = GpxReader.readPoints(file);
+            assertEquals(1, points.size());
+            assertEquals(2_600_000, points.get(0).e(), 1);
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package ch.epfl.javelo.routing;
+
+import org.junit.jupiter.api.Test;
+
+import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class IsochroneComputerTest {
+
+    @Test
+    void isochroneFromThrowsOnNegativeBudget() {
+        var graph = TestGraphs.grid();
+        var isochroneComputer = new IsochroneComputer(graph, TestGraphs.unevenCostFunction());
+        assertThrows(IllegalArgumentException.class, () -> isochroneComputer.isochroneFrom(0, -1));
+    }
+
+    @Test
+    void isochroneFromReturnsOnlyStartNodeForZeroBudget() {
+        var graph = TestGraphs.grid();
+        var isochrone = new IsochroneComputer(graph, TestGraphs.unevenCostFunction()).isochroneFrom(9, 0);
+        assertEquals(1, isochrone.size());
+        assertEquals(9, isochrone.nodeId(0));
+        assertEquals(0, isochrone.cost(0));
+    }
+
+    @Test
+    void isochroneFromReturnsExactlyTheNodesWithinBudget() {
+        var graph = TestGraphs.grid();
+        var costFunction = TestGraphs.unevenCostFunction();
+        var isochroneComputer = new IsochroneComputer(graph, costFunction);
+        var nodeIds = new int[graph.nodeCount()];
+        for (int i = 0; i < nodeIds.length; i += 1) nodeIds[i] = i;
+        var matrix = new RouteComputer(graph, costFunction).matrixBetween(nodeIds, nodeIds);
+
+        var rng = newRandom();
+        for (int i = 0; i < RANDOM_ITERATIONS; i += 1) {
+            var startNodeId = rng.nextInt(graph.nodeCount());
+            var maxCost = rng.nextDouble(3_000);
+            var isochrone = isochroneComputer.isochroneFrom(startNodeId, maxCost);
+
+            var reached = new boolean[graph.nodeCount()];
+            for (int j = 0; j < isochrone.size(); j += 1) {
+                var nodeId = isochrone.nodeId(j);
+                assertFalse(reached[nodeId]);
+                reached[nodeId] = true;
+                assertEquals(matrix.cost(startNodeId, nodeId), isochrone.cost(j), 1e-3);
+                if (j > 0) assertTrue(isochrone.cost(j - 1) <= isochrone.cost(j));
+            }
+            for (int nodeId = 0; nodeId < graph.nodeCount(); nodeId += 1) {
+                var cost = matrix.cost(startNodeId, nodeId);
+                if (Math.abs(cost - maxCost) > 1e-3) assertEquals(cost <= maxCost, reached[nodeId]);
+            }
+        }
+    }
+
+    @Test
+    void visitReachableVisitsSameNodesAsIsochroneFrom() {
+        var graph = TestGraphs.grid();
+        var isochroneComputer = new IsochroneComputer(graph, TestGraphs.unevenCostFunction());
+        var isochrone = isochroneComputer.isochroneFrom(20, 1_500);
+        var visited = new int[]{0};
+        isochroneComputer.visitReachable(20, 1_500, (nodeId, cost) -> {
+            assertEquals(isochrone.nodeId(visited[0]), nodeId);
+            assertEquals(isochrone.cost(visited[0]), cost);
+            visited[0] += 1;
+        });
+        assertEquals(isochrone.size(), visited[0]);
+    }
+
+    @Test
+    void isochroneFromBoundsLengthsWithUnitFactors() {
+        var graph = TestGraphs.grid();
+        var isochroneComputer = new IsochroneComputer(graph, TestGraphs.unevenCostFunction().withUnitFactors());
+        var isochrone = isochroneComputer.isochroneFrom(TestGraphs.SIDE + 1, 250);
+        for (int j = 0; j < isochrone.size(); j += 1) {
+            assertTrue(isochrone.cost(j) <= 250);
+            assertTrue(graph.nodesDistance(TestGraphs.SIDE + 1, isochrone.nodeId(j)) <= isochrone.cost(j) + 1e-3);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package ch.epfl.javelo.routing;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LandmarksTest {
+    private static final int LANDMARK_COUNT = 4;
+
+    @Test
+    void landmarksBuildThrowsOnInvalidLandmarkCount() {
+        var graph = TestGraphs.grid();
+        assertThrows(IllegalArgumentException.class,
+                () -> Landmarks.build(graph, TestGraphs.unevenCostFunction(), 0));
+    }
+
+    @Test
+    void landmarksBuildThrowsOnGraphWithoutEdges() {
+        assertThrows(IllegalArgumentException.class,
+                () -> Landmarks.build(TestGraphs.isolatedNodes(5), TestGraphs.unevenCostFunction(), 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> Landmarks.build(TestGraphs.isolatedNodes(0), TestGraphs.unevenCostFunction(), 1));
+    }
+
+    @Test
+    void landmarksAreDistinctNodes() {
+        var graph = TestGraphs.grid();
+        var landmarks = Landmarks.build(graph, TestGraphs.unevenCostFunction(), LANDMARK_COUNT);
+        var nodeIds = new HashSet<Integer>();
+        for (int i = 0; i < landmarks.count(); i += 1) nodeIds.add(landmarks.nodeId(i));
+        assertEquals(LANDMARK_COUNT, nodeIds.size());
+        for (int i = 0; i < landmarks.count(); i += 1) {
+            assertEquals(0, landmarks.costFromLandmark(i, landmarks.nodeId(i)));
+            assertEquals(0, landmarks.costToLandmark(i, landmarks.nodeId(i)));
+        }
+    }
+
+    @Test
+    void landmarksLowerBoundIsConsistent() {
+        var graph = TestGraphs.grid();
+        var costFunction = TestGraphs.unevenCostFunction();
+        var landmarks = Landmarks.build(graph, costFunction, LANDMARK_COUNT);
+
+        for (int toNodeId = 0; toNodeId < graph.nodeCount(); toNodeId += 1) {
+            assertEquals(0, landmarks.lowerBound(toNodeId, toNodeId));
+            for (int nodeId = 0; nodeId < graph.nodeCount(); nodeId += 1) {
+                for (int i = 0; i < graph.nodeOutDegree(nodeId); i += 1) {
+                    var edgeId = graph.nodeOutEdgeId(nodeId, i);
+                    var edgeCost = costFunction.costFactor(nodeId, edgeId) * graph.edgeLength(edgeId);
+                    var targetBound = landmarks.lowerBound(graph.edgeTargetNodeId(edgeId), toNodeId);
+                    assertTrue(landmarks.lowerBound(nodeId, toNodeId) <= edgeCost + targetBound + 1e-3);
+                }
+            }
+        }
+    }
+
+    @Test
+    void routeComputerFindsRoutesOfSameLengthWithLandmarks() {
+        var graph = TestGraphs.grid();
+        var costFunction = TestGraphs.unevenCostFunction();
+        var landmarks = Landmarks.build(graph, costFunction, LANDMARK_COUNT);
+        var expectedComputer = new RouteComputer(graph, costFunction);
+
+        for (SearchMode searchMode : SearchMode.values()) {
+            var actualComputer = new RouteComputer(graph, costFunction, searchMode, landmarks);
+            for (int startNodeId = 0; startNodeId < graph.nodeCount(); startNodeId += 1) {
+                for (int endNodeId = 0; endNodeId < graph.nodeCount(); endNodeId += 1) {
+                    if (startNodeId == endNodeId) continue;
+                    var expected = expectedComputer.bestRouteBetween(startNodeId, endNodeId);
+                    var actual = actualComputer.bestRouteBetween(startNodeId, endNodeId);
+                    if (expected == null) {
+                        assertNull(actual);
+                    } else {
+                        assertEquals(expected.length(), actual.length(), 1e-6);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void landmarksArePreservedByWriteAndLoad() throws IOException {
+        var graph = TestGraphs.grid();
+        var landmarks = Landmarks.build(graph, TestGraphs.unevenCostFunction(), LANDMARK_COUNT);
+        var directory = Files.createTempDirectory("javelo");
+        landmarks.writeTo(directory);
+        var loaded = Landmarks.loadFrom(directory);
+
+        assertEquals(landmarks.count(), loaded.count());
+        for (int i = 0; i < landmarks.count(); i += 1) {
+            assertEquals(landmarks.nodeId(i), loaded.nodeId(i));
+            for (int nodeId = 0; nodeId < graph.nodeCount(); nodeId += 1) {
+                assertEquals(landmarks.costFromLandmark(i, nodeId), loaded.costFromLandmark(i, nodeId));
+                assertEquals(landmarks.costToLandmark(i, nodeId), loaded.costToLandmark(i, nodeId));
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.projection.PointCh;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MapMatcherTest {
+    private static final Graph GRAPH = TestGraphs.grid();
+    private static final MapMatcher MATCHER = new MapMatcher(GRAPH, new RouteComputer(GRAPH, (nodeId, edgeId) -> 1));
+
+    // Points every 25 m along the straight lines between the given nodes of the grid, moved by up to 5 m.
+    private static List<PointCh> trace(RandomGenerator rng, int... nodeIds) {
+        var points = new ArrayList<PointCh>();
+        for (int i = 0; i + 1 < nodeIds.length; i += 1) {
+            var from = GRAPH.nodePoint(nodeIds[i]);
+            var to = GRAPH.nodePoint(nodeIds[i + 1]);
+            var steps = (int) Math.round(from.distanceTo(to) / 25);
+            for (int s = 0; s < steps; s += 1) {
+                var e = from.e() + (to.e() - from.e()) * s / steps;
+                var n = from.n() + (to.n() - from.n()) * s / steps;
+                points.add(new PointCh(e + rng.nextDouble(-5, 5), n + rng.nextDouble(-5, 5)));
+            }
+        }
+        var last = GRAPH.nodePoint(nodeIds[nodeIds.length - 1]);
+        points.add(new PointCh(last.e() + rng.nextDouble(-5, 5), last.n() + rng.nextDouble(-5, 5)));
+        return points;
+    }
+
+    @Test
+    void mapMatcherMatchesNoisyStraightTrace() {
+        var rng = newRandom();
+        for (int i = 0; i < 20; i += 1) {
+            // along the third row, from its first node to its last one (edges of 102 m)
+            var routes = MATCHER.match(trace(rng, 16, 23));
+            assertEquals(1, routes.size());
+            var route = routes.get(0);
+            assertEquals(7 * 102, route.length(), 1e-6);
+            assertEquals(GRAPH.nodePoint(16), route.points().get(0));
+            assertEquals(GRAPH.nodePoint(23), route.points().get(route.points().size() - 1));
+        }
+    }
+
+    @Test
+    void mapMatcherMatchesNoisyTurningTrace() {
+        var rng = newRandom();
+        for (int i = 0; i < 20; i += 1) {
+            // east along the second row, then north along the sixth column
+            var routes = MATCHER.match(trace(rng, 8, 13, 61));
+            assertEquals(1, routes.size());
+            var route = routes.get(0);
+            assertEquals(5 * 101 + 6 * 105, route.length(), 1e-6);
+            assertEquals(GRAPH.nodePoint(8), route.points().get(0));
+            assertEquals(GRAPH.nodePoint(61), route.points().get(route.points().size() - 1));
+        }
+    }
+
+    @Test
+    void mapMatcherReturnsNoRouteWhenNothingMatches() {
+        assertEquals(List.of(), MATCHER.match(List.of()));
+        assertEquals(List.of(),
+                MATCHER.match(List.of(new PointCh(2_650_000, 1_200_000), new PointCh(2_650_100, 1_200_000))));
+        assertEquals(List.of(), MATCHER.match(List.of(GRAPH.nodePoint(9))));
+    }
+
+    @Test
+    void mapMatcherSplitsTraceCrossingGap() {
+        // no edge can be used between the fourth and the fifth column
+        CostFunction gapCostFunction = (nodeId, edgeId) ->
+                Math.abs(nodeId % 8 - GRAPH.edgeTargetNodeId(edgeId) % 8) == 1
+                        && Math.min(nodeId % 8, GRAPH.edgeTargetNodeId(edgeId) % 8) == 3
+                        ? Double.POSITIVE_INFINITY : 1;
+        var matcher = new MapMatcher(GRAPH, new RouteComputer(GRAPH, gapCostFunction));
+        var rng = newRandom();
+        for (int i = 0; i < 20; i += 1) {
+            var routes = matcher.match(trace(rng, 16, 23));
+            assertEquals(2, routes.size());
+            var west = routes.get(0);
+            var east = routes.get(1);
+            assertEquals(GRAPH.nodePoint(16), west.points().get(0));
+            assertEquals(GRAPH.nodePoint(23), east.points().get(east.points().size() - 1));
+            // neither part crosses the gap
+            for (var point : west.points()) assertTrue(point.e() <= GRAPH.nodePoint(19).e());
+            for (var point : east.points()) assertTrue(point.e() >= GRAPH.nodePoint(20).e());
+        }
+
+        var parts = new ArrayList<List<Route>>();
+        parts.add(new ArrayList<>());
+        var trace = matcher.newTrace(route -> parts.get(parts.size() - 1).add(route),
+                () -> parts.add(new ArrayList<>()));
+        var points = trace(rng, 16, 23);
+        for (PointCh point : points) trace.add(point);
+        trace.finish();
+        assertEquals(3, parts.size());
+        assertEquals(List.of(), parts.get(2));
+        var routes = matcher.match(points);
+        assertEquals(routes.get(0).length(), routesLength(parts.get(0)), 1e-6);
+        assertEquals(routes.get(1).length(), routesLength(parts.get(1)), 1e-6);
+    }
+
+    private static double routesLength(List<Route> routes) {
+        var length = 0.0;
+        for (var route : routes) length += route.length();
+        return length;
+    }
+
+    @Test
+    void mapMatcherTraceEmitsRoutesBeforeFinishing() {
+        var routes = new ArrayList<Route>();
+        var trace = MATCHER.newTrace(routes::add);
+        for (PointCh point : trace(newRandom(), 8, 15, 63, 56)) trace.add(point);
+        assertFalse(routes.isEmpty());
+
+        var emitted = routes.size();
+        trace.finish();
+        assertTrue(routes.size() >= emitted);
+        assertEquals(7 * 101 + 6 * 107 + 7 * 107, new MultiRoute(routes).length(), 1e-6);
+    }
+
+    @Test
+    void mapMatcherMatchAllWorksLikeMatch() {
+        var rng = newRandom();
+        var traces = new ArrayList<List<PointCh>>();
+        for (int i = 0; i < 50; i += 1) {
+            var startNodeId = 8 + rng.nextInt(56);
+            var endNodeId = 8 + rng.nextInt(56);
+            traces.add(trace(rng, startNodeId, startNodeId - startNodeId % 8 + endNodeId % 8, endNodeId));
+        }
+        var routes = MATCHER.matchAll(traces);
+        assertEquals(traces.size(), routes.size());
+        for (int i = 0; i < traces.size(); i += 1) {
+            var expected = MATCHER.match(traces.get(i));
+            var actual = routes.get(i);
+            assertEquals(expected.size(), actual.size());
+            for (int j = 0; j < expected.size(); j += 1) {
+                assertEquals(expected.get(j).length(), actual.get(j).length());
+                assertEquals(expected.get(j).points(), actual.get(j).points());
+            }
+        }
+    }
+}
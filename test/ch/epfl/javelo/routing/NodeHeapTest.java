@@ -0,0 +1,83 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.test.TestRandomizer;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
+import static org.junit.jupiter.api.Assertions.*;
+
+class NodeHeapTest {
+    @Test
+    void nodeHeapIsInitiallyEmpty() {
+        var heap = new NodeHeap(10);
+        assertTrue(heap.isEmpty());
+        assertEquals(0, heap.size());
+        assertEquals(Float.POSITIVE_INFINITY, heap.minKey());
+    }
+
+    @Test
+    void nodeHeapRemovesNodesInKeyOrder() {
+        var rng = TestRandomizer.newRandom();
+        var nodeCount = 1_000;
+        var heap = new NodeHeap(nodeCount);
+        var keys = new float[nodeCount];
+        for (int nodeId = 0; nodeId < nodeCount; nodeId += 1) {
+            keys[nodeId] = rng.nextFloat(0, 10_000);
+            heap.insertOrDecrease(nodeId, keys[nodeId]);
+        }
+        assertEquals(nodeCount, heap.size());
+
+        var sortedKeys = keys.clone();
+        Arrays.sort(sortedKeys);
+        for (float expectedKey : sortedKeys) {
+            assertEquals(expectedKey, heap.minKey());
+            assertEquals(expectedKey, keys[heap.removeMin()]);
+        }
+        assertTrue(heap.isEmpty());
+    }
+
+    @Test
+    void nodeHeapDecreasesKeysWithoutDuplicatingNodes() {
+        var rng = TestRandomizer.newRandom();
+        var nodeCount = 100;
+        var heap = new NodeHeap(nodeCount);
+        var keys = new float[nodeCount];
+        Arrays.fill(keys, Float.POSITIVE_INFINITY);
+        for (int i = 0; i < RANDOM_ITERATIONS; i += 1) {
+            var nodeId = rng.nextInt(nodeCount);
+            var key = rng.nextFloat(0, 10_000);
+            heap.insertOrDecrease(nodeId, key);
+            keys[nodeId] = Math.min(keys[nodeId], key);
+        }
+
+        var previousKey = Float.NEGATIVE_INFINITY;
+        var removed = new boolean[nodeCount];
+        while (!heap.isEmpty()) {
+            var key = heap.minKey();
+            var nodeId = heap.removeMin();
+            assertFalse(removed[nodeId]);
+            assertEquals(keys[nodeId], key);
+            assertTrue(previousKey <= key);
+            removed[nodeId] = true;
+            previousKey = key;
+        }
+    }
+
+    @Test
+    void nodeHeapClearAllowsReinsertion() {
+        var heap = new NodeHeap(5);
+        heap.insertOrDecrease(3, 2f);
+        heap.insertOrDecrease(1, 1f);
+        heap.clear();
+        assertTrue(heap.isEmpty());
+
+        heap.insertOrDecrease(3, 7f);
+        heap.insertOrDecrease(4, 5f);
+        assertEquals(2, heap.size());
+        assertEquals(4, heap.removeMin());
+        assertEquals(3, heap.removeMin());
+        assertTrue(heap.isEmpty());
+    }
+}
@@ -0,0 +1,115 @@
+package ch.epfl.javelo.routing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteCacheTest {
+    private static Route route(int endNodeId) {
+        return new RouteComputer(TestGraphs.grid(), (nodeId, edgeId) -> 1).bestRouteBetween(0, endNodeId);
+    }
+
+    @Test
+    void routeCacheConstructorThrowsOnInvalidCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new RouteCache(0));
+        assertThrows(IllegalArgumentException.class, () -> new RouteCache(-1));
+    }
+
+    @Test
+    void routeCacheKeyThrowsOnInvalidIdentities() {
+        assertThrows(IllegalArgumentException.class, () -> RouteCache.key(-1, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> RouteCache.key(0, 1 << 28, 0));
+        assertThrows(IllegalArgumentException.class, () -> RouteCache.key(0, 0, 256));
+    }
+
+    @Test
+    void routeCacheKeysAreDistinct() {
+        var keys = new HashSet<Long>();
+        int[] identities = {0, 1, 2, 255, (1 << 28) - 1};
+        for (int startNodeId : identities) {
+            for (int endNodeId : identities) {
+                for (int costFunctionId : new int[]{0, 1, 255}) {
+                    assertTrue(keys.add(RouteCache.key(startNodeId, endNodeId, costFunctionId)));
+                }
+            }
+        }
+    }
+
+    @Test
+    void routeCacheCountsHitsAndMisses() {
+        var cache = new RouteCache(10);
+        var route = route(1);
+        var key = RouteCache.key(0, 1, 0);
+        assertNull(cache.get(key));
+        cache.put(key, route);
+        assertSame(route, cache.get(key));
+        assertNull(cache.get(RouteCache.key(0, 1, 1)));
+        assertEquals(1, cache.hitCount());
+        assertEquals(2, cache.missCount());
+        assertThrows(NullPointerException.class, () -> cache.put(key, null));
+    }
+
+    @Test
+    void routeCacheGetOrComputeDoesNotCacheMissingRoutes() {
+        var cache = new RouteCache(10);
+        var route = route(2);
+        var computations = new int[1];
+        assertNull(cache.getOrCompute(1, key -> { computations[0] += 1; return null; }));
+        assertNull(cache.getOrCompute(1, key -> { computations[0] += 1; return null; }));
+        assertSame(route, cache.getOrCompute(1, key -> { computations[0] += 1; return route; }));
+        assertSame(route, cache.getOrCompute(1, key -> { computations[0] += 1; return null; }));
+        assertEquals(3, computations[0]);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void routeCacheEvictsLeastRecentlyUsedRoutes() {
+        var capacity = 32;
+        var cache = new RouteCache(capacity);
+        var route = route(3);
+        for (int i = 0; i < 10 * capacity; i += 1) cache.put(RouteCache.key(i, i + 1, 0), route);
+        assertEquals(capacity, cache.size());
+        assertEquals(9 * capacity, cache.evictionCount());
+
+        // a route which keeps being used is never evicted
+        var usedKey = RouteCache.key(0, 0, 1);
+        cache.put(usedKey, route);
+        for (int i = 0; i < 10 * capacity; i += 1) {
+            cache.put(RouteCache.key(i, i + 2, 0), route);
+            assertSame(route, cache.get(usedKey));
+        }
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void routeCacheIsSafeToUseFromSeveralThreads() throws Exception {
+        var capacity = 100;
+        var cache = new RouteCache(capacity);
+        var route = route(4);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            var futures = new ArrayList<Future<?>>();
+            for (int t = 0; t < 4; t += 1) {
+                var thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i += 1) {
+                        var key = RouteCache.key(i % 500, thread, 0);
+                        if (cache.get(key) == null) cache.put(key, route);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) future.get();
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(capacity, cache.size());
+        assertEquals(40_000, cache.hitCount() + cache.missCount());
+    }
+}
@@ -1,6 +1,8 @@
 package ch.epfl.javelo.routing;
 
+import ch.epfl.javelo.data.EdgeSnap;
 import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.projection.PointCh;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -8,7 +10,10 @@ import org.junit.jupiter.api.Test;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.file.Path;
+import java.time.Duration;
 
+import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
+import static ch.epfl.test.TestRandomizer.newRandom;
 import static org.junit.jupiter.api.Assertions.*;
 
 class RouteComputerTest {
@@ -94,4 +99,191 @@ class RouteComputerTest {
         assertEquals(expected20kE, actualPointAt20kE, 1);
         assertEquals(expected20kN, actualPointAt20kN, 1);
     }
-}
\ No newline at end of file
+
+    @Test
+    void bidirectionalRouteComputerReturnsNullForUnreachableNodes() {
+        newLausanneRouteComputer();
+        var rc = new RouteComputer(graph, new CityBikeCF(graph), SearchMode.BIDIRECTIONAL);
+        assertNull(rc.bestRouteBetween(149195, 153181));
+    }
+
+    @Test
+    void bidirectionalRouteComputerFindsRoutesOfSameLengthAsUnidirectional() {
+        var unidirectional = newLausanneRouteComputer();
+        var bidirectional = new RouteComputer(graph, new CityBikeCF(graph), SearchMode.BIDIRECTIONAL);
+        int[][] queries = {{159049, 117669}, {210641, 43713}, {2022, 4095}};
+        for (int[] query : queries) {
+            var expected = unidirectional.bestRouteBetween(query[0], query[1]);
+            var actual = bidirectional.bestRouteBetween(query[0], query[1]);
+            assertNotNull(actual);
+            assertEquals(expected.length(), actual.length(), 1e-6);
+            assertEquals(expected.edges().size(), actual.edges().size());
+            assertEquals(expected.points().get(0), actual.points().get(0));
+        }
+    }
+
+    @Test
+    void bidirectionalRouteComputerFindsRoutesOfSameLengthAsUnidirectionalOnGrid() {
+        var graph = TestGraphs.grid();
+        for (CostFunction costFunction : new CostFunction[]{(nodeId, edgeId) -> 1, TestGraphs.unevenCostFunction()}) {
+            var unidirectional = new RouteComputer(graph, costFunction, SearchMode.UNIDIRECTIONAL);
+            var bidirectional = new RouteComputer(graph, costFunction, SearchMode.BIDIRECTIONAL);
+            for (int startNodeId = 0; startNodeId < graph.nodeCount(); startNodeId += 1) {
+                for (int endNodeId = 0; endNodeId < graph.nodeCount(); endNodeId += 1) {
+                    if (startNodeId == endNodeId) continue;
+                    var expected = unidirectional.bestRouteBetween(startNodeId, endNodeId);
+                    var actual = bidirectional.bestRouteBetween(startNodeId, endNodeId);
+                    if (expected == null) {
+                        assertNull(actual);
+                        continue;
+                    }
+                    assertNotNull(actual);
+                    assertEquals(expected.length(), actual.length(), 1e-6);
+                    assertEquals(startNodeId, actual.edges().get(0).fromNodeId());
+                    assertEquals(endNodeId, actual.edges().get(actual.edges().size() - 1).toNodeId());
+                    for (int i = 1; i < actual.edges().size(); i += 1)
+                        assertEquals(actual.edges().get(i - 1).toNodeId(), actual.edges().get(i).fromNodeId());
+                }
+            }
+        }
+    }
+
+    @Test
+    void routeComputerUsesTheRelaxedEdgeAmongParallelEdges() {
+        var graph = TestGraphs.parallelEdges();
+        // the shortest of the parallel edges (edge 0) is three times more costly than the longest one (edge 1)
+        CostFunction costFunction = (nodeId, edgeId) -> edgeId == 0 ? 3 : 1;
+        for (SearchMode searchMode : SearchMode.values()) {
+            var route = new RouteComputer(graph, costFunction, searchMode).bestRouteBetween(0, 2);
+            assertEquals(250, route.length(), 1e-6);
+            assertEquals(150, route.edges().get(0).length(), 1e-6);
+        }
+    }
+
+    // Length of the best route (of unit cost factors) through the given parts of the start and end edges.
+    private static double snappedRouteLength(Graph graph, RouteComputer routeComputer,
+                                             int startEdgeId, double startFraction, int endEdgeId, double endFraction) {
+        var fromNodeId = graph.edgeTargetNodeId(startEdgeId);
+        var toNodeId = graph.edgeSourceNodeId(endEdgeId);
+        var between = 0.0;
+        if (fromNodeId != toNodeId) {
+            var route = routeComputer.bestRouteBetween(fromNodeId, toNodeId);
+            if (route == null) return Double.POSITIVE_INFINITY;
+            between = route.length();
+        }
+        return (1 - startFraction) * graph.edgeLength(startEdgeId) + between + endFraction * graph.edgeLength(endEdgeId);
+    }
+
+    // Edge from the target of the given edge to its source, or -1 if there is none.
+    private static int reverseEdge(Graph graph, int edgeId) {
+        var targetNodeId = graph.edgeTargetNodeId(edgeId);
+        for (int i = 0; i < graph.nodeOutDegree(targetNodeId); i += 1) {
+            var reverseEdgeId = graph.nodeOutEdgeId(targetNodeId, i);
+            if (graph.edgeTargetNodeId(reverseEdgeId) == graph.edgeSourceNodeId(edgeId)) return reverseEdgeId;
+        }
+        return -1;
+    }
+
+    @Test
+    void routeComputerFindsBestRoutesBetweenSnappedPoints() {
+        var graph = TestGraphs.grid();
+        CostFunction costFunction = (nodeId, edgeId) -> 1;
+        var routeComputer = new RouteComputer(graph, costFunction);
+        var rng = newRandom();
+        for (int i = 0; i < RANDOM_ITERATIONS / 10; i += 1) {
+            var start = graph.edgeClosestTo(new PointCh(2_600_000 + rng.nextDouble(700), 1_200_000 + rng.nextDouble(700)), 100);
+            var end = graph.edgeClosestTo(new PointCh(2_600_000 + rng.nextDouble(700), 1_200_000 + rng.nextDouble(700)), 100);
+
+            var expected = Double.POSITIVE_INFINITY;
+            int[] startEdges = {start.edgeId(), reverseEdge(graph, start.edgeId())};
+            double[] startFractions = {start.fraction(), 1 - start.fraction()};
+            int[] endEdges = {end.edgeId(), reverseEdge(graph, end.edgeId())};
+            double[] endFractions = {end.fraction(), 1 - end.fraction()};
+            for (int s = 0; s < 2; s += 1) {
+                for (int e = 0; e < 2; e += 1) {
+                    if (startEdges[s] == -1 || endEdges[e] == -1) continue;
+                    if (startEdges[s] == endEdges[e] && startFractions[s] <= endFractions[e]) {
+                        expected = Math.min(expected,
+                                (endFractions[e] - startFractions[s]) * graph.edgeLength(startEdges[s]));
+                    }
+                    expected = Math.min(expected, snappedRouteLength(graph, routeComputer,
+                            startEdges[s], startFractions[s], endEdges[e], endFractions[e]));
+                }
+            }
+
+            var route = routeComputer.bestRouteBetween(start, end);
+            assertEquals(expected, route.length(), 1e-3);
+            assertEquals(0, route.pointAt(0).distanceTo(start.point()), 1e-3);
+            assertEquals(0, route.pointAt(route.length()).distanceTo(end.point()), 1e-3);
+        }
+    }
+
+    @Test
+    void routeComputerStaysOnTheEdgeOfBothSnappedPoints() {
+        var graph = TestGraphs.grid();
+        var routeComputer = new RouteComputer(graph, (nodeId, edgeId) -> 1);
+        // edge from node 8 to node 9 (second row, with a reverse edge), 101 m long
+        var edgeId = graph.nodeOutEdgeId(8, 0);
+        var from = graph.nodePoint(8);
+
+        var forward = routeComputer.bestRouteBetween(
+                new EdgeSnap(edgeId, new PointCh(from.e() + 20, from.n()), 0.2),
+                new EdgeSnap(edgeId, new PointCh(from.e() + 70, from.n()), 0.7));
+        assertEquals(1, forward.edges().size());
+        assertEquals(0.5 * 101, forward.length(), 1e-6);
+
+        var backward = routeComputer.bestRouteBetween(
+                new EdgeSnap(edgeId, new PointCh(from.e() + 70, from.n()), 0.7),
+                new EdgeSnap(edgeId, new PointCh(from.e() + 20, from.n()), 0.2));
+        assertEquals(1, backward.edges().size());
+        assertEquals(0.5 * 101, backward.length(), 1e-6);
+        assertEquals(from.e() + 20, backward.pointAt(backward.length()).e(), 1e-6);
+
+        // the first row is one-way (eastwards): going back along it requires a detour through the second row
+        var oneWayEdgeId = graph.nodeOutEdgeId(0, 0);
+        var oneWayFrom = graph.nodePoint(0);
+        var detour = routeComputer.bestRouteBetween(
+                new EdgeSnap(oneWayEdgeId, new PointCh(oneWayFrom.e() + 70, oneWayFrom.n()), 0.7),
+                new EdgeSnap(oneWayEdgeId, new PointCh(oneWayFrom.e() + 20, oneWayFrom.n()), 0.2));
+        assertEquals(30 + 101 + 101 + 100 + 20, detour.length(), 1e-6);
+    }
+
+    @Test
+    void routeQueryResultConstructorThrowsOnInconsistentRoute() {
+        var route = new RouteComputer(TestGraphs.grid(), (nodeId, edgeId) -> 1).bestRouteBetween(0, 1);
+        assertThrows(IllegalArgumentException.class, () -> new RouteQueryResult(QueryStatus.FOUND, null));
+        assertThrows(IllegalArgumentException.class, () -> new RouteQueryResult(QueryStatus.TIMED_OUT, route));
+        assertDoesNotThrow(() -> RouteQueryResult.found(route));
+        assertDoesNotThrow(() -> RouteQueryResult.notFound(QueryStatus.CANCELLED));
+    }
+
+    @Test
+    void routeComputerQueryOutcomesAreCorrect() {
+        var side = 100;
+        var graph = TestGraphs.grid(side);
+        // the right half of the grid cannot be entered from its left half, so that searches between them
+        // explore a whole half before giving up
+        CostFunction costFunction = (nodeId, edgeId) ->
+                nodeId % side < side / 2 && graph.edgeTargetNodeId(edgeId) % side >= side / 2
+                        ? Double.POSITIVE_INFINITY
+                        : 1;
+        var endNodeId = graph.nodeCount() - 1;
+        var cancelled = new CancellationToken();
+        cancelled.cancel();
+
+        for (SearchMode searchMode : SearchMode.values()) {
+            var routeComputer = new RouteComputer(graph, costFunction, searchMode);
+            var found = routeComputer.bestRouteBetween(0, side / 2 - 1, Duration.ofMinutes(1), new CancellationToken());
+            assertEquals(QueryStatus.FOUND, found.status());
+            assertEquals(routeComputer.bestRouteBetween(0, side / 2 - 1).length(), found.route().length());
+
+            assertEquals(QueryStatus.UNREACHABLE,
+                    routeComputer.bestRouteBetween(0, endNodeId, Duration.ofMinutes(1), new CancellationToken()).status());
+            assertEquals(QueryStatus.CANCELLED,
+                    routeComputer.bestRouteBetween(0, endNodeId, Duration.ofMinutes(1), cancelled).status());
+            assertEquals(QueryStatus.TIMED_OUT,
+                    routeComputer.bestRouteBetween(0, endNodeId, Duration.ZERO, new CancellationToken()).status());
+            assertNull(routeComputer.bestRouteBetween(0, endNodeId, Duration.ZERO, cancelled).route());
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+import org.junit.jupiter.api.Test;
+
+import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteMatrixTest {
+
+    // Cost of the given route, whose consecutive nodes are linked by a single edge
+    private static double costOf(Graph graph, CostFunction costFunction, Route route) {
+        var cost = 0.0;
+        for (Edge edge : route.edges()) {
+            for (int i = 0; i < graph.nodeOutDegree(edge.fromNodeId()); i += 1) {
+                var edgeId = graph.nodeOutEdgeId(edge.fromNodeId(), i);
+                if (graph.edgeTargetNodeId(edgeId) == edge.toNodeId())
+                    cost += costFunction.costFactor(edge.fromNodeId(), edgeId) * graph.edgeLength(edgeId);
+            }
+        }
+        return cost;
+    }
+
+    @Test
+    void routeMatrixConstructorThrowsOnInvalidDimensions() {
+        assertThrows(IllegalArgumentException.class, () -> new RouteMatrix(2, 3, new float[5], new float[5]));
+        assertThrows(IllegalArgumentException.class, () -> new RouteMatrix(2, 3, new float[6], new float[5]));
+        assertDoesNotThrow(() -> new RouteMatrix(0, 3, new float[0], new float[0]));
+        // 2^16 x 2^16 pairs, which would be 0 once overflowed
+        assertThrows(ArithmeticException.class, () -> new RouteMatrix(1 << 16, 1 << 16, new float[0], new float[0]));
+    }
+
+    @Test
+    void routeMatrixCannotBeModified() {
+        var costs = new float[]{1, 2, 3, 4, 5, 6};
+        var lengths = new float[]{10, 20, 30, 40, 50, 60};
+        var matrix = new RouteMatrix(2, 3, costs, lengths);
+        costs[0] = 100;
+        lengths[0] = 1000;
+        matrix.costs()[1] = 100;
+        matrix.lengths()[1] = 1000;
+        assertEquals(1, matrix.cost(0, 0));
+        assertEquals(10, matrix.length(0, 0));
+        assertEquals(2, matrix.cost(0, 1));
+        assertEquals(20, matrix.length(0, 1));
+    }
+
+    @Test
+    void routeMatrixThrowsOnInvalidIndices() {
+        var matrix = new RouteMatrix(2, 3, new float[6], new float[6]);
+        assertThrows(IndexOutOfBoundsException.class, () -> matrix.cost(2, 0));
+        assertThrows(IndexOutOfBoundsException.class, () -> matrix.length(0, 3));
+        assertThrows(IndexOutOfBoundsException.class, () -> matrix.cost(-1, 0));
+    }
+
+    @Test
+    void matrixBetweenWorksOnAllPairs() {
+        var graph = TestGraphs.grid();
+        var costFunction = TestGraphs.unevenCostFunction();
+        var routeComputer = new RouteComputer(graph, costFunction);
+        var nodeIds = new int[graph.nodeCount()];
+        for (int i = 0; i < nodeIds.length; i += 1) nodeIds[i] = i;
+
+        var matrix = routeComputer.matrixBetween(nodeIds, nodeIds);
+        for (int i = 0; i < nodeIds.length; i += 1) {
+            for (int j = 0; j < nodeIds.length; j += 1) {
+                if (i == j) {
+                    assertEquals(0, matrix.cost(i, j));
+                    assertEquals(0, matrix.length(i, j));
+                    continue;
+                }
+                var route = routeComputer.bestRouteBetween(i, j);
+                if (route == null) {
+                    assertEquals(Float.POSITIVE_INFINITY, matrix.cost(i, j));
+                    assertEquals(Float.POSITIVE_INFINITY, matrix.length(i, j));
+                } else {
+                    assertEquals(costOf(graph, costFunction, route), matrix.cost(i, j), 1e-3);
+                }
+            }
+        }
+    }
+
+    @Test
+    void matrixBetweenGivesLengthsOfShortestRoutesForUnitCosts() {
+        var graph = TestGraphs.grid();
+        CostFunction costFunction = (nodeId, edgeId) -> 1;
+        var routeComputer = new RouteComputer(graph, costFunction);
+        var rng = newRandom();
+        for (int i = 0; i < RANDOM_ITERATIONS / 100; i += 1) {
+            var sources = rng.ints(1 + rng.nextInt(8), 0, graph.nodeCount()).toArray();
+            var targets = rng.ints(1 + rng.nextInt(8), 0, graph.nodeCount()).toArray();
+            var matrix = routeComputer.matrixBetween(sources, targets);
+            assertEquals(sources.length, matrix.sourceCount());
+            assertEquals(targets.length, matrix.targetCount());
+            for (int s = 0; s < sources.length; s += 1) {
+                for (int t = 0; t < targets.length; t += 1) {
+                    if (sources[s] == targets[t]) continue;
+                    var route = routeComputer.bestRouteBetween(sources[s], targets[t]);
+                    var expected = route == null ? Double.POSITIVE_INFINITY : route.length();
+                    assertEquals(expected, matrix.length(s, t), 1e-3);
+                    assertEquals(expected, matrix.cost(s, t), 1e-3);
+                }
+            }
+        }
+    }
+
+    @Test
+    void matrixBetweenLeavesOutRoutesCostingMoreThanTheBound() {
+        var graph = TestGraphs.grid();
+        var costFunction = TestGraphs.unevenCostFunction();
+        var components = StronglyConnectedComponents.of(graph, costFunction);
+        var routeComputer = new RouteComputer(graph, costFunction, SearchMode.UNIDIRECTIONAL,
+                new CrowFlyHeuristic(graph), components);
+        var nodeIds = new int[graph.nodeCount()];
+        for (int i = 0; i < nodeIds.length; i += 1) nodeIds[i] = i;
+
+        var unbounded = new RouteComputer(graph, costFunction).matrixBetween(nodeIds, nodeIds);
+        assertArrayEquals(unbounded.costs(), routeComputer.matrixBetween(nodeIds, nodeIds).costs());
+        for (double maxCost : new double[]{0, 150, 700, 2_000}) {
+            var matrix = routeComputer.matrixBetween(nodeIds, nodeIds, maxCost);
+            for (int i = 0; i < nodeIds.length; i += 1) {
+                for (int j = 0; j < nodeIds.length; j += 1) {
+                    var withinBound = unbounded.cost(i, j) <= maxCost;
+                    assertEquals(withinBound ? unbounded.cost(i, j) : Float.POSITIVE_INFINITY, matrix.cost(i, j));
+                    assertEquals(withinBound ? unbounded.length(i, j) : Float.POSITIVE_INFINITY, matrix.length(i, j));
+                }
+            }
+        }
+    }
+}
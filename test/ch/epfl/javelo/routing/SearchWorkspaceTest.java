@@ -0,0 +1,48 @@
+package ch.epfl.javelo.routing;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchWorkspaceTest {
+    @Test
+    void searchWorkspaceNodesAreInitiallyUnreached() {
+        var workspace = new SearchWorkspace(10);
+        workspace.reset();
+        for (int nodeId = 0; nodeId < 10; nodeId += 1) {
+            assertEquals(Float.POSITIVE_INFINITY, workspace.distance(nodeId));
+            assertFalse(workspace.isSettled(nodeId));
+        }
+        assertTrue(workspace.heap().isEmpty());
+    }
+
+    @Test
+    void searchWorkspaceRecordsReachedAndSettledNodes() {
+        var workspace = new SearchWorkspace(10);
+        workspace.reset();
+        workspace.reach(4, 12.5f, 2);
+        assertEquals(12.5f, workspace.distance(4));
+        assertEquals(2, workspace.predecessor(4));
+        assertFalse(workspace.isSettled(4));
+
+        workspace.settle(4);
+        assertTrue(workspace.isSettled(4));
+        assertEquals(12.5f, workspace.distance(4));
+    }
+
+    @Test
+    void searchWorkspaceResetForgetsPreviousSearch() {
+        var workspace = new SearchWorkspace(10);
+        workspace.reset();
+        workspace.reach(4, 12.5f, 2);
+        workspace.settle(4);
+        workspace.reach(7, 1f, 4);
+        workspace.heap().insertOrDecrease(7, 1f);
+
+        workspace.reset();
+        assertEquals(Float.POSITIVE_INFINITY, workspace.distance(4));
+        assertEquals(Float.POSITIVE_INFINITY, workspace.distance(7));
+        assertFalse(workspace.isSettled(4));
+        assertTrue(workspace.heap().isEmpty());
+    }
+}
@@ -0,0 +1,126 @@
+package ch.epfl.javelo.routing;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StronglyConnectedComponentsTest {
+    // Cost function cutting the grid into several components, some of which can be left but not entered.
+    private static final CostFunction FRAGMENTING_COST_FUNCTION =
+            (nodeId, edgeId) -> edgeId % 3 == 0 ? Double.POSITIVE_INFINITY : 1 + (edgeId * 7919 % 13) / 4.0;
+
+    @Test
+    void componentsOfConnectedGridAreASingleComponent() {
+        var graph = TestGraphs.grid();
+        var components = StronglyConnectedComponents.of(graph, TestGraphs.unevenCostFunction());
+        assertEquals(1, components.count());
+        assertEquals(graph.nodeCount(), components.size(components.largest()));
+        for (int nodeId = 0; nodeId < graph.nodeCount(); nodeId += 1) {
+            assertTrue(components.isInLargest(nodeId));
+        }
+    }
+
+    @Test
+    void componentsAgreeWithRouteComputer() {
+        var graph = TestGraphs.grid();
+        var costFunction = FRAGMENTING_COST_FUNCTION;
+        var components = StronglyConnectedComponents.of(graph, costFunction);
+        var routeComputer = new RouteComputer(graph, costFunction);
+        assertTrue(components.count() > 1);
+
+        for (int startNodeId = 0; startNodeId < graph.nodeCount(); startNodeId += 1) {
+            for (int endNodeId = 0; endNodeId < graph.nodeCount(); endNodeId += 1) {
+                if (startNodeId == endNodeId) continue;
+                var reachable = routeComputer.bestRouteBetween(startNodeId, endNodeId) != null;
+                if (!components.mayReach(startNodeId, endNodeId)) assertFalse(reachable);
+                if (components.componentOf(startNodeId) == components.componentOf(endNodeId)) assertTrue(reachable);
+                if (reachable && routeComputer.bestRouteBetween(endNodeId, startNodeId) != null) {
+                    assertEquals(components.componentOf(startNodeId), components.componentOf(endNodeId));
+                }
+            }
+        }
+    }
+
+    @Test
+    void componentsTellIsolatedNodeOfLowIdentityIsUnreachable() {
+        var graph = TestGraphs.grid();
+        CostFunction costFunction = (nodeId, edgeId) ->
+                nodeId == 0 || graph.edgeTargetNodeId(edgeId) == 0 ? Double.POSITIVE_INFINITY : 1;
+        var components = StronglyConnectedComponents.of(graph, costFunction);
+        assertEquals(2, components.count());
+        // the isolated node is completed first, its number alone does not tell it cannot be reached
+        assertTrue(components.componentOf(0) < components.componentOf(10));
+        for (int nodeId = 1; nodeId < graph.nodeCount(); nodeId += 1) {
+            assertTrue(components.isInLargest(nodeId));
+            assertFalse(components.mayReach(nodeId, 0));
+            assertFalse(components.mayReach(0, nodeId));
+            assertTrue(components.mayReach(nodeId, 10));
+        }
+    }
+
+    @Test
+    void componentSizesSumToNodeCount() {
+        var graph = TestGraphs.grid();
+        var components = StronglyConnectedComponents.of(graph, FRAGMENTING_COST_FUNCTION);
+        var total = 0;
+        for (int component = 0; component < components.count(); component += 1) {
+            assertTrue(components.size(component) > 0);
+            assertTrue(components.size(component) <= components.size(components.largest()));
+            total += components.size(component);
+        }
+        assertEquals(graph.nodeCount(), total);
+    }
+
+    @Test
+    void routeComputerWithComponentsGivesSameOutcomes() {
+        var graph = TestGraphs.grid();
+        var costFunction = FRAGMENTING_COST_FUNCTION;
+        var components = StronglyConnectedComponents.of(graph, costFunction);
+        var expectedComputer = new RouteComputer(graph, costFunction);
+
+        for (SearchMode searchMode : SearchMode.values()) {
+            var actualComputer = new RouteComputer(graph, costFunction, searchMode,
+                    new CrowFlyHeuristic(graph), components);
+            for (int startNodeId = 0; startNodeId < graph.nodeCount(); startNodeId += 1) {
+                for (int endNodeId = 0; endNodeId < graph.nodeCount(); endNodeId += 1) {
+                    if (startNodeId == endNodeId) continue;
+                    var expected = expectedComputer.bestRouteBetween(startNodeId, endNodeId);
+                    var actual = actualComputer.bestRouteBetween(startNodeId, endNodeId);
+                    if (expected == null) {
+                        assertNull(actual);
+                    } else {
+                        assertEquals(expected.length(), actual.length(), 1e-6);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void componentsArePreservedByWriteAndLoad() throws IOException {
+        var graph = TestGraphs.grid();
+        var components = StronglyConnectedComponents.of(graph, FRAGMENTING_COST_FUNCTION);
+        var directory = Files.createTempDirectory("components");
+        try {
+            assertFalse(StronglyConnectedComponents.existIn(directory));
+            components.writeTo(directory);
+            assertTrue(StronglyConnectedComponents.existIn(directory));
+            var loaded = StronglyConnectedComponents.loadFrom(directory);
+            assertEquals(components.count(), loaded.count());
+            assertEquals(components.largest(), loaded.largest());
+            for (int nodeId = 0; nodeId < graph.nodeCount(); nodeId += 1) {
+                assertEquals(components.componentOf(nodeId), loaded.componentOf(nodeId));
+                for (int otherNodeId = 0; otherNodeId < graph.nodeCount(); otherNodeId += 1) {
+                    assertEquals(components.mayReach(nodeId, otherNodeId), loaded.mayReach(nodeId, otherNodeId));
+                }
+            }
+        } finally {
+            Files.deleteIfExists(directory.resolve("components.bin"));
+            Files.deleteIfExists(directory.resolve("component_links.bin"));
+            Files.delete(directory);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.AttributeSet;
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.data.GraphEdges;
+import ch.epfl.javelo.data.GraphNodes;
+import ch.epfl.javelo.data.GraphSectors;
+import ch.epfl.javelo.projection.SwissBounds;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static ch.epfl.javelo.data.Attribute.*;
+
+/**
+ * Small synthetic graphs, for tests which cannot rely on the Lausanne data
+ */
+final class TestGraphs {
+    static final int SIDE = 8;
+
+    // Attribute sets of the edges of the tagged grid, covering most cases of CityBikeCF.
+    private static final List<AttributeSet> TAGGED_ATTRIBUTE_SETS = List.of(
+            AttributeSet.of(HIGHWAY_CYCLEWAY),
+            AttributeSet.of(HIGHWAY_RESIDENTIAL, SURFACE_GRAVEL),
+            AttributeSet.of(HIGHWAY_PRIMARY),
+            AttributeSet.of(HIGHWAY_TRACK, TRACKTYPE_GRADE3),
+            AttributeSet.of(HIGHWAY_SECONDARY, ONEWAY_YES),
+            AttributeSet.of(HIGHWAY_STEPS),
+            AttributeSet.of(HIGHWAY_MOTORWAY),
+            AttributeSet.of(HIGHWAY_SERVICE, ACCESS_PRIVATE),
+            AttributeSet.of(HIGHWAY_TERTIARY, LCN_YES),
+            AttributeSet.of(HIGHWAY_UNCLASSIFIED, BICYCLE_YES),
+            AttributeSet.of(HIGHWAY_PATH, SURFACE_ASPHALT),
+            AttributeSet.of(HIGHWAY_LIVING_STREET, ONEWAY_M1, ONEWAY_BICYCLE_NO));
+
+    /**
+     * Default (not instantiable) TestGraphs constructor
+     */
+    private TestGraphs() {}
+
+    // Grid of SIDE x SIDE nodes 100 m apart, every pair of neighbours being linked in both directions,
+    // except for the first row, which is one-way (eastwards).
+    static Graph grid() {
+        return grid(SIDE);
+    }
+
+    // Grid of side x side nodes, as above.
+    static Graph grid(int side) {
+        return newGraph(gridEdges(side), side, List.of());
+    }
+
+    // Edges of the grid of side x side nodes, by node, as (target, length) pairs.
+    private static List<List<int[]>> gridEdges(int side) {
+        var outEdges = new ArrayList<List<int[]>>();
+        for (int y = 0; y < side; y += 1) {
+            for (int x = 0; x < side; x += 1) {
+                var nodeId = y * side + x;
+                var edges = new ArrayList<int[]>();
+                if (x + 1 < side) edges.add(new int[]{nodeId + 1, 100 + y});
+                if (x > 0 && y > 0) edges.add(new int[]{nodeId - 1, 100 + y});
+                if (y + 1 < side) edges.add(new int[]{nodeId + side, 100 + x});
+                if (y > 0) edges.add(new int[]{nodeId - side, 100 + x});
+                outEdges.add(edges);
+            }
+        }
+        return outEdges;
+    }
+
+    // Grid of SIDE x SIDE nodes, as above, whose edges have real attribute sets, elevation gains giving slopes
+    // from 0 to 11 %, and directions (one in four edges being inverted), so that CityBikeCF can be evaluated on it.
+    static Graph taggedGrid() {
+        var outEdges = new ArrayList<List<int[]>>();
+        var edgeCount = 0;
+        for (var edges : gridEdges(SIDE)) {
+            var taggedEdges = new ArrayList<int[]>();
+            for (int[] edge : edges) {
+                var length = edge[1];
+                taggedEdges.add(new int[]{edge[0], length, edgeCount * 7 % 12 * length / 100,
+                        edgeCount % TAGGED_ATTRIBUTE_SETS.size(), edgeCount % 4 == 1 ? 1 : 0});
+                edgeCount += 1;
+            }
+            outEdges.add(taggedEdges);
+        }
+        return newGraph(outEdges, SIDE, TAGGED_ATTRIBUTE_SETS);
+    }
+
+    // Three nodes on a line, 100 m apart: the first two are linked by two parallel edges (edge 0, 100 m long,
+    // and edge 1, 150 m long), the last two by a single edge (edge 2), with reverse edges 3 (from node 1 to 0)
+    // and 4 (from node 2 to 1).
+    static Graph parallelEdges() {
+        return newGraph(List.of(
+                List.of(new int[]{1, 100}, new int[]{1, 150}),
+                List.of(new int[]{2, 100}, new int[]{0, 100}),
+                List.of(new int[]{1, 100})), SIDE, List.of());
+    }
+
+    // Graph of the given number of nodes on a row, 100 m apart, without any edge.
+    static Graph isolatedNodes(int nodeCount) {
+        var outEdges = new ArrayList<List<int[]>>();
+        for (int nodeId = 0; nodeId < nodeCount; nodeId += 1) outEdges.add(List.of());
+        return newGraph(outEdges, SIDE, List.of());
+    }
+
+    // Graph whose nodes lie on a grid of the given width, 100 m apart, every node having the given edges,
+    // as (target, length) pairs, or (target, length, elevation gain, index of attribute set, 1 if inverted).
+    private static Graph newGraph(List<List<int[]>> outEdges, int width, List<AttributeSet> attributeSets) {
+        var nodesBuffer = IntBuffer.allocate(3 * outEdges.size());
+        var edges = new ArrayList<int[]>();
+        for (int nodeId = 0; nodeId < outEdges.size(); nodeId += 1) {
+            nodesBuffer.put((2_600_000 + 100 * (nodeId % width)) << 4);
+            nodesBuffer.put((1_200_000 + 100 * (nodeId / width)) << 4);
+            nodesBuffer.put((outEdges.get(nodeId).size() << 28) | edges.size());
+            edges.addAll(outEdges.get(nodeId));
+        }
+        var edgesBuffer = ByteBuffer.allocate(10 * edges.size());
+        for (int[] edge : edges) {
+            var tagged = edge.length > 2;
+            edgesBuffer.putInt(tagged && edge[4] == 1 ? ~edge[0] : edge[0]);
+            edgesBuffer.putShort((short) (edge[1] << 4));
+            edgesBuffer.putShort((short) (tagged ? edge[2] << 4 : 0));
+            edgesBuffer.putShort((short) (tagged ? edge[3] : 0));
+        }
+        var graphEdges = new GraphEdges(edgesBuffer.flip(), IntBuffer.allocate(edges.size()), ShortBuffer.allocate(0));
+        return new Graph(new GraphNodes(nodesBuffer.flip()), sectors(outEdges.size(), width),
+                graphEdges, attributeSets);
+    }
+
+    // Sectors of the nodes of a grid of the given width: every sector spans the identities from its first node
+    // to its last one (which may include nodes of other sectors, that searches filter out by distance anyway).
+    private static GraphSectors sectors(int nodeCount, int width) {
+        var firstNodes = new int[128 * 128];
+        var endNodes = new int[128 * 128];
+        for (int nodeId = nodeCount - 1; nodeId >= 0; nodeId -= 1) {
+            var e = 2_600_000 + 100 * (nodeId % width);
+            var n = 1_200_000 + 100 * (nodeId / width);
+            var x = (int) ((e - SwissBounds.MIN_E) / (SwissBounds.WIDTH / 128));
+            var y = (int) ((n - SwissBounds.MIN_N) / (SwissBounds.HEIGHT / 128));
+            var sectorId = y * 128 + x;
+            if (endNodes[sectorId] == 0) endNodes[sectorId] = nodeId + 1;
+            firstNodes[sectorId] = nodeId;
+        }
+        var sectorsBuffer = ByteBuffer.allocate(6 * 128 * 128);
+        for (int sectorId = 0; sectorId < 128 * 128; sectorId += 1) {
+            sectorsBuffer.putInt(firstNodes[sectorId]);
+            sectorsBuffer.putShort((short) (endNodes[sectorId] - firstNodes[sectorId]));
+        }
+        return new GraphSectors(sectorsBuffer.flip());
+    }
+
+    // Cost function with factors between 1 and 4, and some edges which cannot be used at all.
+    static CostFunction unevenCostFunction() {
+        return (nodeId, edgeId) -> edgeId % 11 == 0 ? Double.POSITIVE_INFINITY : 1 + (edgeId * 7919 % 13) / 4.0;
+    }
+}